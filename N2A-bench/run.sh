@@ -0,0 +1,35 @@
+#!/bin/sh
+# Builds N2A and the benchmarks, checks correctness (Verify), runs them, and writes a JMH JSON report.
+#
+# Usage: run.sh [-b baseline.json] [JMH options...]
+#   Report goes to results/<git commit>.json, so runs of different builds can sit side by side.
+#   With -b, also prints a comparison against the given earlier report.
+#   Any other arguments go to JMH. For example, "run.sh ParseBench" runs only the parser benchmarks,
+#   and "run.sh -p size=100" limits the simulator to its smallest network.
+
+set -e
+cd "$(dirname "$0")"
+
+baseline=
+if [ "$1" = "-b" ]; then
+    baseline="$2"
+    shift 2
+fi
+
+mvn -B -q -f ../N2A/pom.xml install -DskipTests
+mvn -B -q package
+
+# A faster build that gives different answers is not a result.
+java -cp target/benchmarks.jar gov.sandia.n2a.bench.Verify
+
+label=$(git rev-parse --short HEAD 2>/dev/null || date +%Y%m%d-%H%M%S)
+if [ -n "$(git status --porcelain -- ../N2A/src 2>/dev/null)" ]; then label="$label-dirty"; fi
+mkdir -p results
+report="results/$label.json"
+
+java -jar target/benchmarks.jar -rf json -rff "$report" "$@"
+echo "Report written to $report"
+
+if [ -n "$baseline" ]; then
+    java -cp target/benchmarks.jar gov.sandia.n2a.bench.Compare "$baseline" "$report"
+fi
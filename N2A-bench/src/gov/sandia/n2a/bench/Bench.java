@@ -0,0 +1,157 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import gov.sandia.n2a.N2APlugin;
+import gov.sandia.n2a.db.AppData;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.host.Host;
+import gov.sandia.n2a.plugins.PluginManager;
+
+/**
+    Shared setup for all benchmarks, along with the synthetic models they run.
+    The models are built in memory rather than pulled from the user's repos,
+    so results don't depend on local edits to the library.
+**/
+public class Bench
+{
+    protected static boolean initialized;
+
+    /**
+        Brings up the same environment as a headless run from Main, minus the command-line processing.
+        Safe to call from every @Setup method.
+    **/
+    public static synchronized void initialize ()
+    {
+        if (initialized) return;
+        initialized = true;
+        AppData.properties.set (true, "headless");
+        PluginManager.initialize (new N2APlugin (), new ArrayList<String> (), new ArrayList<Path> ());
+    }
+
+    public static Path tempDir () throws IOException
+    {
+        return Files.createTempDirectory ("n2a-bench");
+    }
+
+    public static void delete (Path dir)
+    {
+        if (dir != null) Host.get ().deleteTree (dir);
+    }
+
+    /**
+        Leaky integrate-and-fire population with sparse random excitatory connections.
+        Each neuron has roughly 10 incoming synapses, regardless of size.
+        @param duration Simulated time, with units. For example "100ms".
+    **/
+    public static MNode lif (int n, String duration)
+    {
+        MVolatile m = new MVolatile (null, "LIF");
+        m.set ("0.1ms",             "$t'");
+        m.set ("$t<" + duration,    "$p");
+        m.set (n,                   "N", "$n");
+        m.set ("10ms",              "N", "tau");
+        m.set ("(I+Iext-V)/tau",    "N", "V'");
+        m.set ("0",                 "N", "V", "@V>1");
+        m.set ("1.1*uniform()+0.5", "N", "Iext", "@$init");
+        m.set ("+0",                "N", "I");
+        synapse (m, "0.2", "A.V>1");
+        return m;
+    }
+
+    /**
+        Hodgkin-Huxley population (squid axon parameters) with the same connection pattern as lif().
+        Voltage is in mV and rates are per ms, so each derivative is scaled by 1000 to match $t in seconds.
+    **/
+    public static MNode hh (int n, String duration)
+    {
+        MVolatile m = new MVolatile (null, "HH");
+        m.set ("0.01ms",                                                     "$t'");
+        m.set ("$t<" + duration,                                             "$p");
+        m.set (n,                                                            "N", "$n");
+        m.set ("-65",                                                        "N", "V", "@$init");
+        m.set ("0.05",                                                       "N", "m", "@$init");
+        m.set ("0.6",                                                        "N", "h", "@$init");
+        m.set ("0.32",                                                       "N", "n", "@$init");
+        m.set ("5+10*uniform()",                                             "N", "Iext", "@$init");
+        m.set ("+0",                                                         "N", "I");
+        m.set ("1000*(Iext+I-120*m^3*h*(V-50)-36*n^4*(V+77)-0.3*(V+54.4))", "N", "V'");
+        m.set ("1000*(am*(1-m)-bm*m)",                                       "N", "m'");
+        m.set ("1000*(ah*(1-h)-bh*h)",                                       "N", "h'");
+        m.set ("1000*(an*(1-n)-bn*n)",                                       "N", "n'");
+        m.set ("0.1*(V+40)/(1-exp(-(V+40)/10))",                             "N", "am");
+        m.set ("4*exp(-(V+65)/18)",                                          "N", "bm");
+        m.set ("0.07*exp(-(V+65)/20)",                                       "N", "ah");
+        m.set ("1/(1+exp(-(V+35)/10))",                                      "N", "bh");
+        m.set ("0.01*(V+55)/(1-exp(-(V+55)/10))",                            "N", "an");
+        m.set ("0.125*exp(-(V+65)/80)",                                      "N", "bn");
+        synapse (m, "20", "A.V>0");
+        return m;
+    }
+
+    protected static void synapse (MNode m, String weight, String threshold)
+    {
+        m.set ("N",       "S", "A");
+        m.set ("N",       "S", "B");
+        m.set ("10/A.$n", "S", "$p");
+        m.set ("+",       "S", "B.I");
+        m.set (weight,    "S", "B.I", "@event(" + threshold + ")");
+    }
+
+    /**
+        Builds a library-like repo for collation: a chain of parts each inheriting from the previous
+        one and adding a few equations, plus a model that instantiates several of them.
+        @param depth Length of the inheritance chain.
+    **/
+    public static MNode repo (int depth)
+    {
+        MVolatile repo = new MVolatile ();
+        for (int i = 0; i < depth; i++)
+        {
+            MNode part = repo.childOrCreate ("Part" + i);
+            if (i > 0) part.set ("\"Part" + (i - 1) + "\"", "$inherit");
+            part.set ("Part " + i + " of an inheritance chain", "$meta", "notes");
+            part.set ("-V/tau" + i,   "V'");
+            part.set ((i + 1) + "ms", "tau" + i);
+            part.set ("a" + i + "*2", "b" + i);
+            part.set ("uniform()",    "a" + i, "@$init");
+            part.set ("0",            "a" + i, "@");
+        }
+        MNode model = repo.childOrCreate ("Model");
+        for (int i = 0; i < 10; i++)
+        {
+            model.set ("\"Part" + (depth - 1) + "\"", "P" + i, "$inherit");
+            model.set (i + 1,                         "P" + i, "$n");
+        }
+        return repo;
+    }
+
+    /**
+        Equations typical of neuron models, for exercising the parser.
+    **/
+    public static final String[] expressions =
+    {
+        "(I+Iext-V)/tau",
+        "1.1*uniform()+0.5",
+        "1000*(Iext+I-120*m^3*h*(V-50)-36*n^4*(V+77)-0.3*(V+54.4))",
+        "0.1*(V+40)/(1-exp(-(V+40)/10))",
+        "4*exp(-(V+65)/18)",
+        "V>Vpeak",
+        "event(A.V>1, 2ms)",
+        "[1,2,3;4,5,6]*x",
+        "output(\"out\",V,\"V\"+$index)",
+        "$t<100ms&&$index<10",
+        "-gNa*m^3*h*(V-ENa)+-gK*n^4*(V-EK)",
+        "delay(V,0.003)"
+    };
+}
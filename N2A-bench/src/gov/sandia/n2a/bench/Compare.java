@@ -0,0 +1,77 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+import gov.sandia.n2a.db.JSON;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+
+/**
+    Compares two JMH result files (as written by "-rf json") and prints the ratio of each score.
+    Usage: Compare baseline.json current.json
+    All the benchmarks here report time per operation, so a ratio above 1 means the current build is slower.
+    A ratio is marked with "*" when the difference is larger than the combined error bounds.
+**/
+public class Compare
+{
+    public static void main (String[] args) throws Exception
+    {
+        if (args.length < 2)
+        {
+            System.err.println ("Usage: Compare baseline.json current.json");
+            System.exit (1);
+        }
+        Map<String,MNode> baseline = load (args[0]);
+        Map<String,MNode> current  = load (args[1]);
+
+        System.out.println (String.format ("%-60s %12s %12s %8s %s", "benchmark", "baseline", "current", "ratio", "unit"));
+        for (Map.Entry<String,MNode> e : current.entrySet ())
+        {
+            String name = e.getKey ();
+            MNode  c    = e.getValue ().childOrEmpty ("primaryMetric");
+            MNode  b    = baseline.containsKey (name) ? baseline.get (name).childOrEmpty ("primaryMetric") : null;
+            double cs   = c.getDouble ("score");
+            if (b == null)
+            {
+                System.out.println (String.format ("%-60s %12s %12.3f %8s %s", name, "-", cs, "-", c.get ("scoreUnit")));
+                continue;
+            }
+            double bs = b.getDouble ("score");
+            double ratio = bs == 0 ? Double.NaN : cs / bs;
+            boolean significant = Math.abs (cs - bs) > c.getDouble ("scoreError") + b.getDouble ("scoreError");
+            System.out.println (String.format ("%-60s %12.3f %12.3f %8.3f%s %s", name, bs, cs, ratio, significant ? "*" : " ", c.get ("scoreUnit")));
+        }
+    }
+
+    /**
+        @return Benchmark results keyed by method name plus parameter values, so the two files can be matched up.
+    **/
+    public static Map<String,MNode> load (String fileName) throws Exception
+    {
+        MNode results = new MVolatile ();
+        try (Reader reader = Files.newBufferedReader (Paths.get (fileName)))
+        {
+            new JSON ().read (results, reader);
+        }
+
+        Map<String,MNode> result = new TreeMap<String,MNode> ();
+        for (MNode r : results)
+        {
+            String name = r.get ("benchmark");
+            name = name.substring (name.lastIndexOf ('.', name.lastIndexOf ('.') - 1) + 1);  // Keep only class and method.
+            for (MNode p : r.childOrEmpty ("params")) name += " " + p.key () + "=" + p.get ();
+            result.put (name, r);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MPartRepo;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.db.Schema;
+
+/**
+    Document I/O and collation. The document is the synthetic repo from Bench.repo(),
+    stored as a single tree, so its size scales with the inheritance depth.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBench
+{
+    @Param({"5", "50"})
+    public int depth;
+
+    public MNode  repo;
+    public String text;
+
+    @Setup
+    public void setup () throws Exception
+    {
+        Bench.initialize ();
+        repo = Bench.repo (depth);
+        StringWriter writer = new StringWriter ();
+        Schema.latest ().writeAll (repo, writer);
+        text = writer.toString ();
+    }
+
+    @Benchmark
+    public MNode read () throws Exception
+    {
+        MNode result = new MVolatile ();
+        Schema.readAll (result, new StringReader (text));
+        return result;
+    }
+
+    @Benchmark
+    public void write () throws Exception
+    {
+        Schema.latest ().writeAll (repo, Writer.nullWriter ());
+    }
+
+    @Benchmark
+    public MNode collate ()
+    {
+        return new MPartRepo (repo.child ("Model"), repo);
+    }
+}
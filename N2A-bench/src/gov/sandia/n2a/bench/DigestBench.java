@@ -0,0 +1,68 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.n2a.backend.internal.InternalBackend;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MPartRepo;
+import gov.sandia.n2a.eqset.EquationSet;
+
+/**
+    Model compilation: collation with MPartRepo, construction of the EquationSet tree,
+    and the digestion passes that precede a run on the Internal backend.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestBench
+{
+    @Param({"LIF", "HH", "chain"})
+    public String model;
+
+    public MNode source;
+    public MNode repo;
+
+    @Setup
+    public void setup ()
+    {
+        Bench.initialize ();
+        switch (model)
+        {
+            case "LIF": source = Bench.lif (100, "1s"); break;
+            case "HH":  source = Bench.hh  (100, "1s"); break;
+            default:
+                repo   = Bench.repo (20);
+                source = repo.child ("Model");
+        }
+    }
+
+    @Benchmark
+    public EquationSet digest () throws Exception
+    {
+        MNode collated = repo == null ? source : new MPartRepo (source, repo);
+        EquationSet e = new EquationSet (collated);
+        InternalBackend.digestModel (e);
+        return e;
+    }
+}
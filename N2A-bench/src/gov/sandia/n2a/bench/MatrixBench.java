@@ -0,0 +1,185 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.n2a.language.type.Matrix;
+import gov.sandia.n2a.language.type.Matrix.IteratorNonzero;
+import gov.sandia.n2a.linear.MatrixCSC;
+import gov.sandia.n2a.linear.MatrixDense;
+import gov.sandia.n2a.linear.MatrixSparse;
+
+/**
+    Kernels from the linear package, at sizes typical of weight matrices in connection models.
+    The sparse matrix has about 10 nonzeros per column. It is also held in compressed form, to compare iteration.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBench
+{
+    @Param({"64", "512", "1024"})
+    public int n;
+
+    public MatrixDense  A;
+    public MatrixDense  B;
+    public MatrixDense  x;
+    public MatrixSparse S;
+    public MatrixCSC    C;
+
+    @Setup
+    public void setup ()
+    {
+        Bench.initialize ();
+        Random random = new Random (42);
+        A = new MatrixDense (n, n);
+        B = new MatrixDense (n, n);
+        x = new MatrixDense (n, 1);
+        S = new MatrixSparse (n, n);
+        for (int c = 0; c < n; c++)
+        {
+            x.set (c, random.nextGaussian ());
+            for (int r = 0; r < n; r++)
+            {
+                A.set (r, c, random.nextGaussian ());
+                B.set (r, c, random.nextGaussian ());
+            }
+            for (int k = 0; k < 10; k++) S.set (random.nextInt (n), c, random.nextGaussian ());
+        }
+        C = new MatrixCSC (S);
+
+        // The blocked and threaded kernels must agree with the straightforward product.
+        check (A.multiply (B),              multiplyReference (A, B));
+        check (A.transpose ().multiply (B), multiplyReference (A.transpose (), B));
+        check (A.multiply (x),              multiplyReference (A, x));
+    }
+
+    /**
+        Textbook triple loop over get(), as a reference for checking the optimized kernels.
+    **/
+    public static MatrixDense multiplyReference (MatrixDense A, MatrixDense B)
+    {
+        int h = A.rows ();
+        int w = B.columns ();
+        int m = Math.min (A.columns (), B.rows ());
+        MatrixDense result = new MatrixDense (h, w);
+        for (int c = 0; c < w; c++)
+        {
+            for (int r = 0; r < h; r++)
+            {
+                double sum = 0;
+                for (int k = 0; k < m; k++) sum += A.get (r, k) * B.get (k, c);
+                result.set (r, c, sum);
+            }
+        }
+        return result;
+    }
+
+    public static void check (MatrixDense result, MatrixDense expected)
+    {
+        double error = result.subtract (expected).norm (Double.POSITIVE_INFINITY);
+        if (error > 1e-9 * expected.norm (Double.POSITIVE_INFINITY)) throw new RuntimeException ("Matrix kernel disagrees with reference: error = " + error);
+    }
+
+    @Benchmark
+    public Matrix denseMultiply () throws Exception
+    {
+        return A.multiply (B);
+    }
+
+    /**
+        Same shape of product as JT.multiply(J) in the Levenberg-Marquardt optimizer.
+    **/
+    @Benchmark
+    public Matrix denseTransposeMultiply () throws Exception
+    {
+        return A.transpose ().multiply (B);
+    }
+
+    @Benchmark
+    public Matrix denseMultiplyVector () throws Exception
+    {
+        return A.multiply (x);
+    }
+
+    @Benchmark
+    public Matrix denseAdd () throws Exception
+    {
+        return A.add (B);
+    }
+
+    @Benchmark
+    public Matrix denseTranspose ()
+    {
+        return new MatrixDense (A.transpose ());
+    }
+
+    @Benchmark
+    public double denseDot ()
+    {
+        return A.getColumn (0).dot (B.getColumn (0));
+    }
+
+    @Benchmark
+    public Matrix sparseMultiplyVector () throws Exception
+    {
+        return S.multiply (x);
+    }
+
+    @Benchmark
+    public Matrix sparseAdd () throws Exception
+    {
+        return S.add (S);
+    }
+
+    /**
+        Walks the nonzeros, as the Internal backend does when building connections from a matrix.
+    **/
+    @Benchmark
+    public double sparseIterate ()
+    {
+        return iterate (S);
+    }
+
+    @Benchmark
+    public double cscIterate ()
+    {
+        return iterate (C);
+    }
+
+    public static double iterate (Matrix A)
+    {
+        double result = 0;
+        IteratorNonzero it = A.getIteratorNonzero ();
+        Double v;
+        while ((v = it.next ()) != null) result += v * it.getRow () + it.getColumn ();
+        return result;
+    }
+
+    @Benchmark
+    public double sparseNorm ()
+    {
+        return S.norm (2);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.n2a.ui.jobs.OutputParser;
+
+/**
+    Loading a simulation output file for display, as the Runs tab does when a job is selected.
+    The file is tab-delimited with a header row, in the same form the Internal backend writes.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBench
+{
+    @Param({"10", "100"})
+    public int columns;
+
+    @Param({"10000"})
+    public int rows;
+
+    public Path dir;
+    public Path out;
+
+    @Setup
+    public void setup () throws Exception
+    {
+        Bench.initialize ();
+        dir = Bench.tempDir ();
+        out = dir.resolve ("out");
+        Random random = new Random (42);
+        try (BufferedWriter writer = Files.newBufferedWriter (out))
+        {
+            writer.write ("$t");
+            for (int c = 0; c < columns; c++) writer.write ("\tV" + c);
+            writer.newLine ();
+            for (int r = 0; r < rows; r++)
+            {
+                writer.write (String.valueOf (r * 1e-4));
+                for (int c = 0; c < columns; c++) writer.write ("\t" + (float) random.nextGaussian ());
+                writer.newLine ();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown ()
+    {
+        Bench.delete (dir);
+    }
+
+    @Benchmark
+    public OutputParser parse ()
+    {
+        OutputParser result = new OutputParser ();
+        result.parse (out);
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gov.sandia.n2a.language.Operator;
+import gov.sandia.n2a.language.parse.ExpressionParser;
+
+/**
+    Expression parsing. "cached" goes through Operator.parse() as the rest of the code does,
+    so after the first pass it measures cache lookup plus deepCopy(). "uncached" goes directly
+    to the grammar, which is the cost of a cache miss.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBench
+{
+    @Setup
+    public void setup ()
+    {
+        Bench.initialize ();
+    }
+
+    @Benchmark
+    public void cached (Blackhole b) throws Exception
+    {
+        for (String e : Bench.expressions) b.consume (Operator.parse (e));
+    }
+
+    @Benchmark
+    public void uncached (Blackhole b) throws Exception
+    {
+        for (String e : Bench.expressions) b.consume (Operator.getFrom (ExpressionParser.parse (e)));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.n2a.backend.internal.InternalBackend;
+import gov.sandia.n2a.backend.internal.Simulator;
+import gov.sandia.n2a.backend.internal.Wrapper;
+import gov.sandia.n2a.eqset.EquationSet;
+
+/**
+    Complete runs on the Internal backend, from init() through the end of simulated time.
+    The model is digested once per trial, then each invocation builds a fresh instance tree,
+    the same as the batch mode does for each sample. Each run takes seconds, so this uses
+    single-shot timing.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimulatorBench
+{
+    @Param({"LIF", "HH"})
+    public String model;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    public EquationSet digested;
+    public Path        jobDir;
+
+    @Setup
+    public void setup () throws Exception
+    {
+        Bench.initialize ();
+        if (model.equals ("HH")) digested = new EquationSet (Bench.hh  (size, "10ms"));
+        else                     digested = new EquationSet (Bench.lif (size, "100ms"));
+        InternalBackend.digestModel (digested);
+        InternalBackend.prepareToRun (digested);
+        jobDir = Bench.tempDir ();
+    }
+
+    @TearDown
+    public void tearDown ()
+    {
+        Bench.delete (jobDir);
+    }
+
+    @Benchmark
+    public double run () throws Exception
+    {
+        Simulator simulator = new Simulator (new Wrapper (digested), 42, jobDir);
+        simulator.init ();
+        simulator.run ();
+        simulator.closeStreams ();
+        return simulator.currentEvent.t;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+    Wall-clock time for a fresh VM to start N2A and finish a small headless run (Main -train),
+    with and without an application class-data-sharing archive. "none" uses only the JDK's
+    default archive. "app" first makes an archive from a training run on the same classpath,
+    the same way the "cds" profile in N2A/pom.xml does for the assembled jar.
+    Each invocation launches a separate process, so this uses single-shot timing.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBench
+{
+    @Param({"none", "app"})
+    public String archive;
+
+    public Path         dir;
+    public List<String> command;
+
+    @Setup
+    public void setup () throws Exception
+    {
+        dir = Bench.tempDir ();
+        String java      = Paths.get (System.getProperty ("java.home"), "bin", "java").toString ();
+        String classpath = System.getProperty ("java.class.path");
+        String home      = "-Duser.home=" + dir;  // Keep the child's state out of the user's own resource dir.
+        String headless  = "-Djava.awt.headless=true";  // Never open the GUI, even if a display is available.
+
+        command = new ArrayList<String> ();
+        command.add (java);
+        if (archive.equals ("app"))
+        {
+            Path jsa = dir.resolve ("N2A.jsa");
+            launch (java, "-XX:ArchiveClassesAtExit=" + jsa, home, headless, "-cp", classpath, "gov.sandia.n2a.Main", "-train");
+            command.add ("-XX:SharedArchiveFile=" + jsa);
+        }
+        command.add (home);
+        command.add (headless);
+        command.add ("-cp");
+        command.add (classpath);
+        command.add ("gov.sandia.n2a.Main");
+        command.add ("-train");
+    }
+
+    @TearDown
+    public void tearDown ()
+    {
+        Bench.delete (dir);
+    }
+
+    public static int launch (String... command) throws Exception
+    {
+        return launch (List.of (command));
+    }
+
+    public static int launch (List<String> command) throws Exception
+    {
+        ProcessBuilder pb = new ProcessBuilder (command);
+        pb.redirectOutput (Redirect.DISCARD);
+        pb.redirectError  (Redirect.DISCARD);
+        int result = pb.start ().waitFor ();
+        if (result != 0) throw new RuntimeException ("Child VM failed with exit code " + result);
+        return result;
+    }
+
+    @Benchmark
+    public int start () throws Exception
+    {
+        return launch (command);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.measure.Unit;
+
+import gov.sandia.n2a.backend.internal.Event;
+import gov.sandia.n2a.backend.internal.EventStep;
+import gov.sandia.n2a.backend.internal.InternalBackend;
+import gov.sandia.n2a.backend.internal.Part;
+import gov.sandia.n2a.backend.internal.Simulator;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MPartRepo;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.eqset.EquationSet;
+import gov.sandia.n2a.eqset.Variable;
+import gov.sandia.n2a.language.Constant;
+import gov.sandia.n2a.language.Operator;
+import gov.sandia.n2a.language.UnitValue;
+import gov.sandia.n2a.language.type.Matrix;
+import gov.sandia.n2a.language.type.Scalar;
+import gov.sandia.n2a.linear.MatrixDense;
+
+/**
+    Correctness checks for the code paths the benchmarks exercise. A speedup is only worth
+    reporting if the result is unchanged, so run.sh runs these first and stops on any failure.
+    Usage: Verify [check name ...]. With no names, runs all checks.
+**/
+public class Verify
+{
+    public interface Check
+    {
+        public void run () throws Exception;
+    }
+
+    protected static List<String> names  = new ArrayList<String> ();
+    protected static List<Check>  checks = new ArrayList<Check> ();
+
+    public static void add (String name, Check check)
+    {
+        names .add (name);
+        checks.add (check);
+    }
+
+    public static void expect (boolean condition, String message) throws Exception
+    {
+        if (! condition) throw new Exception (message);
+    }
+
+    static
+    {
+        add ("parseCacheScalar", new Check ()
+        {
+            public void run () throws Exception
+            {
+                // EquationSet.setInit() and JobC write into the value of a parsed constant. That must not reach the cached tree.
+                Constant c = (Constant) Operator.parse ("1");
+                ((Scalar) c.value).value = 0;
+                c = (Constant) Operator.parse ("1");
+                expect (((Scalar) c.value).value == 1, "Re-parse after mutation gave " + c.value);
+            }
+        });
+        add ("deepCopyMatrix", new Check ()
+        {
+            public void run () throws Exception
+            {
+                // A matrix literal parses to BuildMatrix and only becomes a Constant after simplification, so construct one directly.
+                MatrixDense A = new MatrixDense (2, 2);
+                A.set (0, 0, 1);
+                Constant c = new Constant (A);
+                Constant d = (Constant) c.deepCopy ();
+                ((Matrix) d.value).set (0, 0, 0);
+                expect (A.get (0, 0) == 1, "Mutating a copy changed the original");
+            }
+        });
+        add ("streamReadsDt", new Check ()
+        {
+            public void run () throws Exception
+            {
+                // Streamed instances are never queued, but init may still read $t' through the container's event.
+                MNode model = new MVolatile (null, "Stream");
+                model.set ("3",     "A", "$n");
+                model.set ("$t'/2", "A", "x", "@$init");
+                model.set ("-x",    "A", "x'");
+                EquationSet equations = new EquationSet (new MPartRepo (model));
+                Simulator simulator = InternalBackend.prepareStaticNetwork (equations, null);
+                EquationSet A = equations.findPart ("A");
+                Variable x = A.find (new Variable ("x", 0));
+                List<Part> emitted = new ArrayList<Part> ();
+                simulator.sink = new Simulator.InstanceSink ()
+                {
+                    public void emit (Part p)
+                    {
+                        if (p.equations == A) emitted.add (p);
+                    }
+                };
+                simulator.init ();
+                expect (emitted.size () == 3, "Emitted " + emitted.size () + " instances");
+                for (Part p : emitted) expect (((Scalar) p.get (x)).value > 0, "x was not initialized from $t'");
+            }
+        });
+        add ("unitFormat", new Check ()
+        {
+            public void run () throws Exception
+            {
+                // The unit caches must not make a result depend on which equal unit was seen first.
+                // For example, Hz.S and S.Hz are equal, but each should still format as written.
+                String[] names = {"s", "ms", "Hz", "S", "mV", "nA", "uF", "Ohm", "um", "mmol", "L", "Cel", "K", "%"};
+                for (int pass = 0; pass < 2; pass++)
+                {
+                    for (String a : names)
+                    {
+                        for (String b : names)
+                        {
+                            Unit<?> A = UnitValue.parse (a);
+                            Unit<?> B = UnitValue.parse (b);
+                            for (Unit<?> p : new Unit<?>[] {A.multiply (B), B.multiply (A), A.divide (B)})
+                            {
+                                Unit<?> expected = p;
+                                Set<? extends Unit<?>> set = UnitValue.systemOfUnits.getUnits (p.getDimension ());
+                                if (! set.isEmpty ()) expected = set.iterator ().next ();
+                                String e = UnitValue.UCUM.format (expected.getSystemUnit ());
+                                String r = UnitValue.UCUM.format (UnitValue.simplify (p));
+                                expect (e.equals (r), "simplify(" + UnitValue.UCUM.format (p) + ") gave " + r + " rather than " + e);
+                                expect (A.isCompatible (B) == UnitValue.isCompatible (A, B), "isCompatible(" + a + "," + b + ") differs");
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        add ("heartbeatCount", new Check ()
+        {
+            public void run () throws Exception
+            {
+                // The heartbeat reports a running count of instances. It must agree with a full walk of the queue as parts are born, die and change period.
+                MNode model = new MVolatile (null, "Count");
+                model.set ("10",              "A", "$n");
+                model.set ("$t<$index*0.001", "A", "$p");
+                model.set ("ceil($t*1000)",   "B", "$n");
+                model.set ("1e-3",            "B", "$t'", "@$index%2");  // Instances split between two periods.
+                model.set ("2e-3",            "B", "$t'", "@");
+                model.set ("$t<0.02",         "$p");
+                EquationSet equations = new EquationSet (new MPartRepo (model));
+                Simulator simulator = InternalBackend.prepareStaticNetwork (equations, null);
+                simulator.init ();
+                int events = 0;
+                while (! simulator.queueEvent.isEmpty ()  &&  events < 10000)
+                {
+                    simulator.currentEvent = simulator.queueEvent.remove ();
+                    simulator.currentEvent.run (simulator);
+                    events++;
+
+                    long expected = 0;
+                    for (Part p : simulator) if (p != simulator.wrapper) expected++;
+                    long counted = 0;
+                    for (Event e : simulator.queueEvent) if (e instanceof EventStep) counted += ((EventStep) e).count;
+                    Part w = simulator.wrapper;
+                    if (w.previous != null  &&  w.previous.next == w) counted--;
+                    expect (counted == expected, "After event " + events + ", counted " + counted + " but found " + expected);
+                }
+                expect (events > 10, "Only ran " + events + " events");
+            }
+        });
+    }
+
+    public static void main (String[] args)
+    {
+        Bench.initialize ();
+        List<String> selected = List.of (args);
+        int failed = 0;
+        for (int i = 0; i < checks.size (); i++)
+        {
+            String name = names.get (i);
+            if (! selected.isEmpty ()  &&  ! selected.contains (name)) continue;
+            try
+            {
+                checks.get (i).run ();
+                System.out.println ("pass " + name);
+            }
+            catch (Exception e)
+            {
+                System.out.println ("FAIL " + name + ": " + e.getMessage ());
+                failed++;
+            }
+        }
+        if (failed > 0)
+        {
+            System.out.println (failed + " check(s) failed");
+            System.exit (1);
+        }
+        System.exit (0);  // Plugins may have started non-daemon threads.
+    }
+}
@@ -0,0 +1,18 @@
+@echo off
+rem Starts N2A, using the class-data-sharing archive if one was built next to the jar ("mvn -P cds package").
+rem Arguments are passed through to N2A. JAVA selects the VM, and JAVA_OPTS adds VM options.
+rem If the archive does not match this VM or jar, the VM ignores it and starts normally.
+setlocal
+set dir=%~dp0
+if "%JAVA%"=="" set JAVA=java
+
+set jar=
+for %%f in ("%dir%N2A*.jar") do set jar=%%~ff
+if "%jar%"=="" (
+    echo N2A jar not found in %dir% 1>&2
+    exit /b 1
+)
+
+set cds=
+if exist "%dir%N2A.jsa" set cds="-XX:SharedArchiveFile=%dir%N2A.jsa" -Xlog:cds=off -Xlog:cds+dynamic=off
+"%JAVA%" %cds% %JAVA_OPTS% -jar "%jar%" %*
@@ -15,8 +15,10 @@ import gov.sandia.n2a.db.MPart;
 import gov.sandia.n2a.db.MPartRepo;
 import gov.sandia.n2a.db.MVolatile;
 import gov.sandia.n2a.db.Schema;
+import gov.sandia.n2a.eqset.DigestProfile;
 import gov.sandia.n2a.host.Host;
 import gov.sandia.n2a.host.Remote;
+import gov.sandia.n2a.language.Operator;
 import gov.sandia.n2a.plugins.ExtensionPoint;
 import gov.sandia.n2a.plugins.PluginManager;
 import gov.sandia.n2a.plugins.extpoints.Backend;
@@ -36,17 +38,21 @@ import gov.sandia.n2a.ui.studies.PanelStudy.SampleTableModel;
 import gov.sandia.n2a.ui.studies.Study;
 
 import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.lang.ProcessBuilder.Redirect;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -67,6 +73,8 @@ public class Main
         String format = null;
         Path path = null;
         ArrayList<String> servers = null;
+        boolean train = false;
+        Path archive = null;
         for (String arg : args)
         {
             if      (arg.startsWith ("-plugin="    )) pluginClassNames.add            (arg.substring (8));
@@ -74,10 +82,17 @@ public class Main
             else if (arg.startsWith ("-param="     )) processParamFile (arg.substring (7), record);
             else if (arg.equals     ("-install"    )) headless = "install";
             else if (arg.equals     ("-csv"        )) record.set (true, "$meta", "csv");
+            else if (arg.equals     ("-digestTime" )) record.set (true, "$meta", "digestTime");
             else if (arg.equals     ("-run"        )) headless = "run";
             else if (arg.equals     ("-study"      )) headless = "study";
             else if (arg.equals     ("-export"     )) headless = "export";
             else if (arg.equals     ("-import"     )) headless = "import";
+            else if (arg.equals     ("-train"      )) train    = true;
+            else if (arg.startsWith ("-trainTime=" ))
+            {
+                headless = "trainTime";
+                archive = Paths.get (arg.substring (11)).toAbsolutePath ();
+            }
             else if (arg.startsWith ("-server="    ))
             {
                 headless = "server";
@@ -108,6 +123,7 @@ public class Main
             }
         }
 
+        if (train  &&  headless.isEmpty ()  &&  GraphicsEnvironment.isHeadless ()) headless = "train";  // No display, so train only the headless path.
         if (headless.isEmpty ()) setUncaughtExceptionHandler (null);
 
         // Set global application properties.
@@ -166,6 +182,12 @@ public class Main
                         exitCode = 1;
                     }
                     break;
+                case "train":
+                    exitCode = train ();
+                    break;
+                case "trainTime":
+                    exitCode = trainTime (archive);
+                    break;
                 case "server":
                     // Shut down gracefully when a Posix signal is sent, such as SIGTERM.
                     Runtime.getRuntime ().addShutdownHook (new Thread ()
@@ -204,6 +226,21 @@ public class Main
                 setUncaughtExceptionHandler (MainFrame.instance);
             }
         });
+        if (train)  // Close the GUI once it is up and a model has run.
+        {
+            Thread t = new Thread ("Training")
+            {
+                public void run ()
+                {
+                    int exitCode = train ();
+                    try {EventQueue.invokeAndWait (new Runnable () {public void run () {}});}  // Let the GUI finish coming up.
+                    catch (Exception e) {}
+                    shutdown ();
+                    System.exit (exitCode);
+                }
+            };
+            t.start ();
+        }
     }
 
     public static void shutdown ()
@@ -278,20 +315,58 @@ public class Main
     **/
     public static int runHeadless (MNode record)
     {
-        // See PanelEquations.launchJob()
-
         Path jobDir = Paths.get (System.getProperty ("user.dir")).toAbsolutePath ();  // Use current working directory, on assumption that's what the caller wants.
         String jobKey = new SimpleDateFormat ("yyyy-MM-dd-HHmmss", Locale.ROOT).format (new Date ());  // This allows a remote job to run in the regular jobs directory there.
-        MDoc job = new MDoc (jobDir.resolve ("job"), jobKey);  // Make this appear as if it is from the jobs collection.
+        if (! mergeModel (record, System.err)) return 1;
+        return runModel (record, jobDir, jobKey, System.err, null);
+    }
 
-        String key = record.key ();
-        MNode doc = AppData.docs.child ("models", key);
+    /**
+        Receives the state of a job each time runModel() checks on it.
+    **/
+    public interface RunProgress
+    {
+        public void update (NodeJob node);
+    }
+
+    /**
+        Receives the state of a study about once a second while studyModel() waits for it.
+    **/
+    public interface StudyProgress
+    {
+        public void update (Study study);
+    }
+
+    /**
+        Merges the named model from the repository under the given record.
+        @param record Its key names the model. Its content overrides the stored model.
+        @return false if the model does not exist.
+    **/
+    public static boolean mergeModel (MNode record, PrintStream err)
+    {
+        MNode doc = AppData.docs.child ("models", record.key ());
         if (doc == null)
         {
-            System.err.println ("Model does not exit");
-            return 1;
+            err.println ("Model does not exist");
+            return false;
         }
         record.mergeUnder (doc);
+        return true;
+    }
+
+    /**
+        Runs a job and waits for it to finish. Shared by the -run command and ServiceDaemon.
+        @param record The complete model. Its key is used as the model name.
+        @param jobDir Receives the job files. Must already exist.
+        @param progress Called each time the job is checked. May be null.
+    **/
+    public static int runModel (MNode record, Path jobDir, String jobKey, PrintStream err, RunProgress progress)
+    {
+        // See PanelEquations.launchJob()
+
+        MDoc job = new MDoc (jobDir.resolve ("job"), jobKey);  // Make this appear as if it is from the jobs collection.
+
+        String key = record.key ();
         MPart collated = new MPartRepo (record);  // TODO: the only reason to collate here is to ensure that host and backend are correctly identified if they are inherited. Need a more efficient method, such as lazy collation in MPart.
         NodeJob.collectJobParameters (collated, key, job);
         NodeJob.saveSnapshot (record, job);
@@ -310,7 +385,20 @@ public class Main
 
         // Wait for completion
         NodeJob node = new NodeJobHeadless (job);
-        while (node.complete < 1) node.monitorProgress ();
+        while (node.complete < 1)
+        {
+            node.monitorProgress ();
+            if (progress != null) progress.update (node);
+        }
+
+        // Report cost of each digestion pass, if requested.
+        if (record.getFlag ("$meta", "digestTime"))
+        {
+            MNode digest = job.child ("digest");
+            if (digest == null) err.println ("Backend did not record digestion time.");
+            else                err.print (DigestProfile.format (digest));
+            err.println ("parse cache: " + Operator.getParseCacheHits () + " hits, " + Operator.getParseCacheMisses () + " misses");
+        }
 
         // Convert to CSV, if requested.
         if (record.getFlag ("$meta", "csv"))
@@ -364,29 +452,37 @@ public class Main
     **/
     public static int studyHeadless (MNode record)
     {
-        String key = record.key ();
-        MNode doc = AppData.docs.child ("models", key);
-        if (doc == null)
-        {
-            System.err.println ("Model does not exist");
-            return 1;
-        }
-        record.mergeUnder (doc);
+        if (! mergeModel (record, System.err)) return 1;
+        return studyModel (record, System.err, null);
+    }
+
+    /**
+        Runs a study and waits for it to finish. Shared by the -study command and ServiceDaemon.
+        @param record The complete model.
+        @param progress Called periodically until the study finishes. May be null.
+    **/
+    public static int studyModel (MNode record, PrintStream err, StudyProgress progress)
+    {
         MPart collated = new MPartRepo (record);
         if (! collated.containsKey ("study"))
         {
-            System.err.println ("Model not tagged as a study");
+            err.println ("Model not tagged as a study");
             return 1;
         }
 
-        // Start host monitor threads (see PanelRun constructor for GUI procedure)
-        Host.restartAssignmentThread ();
-        for (Host h : Host.getHosts ()) h.restartMonitorThread ();
-
+        startHostThreads ();
         MNode studyNode = PanelEquations.createStudy (collated);
         Study study = new Study (studyNode); // constructed in paused state
         study.togglePause ();                // start
-        study.waitForCompletion ();
+        if (progress == null)
+        {
+            study.waitForCompletion ();
+        }
+        else
+        {
+            while (! study.waitForCompletion (1000)) progress.update (study);
+            progress.update (study);
+        }
 
         // Output CSV files, if requested.
         if (! record.getFlag ("$meta", "csv")) return 0;
@@ -395,6 +491,7 @@ public class Main
         {
             SampleTableModel samples = new SampleTableModel ();
             samples.update (study);
+            samples.waitForLoad ();
             int rows = samples.getRowCount ();
             int cols = samples.getColumnCount ();
             int lastCol = cols - 1;
@@ -412,7 +509,8 @@ public class Main
             {
                 for (int c = 1; c < cols; c++)
                 {
-                    parms.write (samples.getValueAt (r, c).toString ());
+                    Object value = samples.getValueAt (r, c);  // null if the sample model could not be read
+                    if (value != null) parms.write (value.toString ());
                     if (c < lastCol) parms.write (",");
                 }
                 parms.newLine ();
@@ -429,14 +527,153 @@ public class Main
         }
         catch (IOException e)
         {
-            System.err.println ("Conversion to CSV failed");
-            e.printStackTrace ();
+            err.println ("Conversion to CSV failed");
+            e.printStackTrace (err);
             return 1;
         }
 
         return 0;
     }
 
+    /**
+        Runs a small built-in model and exports it, touching the classes that a typical launch needs.
+        This is the training run for the class-data-sharing archive made by the "cds" profile in pom.xml.
+        Everything goes to a fresh directory, which is removed afterward. Headless, that is a temporary
+        directory. With the GUI up, backends look for the job under the jobs dir of the local resource dir,
+        so it must go there, under a unique key.
+    **/
+    public static int train ()
+    {
+        MNode record = new MVolatile (null, "Training");
+        try (BufferedReader reader = new BufferedReader (new InputStreamReader (Main.class.getResourceAsStream ("training.n2a"), "UTF-8")))
+        {
+            Schema.readAll (record, reader);
+        }
+        catch (Exception e)
+        {
+            System.err.println ("Can't read training model.");
+            return 1;
+        }
+
+        Path dir;
+        try
+        {
+            if (AppData.properties.getBoolean ("headless"))
+            {
+                dir = Files.createTempDirectory ("n2a-train");
+            }
+            else
+            {
+                Path jobsDir = Host.getLocalResourceDir ().resolve ("jobs");
+                Files.createDirectories (jobsDir);
+                dir = Files.createTempDirectory (jobsDir, "training-");
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println ("Can't create training directory.");
+            return 1;
+        }
+        String jobKey = dir.getFileName ().toString ();  // Must match dir, so Host.getJobDir() finds it in GUI mode.
+        int result = runModel (record, dir, jobKey, System.err, null);
+        if (result == 0) result = exportModel (record, null, dir.resolve ("Training"), System.err);
+        Host.get ().deleteTree (dir);
+        return result;
+    }
+
+    /**
+        Reports how long a fresh VM takes to do the training run, with and without the given
+        class-data-sharing archive. Used by the "cds" profile in pom.xml, so a build shows the gain
+        without needing N2A-bench. Each case runs once to warm the file cache, then several times for timing.
+        The child VMs are forced headless, and keep their state in a temporary home dir.
+    **/
+    public static int trainTime (Path archive)
+    {
+        if (! Files.isReadable (archive))
+        {
+            System.err.println ("Archive not found: " + archive);
+            return 1;
+        }
+
+        Path home;
+        try {home = Files.createTempDirectory ("n2a-trainTime");}
+        catch (IOException e)
+        {
+            System.err.println ("Can't create home directory for timing runs.");
+            return 1;
+        }
+        String java = Paths.get (System.getProperty ("java.home"), "bin", "java").toString ();
+        List<String> command = new ArrayList<String> ();
+        command.add (java);
+        command.add ("-Duser.home=" + home);
+        command.add ("-Djava.awt.headless=true");
+        command.add ("-cp");
+        command.add (System.getProperty ("java.class.path"));
+        command.add ("gov.sandia.n2a.Main");
+        command.add ("-train");
+        List<String> shared = new ArrayList<String> (command);
+        shared.add (1, "-XX:SharedArchiveFile=" + archive);
+
+        int runs = 5;
+        long[] without = new long[runs];
+        long[] with    = new long[runs];
+        int result = 0;
+        try
+        {
+            launch (command);
+            launch (shared);
+            for (int i = 0; i < runs; i++)  // Interleave, so a drift in system load affects both cases alike.
+            {
+                without[i] = launch (command);
+                with[i]    = launch (shared);
+            }
+            Arrays.sort (without);
+            Arrays.sort (with);
+            long a = without[runs / 2];
+            long b = with   [runs / 2];
+            System.out.println ("Startup plus training run, median of " + runs + ":");
+            System.out.println ("  without archive: " + a + " ms");
+            System.out.println ("  with archive:    " + b + " ms (" + Math.round (100.0 * (a - b) / a) + "% less)");
+        }
+        catch (Exception e)
+        {
+            System.err.println ("Timing run failed: " + e.getMessage ());
+            result = 1;
+        }
+        Host.get ().deleteTree (home);
+        return result;
+    }
+
+    /**
+        Runs a child VM to completion.
+        @return Wall-clock time in milliseconds.
+    **/
+    protected static long launch (List<String> command) throws Exception
+    {
+        ProcessBuilder pb = new ProcessBuilder (command);
+        pb.redirectOutput (Redirect.DISCARD);
+        pb.redirectError  (Redirect.DISCARD);
+        long start = System.nanoTime ();
+        int exitCode = pb.start ().waitFor ();
+        long elapsed = (System.nanoTime () - start) / 1000000;
+        if (exitCode != 0) throw new Exception ("Child VM failed with exit code " + exitCode);
+        return elapsed;
+    }
+
+    protected static boolean hostThreadsStarted;
+
+    /**
+        Start host monitor threads (see PanelRun constructor for GUI procedure).
+        Only done once, so that a long-running server does not disturb studies already in progress.
+    **/
+    public static synchronized void startHostThreads ()
+    {
+        if (hostThreadsStarted) return;
+        hostThreadsStarted = true;
+        Host.restartAssignmentThread ();
+        for (Host h : Host.getHosts ()) h.restartMonitorThread ();
+    }
+
     public static int importHeadless (Path path, String format, String name)
     {
         if (path == null)
@@ -461,17 +698,21 @@ public class Main
     }
 
     public static int exportHeadless (MNode record, String format, Path path)
+    {
+        if (! mergeModel (record, System.err)) return 1;
+        return exportModel (record, format, path, System.err);
+    }
+
+    /**
+        Exports a model. Shared by the -export command and ServiceDaemon.
+        @param record The complete model.
+        @param path Destination. If relative, it is resolved against the current working directory.
+        If null, the file is named after the model and placed in the current working directory.
+    **/
+    public static int exportModel (MNode record, String format, Path path, PrintStream err)
     {
         // See PanelEquations.listenerExport(). The code here is highly stripped down because we're not dealing with a GUI.
         String key = record.key ();
-        MNode doc = AppData.docs.child ("models", key);
-        if (doc == null)
-        {
-            System.err.println ("Model does not exist");
-            return 1;
-        }
-        record.mergeUnder (doc);
-
         if (format == null) format = "";
         if (path == null)
         {
@@ -498,7 +739,7 @@ public class Main
         if (exporter == null) exporter = n2a;
         if (exporter == null)
         {
-            System.err.println ("No matching export method");
+            err.println ("No matching export method");
             return 1;
         }
 
@@ -509,8 +750,8 @@ public class Main
         }
         catch (Exception e)
         {
-            System.err.println ("Export failed");
-            e.printStackTrace ();
+            err.println ("Export failed");
+            e.printStackTrace (err);
             return 1;
         }
 
@@ -30,6 +30,7 @@ import gov.sandia.n2a.ui.eq.ActivityModel;
 import gov.sandia.n2a.ui.images.ImageUtil;
 import gov.sandia.n2a.ui.jobs.ActivityRun;
 import gov.sandia.n2a.ui.ref.ActivityReference;
+import gov.sandia.n2a.ui.ref.ExportBibTeX;
 import gov.sandia.n2a.ui.ref.ImportBibTeX;
 import gov.sandia.n2a.ui.ref.ImportEndNote;
 import gov.sandia.n2a.ui.ref.ImportPubMed;
@@ -102,12 +103,14 @@ public class N2APlugin extends Plugin
             RemoteSlurm.factory (),
             RemoteLSF.factory (),
             new ExportNative (),
-            gov.sandia.n2a.ui.ref.PanelSearch.exportBibTeX,
+            ExportBibTeX.instance,
             new ImportNative (),
             new ImportBibTeX (),
             new ImportEndNote (),
             new ImportPubMed (),
-            new ImportRIS ()
+            new ImportRIS (),
+            new ServiceDaemon (),
+            new ServiceDaemon.Shutdown ()
         );
         if (! AppData.properties.getBoolean ("headless"))
         {
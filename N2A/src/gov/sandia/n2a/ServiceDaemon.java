@@ -0,0 +1,316 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a;
+
+import gov.sandia.n2a.db.AppData;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.db.Schema;
+import gov.sandia.n2a.host.Host;
+import gov.sandia.n2a.plugins.extpoints.Service;
+import gov.sandia.n2a.plugins.extpoints.ShutdownHook;
+import gov.sandia.n2a.ui.jobs.NodeJob;
+import gov.sandia.n2a.ui.studies.Study;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+    Long-lived server that accepts run, study and export requests, so that a sequence of jobs
+    pays for VM startup, plugin loading and JIT warm-up only once. Start with -server=daemon.
+
+    <p>The server listens on the loopback interface only. On startup it writes the file "daemon"
+    in the local resource directory, containing the port number on the first line and a random
+    token on the second. Each request must present this token. The file is readable only by
+    its owner, so the token limits access to the user who started the server.
+
+    <p>Each connection carries one request. The client sends an N2A document (first line "N2A.schema=3")
+    then closes its output side. The line right after the schema line must be "token:" followed by the token
+    from the daemon file. It is checked before anything else is read, so a client without the token can't make
+    the server parse a large document. Keys in the rest of the request:
+    <ul>
+    <li>command -- run (default), study or export.
+    <li>model -- Name of a model in the repository. If "inline" is also given, this is just the name used for the job.
+    <li>inline -- Complete model to use instead of one from the repository.
+    <li>params -- Overrides merged over the model, in the same form as a -run parameter file. May include $meta flags such as csv.
+    <li>dir -- run only. Job directory. Default is a new subdirectory of the server's working directory, named by the job key.
+    <li>format, file -- export only. Same as the -export command line.
+    </ul>
+    The server answers with lines of text: "job" followed by the job directory, "queued" if all slots are busy,
+    "progress" followed by a number in [0,1] as a run or study proceeds, any error messages, and finally "done" followed by the exit code.
+
+    <p>Configuration lives in AppData.state under "ServiceDaemon": port (0 picks any free port),
+    concurrency (maximum simultaneous requests, default is number of processors),
+    connections (maximum open connections, including those waiting for a slot, default is 4 times concurrency),
+    timeout (milliseconds a client may stall while sending its request, default 30000).
+**/
+public class ServiceDaemon implements Service
+{
+    protected static ServerSocket  server;
+    protected static Path          portFile;
+    protected static String        token;
+    protected static Semaphore     slots;
+    protected static Semaphore     connections;  // Caps the number of request threads, whether running, queued or still reading.
+    protected static int           timeout;
+    protected static AtomicInteger sequence = new AtomicInteger ();  // Distinguishes jobs started within the same second.
+
+    public String name ()
+    {
+        return "daemon";
+    }
+
+    public void start ()
+    {
+        int port        = AppData.state.getOrDefault (0,                                          "ServiceDaemon", "port");
+        int concurrency = AppData.state.getOrDefault (Runtime.getRuntime ().availableProcessors (), "ServiceDaemon", "concurrency");
+        int maxConnections = AppData.state.getOrDefault (concurrency * 4, "ServiceDaemon", "connections");
+        timeout = AppData.state.getOrDefault (30000, "ServiceDaemon", "timeout");
+        slots       = new Semaphore (Math.max (1, concurrency),    true);
+        connections = new Semaphore (Math.max (1, maxConnections));
+
+        byte[] bytes = new byte[16];
+        new SecureRandom ().nextBytes (bytes);
+        StringBuilder hex = new StringBuilder ();
+        for (byte b : bytes) hex.append (String.format ("%02x", b & 0xFF));
+        token = hex.toString ();
+
+        try
+        {
+            server = new ServerSocket ();
+            server.bind (new InetSocketAddress (InetAddress.getLoopbackAddress (), port));
+
+            portFile = Host.getLocalResourceDir ().resolve ("daemon");
+            Files.deleteIfExists (portFile);
+            try
+            {
+                Files.createFile (portFile, PosixFilePermissions.asFileAttribute (PosixFilePermissions.fromString ("rw-------")));
+            }
+            catch (UnsupportedOperationException e)  // Windows
+            {
+                Files.createFile (portFile);
+            }
+            Files.write (portFile, (server.getLocalPort () + "\n" + token + "\n").getBytes (StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            System.err.println ("Daemon failed to start");
+            e.printStackTrace ();
+            return;
+        }
+        System.err.println ("Daemon listening on port " + server.getLocalPort ());
+
+        Thread listener = new Thread ("Daemon Listener")
+        {
+            public void run ()
+            {
+                while (! server.isClosed ())
+                {
+                    try
+                    {
+                        Socket socket = server.accept ();
+                        if (! connections.tryAcquire ())
+                        {
+                            try (Socket s = socket)
+                            {
+                                s.setSoTimeout (timeout);
+                                PrintStream out = new PrintStream (s.getOutputStream (), true, "UTF-8");
+                                out.println ("Too many connections");
+                                out.println ("done 1");
+                            }
+                            catch (IOException e) {}
+                            continue;
+                        }
+                        Thread t = new Thread ("Daemon Request")
+                        {
+                            public void run ()
+                            {
+                                try (Socket s = socket)
+                                {
+                                    s.setSoTimeout (timeout);  // A client that stops sending before the request is complete gets dropped rather than holding a thread.
+                                    serve (s);
+                                }
+                                catch (Exception e) {}
+                                finally
+                                {
+                                    connections.release ();
+                                }
+                            }
+                        };
+                        t.setDaemon (true);  // Don't hold up shutdown. The job itself continues or not as its backend decides.
+                        t.start ();
+                    }
+                    catch (IOException e) {}  // Most likely the socket was closed by shutdown.
+                }
+            }
+        };
+        listener.start ();  // Non-daemon, so the VM stays up.
+    }
+
+    public static void serve (Socket socket) throws IOException
+    {
+        MNode request = new MVolatile ();
+        BufferedReader reader = new BufferedReader (new InputStreamReader (socket.getInputStream (), StandardCharsets.UTF_8));
+        PrintStream    out    = new PrintStream (socket.getOutputStream (), true, "UTF-8");
+        Schema schema;
+        try
+        {
+            schema = Schema.read (reader);
+        }
+        catch (IOException e)
+        {
+            out.println ("Request is not an N2A document");
+            out.println ("done 1");
+            return;
+        }
+
+        // Check token before reading the rest of the request.
+        String line = reader.readLine ();
+        if (line == null  ||  ! line.startsWith ("token:")  ||  ! MessageDigest.isEqual (line.substring (6).trim ().getBytes (StandardCharsets.UTF_8), token.getBytes (StandardCharsets.UTF_8)))
+        {
+            out.println ("Bad token");
+            out.println ("done 1");
+            return;
+        }
+
+        // Collect the rest here rather than in the schema reader, which treats a read error as end of input.
+        // A client that stalls would otherwise have a truncated request executed.
+        StringBuilder text = new StringBuilder ();
+        try
+        {
+            while ((line = reader.readLine ()) != null) text.append (line).append ('\n');
+        }
+        catch (SocketTimeoutException e)
+        {
+            out.println ("Timed out reading request");
+            out.println ("done 1");
+            return;
+        }
+        try
+        {
+            schema.read (request, new StringReader (text.toString ()));
+        }
+        catch (Exception e)
+        {
+            out.println ("Request is not an N2A document");
+            out.println ("done 1");
+            return;
+        }
+
+        if (! slots.tryAcquire ())
+        {
+            out.println ("queued");
+            slots.acquireUninterruptibly ();
+        }
+        int result = 1;
+        try
+        {
+            result = execute (request, out);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace (out);
+        }
+        finally
+        {
+            slots.release ();
+        }
+        out.println ("done " + result);
+    }
+
+    public static int execute (MNode request, PrintStream out) throws IOException
+    {
+        String key    = request.get ("model");
+        MNode  inline = request.child ("inline");
+        MNode  params = request.child ("params");
+        if (key.isEmpty ())
+        {
+            if (inline == null)
+            {
+                out.println ("Request must name a model or supply one inline");
+                return 1;
+            }
+            key = "Inline";
+        }
+
+        MNode record = new MVolatile (null, key);
+        if (inline != null) record.merge (inline);
+        if (params != null) record.merge (params);
+        if (inline == null  &&  ! Main.mergeModel (record, out)) return 1;
+
+        String command = request.getOrDefault ("run", "command");
+        switch (command)
+        {
+            case "run":
+                String jobKey = new SimpleDateFormat ("yyyy-MM-dd-HHmmss", Locale.ROOT).format (new Date ()) + "-" + sequence.getAndIncrement ();
+                Path cwd = Paths.get (System.getProperty ("user.dir")).toAbsolutePath ();
+                String dir = request.get ("dir");
+                Path jobDir = dir.isEmpty () ? cwd.resolve (jobKey) : cwd.resolve (dir);
+                Files.createDirectories (jobDir);
+                out.println ("job " + jobDir);
+                return Main.runModel (record, jobDir, jobKey, out, new Main.RunProgress ()
+                {
+                    double reported = -2;
+                    public void update (NodeJob node)
+                    {
+                        if (node.complete == reported) return;
+                        reported = node.complete;
+                        out.println ("progress " + Math.max (0, Math.min (1, reported)));
+                    }
+                });
+            case "study":
+                return Main.studyModel (record, out, new Main.StudyProgress ()
+                {
+                    float reported = -1;
+                    public void update (Study study)
+                    {
+                        float complete = study.complete ();
+                        if (complete == reported) return;
+                        reported = complete;
+                        out.println ("progress " + complete);
+                    }
+                });
+            case "export":
+                String file = request.get ("file");
+                Path path = file.isEmpty () ? null : Paths.get (file);
+                return Main.exportModel (record, request.get ("format"), path, out);
+        }
+        out.println ("Unknown command: " + command);
+        return 1;
+    }
+
+    public static class Shutdown implements ShutdownHook
+    {
+        public void shutdown ()
+        {
+            if (server == null) return;
+            try {server.close ();}
+            catch (IOException e) {}
+            try {Files.deleteIfExists (portFile);}
+            catch (IOException e) {}
+        }
+    }
+}
@@ -11,6 +11,7 @@ import gov.sandia.n2a.backend.internal.InternalBackendData.EventTarget;
 import gov.sandia.n2a.db.JSON;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.eqset.DigestProfile;
 import gov.sandia.n2a.eqset.EquationEntry;
 import gov.sandia.n2a.eqset.EquationSet;
 import gov.sandia.n2a.eqset.EquationSet.Conversion;
@@ -84,6 +85,7 @@ public class JobC extends Thread
 
     public    MNode           job;
     protected EquationSet     digestedModel;
+    protected DigestProfile   profile = new DigestProfile (null);  // Inactive unless the model asks for it. See DigestProfile.create().
     public    ExponentContext exponentContext;
     protected MVolatile       params;
 
@@ -111,6 +113,7 @@ public class JobC extends Thread
     protected boolean during;
     protected boolean after;
     protected boolean kokkos;        // profiling method
+    protected boolean counters;      // profiling method: lightweight per-population timers, written to the file "counters" at end of run. See runtime/counters.h
     public    boolean gprof;         // profiling method
     public    boolean debug;         // compile with debug symbols; applies to current model as well as any runtime components that happen to get rebuilt
     public    boolean cli;           // command-line interface
@@ -186,13 +189,14 @@ public class JobC extends Thread
                 Backend.err.get ().println ("WARNING: Unsupported numeric type. Defaulting to single-precision float.");
             }
 
-            kokkos = model.getFlag ("$meta", "backend", "c", "kokkos");
-            gprof  = model.getFlag ("$meta", "backend", "c", "gprof");
-            debug  = model.getFlag ("$meta", "backend", "c", "debug");
-            cli    = model.getFlag ("$meta", "backend", "c", "cli");
-            tls    = model.getFlag ("$meta", "backend", "c", "tls");
-            csharp = model.getFlag ("$meta", "backend", "c", "sharp");
-            jni    = model.getFlag ("$meta", "backend", "c", "jni");
+            kokkos   = model.getFlag ("$meta", "backend", "c", "kokkos");
+            counters = model.getFlag ("$meta", "backend", "c", "counters");
+            gprof    = model.getFlag ("$meta", "backend", "c", "gprof");
+            debug    = model.getFlag ("$meta", "backend", "c", "debug");
+            cli      = model.getFlag ("$meta", "backend", "c", "cli");
+            tls      = model.getFlag ("$meta", "backend", "c", "tls");
+            csharp   = model.getFlag ("$meta", "backend", "c", "sharp");
+            jni      = model.getFlag ("$meta", "backend", "c", "jni");
             if (! lib)  // Model is output as a regular executable/binary. (When "lib" is true, model is output as linkable code.)
             {
                 // For an executable, "shared" means that it links to a shared library containing the runtime code.
@@ -229,7 +233,10 @@ public class JobC extends Thread
             rebuildRuntime ();
 
             Files.createDirectories (jobDir);  // digestModel() might write to a remote file (params), so we need to ensure the dir exists first.
+            profile       = DigestProfile.create (model, "c");
             digestedModel = new EquationSet (model);
+            profile.setRoot (digestedModel);
+            profile.lap ("parse");
             if (cli) params = new MVolatile ();
             digestModel ();
             String duration = digestedModel.metadata.get ("duration");
@@ -261,6 +268,7 @@ public class JobC extends Thread
             else
             {
                 Path commandPath = build (source);
+                job.set ("1", "heartbeat");  // main() enables Simulator::heartbeat
 
                 // The C program could append to the same error file, so we need to close the file before submitting.
                 PrintStream ps = Backend.err.get ();
@@ -753,7 +761,7 @@ public class JobC extends Thread
             "MNode.h", "MNode.cc",
             "nosys.h",
             "runtime.cc", "runtime.h", "runtime.tcc",
-            "profiling.h", "profiling.cc",
+            "profiling.h", "profiling.cc", "counters.h",
             "myendian.h", "image.h", "Image.cc", "ImageFileFormat.cc", "ImageFileFormatBMP.cc", "PixelBuffer.cc", "PixelFormat.cc",
             "canvas.h", "CanvasImage.cc",
             "video.h", "Video.cc", "VideoFileFormatFFMPEG.cc",
@@ -1017,6 +1025,7 @@ public class JobC extends Thread
     public void digestModel () throws Exception
     {
         job.set ("Analyzing model", "status");
+        DigestProfile p = profile;
 
         if (digestedModel.source.containsKey ("pin"))
         {
@@ -1024,58 +1033,61 @@ public class JobC extends Thread
             digestedModel.fillAutoPins ();
             digestedModel.resolvePins ();
             digestedModel.purgePins ();
+            p.lap ("pins");
         }
-        digestedModel.resolveConnectionBindings ();
-        digestedModel.addGlobalConstants ();
-        digestedModel.addSpecials ();  // $connect, $index, $init, $n, $t, $t'
+        digestedModel.resolveConnectionBindings ();              p.lap ("resolveConnectionBindings");
+        digestedModel.addGlobalConstants ();                     p.lap ("addGlobalConstants");
+        digestedModel.addSpecials ();                            p.lap ("addSpecials");  // $connect, $index, $init, $n, $t, $t'
         digestedModel.addAttribute ("global",      false, true,  "$max", "$min", "$k", "$radius");
         digestedModel.addAttribute ("global",      false, false, "$n");
         digestedModel.addAttribute ("state",       true,  false, "$n");  // Forbid $n from being temporary, even if it meets the criteria.
         digestedModel.addAttribute ("preexistent", true,  false, "$index", "$t");  // Technically, $index is not pre-existent, but always receives special handling which has the same effect.
+        p.lap ("addAttribute");
         if (cli) tagCommandLineParameters (digestedModel, true);
-        analyzeIOvectors (digestedModel);
-        digestedModel.resolveLHS ();
-        digestedModel.fillIntegratedVariables ();
-        digestedModel.findIntegrated ();
-        digestedModel.resolveRHS ();
-        digestedModel.revertSingletonConnections ();
-        digestedModel.flatten ("c");
-        digestedModel.findExternal ();
-        digestedModel.sortParts ();
-        digestedModel.checkUnits ();
-        digestedModel.findConstants ();
-        digestedModel.determineTraceVariableName ();
-        digestedModel.collectSplits ();
-        digestedModel.findDeath ();  // Required by addImplicitDependencies(). When run before findInitOnly(), some parts may be marked lethalP when they don't need to be. One solution would be to run findDeath() again after findInitOnly().
-        addImplicitDependencies (digestedModel);
-        digestedModel.addDrawDependencies ();
-        digestedModel.removeUnused ();  // especially get rid of unneeded $variables created by addSpecials()
-        createBackendData (digestedModel);
-        findPathToContainer (digestedModel);
-        digestedModel.findAccountableConnections ();
-        digestedModel.findTemporary ();  // for connections, makes $p and $project "temporary" under some circumstances.
-        digestedModel.determineOrder ();
-        digestedModel.findDerivative ();
-        digestedModel.findInitOnly ();  // propagate initOnly through ASTs
-        digestedModel.findDeath ();  // Re-run to ensure that lethalP is only set when necessary (see comment above).
-        digestedModel.determinePoll ();
-        digestedModel.purgeInitOnlyTemporary ();
-        digestedModel.setAttributesLive ();
-        digestedModel.forceTemporaryStorageForSpecials ();
-        findLiveReferences (digestedModel);
-        digestedModel.determineTypes ();
-        digestedModel.determineDuration ();
-        digestedModel.assignParents ();
+        analyzeIOvectors (digestedModel);                        p.lap ("analyzeIOvectors");
+        digestedModel.resolveLHS ();                             p.lap ("resolveLHS");
+        digestedModel.fillIntegratedVariables ();                p.lap ("fillIntegratedVariables");
+        digestedModel.findIntegrated ();                         p.lap ("findIntegrated");
+        digestedModel.resolveRHS ();                             p.lap ("resolveRHS");
+        digestedModel.revertSingletonConnections ();             p.lap ("revertSingletonConnections");
+        digestedModel.flatten ("c");                             p.lap ("flatten");
+        digestedModel.findExternal ();                           p.lap ("findExternal");
+        digestedModel.sortParts ();                              p.lap ("sortParts");
+        digestedModel.checkUnits ();                             p.lap ("checkUnits");
+        digestedModel.findConstants ();                          p.lap ("findConstants");
+        digestedModel.determineTraceVariableName ();             p.lap ("determineTraceVariableName");
+        digestedModel.collectSplits ();                          p.lap ("collectSplits");
+        digestedModel.findDeath ();                              p.lap ("findDeath");  // Required by addImplicitDependencies(). When run before findInitOnly(), some parts may be marked lethalP when they don't need to be. One solution would be to run findDeath() again after findInitOnly().
+        addImplicitDependencies (digestedModel);                 p.lap ("addImplicitDependencies");
+        digestedModel.addDrawDependencies ();                    p.lap ("addDrawDependencies");
+        digestedModel.removeUnused ();                           p.lap ("removeUnused");  // especially get rid of unneeded $variables created by addSpecials()
+        createBackendData (digestedModel);                       p.lap ("createBackendData");
+        findPathToContainer (digestedModel);                     p.lap ("findPathToContainer");
+        digestedModel.findAccountableConnections ();             p.lap ("findAccountableConnections");
+        digestedModel.findTemporary ();                          p.lap ("findTemporary");  // for connections, makes $p and $project "temporary" under some circumstances.
+        digestedModel.determineOrder ();                         p.lap ("determineOrder");
+        digestedModel.findDerivative ();                         p.lap ("findDerivative");
+        digestedModel.findInitOnly ();                           p.lap ("findInitOnly");  // propagate initOnly through ASTs
+        digestedModel.findDeath ();                              p.lap ("findDeath");  // Re-run to ensure that lethalP is only set when necessary (see comment above).
+        digestedModel.determinePoll ();                          p.lap ("determinePoll");
+        digestedModel.purgeInitOnlyTemporary ();                 p.lap ("purgeInitOnlyTemporary");
+        digestedModel.setAttributesLive ();                      p.lap ("setAttributesLive");
+        digestedModel.forceTemporaryStorageForSpecials ();       p.lap ("forceTemporaryStorageForSpecials");
+        findLiveReferences (digestedModel);                      p.lap ("findLiveReferences");
+        digestedModel.determineTypes ();                         p.lap ("determineTypes");
+        digestedModel.determineDuration ();                      p.lap ("determineDuration");
+        digestedModel.assignParents ();                          p.lap ("assignParents");
         if (fixedPoint)
         {
             exponentContext = new ExponentContext (digestedModel);
-            digestedModel.determineExponents (exponentContext);
-        }
-        digestedModel.findConnectionMatrix ();
-        analyzeEvents (digestedModel);
-        analyzeDt (digestedModel);
-        analyze (digestedModel);
-        analyzeNames (digestedModel);
+            digestedModel.determineExponents (exponentContext);  p.lap ("determineExponents");
+        }
+        digestedModel.findConnectionMatrix ();                   p.lap ("findConnectionMatrix");
+        analyzeEvents (digestedModel);                           p.lap ("analyzeEvents");
+        analyzeDt (digestedModel);                               p.lap ("analyzeDt");
+        analyze (digestedModel);                                 p.lap ("analyze");
+        analyzeNames (digestedModel);                            p.lap ("analyzeNames");
+        p.save (job);
     }
 
     public void tagCommandLineParameters (EquationSet s, boolean partCLI) throws IOException
@@ -1519,6 +1531,10 @@ public class JobC extends Thread
         {
             result.append ("#include \"profiling.h\"\n");
         }
+        if (counters)
+        {
+            result.append ("#include \"counters.h\"\n");
+        }
         if (lib  &&  jni)
         {
             result.append ("#include \"NativeResource.h\"\n");
@@ -1710,6 +1726,11 @@ public class JobC extends Thread
         }
         generateStatic (context);
         result.append ("\n");
+        if (counters)
+        {
+            generateCounters (digestedModel, result);
+            result.append ("\n");
+        }
         generateDefinitions (context, digestedModel);
 
         // Init IO
@@ -1735,6 +1756,10 @@ public class JobC extends Thread
         {
             result.append ("  get_callbacks ();\n");
         }
+        if (counters)
+        {
+            result.append ("  Counters::start ();\n");
+        }
         if (cli)
         {
             result.append ("  params = new Parameters<" + T + ">;\n");
@@ -1757,6 +1782,10 @@ public class JobC extends Thread
         result.append ("  putenv ((char *) \"TZ=\");\n");  // Per tzset() manpage, setting TZ to blank causes us to be in UTC.
         result.append ("  initIO ();\n");
         result.append ("  wrapper = new Wrapper;\n");
+        if (counters)
+        {
+            result.append ("  " + SIMULATOR + "countQueue = true;\n");
+        }
         result.append ("  " + SIMULATOR + "init (wrapper);\n");  // Simulator takes possession of wrapper, so it will be freed automatically.
         result.append ("}\n");
         result.append ("\n");
@@ -1764,6 +1793,13 @@ public class JobC extends Thread
         // Finish
         result.append ("void " + ns_ + "finish ()\n");
         result.append ("{\n");
+        if (counters)  // Must come before Simulator::clear(), which kills off all remaining instances.
+        {
+            result.append ("  vector<Counters *> counters;\n");
+            generateCountersList (digestedModel, result);
+            result.append ("  int64_t samples = " + SIMULATOR + "queueSamples;\n");
+            result.append ("  Counters::write (\"counters\", counters, " + SIMULATOR + "queueMax, samples ? " + SIMULATOR + "queueSum / samples : 0, samples);\n");
+        }
         if (tls)
         {
             result.append ("  delete Simulator<" + T + ">::instance;\n");  // Calls Simulator::clear()
@@ -1853,6 +1889,7 @@ public class JobC extends Thread
             result.append ("  try\n");
             result.append ("  {\n");
             result.append ("    init (argc, argv);\n");
+            result.append ("    " + SIMULATOR + "heartbeat = \"heartbeat\";\n");  // Relative to job dir, which is the working directory. Monitored by NodeJob.
             result.append ("    " + SIMULATOR + "run ();\n");
             result.append ("    finish ();\n");  // Calls Simulator::clear(), which flushes output files.
             result.append ("    releaseMemory ();\n");  // Needed only to make memory checkers happy
@@ -1884,6 +1921,21 @@ public class JobC extends Thread
         Files.copy (new ByteArrayInputStream (result.toString ().getBytes ("UTF-8")), source);
     }
 
+    public void generateCounters (EquationSet s, StringBuilder result)
+    {
+        for (EquationSet p : s.parts) generateCounters (p, result);
+        String name = s.container == null ? s.name : s.prefix ();
+        name = name.replace ("\\", "\\\\").replace ("\"", "\\\"");
+        if (tls) result.append ("thread_local ");
+        result.append ("Counters counters_" + prefix (s) + " (\"" + name + "\");\n");
+    }
+
+    public void generateCountersList (EquationSet s, StringBuilder result)
+    {
+        for (EquationSet p : s.parts) generateCountersList (p, result);
+        result.append ("  counters.push_back (&counters_" + prefix (s) + ");\n");
+    }
+
     public void generateClassList (EquationSet s, StringBuilder result)
     {
         for (EquationSet p : s.parts) generateClassList (p, result);
@@ -2117,7 +2169,9 @@ public class JobC extends Thread
                                 {
                                     Output main = mainOutput.get (fileName);
                                     Operator raw = o.getKeyword ("raw");
-                                    if (raw != null) main.addKeyword (fileName, raw);
+                                    if (raw != null) main.addKeyword ("raw", raw);
+                                    Operator events = o.getKeyword ("events");
+                                    if (events != null) main.addKeyword ("events", events);
                                 }
                             }
                             else if (f instanceof ReadImage)
@@ -2377,7 +2431,8 @@ public class JobC extends Thread
         for (Output o : mainOutput.values ())
         {
             result.append ("  " + o.name + " = outputHelper<" + T + "> (\"" + o.operands[0].getString () + "\");\n");
-            if (o.getKeywordFlag ("raw")) result.append ("  " + o.name + "->raw = true;\n");
+            if (o.getKeywordFlag ("raw"))    result.append ("  " + o.name + "->raw = true;\n");
+            if (o.getKeywordFlag ("events")) result.append ("  " + o.name + "->events = true;\n");
         }
         for (ReadImage r : mainImageInput)
         {
@@ -2660,11 +2715,11 @@ public class JobC extends Thread
         {
             result.append ("  virtual Part<" + T + "> * allocate ();\n");
             result.append ("  virtual void release (Part<" + T + "> * part);\n");
-            if (bed.trackN  ||  bed.pathToContainer == null  ||  bed.trackInstances  ||  bed.index != null  ||  bed.poll >= 0)
+            if (bed.trackN  ||  bed.pathToContainer == null  ||  bed.trackInstances  ||  bed.index != null  ||  bed.poll >= 0  ||  counters)
             {
                 result.append ("  virtual void add (Part<" + T + "> * part);\n");
             }
-            if (bed.trackN  ||  bed.trackInstances  ||  bed.poll >= 0)
+            if (bed.trackN  ||  bed.trackInstances  ||  bed.poll >= 0  ||  counters)
             {
                 result.append ("  virtual void remove (Part<" + T + "> * part);\n");
             }
@@ -2713,7 +2768,7 @@ public class JobC extends Thread
             result.append ("  virtual void multiply (" + T + " scalar);\n");
             result.append ("  virtual void addToMembers ();\n");
         }
-        if (bed.populationCanBeInactive  ||  bed.poll >= 0)
+        if (bed.populationCanBeInactive  ||  bed.poll >= 0  ||  counters  &&  s.connectionBindings != null)
         {
             result.append ("  virtual void connect ();\n");
         }
@@ -3201,10 +3256,14 @@ public class JobC extends Thread
             result.append ("\n");
 
             // Population add / remove
-            if (bed.trackN  ||  bed.pathToContainer == null  ||  bed.trackInstances  ||  bed.index != null  ||  bed.poll >= 0)
+            if (bed.trackN  ||  bed.pathToContainer == null  ||  bed.trackInstances  ||  bed.index != null  ||  bed.poll >= 0  ||  counters)
             {
                 result.append ("void " + ns + "add (Part<" + T + "> * part)\n");
                 result.append ("{\n");
+                if (counters)
+                {
+                    result.append ("  counters_" + ps + ".births++;\n");
+                }
                 if (bed.trackN)
                 {
                     result.append ("  n++;\n");
@@ -3249,10 +3308,16 @@ public class JobC extends Thread
                 result.append ("\n");
             }
 
-            if (bed.trackN  ||  bed.trackInstances  ||  bed.poll >= 0)
+            boolean needRemove = bed.trackN  ||  bed.trackInstances  ||  bed.poll >= 0;
+            if (needRemove  ||  counters)
             {
                 result.append ("void " + ns + "remove (Part<" + T + "> * part)\n");
                 result.append ("{\n");
+                if (counters)
+                {
+                    result.append ("  counters_" + ps + ".deaths++;\n");
+                    if (! needRemove) result.append ("  release (part);\n");  // Same as Population::remove()
+                }
                 if (bed.trackN)
                 {
                     result.append ("  n--;\n");
@@ -3359,6 +3424,7 @@ public class JobC extends Thread
             result.append ("void " + ns + "integrate ()\n");
             result.append ("{\n");
             if (kokkos) result.append ("  push_region (\"" + ns + "integrate()\");\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::INTEGRATE);\n");
 
             if (s.container == null)
             {
@@ -3425,6 +3491,7 @@ public class JobC extends Thread
             context.defined.clear ();
 
             if (kokkos) result.append ("  push_region (\"" + ns + "update()\");\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::UPDATE);\n");
             for (Variable v : bed.globalBufferedInternalUpdate)
             {
                 result.append ("  " + type (v) + " " + mangle ("next_", v) + ";\n");
@@ -3449,6 +3516,7 @@ public class JobC extends Thread
         {
             result.append ("int " + ns + "finalize ()\n");
             result.append ("{\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::FINALIZE);\n");
 
             if (bed.canResize  &&  bed.n.derivative == null  &&  bed.canGrowOrDie)  // $n shares control with other specials, so must coordinate with them
             {
@@ -3752,11 +3820,12 @@ public class JobC extends Thread
             result.append ("\n");
         }
 
-        // Population connect (override for polling or inactive testing)
-        if (bed.poll >= 0  ||  bed.populationCanBeInactive)
+        // Population connect (override for polling, inactive testing or counters)
+        if (bed.poll >= 0  ||  bed.populationCanBeInactive  ||  counters  &&  s.connectionBindings != null)
         {
             result.append ("void " + ns + "connect ()\n");
             result.append ("{\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + ps + ", Counters::CONNECT);\n");
             if (bed.poll < 0)
             {
                 // Use default implementation of connect()
@@ -4509,6 +4578,7 @@ public class JobC extends Thread
             result.append ("void " + ns + "integrate ()\n");
             result.append ("{\n");
             if (kokkos) result.append ("  push_region (\"" + ns + "integrate()\");\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::INTEGRATE);\n");
 
             if (bed.localIntegrated.size () > 0)
             {
@@ -4596,6 +4666,7 @@ public class JobC extends Thread
             context.defined.clear ();
 
             if (kokkos) result.append ("  push_region (\"" + ns + "update()\");\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::UPDATE);\n");
 
             for (Variable v : bed.localBufferedInternalUpdate)
             {
@@ -4631,6 +4702,7 @@ public class JobC extends Thread
         {
             result.append ("int " + ns + "finalize ()\n");
             result.append ("{\n");
+            if (counters) result.append ("  CounterTimer timer (counters_" + prefix (s) + ", Counters::FINALIZE);\n");
             context.defined.clear ();
 
             // contained populations
@@ -5475,6 +5547,7 @@ public class JobC extends Thread
             result.append ("void " + ns + "setLatch (int i)\n");
             result.append ("{\n");
             result.append ("  flags |= (" + bed.localFlagType + ") 0x1 << i;\n");
+            if (counters) result.append ("  counters_" + prefix (s) + ".spikes++;\n");
             result.append ("}\n");
             result.append ("\n");
 
@@ -6275,6 +6348,10 @@ public class JobC extends Thread
                         {
                             context.result.append (pad + o.name + "->raw = true;\n");
                         }
+                        if (o.getKeywordFlag ("events"))
+                        {
+                            context.result.append (pad + o.name + "->events = true;\n");
+                        }
                     }
                     return true;
                 }
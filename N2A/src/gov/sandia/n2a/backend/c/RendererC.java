@@ -646,7 +646,7 @@ public class RendererC extends Renderer
                 for (Entry<String,Operator> k : o.keywords.entrySet ())
                 {
                     String key = k.getKey ();
-                    if (key.equals ("raw")  ||  key.equals ("x")) continue;
+                    if (key.equals ("raw")  ||  key.equals ("events")  ||  key.equals ("x")) continue;
 
                     Operator kv = k.getValue ();
                     if (kv instanceof Constant)
@@ -673,7 +673,7 @@ public class RendererC extends Renderer
                     for (Entry<String,Operator> k : o.keywords.entrySet ())
                     {
                         String key = k.getKey ();
-                        if (key.equals ("raw")  ||  key.equals ("x")) continue;
+                        if (key.equals ("raw")  ||  key.equals ("events")  ||  key.equals ("x")) continue;
 
                         if (commaNeeded) result.append ("+\",\"");
                         result.append ("+\"" + key + "=\"+");
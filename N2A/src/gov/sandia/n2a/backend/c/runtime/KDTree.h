@@ -4,8 +4,10 @@ This code was adapted from the FL library and specialized for the 3D
 spaces common in neural systems.
 The implementation is based loosely on the paper "Algorithms for Fast Vector
 Quantization" by Sunil Arya and David Mount.
+The tree is held in flat arrays, with nodes in implicit layout (children of n at
+2n+1 and 2n+2). This matches backend.internal.KDTree in the Java simulator.
 
-Copyright 2010-2023 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Copyright 2010-2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
 Under the terms of Contract DE-NA0003525 with NTESS,
 the U.S. Government retains certain rights in this software.
 */
@@ -19,8 +21,11 @@ the U.S. Government retains certain rights in this software.
 #include "matrix.h"
 
 #include <vector>
-#include <queue>
+#include <algorithm>
 #include <climits>
+#ifndef N2A_SPINNAKER
+# include <thread>
+#endif
 
 
 template<class T> class Part;
@@ -29,8 +34,6 @@ template<class T>
 class KDTree
 {
 public:
-    // Note: All the inner classes are defined first, then the main class members come at the bottom of this file.
-
     typedef MatrixFixed<T,3,1> Vector3;
 
     class Entry : public Vector3
@@ -39,15 +42,12 @@ public:
         Part<T> * part;
     };
 
-    class Node;
-
-    typedef std::pair<T, Node *>  PairNode;
-    typedef std::pair<T, Entry *> PairEntry;
+    typedef std::pair<T, int> Pair;  ///< distance and index, of either a node or a point
 
     class Reverse
     {
     public:
-        bool operator() (const PairNode & a, const PairNode & b) const
+        bool operator() (const Pair & a, const Pair & b) const
         {
             return a.first > b.first;
         }
@@ -56,138 +56,37 @@ public:
     class Forward
     {
     public:
-        bool operator() (const PairEntry & a, const PairEntry & b) const
+        bool operator() (const Pair & a, const Pair & b) const
         {
             return a.first < b.first;
         }
     };
 
-    /// Helper class for passing search-related info down the tree.
+    /**
+        Search state. Both collections are heaps in plain vectors, so their storage is kept when the query is reused.
+    **/
     class Query
     {
     public:
-        int             k;
-        T               radius;
-        const Vector3 * point;
-        std::priority_queue<PairEntry, std::vector<PairEntry>, Forward> sorted;
-        std::priority_queue<PairNode,  std::vector<PairNode>,  Reverse> queue;
+        int               k;
+        T                 radius;
+        const T *         point;
+        std::vector<Pair> sorted;  ///< Results. During search, a max-heap on distance. Afterward, in order of increasing distance. Second element is index in points.
+        std::vector<Pair> queue;   ///< Nodes waiting to be searched, as a min-heap on distance.
     };
 
-    class Node
-    {
-    public:
-        virtual ~Node () {}
-        virtual void search (T distance, Query & q) const = 0;
-#       ifndef N2A_SPINNAKER
-        virtual void dump (std::ostream & out, const String & pad = "") const = 0;
-#       endif
-    };
+    // Points, in tree order, so each leaf covers a contiguous range.
+    std::vector<Entry *> points;
+    std::vector<T>       coordinates;  ///< Copy of points[i] is stored at [3*i,3*i+3)
 
-    class Branch : public Node
-    {
-    public:
-        int    dimension;
-        T      lo;        ///< Lowest value along the dimension
-        T      hi;        ///< Highest value along the dimension
-        T      mid;       ///< The cut point along the dimension
-        Node * lowNode;   ///< below mid
-        Node * highNode;  ///< above mid
-
-        virtual ~Branch ()
-        {
-            delete lowNode;
-            delete highNode;
-        }
-
-        virtual void search (T distance, Query & q) const
-        {
-            T qmid = (*q.point)[dimension];
-            T newOffset = qmid - mid;
-            if (newOffset < 0)  // lowNode is closer
-            {
-                // We don't do any special testing on nearer node, because it has already been
-                // tested as part of the containing node.
-                if (lowNode) lowNode->search (distance, q);
-                if (highNode)
-                {
-                    T oldOffset = std::max (lo - qmid, (T) 0);
-                    distance += newOffset * newOffset - oldOffset * oldOffset;
-                    q.queue.push (std::make_pair (distance, highNode));
-                }
-            }
-            else  // newOffset >= 0, so highNode is closer
-            {
-                if (highNode) highNode->search (distance, q);
-                if (lowNode)
-                {
-                    T oldOffset = std::max (qmid - hi, (T) 0);
-                    distance += newOffset * newOffset - oldOffset * oldOffset;
-                    q.queue.push (std::make_pair (distance, lowNode));
-                }
-            }
-        }
-
-#       ifndef N2A_SPINNAKER
-        virtual void dump (std::ostream & out, const String & pad = "") const
-        {
-            out << pad << "Branch: " << dimension << " " << lo << " " << mid << " " << hi << std::endl;
-            if (lowNode)
-            {
-                out << pad << "lowNode:" << std::endl;
-                lowNode->dump (out, pad + "  ");
-            }
-            if (highNode)
-            {
-                out << pad << "highNode:" << std::endl;
-                highNode->dump (out, pad + "  ");
-            }
-        }
-#       endif
-    };
+    // Nodes, in implicit layout: children of node n are 2n+1 (low) and 2n+2 (high).
+    std::vector<int> splitDimension;  ///< -1 indicates a leaf
+    std::vector<T>   splitLo;         ///< Lowest value along the dimension
+    std::vector<T>   splitHi;         ///< Highest value along the dimension
+    std::vector<T>   splitMid;        ///< The cut point along the dimension
+    std::vector<int> first;           ///< Index in points of first point in a leaf
+    std::vector<int> last;            ///< One past the last point in a leaf
 
-    class Leaf : public Node
-    {
-    public:
-        std::vector<Entry *> points;
-
-        virtual void search (T distance, Query & q) const
-        {
-            int count = points.size ();
-            for (int i = 0; i < count; i++)
-            {
-                Entry * p = points[i];
-
-                // Measure distance using early-out method. Might save operations in
-                // high-dimensional spaces.
-                // Here we make the assumption that the values are stored contiguously in
-                // memory.  This is a good place to check for bugs if using more exotic
-                // matrix types (not recommended).
-                T * x = &(*p)[0];
-                T * y = &(*q.point)[0];
-                T * end = x + 3;  // 3 dimensions in Vector3
-                T total = 0;
-                while (x < end  &&  total < q.radius)
-                {
-                    T t = *x++ - *y++;
-                    total += t * t;
-                }
-
-                if (total >= q.radius) continue;
-                q.sorted.push (std::make_pair (total, p));
-                if (q.sorted.size () > q.k) q.sorted.pop ();
-                if (q.sorted.size () == q.k) q.radius = std::min (q.radius, q.sorted.top ().first);
-            }
-        }
-
-#       ifndef N2A_SPINNAKER
-        virtual void dump (std::ostream & out, const String & pad = "") const
-        {
-            for (int i = 0; i < points.size (); i++) out << pad << *points[i] << std::endl;
-        }
-#       endif
-    };
-
-    Node * root;
     Vector3 lo;
     Vector3 hi;
 
@@ -197,9 +96,10 @@ public:
     T   epsilon;  ///< Nodes must have at least this much overlap with the current radius (which is always the lesser of the initial radius and the kth nearest neighbor).
     int maxNodes; ///< Expand no more than this number of nodes. Forces a search to be approximate rather than exhaustive.
 
+    mutable Query scratch;  ///< for find(query,result)
+
     KDTree ()
     {
-        root       = 0;
         bucketSize = 5;
         k          = 5;  // it doesn't make sense for k to be less than bucketSize
         radius     = INFINITY;
@@ -207,44 +107,121 @@ public:
         maxNodes   = INT_MAX;
     }
 
-    ~KDTree ()
-    {
-        clear ();
-    }
-
     void clear ()
     {
-        delete root;
-        root = 0;
+        points.clear ();
+        coordinates.clear ();
+        splitDimension.clear ();
     }
 
+    /// Builds the tree in one pass over all the data. The points are copied, but the entries must outlive this tree.
     void set (std::vector<Entry *> & data)
     {
         ::clear (lo, (T)  INFINITY);
         ::clear (hi, (T) -INFINITY);
 
-        typename std::vector<Entry *>::iterator t = data.begin ();
-        for (; t != data.end (); t++)
+        int count = data.size ();
+        for (int j = 0; j < count; j++)
         {
-            T * a = (*t)->base ();
-            T * l = lo.base ();
-            T * h = hi.base ();
-            T * end = l + 3;  // 3 dimensions
-            while (l < end)
+            T * a = data[j]->base ();
+            for (int i = 0; i < 3; i++)
             {
-                *l = std::min (*l, *a);
-                *h = std::max (*h, *a);
-                a++;
-                l++;
-                h++;
+                lo[i] = std::min (lo[i], a[i]);
+                hi[i] = std::max (hi[i], a[i]);
             }
         }
 
-        root = construct (data);
+        points = data;
+        int nodes = nodeCount (0, count);
+        splitDimension.resize (nodes);
+        splitLo       .resize (nodes);
+        splitHi       .resize (nodes);
+        splitMid      .resize (nodes);
+        first         .resize (nodes);
+        last          .resize (nodes);
+        if (count) construct (0, 0, count);
+
+        coordinates.resize (3 * count);
+        T * c = coordinates.data ();
+        for (int j = 0; j < count; j++)
+        {
+            T * a = points[j]->base ();
+            *c++ = a[0];
+            *c++ = a[1];
+            *c++ = a[2];
+        }
+    }
+
+    /// Size of the node arrays needed to hold a subtree with the given number of points, rooted at node n.
+    int nodeCount (int n, int count) const
+    {
+        if (count <= bucketSize) return n + 1;
+        int cut = count / 2;
+        return std::max (nodeCount (2 * n + 1, cut), nodeCount (2 * n + 2, count - cut));
     }
 
+    /// Recursively construct the subtree at node n, which handles points [from,to).
+    void construct (int n, int from, int to)
+    {
+        int count = to - from;
+        if (count <= bucketSize)
+        {
+            splitDimension[n] = -1;
+            first[n]          = from;
+            last[n]           = to;
+            return;
+        }
+
+        // todo: pass the split method as a function pointer
+        int d = 0;
+        T longest = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            T length = hi[i] - lo[i];
+            if (length > longest)
+            {
+                d = i;
+                longest = length;
+            }
+        }
+        // Only the median needs to be in place, so a linear-time selection replaces a full sort.
+        int cut = from + count / 2;
+        typename std::vector<Entry *>::iterator b = points.begin ();
+        std::nth_element (b + from, b + cut, b + to, [d] (const Entry * x, const Entry * y) {return (*x)[d] < (*y)[d];});
+
+        splitDimension[n] = d;
+        splitLo[n]        = lo[d];
+        splitHi[n]        = hi[d];
+        splitMid[n]       = (*points[cut])[d];
+
+        hi[d] = splitMid[n];
+        construct (2 * n + 1, from, cut);
+        hi[d] = splitHi[n];
+
+        lo[d] = splitMid[n];
+        construct (2 * n + 2, cut, to);
+        lo[d] = splitLo[n];  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
+    }
+
+    /// Convenience form that uses the scratch query, so must not be called by more than one thread at a time.
     void find (const Vector3 & query, std::vector<Entry *> & result) const
     {
+        int count = find (query, scratch);
+        result.resize (count);
+        for (int i = 0; i < count; i++) result[i] = points[scratch.sorted[i].second];
+    }
+
+    /**
+        Collects the points nearest to query.
+        @param q Search state, reused from call to call to avoid allocation.
+        @return The number of results. They are in q.sorted, in order of increasing distance.
+    **/
+    int find (const Vector3 & query, Query & q) const
+    {
+        q.sorted.clear ();
+        q.queue.clear ();
+        if (points.empty ()) return 0;
+
         // Determine distance of query from bounding rectangle for entire tree
         T distance = 0;
         for (int i = 0; i < 3; i++)
@@ -253,124 +230,150 @@ public:
             distance += d * d;
         }
 
-        // Recursively collect closest points
-        Query q;
         q.k      = k;
         q.radius = radius * radius;  // this may shrink monotonically once we find enough neighbors
-        q.point  = &query;
+        q.point  = query.base ();
 
         T oneEpsilon = (1 + epsilon) * (1 + epsilon);
-        q.queue.push (std::make_pair (distance, root));
+        q.queue.push_back (std::make_pair (distance, 0));
         int visited = 0;
         while (q.queue.size ())
         {
-            const PairNode & it = q.queue.top ();
-            distance = it.first;
-            Node * n = it.second;
-            q.queue.pop ();
+            std::pop_heap (q.queue.begin (), q.queue.end (), Reverse ());
+            distance = q.queue.back ().first;
+            int n    = q.queue.back ().second;
+            q.queue.pop_back ();
             if (distance * oneEpsilon > q.radius) break;
-            n->search (distance, q);
+            search (n, distance, q);
             if (++visited >= maxNodes) break;
         }
 
-        // Transfer results to vector. No need to limit number of results, because this has
-        // already been done by Leaf::search().
-        int count = q.sorted.size ();
-        result.resize (count);
-        for (int i = count - 1; i >= 0; i--)
-        {
-            result[i] = q.sorted.top ().second;
-            q.sorted.pop ();
-        }
+        // No need to limit number of results, because this has already been done by the leaf scan.
+        std::sort_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+        return q.sorted.size ();
     }
 
 #   ifndef N2A_SPINNAKER
-    void dump (std::ostream & out, const String & pad = "") const
+    /**
+        Runs many independent queries, spread across the given number of threads.
+        Each thread has its own Query, so the tree itself is only read.
+    **/
+    void find (const std::vector<Vector3> & queries, std::vector<std::vector<Entry *>> & results, int threads) const
     {
-        out << pad << "KDTree: " << bucketSize << " " << k << " " << radius << " " << epsilon << std::endl;
-        out << pad << "lo = " << lo << std::endl;
-        out << pad << "hi = " << hi << std::endl;
-        if (root)
+        int count = queries.size ();
+        results.resize (count);
+        threads = std::max (1, std::min (threads, count));
+        int chunk = (count + threads - 1) / threads;
+        std::vector<std::thread> workers;
+        for (int t = 1; t < threads; t++)
+        {
+            int from = t * chunk;
+            int to   = std::min (count, from + chunk);
+            workers.emplace_back ([this, &queries, &results, from, to] {find (queries, results, from, to);});
+        }
+        find (queries, results, 0, std::min (count, chunk));
+        for (auto & w : workers) w.join ();
+    }
+
+    void find (const std::vector<Vector3> & queries, std::vector<std::vector<Entry *>> & results, int from, int to) const
+    {
+        Query q;
+        for (int i = from; i < to; i++)
         {
-            out << pad << "root:" << std::endl;
-            root->dump (out, pad + "  ");
+            int count = find (queries[i], q);
+            std::vector<Entry *> & r = results[i];
+            r.resize (count);
+            for (int j = 0; j < count; j++) r[j] = points[q.sorted[j].second];
         }
     }
 #   endif
 
-    /// Recursively construct a tree that handles the given volume of points.
-    Node * construct (std::vector<Entry *> & points)
+    /// Descend from node n toward the leaf containing the query point, queueing the farther child at each branch.
+    void search (int n, T distance, Query & q) const
     {
-        int count = points.size ();
-        if (count == 0)
-        {
-            return 0;
-        }
-        else if (count <= bucketSize)
+        while (true)
         {
-            Leaf * result = new Leaf;
-            result->points = points;
-            return result;
-        }
-        else  // count > bucketSize
-        {
-            // todo: pass the split method as a function pointer
-            int d = 0;
-            T longest = 0;
-            for (int i = 0; i < 3; i++)
+            int d = splitDimension[n];
+            if (d < 0) break;
+
+            T qmid      = q.point[d];
+            T newOffset = qmid - splitMid[n];
+            T oldOffset;
+            int near;
+            int far;
+            if (newOffset < 0)  // low node is closer
+            {
+                near      = 2 * n + 1;
+                far       = near + 1;
+                oldOffset = std::max (splitLo[n] - qmid, (T) 0);
+            }
+            else  // newOffset >= 0, so high node is closer
+            {
+                far       = 2 * n + 1;
+                near      = far + 1;
+                oldOffset = std::max (qmid - splitHi[n], (T) 0);
+            }
+            // We don't do any special testing on nearer node, because it has already been
+            // tested as part of the containing node.
+            q.queue.push_back (std::make_pair (distance + newOffset * newOffset - oldOffset * oldOffset, far));
+            std::push_heap (q.queue.begin (), q.queue.end (), Reverse ());
+            n = near;
+        }
+
+        // Leaf
+        const T * x = coordinates.data () + 3 * first[n];
+        int end = last[n];
+        for (int j = first[n]; j < end; j++, x += 3)
+        {
+            // Measure distance using early-out method. Might save operations in
+            // high-dimensional spaces.
+            const T * y = q.point;
+            T total = 0;
+            for (int i = 0; i < 3  &&  total < q.radius; i++)
+            {
+                T t = x[i] - y[i];
+                total += t * t;
+            }
+
+            if (total >= q.radius) continue;
+            q.sorted.push_back (std::make_pair (total, j));
+            std::push_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+            if (q.sorted.size () > q.k)
             {
-                T length = hi[i] - lo[i];
-                if (length > longest)
-                {
-                    d = i;
-                    longest = length;
-                }
+                std::pop_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+                q.sorted.pop_back ();
             }
-            sort (points, d);
-            int cut = count / 2;
-            typename std::vector<Entry *>::iterator b = points.begin ();
-            typename std::vector<Entry *>::iterator c = b + cut;
-            typename std::vector<Entry *>::iterator e = points.end ();
-
-            Branch * result = new Branch;
-            result->dimension = d;
-            result->lo = lo[d];
-            result->hi = hi[d];
-            result->mid = (**c)[d];
-
-            hi[d] = result->mid;
-            std::vector<Entry *> tempPoints (b, c);
-            result->lowNode = construct (tempPoints);
-            hi[d] = result->hi;
-
-            lo[d] = result->mid;
-            tempPoints.clear ();
-            tempPoints.insert (tempPoints.begin (), c, e);
-            result->highNode = construct (tempPoints);
-            lo[d] = result->lo;  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
-
-            return result;
+            if (q.sorted.size () == q.k) q.radius = std::min (q.radius, q.sorted.front ().first);
         }
     }
 
-    /// Rearrange points so they are in ascending order along the given dimension.
-    void sort (std::vector<Entry *> & points, int dimension)
+#   ifndef N2A_SPINNAKER
+    void dump (std::ostream & out, const String & pad = "") const
     {
-        // Effectively we do a heap sort, since priority_queue is typically implemented with a heap structure.
-        std::priority_queue<PairEntry, std::vector<PairEntry>, Forward> sorted;
-        typename std::vector<Entry *>::iterator it = points.begin ();
-        for (; it != points.end (); it++)
+        out << pad << "KDTree: " << bucketSize << " " << k << " " << radius << " " << epsilon << std::endl;
+        out << pad << "lo = " << lo << std::endl;
+        out << pad << "hi = " << hi << std::endl;
+        if (points.size ())
         {
-            sorted.push (std::make_pair ((**it)[dimension], *it));
+            out << pad << "root:" << std::endl;
+            dump (out, 0, pad + "  ");
         }
+    }
 
-        int count = sorted.size ();
-        for (int i = count - 1; i >= 0; i--)
+    void dump (std::ostream & out, int n, const String & pad) const
+    {
+        if (splitDimension[n] < 0)
         {
-            points[i] = sorted.top ().second;
-            sorted.pop ();
+            for (int j = first[n]; j < last[n]; j++) out << pad << *points[j] << std::endl;
+            return;
         }
+        out << pad << "Branch: " << splitDimension[n] << " " << splitLo[n] << " " << splitMid[n] << " " << splitHi[n] << std::endl;
+        out << pad << "lowNode:" << std::endl;
+        dump (out, 2 * n + 1, pad + "  ");
+        out << pad << "highNode:" << std::endl;
+        dump (out, 2 * n + 2, pad + "  ");
     }
+#   endif
 };
 
 #ifdef n2a_FP
@@ -387,138 +390,51 @@ public:
         Part<int> * part;
     };
 
-    class Node;
-
-    typedef std::pair<int64_t, Node *>  LongNode;
-    typedef std::pair<int64_t, Entry *> LongEntry;
-    typedef std::pair<int,     Entry *> ShortEntry;
+    typedef std::pair<int64_t, int> Pair;  ///< distance and index, of either a node or a point
 
-    class LongReverse
+    class Reverse
     {
     public:
-        bool operator() (const LongNode & a, const LongNode & b) const
+        bool operator() (const Pair & a, const Pair & b) const
         {
             return a.first > b.first;
         }
     };
 
-    class LongForward
-    {
-    public:
-        bool operator() (const LongEntry & a, const LongEntry & b) const
-        {
-            return a.first < b.first;
-        }
-    };
-
-    class ShortForward
+    class Forward
     {
     public:
-        bool operator() (const ShortEntry & a, const ShortEntry & b) const
+        bool operator() (const Pair & a, const Pair & b) const
         {
             return a.first < b.first;
         }
     };
 
-    /// Helper class for passing search-related info down the tree.
+    /**
+        Search state. Both collections are heaps in plain vectors, so their storage is kept when the query is reused.
+    **/
     class Query
     {
     public:
-        int             k;
-        int64_t         radius;
-        const Vector3 * point;
-        std::priority_queue<LongEntry, std::vector<LongEntry>, LongForward> sorted;
-        std::priority_queue<LongNode,  std::vector<LongNode>,  LongReverse> queue;
+        int               k;
+        int64_t           radius;
+        const int *       point;
+        std::vector<Pair> sorted;  ///< Results. During search, a max-heap on distance. Afterward, in order of increasing distance. Second element is index in points.
+        std::vector<Pair> queue;   ///< Nodes waiting to be searched, as a min-heap on distance.
     };
 
-    class Node
-    {
-    public:
-        virtual ~Node () {}
-        virtual void search (int64_t distance, Query & q) const = 0;
-    };
+    // Points, in tree order, so each leaf covers a contiguous range.
+    std::vector<Entry *> points;
+    std::vector<int>     coordinates;  ///< Copy of points[i] is stored at [3*i,3*i+3)
 
-    class Branch : public Node
-    {
-    public:
-        int    dimension;
-        int    lo;        ///< Lowest value along the dimension
-        int    hi;        ///< Highest value along the dimension
-        int    mid;       ///< The cut point along the dimension
-        Node * lowNode;   ///< below mid
-        Node * highNode;  ///< above mid
-
-        virtual ~Branch ()
-        {
-            delete lowNode;
-            delete highNode;
-        }
+    // Nodes, in implicit layout: children of node n are 2n+1 (low) and 2n+2 (high).
+    std::vector<int> splitDimension;  ///< -1 indicates a leaf
+    std::vector<int> splitLo;         ///< Lowest value along the dimension
+    std::vector<int> splitHi;         ///< Highest value along the dimension
+    std::vector<int> splitMid;        ///< The cut point along the dimension
+    std::vector<int> first;           ///< Index in points of first point in a leaf
+    std::vector<int> last;            ///< One past the last point in a leaf
 
-        virtual void search (int64_t distance, Query & q) const
-        {
-            int qmid = (*q.point)[dimension];
-            int newOffset = qmid - mid;
-            if (newOffset < 0)  // lowNode is closer
-            {
-                // We don't do any special testing on nearer node, because it has already been
-                // tested as part of the containing node.
-                if (lowNode) lowNode->search (distance, q);
-                if (highNode)
-                {
-                    int oldOffset = std::max (lo - qmid, 0);
-                    distance += (int64_t) newOffset * newOffset - (int64_t) oldOffset * oldOffset;
-                    q.queue.push (std::make_pair (distance, highNode));
-                }
-            }
-            else  // newOffset >= 0, so highNode is closer
-            {
-                if (highNode) highNode->search (distance, q);
-                if (lowNode)
-                {
-                    int oldOffset = std::max (qmid - hi, 0);
-                    distance += (int64_t) newOffset * newOffset - (int64_t) oldOffset * oldOffset;
-                    q.queue.push (std::make_pair (distance, lowNode));
-                }
-            }
-        }
-    };
-
-    class Leaf : public Node
-    {
-    public:
-        std::vector<Entry *> points;
-
-        virtual void search (int64_t distance, Query & q) const
-        {
-            int count = points.size ();
-            for (int i = 0; i < count; i++)
-            {
-                Entry * p = points[i];
-
-                // Measure distance using early-out method. Might save operations in
-                // high-dimensional spaces.
-                // Here we make the assumption that the values are stored contiguously in
-                // memory.  This is a good place to check for bugs if using more exotic
-                // matrix types (not recommended).
-                int * x = &(*p)[0];
-                int * y = &(*q.point)[0];
-                int * end = x + 3;
-                int64_t total = 0;
-                while (x < end  &&  total < q.radius)
-                {
-                    int t = *x++ - *y++;
-                    total += (int64_t) t * t;
-                }
-
-                if (total >= q.radius) continue;
-                q.sorted.push (std::make_pair (total, p));
-                if (q.sorted.size () > q.k) q.sorted.pop ();
-                if (q.sorted.size () == q.k) q.radius = std::min (q.radius, q.sorted.top ().first);
-            }
-        }
-    };
-
-    Node * root;
     Vector3 lo;
     Vector3 hi;
 
@@ -528,9 +444,10 @@ public:
     int epsilon;  ///< Nodes must have at least this much overlap with the current radius (which is always the lesser of the initial radius and the kth nearest neighbor).
     int maxNodes; ///< Expand no more than this number of nodes. Forces a search to be approximate rather than exhaustive.
 
+    mutable Query scratch;  ///< for find(query,result)
+
     KDTree ()
     {
-        root       = 0;
         bucketSize = 5;
         k          = 5;  // it doesn't make sense for k to be less than bucketSize
         radius     = INFINITY;
@@ -538,44 +455,121 @@ public:
         maxNodes   = INT_MAX;
     }
 
-    ~KDTree ()
-    {
-        clear ();
-    }
-
     void clear ()
     {
-        delete root;
-        root = 0;
+        points.clear ();
+        coordinates.clear ();
+        splitDimension.clear ();
     }
 
+    /// Builds the tree in one pass over all the data. The points are copied, but the entries must outlive this tree.
     void set (std::vector<Entry *> & data)
     {
         ::clear (lo,  INFINITY);
         ::clear (hi, -INFINITY);
 
-        typename std::vector<Entry *>::iterator t = data.begin ();
-        for (; t != data.end (); t++)
+        int count = data.size ();
+        for (int j = 0; j < count; j++)
         {
-            int * a = (*t)->base ();
-            int * l = lo.base ();
-            int * h = hi.base ();
-            int * end = l + 3;  // 3 dimensions
-            while (l < end)
+            int * a = data[j]->base ();
+            for (int i = 0; i < 3; i++)
             {
-                *l = std::min (*l, *a);
-                *h = std::max (*h, *a);
-                a++;
-                l++;
-                h++;
+                lo[i] = std::min (lo[i], a[i]);
+                hi[i] = std::max (hi[i], a[i]);
             }
         }
 
-        root = construct (data);
+        points = data;
+        int nodes = nodeCount (0, count);
+        splitDimension.resize (nodes);
+        splitLo       .resize (nodes);
+        splitHi       .resize (nodes);
+        splitMid      .resize (nodes);
+        first         .resize (nodes);
+        last          .resize (nodes);
+        if (count) construct (0, 0, count);
+
+        coordinates.resize (3 * count);
+        int * c = coordinates.data ();
+        for (int j = 0; j < count; j++)
+        {
+            int * a = points[j]->base ();
+            *c++ = a[0];
+            *c++ = a[1];
+            *c++ = a[2];
+        }
     }
 
+    /// Size of the node arrays needed to hold a subtree with the given number of points, rooted at node n.
+    int nodeCount (int n, int count) const
+    {
+        if (count <= bucketSize) return n + 1;
+        int cut = count / 2;
+        return std::max (nodeCount (2 * n + 1, cut), nodeCount (2 * n + 2, count - cut));
+    }
+
+    /// Recursively construct the subtree at node n, which handles points [from,to).
+    void construct (int n, int from, int to)
+    {
+        int count = to - from;
+        if (count <= bucketSize)
+        {
+            splitDimension[n] = -1;
+            first[n]          = from;
+            last[n]           = to;
+            return;
+        }
+
+        // todo: pass the split method as a function pointer
+        int d = 0;
+        int longest = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            int length = hi[i] - lo[i];
+            if (length > longest)
+            {
+                d = i;
+                longest = length;
+            }
+        }
+        // Only the median needs to be in place, so a linear-time selection replaces a full sort.
+        int cut = from + count / 2;
+        typename std::vector<Entry *>::iterator b = points.begin ();
+        std::nth_element (b + from, b + cut, b + to, [d] (const Entry * x, const Entry * y) {return (*x)[d] < (*y)[d];});
+
+        splitDimension[n] = d;
+        splitLo[n]        = lo[d];
+        splitHi[n]        = hi[d];
+        splitMid[n]       = (*points[cut])[d];
+
+        hi[d] = splitMid[n];
+        construct (2 * n + 1, from, cut);
+        hi[d] = splitHi[n];
+
+        lo[d] = splitMid[n];
+        construct (2 * n + 2, cut, to);
+        lo[d] = splitLo[n];  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
+    }
+
+    /// Convenience form that uses the scratch query, so must not be called by more than one thread at a time.
     void find (const Vector3 & query, std::vector<Entry *> & result) const
     {
+        int count = find (query, scratch);
+        result.resize (count);
+        for (int i = 0; i < count; i++) result[i] = points[scratch.sorted[i].second];
+    }
+
+    /**
+        Collects the points nearest to query.
+        @param q Search state, reused from call to call to avoid allocation.
+        @return The number of results. They are in q.sorted, in order of increasing distance.
+    **/
+    int find (const Vector3 & query, Query & q) const
+    {
+        q.sorted.clear ();
+        q.queue.clear ();
+        if (points.empty ()) return 0;
+
         // Determine distance of query from bounding rectangle for entire tree
         int64_t distance = 0;
         for (int i = 0; i < 3; i++)
@@ -584,109 +578,121 @@ public:
             distance += (int64_t) d * d;
         }
 
-        // Recursively collect closest points
-        Query q;
         q.k      = k;
         q.radius = (int64_t) radius * radius;  // this may shrink monotonically once we find enough neighbors
-        q.point  = &query;
+        q.point  = query.base ();
 
         int oneEpsilon = (1 << FP_MSB2) + epsilon;  // exponent=MSB/2
         oneEpsilon = oneEpsilon * oneEpsilon >> FP_MSB2;  // This multiplication fits in 32-bit word, so no need for upcast.
-        q.queue.push (std::make_pair (distance, root));
+        q.queue.push_back (std::make_pair (distance, 0));
         int visited = 0;
         while (q.queue.size ())
         {
-            const LongNode & it = q.queue.top ();
-            distance = it.first;
-            Node * n = it.second;
-            q.queue.pop ();
+            std::pop_heap (q.queue.begin (), q.queue.end (), Reverse ());
+            distance = q.queue.back ().first;
+            int n    = q.queue.back ().second;
+            q.queue.pop_back ();
             if (distance * oneEpsilon >> FP_MSB2 > q.radius) break;
-            n->search (distance, q);
+            search (n, distance, q);
             if (++visited >= maxNodes) break;
         }
 
-        // Transfer results to vector. No need to limit number of results, because this has
-        // already been done by Leaf::search().
-        int count = q.sorted.size ();
-        result.resize (count);
-        for (int i = count - 1; i >= 0; i--)
-        {
-            result[i] = q.sorted.top ().second;
-            q.sorted.pop ();
-        }
+        // No need to limit number of results, because this has already been done by the leaf scan.
+        std::sort_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+        return q.sorted.size ();
     }
 
-    /// Recursively construct a tree that handles the given volume of points.
-    Node * construct (std::vector<Entry *> & points)
+#   ifndef N2A_SPINNAKER
+    /**
+        Runs many independent queries, spread across the given number of threads.
+        Each thread has its own Query, so the tree itself is only read.
+    **/
+    void find (const std::vector<Vector3> & queries, std::vector<std::vector<Entry *>> & results, int threads) const
     {
-        int count = points.size ();
-        if (count == 0)
-        {
-            return 0;
-        }
-        else if (count <= bucketSize)
-        {
-            Leaf * result = new Leaf;
-            result->points = points;
-            return result;
-        }
-        else  // count > bucketSize
-        {
-            // todo: pass the split method as a function pointer
-            int d = 0;
-            int longest = 0;
-            for (int i = 0; i < 3; i++)
-            {
-                int length = hi[i] - lo[i];
-                if (length > longest)
-                {
-                    d = i;
-                    longest = length;
-                }
-            }
-            sort (points, d);
-            int cut = count / 2;
-            typename std::vector<Entry *>::iterator b = points.begin ();
-            typename std::vector<Entry *>::iterator c = b + cut;
-            typename std::vector<Entry *>::iterator e = points.end ();
-
-            Branch * result = new Branch;
-            result->dimension = d;
-            result->lo = lo[d];
-            result->hi = hi[d];
-            result->mid = (**c)[d];
-
-            hi[d] = result->mid;
-            std::vector<Entry *> tempPoints (b, c);
-            result->lowNode = construct (tempPoints);
-            hi[d] = result->hi;
-
-            lo[d] = result->mid;
-            tempPoints.clear ();
-            tempPoints.insert (tempPoints.begin (), c, e);
-            result->highNode = construct (tempPoints);
-            lo[d] = result->lo;  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
-
-            return result;
-        }
+        int count = queries.size ();
+        results.resize (count);
+        threads = std::max (1, std::min (threads, count));
+        int chunk = (count + threads - 1) / threads;
+        std::vector<std::thread> workers;
+        for (int t = 1; t < threads; t++)
+        {
+            int from = t * chunk;
+            int to   = std::min (count, from + chunk);
+            workers.emplace_back ([this, &queries, &results, from, to] {find (queries, results, from, to);});
+        }
+        find (queries, results, 0, std::min (count, chunk));
+        for (auto & w : workers) w.join ();
     }
 
-    /// Rearrange points so they are in ascending order along the given dimension.
-    void sort (std::vector<Entry *> & points, int dimension)
+    void find (const std::vector<Vector3> & queries, std::vector<std::vector<Entry *>> & results, int from, int to) const
     {
-        // Effectively we do a heap sort, since priority_queue is typically implemented with a heap structure.
-        std::priority_queue<ShortEntry, std::vector<ShortEntry>, ShortForward> sorted;
-        typename std::vector<Entry *>::iterator it = points.begin ();
-        for (; it != points.end (); it++)
+        Query q;
+        for (int i = from; i < to; i++)
         {
-            sorted.push (std::make_pair ((**it)[dimension], *it));
+            int count = find (queries[i], q);
+            std::vector<Entry *> & r = results[i];
+            r.resize (count);
+            for (int j = 0; j < count; j++) r[j] = points[q.sorted[j].second];
         }
+    }
+#   endif
 
-        int count = sorted.size ();
-        for (int i = count - 1; i >= 0; i--)
+    /// Descend from node n toward the leaf containing the query point, queueing the farther child at each branch.
+    void search (int n, int64_t distance, Query & q) const
+    {
+        while (true)
         {
-            points[i] = sorted.top ().second;
-            sorted.pop ();
+            int d = splitDimension[n];
+            if (d < 0) break;
+
+            int qmid      = q.point[d];
+            int newOffset = qmid - splitMid[n];
+            int oldOffset;
+            int near;
+            int far;
+            if (newOffset < 0)  // low node is closer
+            {
+                near      = 2 * n + 1;
+                far       = near + 1;
+                oldOffset = std::max (splitLo[n] - qmid, 0);
+            }
+            else  // newOffset >= 0, so high node is closer
+            {
+                far       = 2 * n + 1;
+                near      = far + 1;
+                oldOffset = std::max (qmid - splitHi[n], 0);
+            }
+            // We don't do any special testing on nearer node, because it has already been
+            // tested as part of the containing node.
+            q.queue.push_back (std::make_pair (distance + (int64_t) newOffset * newOffset - (int64_t) oldOffset * oldOffset, far));
+            std::push_heap (q.queue.begin (), q.queue.end (), Reverse ());
+            n = near;
+        }
+
+        // Leaf
+        const int * x = coordinates.data () + 3 * first[n];
+        int end = last[n];
+        for (int j = first[n]; j < end; j++, x += 3)
+        {
+            // Measure distance using early-out method. Might save operations in
+            // high-dimensional spaces.
+            const int * y = q.point;
+            int64_t total = 0;
+            for (int i = 0; i < 3  &&  total < q.radius; i++)
+            {
+                int t = x[i] - y[i];
+                total += (int64_t) t * t;
+            }
+
+            if (total >= q.radius) continue;
+            q.sorted.push_back (std::make_pair (total, j));
+            std::push_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+            if (q.sorted.size () > q.k)
+            {
+                std::pop_heap (q.sorted.begin (), q.sorted.end (), Forward ());
+                q.sorted.pop_back ();
+            }
+            if (q.sorted.size () == q.k) q.radius = std::min (q.radius, q.sorted.front ().first);
         }
     }
 };
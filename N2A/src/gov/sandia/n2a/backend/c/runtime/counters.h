@@ -0,0 +1,147 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+
+#ifndef n2a_counters_h
+#define n2a_counters_h
+
+#include <chrono>
+#include <cstdio>
+#include <cstdint>
+#include <string>
+#include <vector>
+
+/**
+    Lightweight performance counters for one population.
+    When $meta.backend.c.counters is set, the generated code declares one of these for each
+    part type, and charges the time spent in its integrate(), update(), finalize() and connect()
+    functions to it. It also counts instances allocated and released, and spikes delivered.
+
+    At the end of the run, write() stores all counters in the file "counters" in the job dir,
+    using the usual N2A text format, so the Java side can read it with Schema.readAll().
+    See gov.sandia.n2a.ui.jobs.NodeCounters for the viewer.
+**/
+class Counters
+{
+public:
+    enum Phase {INTEGRATE, UPDATE, FINALIZE, CONNECT, PHASES};
+
+    std::string name;
+    int64_t     time[PHASES];  ///< Nanoseconds spent in each phase.
+    int64_t     calls[PHASES];
+    int64_t     births;
+    int64_t     deaths;
+    int64_t     spikes;        ///< Number of times a spike was latched on an instance of this part.
+
+    Counters (const std::string & name)
+    :   name (name)
+    {
+        for (int i = 0; i < PHASES; i++)
+        {
+            time [i] = 0;
+            calls[i] = 0;
+        }
+        births = 0;
+        deaths = 0;
+        spikes = 0;
+    }
+
+    /**
+        Wall-clock time when the simulation started. Set by calling start() from the generated init().
+    **/
+    static std::chrono::steady_clock::time_point & started ()
+    {
+        static std::chrono::steady_clock::time_point result = std::chrono::steady_clock::now ();
+        return result;
+    }
+
+    static void start ()
+    {
+        started () = std::chrono::steady_clock::now ();
+    }
+
+    /**
+        @param queueMax Largest number of entries seen in the event queue.
+        @param queueMean Average number of entries in the event queue, sampled once per event.
+        @param events Number of events processed, which is also the number of samples behind queueMean.
+    **/
+    static void write (const char * fileName, const std::vector<Counters *> & counters, int64_t queueMax, double queueMean, int64_t events)
+    {
+        FILE * out = fopen (fileName, "w");
+        if (! out) return;
+
+        static const char * phases[] = {"integrate", "update", "finalize", "connect"};
+        int64_t wall = std::chrono::duration_cast<std::chrono::nanoseconds> (std::chrono::steady_clock::now () - started ()).count ();
+        fprintf (out, "N2A.schema=3\n");
+        fprintf (out, "wall:%lld\n", (long long) wall);
+        fprintf (out, "queue\n");
+        fprintf (out, " max:%lld\n",    (long long) queueMax);
+        fprintf (out, " mean:%g\n",     queueMean);
+        fprintf (out, " events:%lld\n", (long long) events);
+        fprintf (out, "populations\n");
+        int index = 0;
+        for (Counters * c : counters)
+        {
+            fprintf (out, " %d\n", index++);
+            fprintf (out, "  name:%s\n", c->name.c_str ());
+            for (int i = 0; i < PHASES; i++)
+            {
+                if (c->calls[i] == 0) continue;
+                fprintf (out, "  %s\n", phases[i]);
+                fprintf (out, "   time:%lld\n",  (long long) c->time[i]);
+                fprintf (out, "   calls:%lld\n", (long long) c->calls[i]);
+            }
+            if (c->births) fprintf (out, "  births:%lld\n", (long long) c->births);
+            if (c->deaths) fprintf (out, "  deaths:%lld\n", (long long) c->deaths);
+            if (c->spikes) fprintf (out, "  spikes:%lld\n", (long long) c->spikes);
+        }
+        fclose (out);
+    }
+};
+
+/**
+    Charges the lifetime of this object to one phase of a Counters.
+    Declare one at the top of a function to time the whole body.
+    Timers nest, and each one charges only its own exclusive time. For example, a part's update()
+    calls update() on the populations it contains, and that time belongs to the contained populations,
+    not the container.
+**/
+class CounterTimer
+{
+public:
+    int64_t &                             time;
+    std::chrono::steady_clock::time_point start;
+    CounterTimer *                        parent;
+
+    CounterTimer (Counters & counters, Counters::Phase phase)
+    :   time  (counters.time[phase]),
+        start (std::chrono::steady_clock::now ())
+    {
+        counters.calls[phase]++;
+        parent = current ();
+        current () = this;
+    }
+
+    ~CounterTimer ()
+    {
+        int64_t elapsed = std::chrono::duration_cast<std::chrono::nanoseconds> (std::chrono::steady_clock::now () - start).count ();
+        time += elapsed;
+        if (parent) parent->time -= elapsed;
+        current () = parent;
+    }
+
+    static CounterTimer * & current ()
+    {
+#       ifdef n2a_TLS
+        static thread_local CounterTimer * result = 0;
+#       else
+        static CounterTimer * result = 0;
+#       endif
+        return result;
+    }
+};
+
+#endif
@@ -504,6 +504,7 @@ struct SHARED OutputHolder : public Holder
 {
     std::recursive_mutex                   mutexLine;       ///< Synchronize anything that changes content or structure.
     bool                                   raw;             ///< Indicates that column is an exact index.
+    bool                                   events;          ///< Write one line per nonzero value, giving time and column position, rather than a dense row per cycle.
     std::ostream *                         out;
     String                                 columnFileName;
     std::unordered_map<String,int>         columnMap;
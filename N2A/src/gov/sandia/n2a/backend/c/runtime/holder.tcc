@@ -2944,6 +2944,7 @@ OutputHolder<T>::OutputHolder (const String & fileName)
     traceReceived   = false;
     t               = 0;
     raw             = false;
+    events          = false;
 
     if (fileName.empty ())
     {
@@ -3009,6 +3010,11 @@ OutputHolder<T>::trace (T now)
             columnValues.push_back (t);
 #           endif
             columnMode.push_back (new std::map<String,String>);
+            if (events)
+            {
+                (*columnMode[0])["events"] = "1";  // Tells the reader to use OutputParser.parseEvents().
+                writeModes ();  // Reader must know the format before it sees the first line.
+            }
         }
         else
         {
@@ -3113,6 +3119,9 @@ OutputHolder<T>::trace (T now, const String & column, T value,                 c
     columnValues[index] = (float) value;
     if (mode  &&  ! columnMode[index]) setMode (index, mode);
 
+    // In event mode, a zero value means nothing happened. Any other value marks an event.
+    if (events  &&  value != 0  &&  ! std::isnan ((float) value)) (*out) << columnValues[0] << "\t" << index << "\n";
+
 #   ifdef n2a_FP
     return valueFP;
 #   else
@@ -3200,7 +3209,7 @@ OutputHolder<T>::writeTrace ()
     // Write headers if new columns have been added
     if (count > columnsPrevious)
     {
-        if (! raw)
+        if (! raw  &&  ! events)  // Event mode gets column names only from the columns file.
         {
             std::vector<String> headers (count);
             for (auto & it : columnMap) headers[it.second] = it.first;
@@ -3232,6 +3241,12 @@ OutputHolder<T>::writeTrace ()
         writeModes ();
     }
 
+    if (events)  // Lines were already written by trace().
+    {
+        traceReceived = false;
+        return;
+    }
+
     // Write values
     float NANf = std::numeric_limits<float>::quiet_NaN ();  // Necessary because "NAN" might be an integer.
     for (int i = 0; i <= last; i++)
@@ -3250,7 +3265,7 @@ template<class T>
 void
 OutputHolder<T>::writeModes ()
 {
-    if (raw) return;  // "raw" shouldn't change, so no need to put in critical section.
+    if (raw  &&  ! events) return;  // "raw" shouldn't change, so no need to put in critical section. In event mode, the file is still needed to carry the "events" flag.
 
     std::lock_guard<std::recursive_mutex> lock (mutexLine);
 
@@ -3259,6 +3274,7 @@ OutputHolder<T>::writeModes ()
     for (auto & it : columnMap)
     {
         int i = it.second;
+        if (raw  &&  i > 0) continue;  // Only the time column has mode information in raw mode.
         mo << i << ":" << it.first << "\n";
         auto mode = columnMode[i];
         if (! mode) continue;
@@ -526,6 +526,17 @@ struct SHARED Simulator
     Event<T> *                                   currentEvent;
     bool                                         after;         ///< When true, and timesteps match, sort spike events after step events. Otherwise sort them before.
     std::vector<Holder *>                        holders;
+    const char *                                 heartbeat;     ///< Name of file to receive periodic progress records. Null (the default) means don't write them. See gov.sandia.n2a.host.Heartbeat for the layout.
+    FILE *                                       heartbeatFile;
+    int64_t                                      heartbeatStarted;
+    int64_t                                      heartbeatNext; ///< Wall time in milliseconds when the next record is due.
+    int64_t                                      heartbeatStride;    ///< Number of events between checks of the clock. Adjusted after each record.
+    int64_t                                      heartbeatCountdown; ///< Events remaining until the next check of the clock.
+    int64_t                                      heartbeatChecks;    ///< Checks of the clock since the last record.
+    bool                                         countQueue;    ///< When true, run() samples the depth of queueEvent before each event. Used by counters.h
+    int64_t                                      queueMax;
+    double                                       queueSum;
+    int64_t                                      queueSamples;
 
     // Singleton
 #   ifdef n2a_TLS
@@ -541,6 +552,7 @@ struct SHARED Simulator
     void init (WrapperBase<T> * wrapper); ///< init phase and event queue set up
     void run (T until = (T) INFINITY);    ///< Run until given time. This function can be called multiple times to step through simulation. Default value runs until queue is empty.
     void updatePopulations ();
+    void writeHeartbeat (int state);      ///< Subroutine of run(). Records current progress. state is 0 while running and 1 when done.
 
     void enqueue      (Part<T> * part, T dt); ///< Places part on event with period dt. If the event already exists, then the actual time till the part next executes may be less than dt, but thereafter will be exactly dt. Caller is responsible to call dequeue() or enterSimulation().
     void linger       (T dt);                 ///< Does bookkeeping for lazy removal from period dt. When enough parts have been dequeued, does a pass to flush them.
@@ -14,6 +14,9 @@ the U.S. Government retains certain rights in this software.
 #include "matrix.h"
 
 #include <climits>
+#include <chrono>
+#include <cstdio>
+#include <cstring>
 
 #ifdef _WIN32
 #  define WIN32_LEAN_AND_MEAN
@@ -1098,20 +1101,17 @@ ConnectPopulationNN<T>::reset (bool newOnly)
 {
     assert (this->NN);
     this->newOnly = newOnly;
-    std::vector<typename KDTree<T>::Entry *> result;
-    this->NN->find (*this->xyz, result);
-    this->count = result.size ();
+    typename KDTree<T>::Query & q = this->NN->scratch;  // Reused across calls, so no allocation once it reaches working size.
+    int count = this->NN->find (*this->xyz, q);
     this->filtered.clear ();
-    this->filtered.reserve (this->count);
-    if (newOnly)
+    this->filtered.reserve (count);
+    for (int j = 0; j < count; j++)
     {
-        for (auto e : result) if (e->part->getNewborn ()) this->filtered.push_back (e->part);
-        this->count = this->filtered.size ();
-    }
-    else
-    {
-        for (auto e : result)                             this->filtered.push_back (e->part);
+        Part<T> * ep = this->NN->points[q.sorted[j].second]->part;
+        if (newOnly  &&  ! ep->getNewborn ()) continue;
+        this->filtered.push_back (ep);
     }
+    this->count = this->filtered.size ();
     this->i = 0;
     this->stop = this->count;
 }
@@ -1416,10 +1416,19 @@ template<class T> SHARED Simulator<T> Simulator<T>::instance;
 template<class T>
 Simulator<T>::Simulator ()
 {
-    integrator   = 0;
-    stop         = false;
-    currentEvent = 0;
-    after        = false;
+    integrator    = 0;
+    stop          = false;
+    currentEvent  = 0;
+    after         = false;
+    heartbeat          = 0;
+    heartbeatFile      = 0;
+    heartbeatStride    = 1;
+    heartbeatCountdown = 1;
+    heartbeatChecks    = 0;
+    countQueue         = false;
+    queueMax      = 0;
+    queueSum      = 0;
+    queueSamples  = 0;
 }
 
 template<class T>
@@ -1455,6 +1464,12 @@ Simulator<T>::clear ()
     for (auto it : holders) delete it;
     holders.clear ();
 
+    if (heartbeatFile) fclose (heartbeatFile);
+    heartbeatFile      = 0;
+    heartbeatStride    = 1;
+    heartbeatCountdown = 1;
+    heartbeatChecks    = 0;
+
     stop  = false;
     after = false;
 }
@@ -1487,8 +1502,16 @@ Simulator<T>::run (T until)
     {
         currentEvent = queueEvent.top ();
         if (currentEvent->t >= until) return;  // Event remains in queue, so a subsequent call to run() will resume seamlessly.
+        if (countQueue)
+        {
+            int64_t depth = queueEvent.size ();
+            if (depth > queueMax) queueMax = depth;
+            queueSum += depth;
+            queueSamples++;
+        }
         queueEvent.pop ();
         currentEvent->run ();
+        if (heartbeat  &&  --heartbeatCountdown <= 0) writeHeartbeat (0);  // Reading the clock on every event is measurable in a fast simulation, so only check every heartbeatStride events.
 
 #       ifdef _WIN32
         // Since time() is in seconds, simply checking for a difference is sufficient
@@ -1501,6 +1524,71 @@ Simulator<T>::run (T until)
         }
 #       endif
     }
+    if (heartbeat  &&  queueEvent.empty ()) writeHeartbeat (1);
+}
+
+template<class T>
+void
+Simulator<T>::writeHeartbeat (int state)
+{
+    int64_t now = std::chrono::duration_cast<std::chrono::milliseconds> (std::chrono::system_clock::now ().time_since_epoch ()).count ();
+    if (! heartbeatFile)
+    {
+        heartbeatFile = fopen (heartbeat, "wb");
+        if (! heartbeatFile)
+        {
+            heartbeat = 0;  // Don't keep trying.
+            return;
+        }
+        heartbeatStarted = now;
+        heartbeatNext    = now;
+    }
+    if (state == 0)
+    {
+        heartbeatCountdown = heartbeatStride;
+        heartbeatChecks++;
+        if (now < heartbeatNext) return;
+
+        // Choose a stride that reads the clock about every 10ms, based on the event rate since the last record.
+        int64_t elapsed = now - heartbeatNext + 1000;
+        if (elapsed > 0) heartbeatStride = std::max ((int64_t) 1, heartbeatChecks * heartbeatStride * 10 / elapsed);
+        heartbeatCountdown = heartbeatStride;
+        heartbeatChecks    = 0;
+    }
+    heartbeatNext = now + 1000;
+
+    // Scheduled instances. Lingering entries are parts that have left the queue but not yet been flushed out.
+    int64_t instances = 0;
+    for (auto event : periods)
+    {
+        for (auto visitor : event->visitors) instances += visitor->queue.size ();
+        instances -= event->countLinger;
+    }
+
+    double t = 0;
+    if (currentEvent)
+    {
+#       ifdef n2a_FP
+        t = (double) currentEvent->t * pow (2.0, Event<T>::exponent);  // Same conversion as $t column in OutputHolder.
+#       else
+        t = currentEvent->t;
+#       endif
+    }
+
+    // Native byte order. The reader uses the version field to detect it.
+    char    buffer[48];
+    int32_t version = 1;
+    int64_t events  = queueEvent.size ();
+    memcpy (buffer,      &version,          4);
+    memcpy (buffer + 4,  &state,            4);
+    memcpy (buffer + 8,  &t,                8);
+    memcpy (buffer + 16, &now,              8);
+    memcpy (buffer + 24, &heartbeatStarted, 8);
+    memcpy (buffer + 32, &instances,        8);
+    memcpy (buffer + 40, &events,           8);
+    fseek  (heartbeatFile, 0, SEEK_SET);
+    fwrite (buffer, 1, sizeof (buffer), heartbeatFile);
+    fflush (heartbeatFile);
 }
 
 template<class T>
@@ -0,0 +1,314 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.backend.internal;
+
+import gov.sandia.n2a.db.AppData;
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.eqset.EquationSet;
+import gov.sandia.n2a.host.Host;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+    Keeps fully-prepared models on disk, so that running an unchanged model again skips parsing
+    and digestion entirely. An entry is the EquationSet exactly as it stands after prepareToRun(),
+    including all Operator trees, variable attributes and InternalBackendData, written with
+    Java object serialization and compressed. Metadata trees (MNode) are not serializable, so
+    EquationSet and Variable write them as text (see EquationSet.writeNode()).
+
+    The key is a hash of the app version and the collated model text with $meta.seed removed
+    (see InternalBackend.getDigested() for why seed is excluded). Any change to the model
+    produces a different key. The classes in the stored graph keep their default serialVersionUID,
+    so a change to any of them makes the stored object stream unreadable. In that case load()
+    discards the entry and the caller digests as usual.
+
+    Loading only accepts classes from N2A itself, the JDK collections and the units library
+    (see filter). An entry that names any other class is rejected before that class is instantiated.
+
+    The cache is off unless a model sets $meta.backend.internal.cache. It can't see inputs outside
+    the model. If digestion depends on the contents of a file (for example, a matrix whose size is
+    taken from disk), then changing that file won't invalidate the entry.
+
+    Total size is bounded by the "General.digestCache" setting, in megabytes (default 256).
+    A value of 0 disables the cache. When the bound is exceeded, the least-recently used entries
+    are deleted.
+**/
+public class DigestCache
+{
+    /**
+        Both writing and reading an object stream recurse along references, and a digested model is
+        densely cross-linked, so a large model can exceed the default thread stack.
+    **/
+    public static final long stackSize = 512 * 1024 * 1024;
+
+    /**
+        Classes allowed in a stored model. Everything else is rejected.
+    **/
+    public static final ObjectInputFilter filter = ObjectInputFilter.Config.createFilter
+    (
+        "gov.sandia.n2a.**;java.lang.*;java.util.*;java.math.*;javax.measure.**;tech.units.**;si.uom.**;systems.uom.**;!*"
+    );
+
+    protected static boolean warned;  // Only report the first unreadable entry, since a class change generally makes all of them unreadable at once.
+
+    public static Path getDir ()
+    {
+        return Host.getLocalResourceDir ().resolve ("cache").resolve ("digest");
+    }
+
+    public static long getLimit ()
+    {
+        return AppData.state.getOrDefault (256l, "General", "digestCache") * 1024 * 1024;
+    }
+
+    public static boolean enabled (MNode model)
+    {
+        if (getLimit () <= 0) return false;
+        return model.getFlag ("$meta", "backend", "internal", "cache");
+    }
+    /**
+        @return A hex string suitable for a file name, or null if the key could not be computed.
+    **/
+    public static String key (MNode model)
+    {
+        MVolatile temp = new MVolatile ();
+        temp.merge (model);
+        temp.clear ("$meta", "seed");
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance ("SHA-256");
+            md.update (AppData.properties.get ("version").getBytes (StandardCharsets.UTF_8));
+            md.update ((byte) 0);
+            md.update (temp.toString ().getBytes (StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder ();
+            for (byte b : md.digest ()) result.append (String.format ("%02x", b));
+            return result.toString ();
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+        @return The prepared model, or null if there is no usable entry for the given key.
+    **/
+    public static EquationSet load (String key)
+    {
+        if (key == null) return null;
+        Path file = getDir ().resolve (key);
+        if (! Files.isReadable (file)) return null;
+
+        byte[] bytes = null;
+        try (InputStream is = new GZIPInputStream (Files.newInputStream (file), 65536))
+        {
+            bytes = is.readAllBytes ();
+        }
+        catch (IOException e) {}
+        EquationSet result = fromBytes (bytes);
+
+        try
+        {
+            if (result == null) Files.deleteIfExists (file);  // Stale or damaged.
+            else                Files.setLastModifiedTime (file, FileTime.fromMillis (System.currentTimeMillis ()));  // Mark as recently used.
+        }
+        catch (IOException e) {}
+        return result;
+    }
+
+    /**
+        Writes a serialized model (from toBytes()) to the cache. Compression, the file write and
+        eviction all happen on a separate thread, so the caller can go ahead with simulation.
+        That thread is not a daemon, so a short headless run still finishes the write before the VM exits.
+        Any failure simply leaves the model uncached.
+    **/
+    public static void save (String key, byte[] bytes)
+    {
+        if (key == null  ||  bytes == null) return;
+        Thread t = new Thread ("Digest Cache Save")
+        {
+            public void run ()
+            {
+                Path dir  = getDir ();
+                Path temp = null;
+                try
+                {
+                    Files.createDirectories (dir);
+                    temp = Files.createTempFile (dir, key, ".tmp");  // Unique name, so concurrent saves of the same key don't collide.
+                    try (OutputStream os = new GZIPOutputStream (Files.newOutputStream (temp), 65536))
+                    {
+                        os.write (bytes);
+                    }
+                    Files.move (temp, dir.resolve (key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (IOException e)
+                {
+                    try {if (temp != null) Files.deleteIfExists (temp);}
+                    catch (IOException f) {}
+                    return;
+                }
+                evict ();
+            }
+        };
+        t.start ();
+    }
+
+    /**
+        Serializes the given model. This must happen before the model is used for simulation,
+        since the simulator may attach run-time objects to it that can't be serialized.
+        @return The object stream, or null if the model could not be serialized.
+    **/
+    public static byte[] toBytes (EquationSet e)
+    {
+        byte[][] result = new byte[1][];
+        runWithStack ("Digest Cache Write", new Runnable ()
+        {
+            public void run ()
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream (65536);
+                try (ObjectOutputStream oos = new ObjectOutputStream (baos))
+                {
+                    oos.writeObject (e);
+                }
+                catch (IOException x)
+                {
+                    warn ("Digest cache can't store model", x);
+                    return;
+                }
+                result[0] = baos.toByteArray ();
+            }
+        });
+        return result[0];
+    }
+
+    /**
+        Reconstructs a model from the output of toBytes(). Each call produces a new, independent copy.
+        @return The model, or null if bytes is null or could not be read.
+    **/
+    public static EquationSet fromBytes (byte[] bytes)
+    {
+        if (bytes == null) return null;
+        EquationSet[] result = new EquationSet[1];
+        runWithStack ("Digest Cache Read", new Runnable ()
+        {
+            public void run ()
+            {
+                try (ObjectInputStream ois = new ObjectInputStream (new ByteArrayInputStream (bytes)))
+                {
+                    ois.setObjectInputFilter (filter);
+                    result[0] = (EquationSet) ois.readObject ();
+                }
+                catch (IOException | ClassNotFoundException e)  // InvalidClassException, from a class change or the filter, is an IOException.
+                {
+                    warn ("Digest cache entry is not usable", e);
+                }
+            }
+        });
+        return result[0];
+    }
+
+    protected static void warn (String message, Exception e)
+    {
+        synchronized (DigestCache.class)
+        {
+            if (warned) return;
+            warned = true;
+        }
+        System.err.println (message + ": " + e);
+    }
+
+    /**
+        Runs the given code on a separate thread with a large stack, and waits for it to finish.
+        If the wait is interrupted, it still waits, then restores the interrupt status.
+    **/
+    protected static void runWithStack (String name, Runnable r)
+    {
+        Thread t = new Thread (null, r, name, stackSize);
+        t.start ();
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                t.join ();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread ().interrupt ();
+    }
+
+    /**
+        Deletes least-recently used entries until the cache fits within its size limit.
+    **/
+    public static synchronized void evict ()
+    {
+        long limit = getLimit ();
+        List<Path>     files = new ArrayList<Path> ();
+        List<FileTime> times = new ArrayList<FileTime> ();
+        long total = 0;
+        try (Stream<Path> stream = Files.list (getDir ()))
+        {
+            for (Path p : (Iterable<Path>) stream::iterator)
+            {
+                FileTime time = Files.getLastModifiedTime (p);
+                if (p.getFileName ().toString ().endsWith (".tmp"))  // Save in progress, or left behind when the VM exited during a save.
+                {
+                    if (System.currentTimeMillis () - time.toMillis () > 3600000) Files.deleteIfExists (p);
+                    continue;
+                }
+                files.add (p);
+                times.add (time);
+                total += Files.size (p);
+            }
+        }
+        catch (Exception e)
+        {
+            return;
+        }
+        if (total <= limit) return;
+
+        Integer[] order = new Integer[files.size ()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort (order, (a, b) -> times.get (a).compareTo (times.get (b)));  // oldest first
+        for (int i : order)
+        {
+            if (total <= limit) break;
+            Path p = files.get (i);
+            try
+            {
+                long size = Files.size (p);
+                Files.delete (p);
+                total -= size;
+            }
+            catch (Exception e) {}
+        }
+    }
+}
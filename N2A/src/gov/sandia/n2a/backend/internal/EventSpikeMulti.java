@@ -19,11 +19,23 @@ public class EventSpikeMulti extends EventSpike
     public void run (Simulator simulator)
     {
         setFlag ();
-        for (Instance i : targets) i.integrate (simulator);
-        for (Instance i : targets) i.update (simulator);
+        if (simulator.profiler != null  &&  ! targets.isEmpty ()) simulator.profiler.spikes (targets.get (0), targets.size ());
+        Profiler profiler = simulator.profiling ();
+        if (profiler == null)
+        {
+            for (Instance i : targets) i.integrate (simulator);
+            for (Instance i : targets) i.update (simulator);
+        }
+        else
+        {
+            for (Instance i : targets) profiler.integrate (i, simulator);
+            for (Instance i : targets) profiler.update    (i, simulator);
+        }
         for (Instance i : targets)
         {
-            boolean live = i.finish (simulator);
+            boolean live;
+            if (profiler == null) live = i.finish (simulator);
+            else                  live = profiler.finish (i, simulator);
             InternalBackendData bed = (InternalBackendData) i.equations.backendData;
             for (Variable v : bed.eventReferences) ((Instance) i.valuesObject[v.reference.index]).finishEvent (v.reference.variable);
             if (! live) i.dequeue ();
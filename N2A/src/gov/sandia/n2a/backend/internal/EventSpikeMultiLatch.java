@@ -11,6 +11,7 @@ public class EventSpikeMultiLatch extends EventSpikeMulti
     public void run (Simulator simulator)
     {
         setFlag ();
+        if (simulator.profiler != null  &&  ! targets.isEmpty ()) simulator.profiler.spikes (targets.get (0), targets.size ());
         // Note absence of normal cycle processing.
     }
 }
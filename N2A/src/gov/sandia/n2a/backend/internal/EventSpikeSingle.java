@@ -16,9 +16,21 @@ public class EventSpikeSingle extends EventSpike
     public void run (Simulator simulator)
     {
         setFlag ();
-        target.integrate (simulator);
-        target.update (simulator);
-        boolean live = target.finish (simulator);
+        if (simulator.profiler != null) simulator.profiler.spikes (target, 1);
+        Profiler profiler = simulator.profiling ();
+        boolean live;
+        if (profiler == null)
+        {
+            target.integrate (simulator);
+            target.update (simulator);
+            live = target.finish (simulator);
+        }
+        else
+        {
+            profiler.integrate (target, simulator);
+            profiler.update    (target, simulator);
+            live = profiler.finish (target, simulator);
+        }
         InternalBackendData bed = (InternalBackendData) target.equations.backendData;
         for (Variable v : bed.eventReferences) ((Instance) target.valuesObject[v.reference.index]).finishEvent (v.reference.variable);
         if (! live) target.dequeue ();
@@ -11,6 +11,7 @@ public class EventSpikeSingleLatch extends EventSpikeSingle
     public void run (Simulator simulator)
     {
         setFlag ();
+        if (simulator.profiler != null) simulator.profiler.spikes (target, 1);
         // Note absence of normal cycle processing.
     }
 }
@@ -10,6 +10,7 @@ public class EventStep extends Event
 {
     public double dt = 1e-4;  // Duration of one simulation step.
     public Part head = new Part ();  // doubly-linked list
+    public long count;  // Number of parts in the list, so the heartbeat need not walk it.
 
     public EventStep (double t, double dt)
     {
@@ -22,24 +23,30 @@ public class EventStep extends Event
 
     public void run (Simulator simulator)
     {
+        Profiler profiler = simulator.profiling ();
         Part i = head.next;
         while (i != head)
         {
-            i.integrate (simulator);
+            if (profiler == null) i.integrate (simulator);
+            else                  profiler.integrate (i, simulator);
             i = i.next;
         }
 
         i = head.next;
         while (i != head)
         {
-            i.update (simulator);
+            if (profiler == null) i.update (simulator);
+            else                  profiler.update (i, simulator);
             i = i.next;
         }
 
         i = head.next;
         while (i != head)
         {
-            if (! i.finish (simulator)) dequeue (i);  // finish() returns false if the instance should be removed from simulation
+            boolean live;
+            if (profiler == null) live = i.finish (simulator);
+            else                  live = profiler.finish (i, simulator);
+            if (! live) dequeue (i);  // finish() returns false if the instance should be removed from simulation
             i = i.next;  // dequeue() does not change i's own pointers, so this is safe
         }
 
@@ -74,11 +81,14 @@ public class EventStep extends Event
         p.previous      = head;
         p.next.previous = p;
         p.previous.next = p;
+        count++;
     }
 
     public void dequeue (Part p)
     {
+        if (p.previous.next != p) return;  // Already removed, for example by a spike event after finish() returned false. Keeps count accurate.
         p.previous.next = p.next;
         p.next.previous = p.previous;
+        count--;
     }
 }
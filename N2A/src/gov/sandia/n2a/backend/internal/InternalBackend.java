@@ -1,5 +1,5 @@
 /*
-Copyright 2013-2023 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Copyright 2013-2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
 Under the terms of Contract DE-NA0003525 with NTESS,
 the U.S. Government retains certain rights in this software.
 */
@@ -7,19 +7,63 @@ the U.S. Government retains certain rights in this software.
 package gov.sandia.n2a.backend.internal;
 
 import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.eqset.DigestProfile;
 import gov.sandia.n2a.eqset.EquationSet;
+import gov.sandia.n2a.host.Heartbeat;
 import gov.sandia.n2a.host.Host;
 import gov.sandia.n2a.plugins.extpoints.Backend;
 import gov.sandia.n2a.ui.jobs.NodeJob;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.ref.SoftReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class InternalBackend extends Backend
 {
+    /**
+        Digested models shared between batch-mode simulations. See getDigested().
+        Holds a small number of the most recently used models, and only by soft reference,
+        so a long study does not accumulate memory.
+    **/
+    @SuppressWarnings("serial")
+    protected static Map<String,DigestEntry> digestCache = new LinkedHashMap<String,DigestEntry> (16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry (Map.Entry<String,DigestEntry> eldest)
+        {
+            return size () > 16;
+        }
+    };
+
+    protected static class DigestEntry
+    {
+        SoftReference<byte[]> digested = new SoftReference<byte[]> (null);  // Serialized form of the prepared model. See DigestCache.toBytes().
+    }
+
+    /**
+        All simulations started by this backend that have not yet ended, including batch-mode
+        simulations still waiting in the pool queue. Keyed by job node.
+    **/
+    protected static Map<MNode,Simulation> simulations = Collections.synchronizedMap (new IdentityHashMap<MNode,Simulation> ());
+
+    /**
+        Runs batch-mode simulations on a fixed set of threads, one per processor.
+        Threads are created on demand and retire when idle, so the pool costs nothing outside of a study.
+    **/
+    protected static ThreadPoolExecutor pool;
+
     @Override
     public String getName ()
     {
@@ -29,73 +73,144 @@ public class InternalBackend extends Backend
     @Override
     public void start (MNode job)
     {
-        Thread simulationThread = new SimulationThread (job);
-        simulationThread.setDaemon (true);
-        simulationThread.start ();
+        Simulation simulation = new Simulation (job);
+        simulations.put (job, simulation);
+        if (job.getFlag ("batch"))
+        {
+            getPool ().execute (simulation);
+        }
+        else
+        {
+            Thread simulationThread = new Thread (simulation, "Internal Simulation");
+            simulationThread.setDaemon (true);
+            simulationThread.start ();
+        }
     }
 
-    public SimulationThread getThread (MNode job)
+    public static synchronized ThreadPoolExecutor getPool ()
     {
-        Thread[] threads = new Thread[Thread.activeCount ()];
-        int count = Thread.enumerate (threads);
-        for (int i = 0; i < count; i++)
+        if (pool != null) return pool;
+        int threads = Host.get ("localhost").getProcessorTotal ();
+        pool = new ThreadPoolExecutor (threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable> (), new ThreadFactory ()
         {
-            Thread t = threads[i];
-            if (t instanceof SimulationThread)
+            public Thread newThread (Runnable r)
             {
-                SimulationThread s = (SimulationThread) t;
-                if (s.job == job) return s;
+                Thread result = new Thread (r, "Internal Simulation");
+                result.setDaemon (true);
+                return result;
             }
-        }
-        return null;
+        });
+        pool.allowCoreThreadTimeOut (true);
+        return pool;
+    }
+
+    /**
+        In batch mode ($meta.backend.internal.batch), many small simulations run as threads in this JVM.
+        OS-level process accounting does not see them, and the system load average reacts too slowly
+        to a burst of study samples. Instead, treat the processors of the host as a fixed pool and admit
+        a new simulation only when a slot is open.
+    **/
+    @Override
+    public boolean canRunNow (Host host, MNode job)
+    {
+        if (! job.getFlag ("batch")) return super.canRunNow (host, job);
+        return simulations.size () < host.getProcessorTotal ();
+    }
+
+    /**
+        Batch-mode admission counts simulations exactly, so there is no need to pause between starts.
+    **/
+    @Override
+    public long startInterval (Host host, MNode job)
+    {
+        if (job.getFlag ("batch")) return 0;
+        return super.startInterval (host, job);
+    }
+
+    public Simulation getSimulation (MNode job)
+    {
+        return simulations.get (job);
     }
 
     @Override
     public boolean isAlive (MNode job)
     {
-        SimulationThread s = getThread (job);
-        return  s != null  &&  s.isAlive ();
+        return simulations.containsKey (job);
     }
 
     @SuppressWarnings("removal")
     @Override
     public void kill (MNode job, boolean force)
     {
-        SimulationThread s = getThread (job);
+        Simulation s = getSimulation (job);
         if (s == null) return;
+        s.cancelled = true;  // In case it hasn't started yet.
         if (s.simulator == null) return;
-        if (force) s.stop ();
-        else       s.simulator.stop = true;
+        if (force  &&  s.thread != null) s.thread.stop ();
+        else                             s.simulator.stop = true;
     }
 
-    public class SimulationThread extends Thread
+    public class Simulation implements Runnable
     {
-        MNode job;
-        Simulator simulator;
+        MNode              job;
+        volatile Simulator simulator;
+        volatile Thread    thread;     // The thread that runs this simulation, once it has started.
+        volatile boolean   cancelled;  // Set by kill().
 
-        public SimulationThread (MNode job)
+        public Simulation (MNode job)
         {
-            super ("Internal Simulation");
             this.job = job;
         }
 
         public void run ()
         {
+            thread = Thread.currentThread ();
             Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);
             try {err.set (new PrintStream (new FileOutputStream (localJobDir.resolve ("err").toFile (), true), false, "UTF-8"));}
             catch (Exception e) {}
 
-            long startTime = 0;
-            long stopTime  = 0;
+            long   startTime = 0;
+            long   stopTime  = 0;
+            String status    = null;  // Contents of the "finished" file. Remains null if the thread is stopped by kill().
             try
             {
+                if (cancelled) throw new AbortRun ();  // Killed while waiting in the pool queue.
                 job.set ("Preparing", "status");
                 job.set (System.currentTimeMillis (), "started");
 
                 MNode model = NodeJob.getModel (job);
-                EquationSet digestedModel = new EquationSet (model);
-                digestModel (digestedModel);
-                prepareToRun (digestedModel);
+                EquationSet digestedModel;
+                if (model.getFlag ("$meta", "backend", "internal", "batch"))
+                {
+                    digestedModel = getDigested (model);
+                }
+                else
+                {
+                    String        cacheKey = DigestCache.enabled (model) ? DigestCache.key (model) : null;
+                    DigestProfile profile  = DigestProfile.create (model, "internal");
+                    long          start    = System.nanoTime ();
+                    digestedModel = DigestCache.load (cacheKey);
+                    if (digestedModel == null)
+                    {
+                        profile.restart ();  // Don't charge the failed cache lookup to parsing.
+                        digestedModel = new EquationSet (model);
+                        profile.setRoot (digestedModel);
+                        profile.lap ("parse");
+                        digestModel (digestedModel, profile);
+                        prepareToRun (digestedModel);
+                        profile.lap ("prepareToRun");
+                        if (cacheKey != null)
+                        {
+                            DigestCache.save (cacheKey, DigestCache.toBytes (digestedModel));
+                            profile.lap ("cacheSave");
+                        }
+                        profile.save (job);
+                    }
+                    else if (profile.isActive ())
+                    {
+                        job.set (System.nanoTime () - start, "digest", "cache");
+                    }
+                }
                 Files.copy (new ByteArrayInputStream (digestedModel.dump (false).getBytes ("UTF-8")), localJobDir.resolve ("model.flat"));
                 //dumpBackendData (digestedModel);
 
@@ -107,6 +222,16 @@ public class InternalBackend extends Backend
                 job.set (seed, "seed");
 
                 simulator = new Simulator (new Wrapper (digestedModel), seed, localJobDir);
+                try
+                {
+                    simulator.heartbeat = new Heartbeat.Writer (localJobDir);
+                    job.set ("1", "heartbeat");
+                }
+                catch (IOException e) {}  // Monitor still gets progress directly from the simulator object.
+                if (model.getFlag ("$meta", "backend", "internal", "profile"))
+                {
+                    simulator.profiler = new Profiler (model.childOrEmpty ("$meta", "backend", "internal", "profile"));
+                }
                 String e = model.get ("$meta", "backend", "all", "event");
                 switch (e)
                 {
@@ -122,50 +247,57 @@ public class InternalBackend extends Backend
                         simulator.sortEvent = -1;  // Spike events come before step events, so that latches can be set before update() is called.
                 }
 
+                if (cancelled) throw new AbortRun ();  // Killed during preparation.
                 job.clear ("status");
                 startTime = System.nanoTime ();
                 simulator.init ();
                 simulator.run ();  // Does not return until simulation is finished.
                 stopTime = System.nanoTime ();
-                if (simulator.stop  &&  ! simulator.fastExit)
-                {
-                    Files.copy (new ByteArrayInputStream ("killed" .getBytes ("UTF-8")), localJobDir.resolve ("finished"));
-                }
-                else
-                {
-                    Files.copy (new ByteArrayInputStream ("success".getBytes ("UTF-8")), localJobDir.resolve ("finished"));
-                }
+                if (simulator.stop  &&  ! simulator.fastExit) status = "killed";
+                else                                          status = "success";
             }
             catch (Exception e)
             {
-                stopTime = System.nanoTime ();
                 if (e instanceof AbortRun)
                 {
                     String message = e.getMessage ();
                     if (message != null) err.get ().println (message);
                 }
                 else e.printStackTrace (err.get ());
-
-                try {Files.copy (new ByteArrayInputStream ("failure".getBytes ("UTF-8")), localJobDir.resolve ("finished"));}
+            }
+            finally
+            {
+                // A forced kill() stops this thread with ThreadDeath, which the catch above does not see.
+                // Everything below must still happen, or the job stays in simulations and holds its batch slot forever.
+                if (stopTime == 0) stopTime = System.nanoTime ();
+                if (status == null)
+                {
+                    status = cancelled ? "killed" : "failure";
+                    if (simulator != null) simulator.closeStreams ();
+                }
+                try {Files.copy (new ByteArrayInputStream (status.getBytes ("UTF-8")), localJobDir.resolve ("finished"));}
                 catch (Exception f) {}
 
-                if (simulator != null) simulator.closeStreams ();
+                long elapsedTime = 0;
+                if (startTime != 0) elapsedTime = stopTime - startTime;
+
+                PrintStream e = err.get ();
+                e.println ("Execution time: " + elapsedTime / 1e9 + " seconds");
+                if (e != System.err) e.close ();
+                // Both the err stream and the simulator object are held in thread-local storage.
+                // A pool thread goes on to run other simulations, so release them explicitly.
+                err.remove ();
+                Simulator.instance.remove ();
+                simulations.remove (job);
+                Host.notifyJob (job.key ());  // Tell monitor right away, rather than waiting for it to poll the "finished" file.
             }
-            long elapsedTime = 0;
-            if (startTime != 0  &&  stopTime != 0) elapsedTime = stopTime - startTime;
-
-            PrintStream e = err.get ();
-            e.println ("Execution time: " + elapsedTime / 1e9 + " seconds");
-            if (e != System.err) e.close ();
-            // Both the err stream and the simulator object are held in thread-local storage.
-            // This thread is now ending, so it should become eligible for garbage collection.
         }
     }
 
     @Override
     public double currentSimTime (MNode job)
     {
-        SimulationThread s = getThread (job);
+        Simulation s = getSimulation (job);
         if (s != null  &&  s.simulator != null  &&  s.simulator.currentEvent != null) return s.simulator.currentEvent.t;
         return 0;
     }
@@ -180,18 +312,38 @@ public class InternalBackend extends Backend
         @return A Simulator object which contains the constructed network.
     **/
     public static Simulator constructStaticNetwork (EquationSet e, Analyzer a) throws Exception
+    {
+        Simulator result = prepareStaticNetwork (e, a);
+        result.init ();
+        return result;
+    }
+
+    /**
+        Same as constructStaticNetwork(), except that the network itself is not yet built.
+        This gives the caller a chance to set Simulator.sink before calling Simulator.init(),
+        so the network can be streamed out rather than held in memory all at once.
+        Note that the model's backendData must remain InternalBackendData until init() completes.
+    **/
+    public static Simulator prepareStaticNetwork (EquationSet e, Analyzer a) throws Exception
     {
         digestModel (e);
         if (a != null) a.analyzeMiddle (e);
         prepareToRun (e);
         long seed = e.metadata.getOrDefault (System.currentTimeMillis (), "seed");
-        Simulator result = new Simulator (new Wrapper (e), seed);
-        result.init ();
-        return result;
+        return new Simulator (new Wrapper (e), seed);
     }
 
     public static void digestModel (EquationSet e) throws Exception
     {
+        digestModel (e, null);
+    }
+
+    /**
+        @param p Collects timing for each pass. May be null.
+    **/
+    public static void digestModel (EquationSet e, DigestProfile p) throws Exception
+    {
+        if (p == null) p = new DigestProfile (null);
         String backend = e.metadata.getOrDefault ("internal", "backend");
 
         if (e.source.containsKey ("pin"))  // crude heuristic that may save some time for regular (non-dataflow) models
@@ -200,42 +352,112 @@ public class InternalBackend extends Backend
             e.fillAutoPins ();
             e.resolvePins ();
             e.purgePins ();
+            p.lap ("pins");
         }
-        e.resolveConnectionBindings ();
-        e.addGlobalConstants ();
-        e.addSpecials ();  // $connect, $index, $init, $n, $t, $t'
+        e.resolveConnectionBindings ();         p.lap ("resolveConnectionBindings");
+        e.addGlobalConstants ();                p.lap ("addGlobalConstants");
+        e.addSpecials ();                       p.lap ("addSpecials");  // $connect, $index, $init, $n, $t, $t'
         e.addAttribute ("global",       false, true,  "$max", "$min", "$k", "$radius");
         e.addAttribute ("global",       false, false, "$n");
         e.addAttribute ("state",        true,  false, "$n");  // Forbid $n from being temporary, even if it meets the criteria.
         e.addAttribute ("preexistent",  true,  false, "$t'", "$t");  // variables that are not stored because Instance.get/set intercepts them
         e.addAttribute ("readOnly",     true,  false, "$t");
         e.addAttribute ("externalRead", false, false, "$type");  // Force $type to be double-buffered. Because this is combined with REPLACE, we need to explicitly zero $type in finish().
-        e.resolveLHS ();
-        e.fillIntegratedVariables ();
-        e.findIntegrated ();
-        e.resolveRHS ();
-        e.flatten (backend);
-        e.findExternal ();
-        e.sortParts ();
-        e.checkUnits ();
-        e.findConstants ();
-        e.determineTraceVariableName ();
-        e.collectSplits ();
-        e.addDrawDependencies ();
-        e.removeUnused ();  // especially get rid of unneeded $variables created by addSpecials()
-        e.findAccountableConnections ();
-        e.findTemporary ();
-        e.determineOrder ();
-        e.findDerivative ();
-        e.findInitOnly ();
-        e.findDeath ();
-        e.determinePoll ();
-        e.purgeInitOnlyTemporary ();
-        e.setAttributesLive ();
-        e.forceTemporaryStorageForSpecials ();
-        e.determineTypes ();
-        e.findConnectionMatrix ();
-        e.determineDuration ();
+        p.lap ("addAttribute");
+        e.resolveLHS ();                        p.lap ("resolveLHS");
+        e.fillIntegratedVariables ();           p.lap ("fillIntegratedVariables");
+        e.findIntegrated ();                    p.lap ("findIntegrated");
+        e.resolveRHS ();                        p.lap ("resolveRHS");
+        e.flatten (backend);                    p.lap ("flatten");
+        e.findExternal ();                      p.lap ("findExternal");
+        e.sortParts ();                         p.lap ("sortParts");
+        e.checkUnits ();                        p.lap ("checkUnits");
+        e.findConstants ();                     p.lap ("findConstants");
+        e.determineTraceVariableName ();        p.lap ("determineTraceVariableName");
+        e.collectSplits ();                     p.lap ("collectSplits");
+        e.addDrawDependencies ();               p.lap ("addDrawDependencies");
+        e.removeUnused ();                      p.lap ("removeUnused");  // especially get rid of unneeded $variables created by addSpecials()
+        e.findAccountableConnections ();        p.lap ("findAccountableConnections");
+        e.findTemporary ();                     p.lap ("findTemporary");
+        e.determineOrder ();                    p.lap ("determineOrder");
+        e.findDerivative ();                    p.lap ("findDerivative");
+        e.findInitOnly ();                      p.lap ("findInitOnly");
+        e.findDeath ();                         p.lap ("findDeath");
+        e.determinePoll ();                     p.lap ("determinePoll");
+        e.purgeInitOnlyTemporary ();            p.lap ("purgeInitOnlyTemporary");
+        e.setAttributesLive ();                 p.lap ("setAttributesLive");
+        e.forceTemporaryStorageForSpecials ();  p.lap ("forceTemporaryStorageForSpecials");
+        e.determineTypes ();                    p.lap ("determineTypes");
+        e.findConnectionMatrix ();              p.lap ("findConnectionMatrix");
+        e.determineDuration ();                 p.lap ("determineDuration");
+    }
+
+    /**
+        Returns a fully prepared model for a batch-mode simulation.
+        Samples in a study frequently differ only in their random seed (for example, replicates of
+        a stochastic model), so parsing and digesting would produce exactly the same result each time.
+        The cache key is the collated model with $meta.seed removed. The seed is applied separately,
+        when the Simulator is constructed.
+
+        The first request digests the model and keeps it in serialized form. Every later request
+        gets its own copy, deserialized from that form. Simulation is free to attach run-time state to
+        its equation set (for example, operators that hold open files or graphics buffers), so concurrent
+        simulations never share one. Deserializing is still much cheaper than parsing and digesting.
+
+        Digestion folds constants throughout the equation set, so a model whose parameter values
+        differ from a previous sample can't reuse that work. It simply gets its own cache entry.
+        When several threads ask for the same model at once, only one of them does the digestion.
+    **/
+    public static EquationSet getDigested (MNode model) throws Exception
+    {
+        MVolatile temp = new MVolatile ();
+        temp.merge (model);
+        temp.clear ("$meta", "seed");
+        String key = temp.toString ();
+
+        DigestEntry entry;
+        synchronized (digestCache)
+        {
+            entry = digestCache.get (key);
+            if (entry == null)
+            {
+                entry = new DigestEntry ();
+                digestCache.put (key, entry);
+            }
+        }
+
+        byte[] bytes;
+        synchronized (entry)
+        {
+            bytes = entry.digested.get ();
+            if (bytes == null)
+            {
+                String cacheKey = DigestCache.enabled (model) ? DigestCache.key (model) : null;
+                EquationSet result = DigestCache.load (cacheKey);
+                boolean loaded = result != null;
+                if (! loaded)
+                {
+                    result = new EquationSet (model);
+                    digestModel (result);
+                    prepareToRun (result);
+                }
+                bytes = DigestCache.toBytes (result);
+                if (bytes != null)
+                {
+                    entry.digested = new SoftReference<byte[]> (bytes);
+                    if (! loaded) DigestCache.save (cacheKey, bytes);
+                }
+                return result;  // Nobody else has seen this copy, so the caller can have it.
+            }
+        }
+        EquationSet result = DigestCache.fromBytes (bytes);
+        if (result != null) return result;
+
+        // Stored form was unreadable, which should not happen within the same VM. Fall back to full digestion.
+        result = new EquationSet (model);
+        digestModel (result);
+        prepareToRun (result);
+        return result;
     }
 
     /**
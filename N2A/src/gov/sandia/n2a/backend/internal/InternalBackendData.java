@@ -29,6 +29,7 @@ import gov.sandia.n2a.language.type.Scalar;
 import gov.sandia.n2a.language.type.Text;
 import gov.sandia.n2a.plugins.extpoints.Backend;
 
+import java.io.Serializable;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.io.PrintStream;
@@ -38,7 +39,7 @@ import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-public class InternalBackendData
+public class InternalBackendData implements Serializable
 {
     public Object backendData;  ///< Other backends may use Internal as a preprocessor, and may need to store additional data not covered here.
 
@@ -175,7 +176,7 @@ public class InternalBackendData
 
     public static final List<String> forbiddenLocalInit = Arrays.asList ("$index", "$live", "$type");
 
-    public class Conversion
+    public class Conversion implements Serializable
     {
         // These two arrays are filled in parallel, such that index i in one matches i in the other.
         public ArrayList<Variable> from = new ArrayList<Variable> ();
@@ -183,7 +184,7 @@ public class InternalBackendData
         public int[] bindings;  // to index = bindings[from index]
     }
 
-    public static class EventTarget
+    public static class EventTarget implements Serializable
     {
         public EquationSet       container;
         public Event             event;             // For evaluating whether the event should be triggered. There may be several equivalent event() calls in the part, so this is just one representative of the group.
@@ -328,7 +329,7 @@ public class InternalBackendData
         }
     }
 
-    public static class EventSource
+    public static class EventSource implements Serializable
     {
         public EquationSet       container;
         public EventTarget       target;
@@ -1393,7 +1394,7 @@ public class InternalBackendData
         return countLocalTempObject++;
     }
 
-    public static class ResolveContainer implements Instance.Resolver
+    public static class ResolveContainer implements Instance.Resolver, Serializable
     {
         public Instance resolve (Instance from)
         {
@@ -1411,7 +1412,7 @@ public class InternalBackendData
         }
     }
 
-    public static class ResolvePart implements Instance.Resolver
+    public static class ResolvePart implements Instance.Resolver, Serializable
     {
         public int i;
 
@@ -7,28 +7,54 @@ the U.S. Government retains certain rights in this software.
 package gov.sandia.n2a.backend.internal;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
     Retrieves items in space near a given query.
     This implementation is adapted from the C++ version in FL, which in turn is based loosely on the paper
     "Algorithms for Fast Vector Quantization" by Sunil Arya and David Mount.
+
+    <p>The tree is stored in flat arrays rather than as linked nodes. Nodes use an implicit layout:
+    the children of node n are 2n+1 (low) and 2n+2 (high). Entries are reordered during construction so that
+    each leaf covers a contiguous range, and their coordinates are copied into a single array in the same order.
+    The C runtime (KDTree.h) uses the same layout and splitting rule, so both backends build the same tree.
+
+    <p>All search state lives in a Query object, which may be reused across calls. A single tree may be searched
+    by several threads at once, as long as each has its own Query.
 **/
 public class KDTree
 {
-    public Node     root;
+    public Entry[]  entries;      // In tree order
+    public double[] coordinates;  // Point of entries[i] is stored at [i*dimensions, (i+1)*dimensions)
+    public int      dimensions;
     public double[] lo;
     public double[] hi;
 
+    // Nodes
+    public int[]    splitDimension;  // -1 indicates a leaf
+    public double[] splitLo;         // Lowest value along the dimension
+    public double[] splitHi;         // Highest value along the dimension
+    public double[] splitMid;        // The cut point along the dimension
+    public int[]    first;           // Index in entries of first point in a leaf
+    public int[]    last;            // One past the last point in a leaf
+
     public int    bucketSize;
     public int    k;
     public double radius;   // Maximum distance between query point and any result point. Initially set to INFINITY by constructor.
     public double epsilon;  // Nodes must have at least this much overlap with the current radius (which is always the lesser of the initial radius and the kth nearest neighbor).
     public int    maxNodes; // Expand no more than this number of nodes. Forces a search to be approximate rather than exhaustive.
 
+    protected Query scratch = new Query ();  // for find(double[])
+
+    protected static ThreadPoolExecutor pool;  // for find(double[][],int). Shared by all trees. Created on first use.
+
     public KDTree ()
     {
         bucketSize = 5;
@@ -39,11 +65,13 @@ public class KDTree
     }
 
     /**
-        @param data Must not be changed by the caller during the lifetime of this KDTree.
+        Builds the tree in one pass over all the data.
+        @param data The list itself is not retained, but its entries are. The point in each entry is copied.
     **/
     public void set (List<Entry> data)
     {
-        int dimensions = data.get (0).point.length;
+        int count  = data.size ();
+        dimensions = data.get (0).point.length;
         lo = new double[dimensions];
         hi = new double[dimensions];
         for (int i = 0; i < dimensions; i++)
@@ -52,127 +80,336 @@ public class KDTree
             hi[i] = Double.NEGATIVE_INFINITY;
         }
 
-        for (Entry e : data)
+        double[] source = new double[count * dimensions];
+        int[]    order  = new int[count];
+        for (int j = 0; j < count; j++)
         {
-            double[] t = e.point;
+            order[j] = j;
+            double[] t = data.get (j).point;
             for (int i = 0; i < dimensions; i++)
             {
-                lo[i] = Math.min (lo[i], t[i]);
-                hi[i] = Math.max (hi[i], t[i]);
+                double v = t[i];
+                source[j * dimensions + i] = v;
+                lo[i] = Math.min (lo[i], v);
+                hi[i] = Math.max (hi[i], v);
+            }
+        }
+
+        int nodes = nodeCount (0, count);
+        splitDimension = new int   [nodes];
+        splitLo        = new double[nodes];
+        splitHi        = new double[nodes];
+        splitMid       = new double[nodes];
+        first          = new int   [nodes];
+        last           = new int   [nodes];
+        construct (0, order, source, 0, count);
+
+        // Store entries and coordinates in tree order, so leaf scans walk memory sequentially.
+        entries     = new Entry[count];
+        coordinates = new double[count * dimensions];
+        for (int j = 0; j < count; j++)
+        {
+            int o = order[j];
+            entries[j] = data.get (o);
+            System.arraycopy (source, o * dimensions, coordinates, j * dimensions, dimensions);
+        }
+    }
+
+    /**
+        @return The size of the node arrays needed to hold a subtree with the given number of points, rooted at node n.
+    **/
+    public int nodeCount (int n, int count)
+    {
+        if (count <= bucketSize) return n + 1;
+        int cut = count / 2;
+        return Math.max (nodeCount (2 * n + 1, cut), nodeCount (2 * n + 2, count - cut));
+    }
+
+    /**
+        Recursively constructs the subtree at node n, which handles entries [from,to) of order.
+    **/
+    public void construct (int n, int[] order, double[] source, int from, int to)
+    {
+        int count = to - from;
+        if (count <= bucketSize)
+        {
+            splitDimension[n] = -1;
+            first[n]          = from;
+            last[n]           = to;
+            return;
+        }
+
+        // TODO: accept the split method as a parameter
+        int d = 0;
+        double longest = 0;
+        for (int i = 0; i < dimensions; i++)
+        {
+            double length = hi[i] - lo[i];
+            if (length > longest)
+            {
+                d = i;
+                longest = length;
             }
         }
+        int cut = from + count / 2;
+        select (order, source, d, from, to, cut);
 
-        root = construct (data);
+        splitDimension[n] = d;
+        splitLo[n]        = lo[d];
+        splitHi[n]        = hi[d];
+        splitMid[n]       = source[order[cut] * dimensions + d];
+
+        hi[d] = splitMid[n];
+        construct (2 * n + 1, order, source, from, cut);
+        hi[d] = splitHi[n];
+
+        lo[d] = splitMid[n];
+        construct (2 * n + 2, order, source, cut, to);
+        lo[d] = splitLo[n];  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
     }
 
-    public List<Entry> find (double[] query)
+    /**
+        Partially orders entries [from,to) along the given dimension, so that the entry at nth is the one that would be there
+        if the range were fully sorted, everything before it is no greater, and everything after it is no less.
+        This is all construct() needs, and is linear rather than n*log(n) in the size of the range.
+    **/
+    public void select (int[] order, double[] source, int dimension, int from, int to, int nth)
+    {
+        int left  = from;
+        int right = to - 1;
+        while (right > left)
+        {
+            double pivot = source[order[(left + right) >>> 1] * dimensions + dimension];
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (source[order[i] * dimensions + dimension] < pivot) i++;
+                while (source[order[j] * dimensions + dimension] > pivot) j--;
+                if (i <= j)
+                {
+                    int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            if      (nth <= j) right = j;
+            else if (nth >= i) left  = i;
+            else               break;  // nth lies between the two partitions, so it already equals the pivot.
+        }
+    }
+
+    /**
+        Convenience form that returns the entries themselves. Uses scratch space that belongs to this tree,
+        so it must not be called by more than one thread at a time.
+    **/
+    public List<Entry> find (double[] point)
+    {
+        int count = find (point, scratch);
+        List<Entry> result = new ArrayList<Entry> (count);
+        for (int i = 0; i < count; i++) result.add (entries[scratch.found[i]]);
+        return result;
+    }
+
+    /**
+        Collects the entries nearest to point.
+        @param q Search state, reused from call to call to avoid allocation.
+        @return The number of results. Their indices into entries are in q.found, in order of increasing distance.
+    **/
+    public int find (double[] point, Query q)
     {
         // Determine distance of query from bounding rectangle for entire tree
-        int dimensions = query.length;
         double distance = 0;
         for (int i = 0; i < dimensions; i++)
         {
-            double d = Math.max (0, lo[i] - query[i]) + Math.max (0, query[i] - hi[i]);
+            double d = Math.max (0, lo[i] - point[i]) + Math.max (0, point[i] - hi[i]);
             distance += d * d;
         }
 
-        // Recursively collect closest points
-        Query q = new Query ();
-        q.k      = k;
-        q.radius = radius * radius;  // this may shrink monotonically once we find enough neighbors
-        q.point  = query;
+        q.point   = point;
+        q.k       = k;
+        q.radius  = radius * radius;  // this may shrink monotonically once we find enough neighbors
+        q.count   = 0;
+        q.pending = 0;
 
         double oneEpsilon = (1 + epsilon) * (1 + epsilon);
-        q.queue.add (new Sortable<Node> (distance, root));
+        q.push (0, distance);
         int visited = 0;
-        while (true)
+        while (q.pending > 0)
         {
-            Sortable<Node> it = q.queue.poll ();
-            if (it == null) break;
-            distance = it.key;
+            distance = q.nodeDistance[0];
+            int n = q.pop ();
             if (distance * oneEpsilon > q.radius) break;
-            it.value.search (distance, q);
+            search (n, distance, q);
             if (++visited >= maxNodes) break;
         }
 
-        // Transfer results to vector. No need to limit number of results, because this has
-        // already been done by Leaf::search().
-        List<Entry> result = new ArrayList<Entry> (q.sorted.size ());
-        for (Sortable<Entry> sit : q.sorted) result.add (sit.value);
-        return result;
+        // No need to limit number of results, because this has already been done by the leaf scan.
+        q.sort ();
+        return q.count;
     }
 
-    public void dump (String pad)
+    /**
+        Runs many independent queries, spread across the given number of threads.
+        The calling thread does one share and the rest go to a shared pool.
+        Each thread has its own Query, so the tree itself is only read.
+        @return For each point, the nearest entries in order of increasing distance.
+    **/
+    public Entry[][] find (double[][] points, int threads)
     {
-        System.out.println (pad + "KDTree: " + bucketSize + " " + k + " " + radius + " " + epsilon);
-        System.out.println (pad + "lo = " + lo);
-        System.out.println (pad + "hi = " + hi);
-        if (root != null)
+        Entry[][] result = new Entry[points.length][];
+        threads = Math.max (1, Math.min (threads, points.length));
+        int chunk = (points.length + threads - 1) / threads;
+        List<Future<?>> workers = new ArrayList<Future<?>> (threads - 1);
+        for (int t = 1; t < threads; t++)
         {
-            System.out.println (pad + "root:");
-            root.dump (pad + "  ");
+            int from = t * chunk;
+            int to   = Math.min (points.length, from + chunk);
+            if (from >= to) break;
+            workers.add (getPool ().submit (new Runnable ()
+            {
+                public void run ()
+                {
+                    find (points, result, from, to);
+                }
+            }));
         }
-    }
+        find (points, result, 0, Math.min (points.length, chunk));
 
-    public Node construct (List<Entry> points)
-    {
-        int count = points.size ();
-        if (count == 0) return null;
-        if (count <= bucketSize)
-        {
-            Leaf result = new Leaf ();
-            result.points = points;
-            return result;
-        }
-        else  // count > bucketSize
+        // Wait for every share, even if interrupted, so the caller never sees missing results. Pass the interrupt on afterward.
+        boolean interrupted = false;
+        Throwable failure = null;
+        for (Future<?> f : workers)
         {
-            // TODO: accept the split method as a parameter
-            int dimensions = lo.length;
-            int d = 0;
-            double longest = 0;
-            for (int i = 0; i < dimensions; i++)
+            while (true)
             {
-                double length = hi[i] - lo[i];
-                if (length > longest)
+                try
+                {
+                    f.get ();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
                 {
-                    d = i;
-                    longest = length;
+                    if (failure == null) failure = e.getCause ();
+                    break;
                 }
             }
-            sort (points, d);
-            int cut = count / 2;
+        }
+        if (interrupted) Thread.currentThread ().interrupt ();
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error)            throw (Error)            failure;
+        return result;
+    }
+
+    public static synchronized ThreadPoolExecutor getPool ()
+    {
+        if (pool != null) return pool;
+        int threads = Math.max (1, Runtime.getRuntime ().availableProcessors () - 1);  // The calling thread does one share.
+        pool = new ThreadPoolExecutor (threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable> (), new ThreadFactory ()
+        {
+            public Thread newThread (Runnable r)
+            {
+                Thread result = new Thread (r, "KDTree Query");
+                result.setDaemon (true);
+                return result;
+            }
+        });
+        pool.allowCoreThreadTimeOut (true);
+        return pool;
+    }
 
-            Branch result = new Branch ();
-            result.dimension = d;
-            result.lo = lo[d];
-            result.hi = hi[d];
-            result.mid = points.get (cut).point[d];
+    public void find (double[][] points, Entry[][] result, int from, int to)
+    {
+        Query q = new Query ();
+        for (int i = from; i < to; i++)
+        {
+            int count = find (points[i], q);
+            Entry[] r = new Entry[count];
+            for (int j = 0; j < count; j++) r[j] = entries[q.found[j]];
+            result[i] = r;
+        }
+    }
 
-            hi[d] = result.mid;
-            result.lowNode = construct (points.subList (0, cut));
-            hi[d] = result.hi;
+    /**
+        Descends from node n toward the leaf containing the query point, queueing the farther child at each branch.
+    **/
+    public void search (int n, double distance, Query q)
+    {
+        while (true)
+        {
+            int d = splitDimension[n];
+            if (d < 0) break;
+
+            double qmid      = q.point[d];
+            double newOffset = qmid - splitMid[n];
+            double oldOffset;
+            int    near;
+            int    far;
+            if (newOffset < 0)  // low node is closer
+            {
+                near      = 2 * n + 1;
+                far       = near + 1;
+                oldOffset = Math.max (splitLo[n] - qmid, 0.0);
+            }
+            else  // newOffset >= 0, so high node is closer
+            {
+                far       = 2 * n + 1;
+                near      = far + 1;
+                oldOffset = Math.max (qmid - splitHi[n], 0.0);
+            }
+            // We don't do any special testing on nearer node, because it has already been
+            // tested as part of the containing node.
+            q.push (far, distance + newOffset * newOffset - oldOffset * oldOffset);
+            n = near;
+        }
 
-            lo[d] = result.mid;
-            result.highNode = construct (points.subList (cut, count));
-            lo[d] = result.lo;  // it is important to restore lo[d] so that when recursion unwinds the vector is still correct
+        // Leaf
+        int end = last[n];
+        for (int j = first[n]; j < end; j++)
+        {
+            // Measure distance using early-out method. Might save operations in
+            // high-dimensional spaces.
+            int    c     = j * dimensions;
+            double total = 0;
+            for (int i = 0; i < dimensions  &&  total <= q.radius; i++)
+            {
+                double t = coordinates[c + i] - q.point[i];
+                total += t * t;
+            }
 
-            return result;
+            if (total > q.radius) continue;
+            q.add (j, total);
         }
     }
 
-    public void sort (List<Entry> points, int dimension)
+    public void dump (String pad)
     {
-        TreeSet<Sortable<Entry>> sorted = new TreeSet<Sortable<Entry>> ();
-        for (Entry it : points)
+        System.out.println (pad + "KDTree: " + bucketSize + " " + k + " " + radius + " " + epsilon);
+        System.out.println (pad + "lo = " + lo);
+        System.out.println (pad + "hi = " + hi);
+        if (entries != null)
         {
-            sorted.add (new Sortable<Entry> (it.point[dimension], it));
+            System.out.println (pad + "root:");
+            dump (0, pad + "  ");
         }
+    }
 
-        int i = 0;
-        for (Sortable<Entry> sit : sorted)
+    public void dump (int n, String pad)
+    {
+        if (splitDimension[n] < 0)
         {
-            points.set (i++, sit.value);
+            for (int j = first[n]; j < last[n]; j++) System.out.println (pad + entries[j]);
+            return;
         }
+        System.out.println (pad + "Branch: " + splitDimension[n] + " " + splitLo[n] + " " + splitMid[n] + " " + splitHi[n]);
+        System.out.println (pad + "lowNode:");
+        dump (2 * n + 1, pad + "  ");
+        System.out.println (pad + "highNode:");
+        dump (2 * n + 2, pad + "  ");
     }
 
     public static class Entry
@@ -181,136 +418,134 @@ public class KDTree
         public Object   item;
     }
 
-    /// Internal helper class for passing search-related info down the tree.
+    /**
+        Search state. Both collections are binary heaps in plain arrays, which grow as needed and are kept between queries.
+    **/
     public static class Query
     {
         public int      k;
         public double   radius;
         public double[] point;
-        public TreeSet<Sortable<Entry>>      sorted = new TreeSet<Sortable<Entry>> ();
-        public PriorityQueue<Sortable<Node>> queue  = new PriorityQueue<Sortable<Node>> ();
-    }
 
-    public static class Sortable<T> implements Comparable<Sortable<T>>
-    {
-        public double  key;
-        public T      value;
+        // Results, as a max-heap on distance, so the current kth neighbor is on top.
+        // After find() returns, they are instead sorted by increasing distance.
+        public int      count;
+        public int[]    found         = new int   [16];
+        public double[] foundDistance = new double[16];
 
-        public Sortable (double key, T value)
-        {
-            this.key   = key;
-            this.value = value;
-        }
+        // Nodes waiting to be searched, as a min-heap on distance.
+        public int      pending;
+        public int[]    nodes         = new int   [16];
+        public double[] nodeDistance  = new double[16];
 
-        public int compareTo (Sortable<T> that)
+        public void push (int n, double distance)
         {
-            if (key < that.key) return -1;
-            if (key > that.key) return  1;
-            return value.hashCode () - that.hashCode ();
+            if (pending == nodes.length)
+            {
+                nodes        = Arrays.copyOf (nodes,        pending * 2);
+                nodeDistance = Arrays.copyOf (nodeDistance, pending * 2);
+            }
+            int i = pending++;
+            while (i > 0)
+            {
+                int parent = (i - 1) / 2;
+                if (nodeDistance[parent] <= distance) break;
+                nodes       [i] = nodes       [parent];
+                nodeDistance[i] = nodeDistance[parent];
+                i = parent;
+            }
+            nodes       [i] = n;
+            nodeDistance[i] = distance;
         }
 
-        @SuppressWarnings("unchecked")
-        public boolean equals (Object that)
+        /**
+            Removes the closest node.
+        **/
+        public int pop ()
         {
-            if (this == that) return true;
-            if (that instanceof Sortable<?>) return compareTo ((Sortable<T>) that) == 0;
-            return false;
+            int result = nodes[0];
+            pending--;
+            int    n        = nodes       [pending];
+            double distance = nodeDistance[pending];
+            int i = 0;
+            while (true)
+            {
+                int child = 2 * i + 1;
+                if (child >= pending) break;
+                if (child + 1 < pending  &&  nodeDistance[child + 1] < nodeDistance[child]) child++;
+                if (nodeDistance[child] >= distance) break;
+                nodes       [i] = nodes       [child];
+                nodeDistance[i] = nodeDistance[child];
+                i = child;
+            }
+            nodes       [i] = n;
+            nodeDistance[i] = distance;
+            return result;
         }
-    }
 
-    public static interface Node
-    {
-        public void search (double distance, Query q);
-        public void dump (String pad);
-    }
-
-    public static class Branch implements Node
-    {
-        public int    dimension;
-        public double lo;       // Lowest value along the dimension
-        public double hi;       // Highest value along the dimension
-        public double mid;      // The cut point along the dimension
-        public Node   lowNode;  // below mid
-        public Node   highNode; // above mid
-
-        public void search (double distance, Query q)
+        /**
+            Adds a result, keeping at most k, and shrinks radius once k have been found.
+        **/
+        public void add (int entry, double distance)
         {
-            double qmid = q.point[dimension];
-            double newOffset = qmid - mid;
-            if (newOffset < 0)  // lowNode is closer
+            if (count == k)  // Replace the most distant result. Caller guarantees distance <= radius, which is no more than the top.
             {
-                // We don't do any special testing on nearer node, because it has already been
-                // tested as part of the containing node.
-                if (lowNode != null) lowNode.search (distance, q);
-                if (highNode != null)
-                {
-                    double oldOffset = Math.max (lo - qmid, 0.0f);
-                    distance += newOffset * newOffset - oldOffset * oldOffset;
-                    q.queue.add (new Sortable<Node> (distance, highNode));
-                }
+                sift (0, count, entry, distance);
             }
-            else  // newOffset >= 0, so highNode is closer
+            else
             {
-                if (highNode != null) highNode.search (distance, q);
-                if (lowNode != null)
+                if (count == found.length)
                 {
-                    double oldOffset = Math.max (qmid - hi, 0.0f);
-                    distance += newOffset * newOffset - oldOffset * oldOffset;
-                    q.queue.add (new Sortable<Node> (distance, lowNode));
+                    found         = Arrays.copyOf (found,         count * 2);
+                    foundDistance = Arrays.copyOf (foundDistance, count * 2);
                 }
+                int i = count++;
+                while (i > 0)
+                {
+                    int parent = (i - 1) / 2;
+                    if (foundDistance[parent] >= distance) break;
+                    found        [i] = found        [parent];
+                    foundDistance[i] = foundDistance[parent];
+                    i = parent;
+                }
+                found        [i] = entry;
+                foundDistance[i] = distance;
             }
+            if (count == k) radius = Math.min (radius, foundDistance[0]);
         }
 
-        public void dump (String pad)
+        /**
+            Places the given result at position i of the max-heap of the given size, moving larger children up.
+        **/
+        public void sift (int i, int size, int entry, double distance)
         {
-            System.out.println (pad + "Branch: " + dimension + " " + lo + " " + mid + " " + hi);
-            if (lowNode != null)
+            while (true)
             {
-                System.out.println (pad + "lowNode:");
-                lowNode.dump (pad + "  ");
-            }
-            if (highNode != null)
-            {
-                System.out.println (pad + "highNode:");
-                highNode.dump (pad + "  ");
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size  &&  foundDistance[child + 1] > foundDistance[child]) child++;
+                if (foundDistance[child] <= distance) break;
+                found        [i] = found        [child];
+                foundDistance[i] = foundDistance[child];
+                i = child;
             }
+            found        [i] = entry;
+            foundDistance[i] = distance;
         }
-    }
-
-    public static class Leaf implements Node
-    {
-        public List<Entry> points;
 
-        public void search (double distance, Query q)
+        /**
+            Converts the results from a heap into increasing order, in place.
+        **/
+        public void sort ()
         {
-            int dimensions = points.get (0).point.length;
-            for (Entry p : points)
+            for (int size = count - 1; size > 0; size--)
             {
-                // Measure distance using early-out method. Might save operations in
-                // high-dimensional spaces.
-                double total = 0;
-                for (int i = 0; i < dimensions  &&  total <= q.radius; i++)
-                {
-                    double t = p.point[i] - q.point[i];
-                    total += t * t;
-                }
-
-                if (total > q.radius) continue;
-                q.sorted.add (new Sortable<Entry> (total, p));
-                if (q.sorted.size () > q.k)
-                {
-                    // Remove the last (most distant) entry.
-                    Iterator<Sortable<Entry>> it = q.sorted.descendingIterator ();
-                    it.next ();
-                    it.remove ();
-                }
-                if (q.sorted.size () == q.k) q.radius = Math.min (q.radius, q.sorted.descendingIterator ().next ().key);
+                int    e = found        [size];
+                double d = foundDistance[size];
+                found        [size] = found        [0];
+                foundDistance[size] = foundDistance[0];
+                sift (0, size, e, d);
             }
         }
-
-        public void dump (String pad)
-        {
-            for (int i = 0; i < points.size (); i++) System.out.println (pad + points.get (i));
-        }
     }
 }
@@ -85,6 +85,9 @@ public class Part extends Instance
             return;  // The bookkeeping below is no longer relevant.
         }
 
+        Simulator simulator = Simulator.instance.get ();
+        if (simulator != null  &&  simulator.profiler != null) simulator.profiler.entry (equations).deaths++;
+
         // set $live to false, if it is stored in this part
         if (bed.liveStorage == InternalBackendData.LIVE_STORED)
         {
@@ -142,6 +145,7 @@ public class Part extends Instance
         InstanceTemporaries temp = new InstanceInit (this, simulator);
         InternalBackendData bed = temp.bed;
         ((Population) container.valuesObject[bed.populationIndex]).insert (this);  // update $n and assign $index
+        if (simulator.profiler != null) simulator.profiler.entry (equations).births++;
 
         // update accountable endpoints
         // Note: these do not require resolve(). Instead, they access their target directly through the endpoints array.
@@ -236,19 +240,26 @@ public class Part extends Instance
             }
         }
 
+        Profiler profiler = simulator.profiling ();
         for (int i = 0; i < populations; i++)
         {
             Population p = (Population) valuesObject[i];
-            if (p != null) p.integrate (simulator, dt);  // Null check is needed to skip over inactive populations.
+            if (p == null) continue;  // Skip over inactive populations.
+            if (profiler == null) p.integrate (simulator, dt);
+            else                  profiler.integrate (p, simulator, dt);
         }
     }
 
     public void update (Simulator simulator)
     {
         InstanceTemporaries temp = new InstanceTemporaries (this, simulator);
+        Profiler profiler = simulator.profiling ();
+        Profiler.Entry profile = profiler != null  &&  profiler.variables ? profiler.entry (equations) : null;
         for (Variable v : temp.bed.localUpdate)
         {
+            long start = profile == null ? 0 : System.nanoTime ();
             Type result = v.eval (temp);
+            if (profile != null) profile.variable (v, System.nanoTime () - start, profiler.weight);
             if (v.reference.variable.writeIndex < 0) continue;  // this is a "dummy" variable, so calling eval() was all we needed to do
             if (result != null)
             {
@@ -275,7 +286,9 @@ public class Part extends Instance
         for (int i = 0; i < populations; i++)
         {
             Population p = (Population) valuesObject[i];
-            if (p != null) p.update (simulator);
+            if (p == null) continue;
+            if (profiler == null) p.update (simulator);
+            else                  profiler.update (p, simulator);
         }
     }
 
@@ -284,10 +297,13 @@ public class Part extends Instance
         InternalBackendData bed = (InternalBackendData) equations.backendData;
 
         int populations = equations.parts.size ();
+        Profiler profiler = simulator.profiling ();
         for (int i = 0; i < populations; i++)
         {
             Population p = (Population) valuesObject[i];
-            if (p != null) p.finish (simulator);
+            if (p == null) continue;
+            if (profiler == null) p.finish (simulator);
+            else                  profiler.finish (p, simulator);
         }
 
         if (bed.liveStorage == InternalBackendData.LIVE_STORED)
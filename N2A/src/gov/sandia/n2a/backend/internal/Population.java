@@ -125,9 +125,13 @@ public class Population extends Instance
     public void update (Simulator simulator)
     {
         InstanceTemporaries temp = new InstanceTemporaries (this, simulator);
+        Profiler profiler = simulator.profiling ();
+        Profiler.Entry profile = profiler != null  &&  profiler.variables ? profiler.entry (equations) : null;
         for (Variable v : temp.bed.globalUpdate)
         {
+            long start = profile == null ? 0 : System.nanoTime ();
             Type result = v.eval (temp);
+            if (profile != null) profile.variable (v, System.nanoTime () - start, profiler.weight);
             if (v.reference.variable.writeIndex < 0) continue;  // this is a "dummy" variable, so calling eval() was all we needed to do
             if (result != null)
             {
@@ -264,6 +268,7 @@ public class Population extends Instance
         public int                 k;
         public double              radius;
         public KDTree              NN;
+        public KDTree.Query        query;
         public List<KDTree.Entry>  entries;
         public Variable            project;
         public double[]            xyz;  // query value, shared across all iterators
@@ -390,8 +395,15 @@ public class Population extends Instance
                 entries.add (e);
             }
             
-            if (entries.isEmpty ()) NN = null;  // This line is necessary because a population could drop to zero without ending simulation.
-            else                    NN.set (entries);
+            if (entries.isEmpty ())  // This line is necessary because a population could drop to zero without ending simulation.
+            {
+                NN = null;
+            }
+            else
+            {
+                NN.set (entries);
+                query = new KDTree.Query ();
+            }
         }
 
         @SuppressWarnings("unchecked")
@@ -444,23 +456,16 @@ public class Population extends Instance
             this.newOnly = newOnly;
             if (NN != null)
             {
-                List<KDTree.Entry> result = NN.find (xyz);
-                count = result.size ();
-                filtered = new ArrayList<Part> (count);
-                if (newOnly)
-                {
-                    for (KDTree.Entry e : result)
-                    {
-                        Part ep = (Part) e.item;
-                        if (ep.valuesFloat[pbed.newborn] == 0) continue;
-                        filtered.add (ep);
-                    }
-                    count = filtered.size ();
-                }
-                else
+                count = NN.find (xyz, query);
+                if (filtered == null) filtered = new ArrayList<Part> (count);
+                else                  filtered.clear ();
+                for (int j = 0; j < count; j++)
                 {
-                    for (KDTree.Entry e : result) filtered.add ((Part) e.item);
+                    Part ep = (Part) NN.entries[query.found[j]].item;
+                    if (newOnly  &&  ep.valuesFloat[pbed.newborn] == 0) continue;
+                    filtered.add (ep);
                 }
+                count = filtered.size ();
                 i = 0;
             }
             else
@@ -763,6 +768,7 @@ public class Population extends Instance
         if (poll) pollSorted = (HashSet<Part>) valuesObject[bed.pollSorted];
         else      pollSorted = null;
 
+        boolean stream = canStream (simulator);
         Part c = new Part (equations, (Part) container);
         outer.setProbe (c);
         while (outer.next ())
@@ -779,8 +785,18 @@ public class Population extends Instance
             // In that case, testing for duplicates first would make sense.
             if (poll  &&  pollSorted.contains (c)) continue;
 
-            ((Part) container).event.enqueue (c);
-            c.init (simulator);
+            if (stream)
+            {
+                c.event = ((Part) container).event;  // So init can read $t'. c is not queued, so never dequeue() it. canStream() rules out anything that would.
+                c.init (simulator);
+                simulator.sink.emit (c);
+                if (bed.poll >= 0) ((HashSet<Part>) valuesObject[bed.pollSorted]).remove (c);  // Polling only matters to a running simulation, so drop the last reference to c.
+            }
+            else
+            {
+                ((Part) container).event.enqueue (c);
+                c.init (simulator);
+            }
             c = new Part (equations, (Part) container);
             outer.setProbe (c);
         }
@@ -788,6 +804,26 @@ public class Population extends Instance
         checkInactive ();
     }
 
+    /**
+        Determines whether new instances can be handed directly to the simulator's sink and then
+        forgotten, rather than being retained in the simulation. This is only safe if nothing can
+        reach an instance after its own init() completes, so that its state at that point is final
+        and no later construction step needs it. That rules out any part which is the target of a
+        connection or event, which contains sub-parts, or whose instances are otherwise tracked.
+        Polling is allowed, because a static network is only built once. connect() removes
+        streamed instances from the poll set.
+    **/
+    public boolean canStream (Simulator simulator)
+    {
+        if (simulator.sink == null) return false;
+        InternalBackendData bed = (InternalBackendData) equations.backendData;
+        return  bed.instances < 0  // Excludes singletons, connection targets, and any other use of the instances list.
+            &&  ! bed.setDt  // Would move the instance to a different event queue.
+            &&  equations.parts.isEmpty ()
+            &&  bed.eventTargets.isEmpty ()
+            &&  bed.eventSources.isEmpty ();
+    }
+
     public void checkInactive ()
     {
         InternalBackendData bed = (InternalBackendData) equations.backendData;
@@ -908,12 +944,15 @@ public class Population extends Instance
             return;
         }
 
+        boolean stream = canStream (simulator);
         while (n < requestedN)
         {
             Part p = new Part (equations, (Part) container);
-            ((Part) container).event.enqueue (p);
+            if (stream) p.event = ((Part) container).event;  // Same as in connect().
+            else        ((Part) container).event.enqueue (p);
             p.resolve ();
             p.init (simulator);
+            if (stream) simulator.sink.emit (p);
         }
 
         if (n > requestedN)
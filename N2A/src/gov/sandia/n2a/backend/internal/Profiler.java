@@ -0,0 +1,254 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.backend.internal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.db.Schema;
+import gov.sandia.n2a.eqset.EquationSet;
+import gov.sandia.n2a.eqset.Variable;
+import gov.sandia.n2a.language.type.Instance;
+
+/**
+    Attributes simulation cost to each EquationSet, and optionally to each Variable.
+    Enabled by $meta.backend.internal.profile, which may have the following children:
+    <ul>
+    <li>sample -- Integer N. Only time a random 1 out of every N events, and scale the results
+        by N. This reduces overhead on large runs. Default is 1, which times every event.
+    <li>variables -- Also time each Variable.eval() during update.
+    </ul>
+
+    Time in each phase (integrate, update, finalize, connect) is exclusive. For example, the time
+    a part spends in update() excludes the update() of populations it contains, since that time
+    is charged to them. Births, deaths and spikes are counted for every event, regardless of sampling.
+
+    When the simulation ends, the report is written to the file "counters" in the job dir,
+    in the same format as the C backend (see runtime/counters.h), so the same viewer applies.
+**/
+public class Profiler
+{
+    public static final int INTEGRATE = 0;
+    public static final int UPDATE    = 1;
+    public static final int FINALIZE  = 2;
+    public static final int CONNECT   = 3;
+    public static final String[] phases = {"integrate", "update", "finalize", "connect"};
+
+    public boolean active = true;  // Indicates that the current event should be timed. Only changes between events.
+    public boolean variables;
+    public int     sample = 1;
+    public int     weight = 1;     // Multiplier for each recorded timing, so that sampled events stand in for the ones that were skipped. The init cycle is always fully timed.
+
+    protected Map<EquationSet,Entry> entries = new IdentityHashMap<EquationSet,Entry> ();
+    protected Random                 sampler = new Random ();  // Separate from the simulator's RNG, so profiling doesn't change the results of the simulation.
+    protected long                   started = System.nanoTime ();
+    protected long                   queueMax;
+    protected double                 queueSum;
+    protected long                   events;
+
+    // Stack of open timers. Each frame accumulates the time spent in frames above it, so it can subtract that out when it closes.
+    protected Entry[] stackEntry = new Entry[16];
+    protected int[]   stackPhase = new int [16];
+    protected long[]  stackStart = new long[16];
+    protected long[]  stackChild = new long[16];
+    protected int     depth;
+
+    public static class Entry
+    {
+        public EquationSet          equations;
+        public long[]               time  = new long[phases.length];  // nanoseconds
+        public long[]               calls = new long[phases.length];
+        public long                 births;
+        public long                 deaths;
+        public long                 spikes;
+        public Map<Variable,long[]> variables = new IdentityHashMap<Variable,long[]> ();  // {time, calls}
+
+        public void variable (Variable v, long time, int weight)
+        {
+            long[] record = variables.get (v);
+            if (record == null)
+            {
+                record = new long[2];
+                variables.put (v, record);
+            }
+            record[0] += time * weight;
+            record[1] += weight;
+        }
+    }
+
+    public Profiler (MNode config)
+    {
+        sample    = Math.max (1, config.getOrDefault (1, "sample"));
+        variables = config.getFlag ("variables");
+    }
+
+    public Entry entry (EquationSet s)
+    {
+        Entry result = entries.get (s);
+        if (result == null)
+        {
+            result = new Entry ();
+            result.equations = s;
+            entries.put (s, result);
+        }
+        return result;
+    }
+
+    /**
+        Called by the simulator before each event.
+        @param depth Number of entries in the event queue, including the event about to run.
+    **/
+    public void beginEvent (int depth)
+    {
+        events++;
+        queueSum += depth;
+        if (depth > queueMax) queueMax = depth;
+        if (sample > 1)
+        {
+            active = sampler.nextInt (sample) == 0;
+            weight = sample;
+        }
+    }
+
+    /**
+        Opens a timer for the given phase. Must be matched by a call to stop().
+        @param s May be null, in which case the time is not charged to anything. This is
+        the case for the Wrapper, which exists only to hold the top-level population.
+    **/
+    public void start (EquationSet s, int phase)
+    {
+        if (depth == stackEntry.length)
+        {
+            int length = depth * 2;
+            stackEntry = Arrays.copyOf (stackEntry, length);
+            stackPhase = Arrays.copyOf (stackPhase, length);
+            stackStart = Arrays.copyOf (stackStart, length);
+            stackChild = Arrays.copyOf (stackChild, length);
+        }
+        stackEntry[depth] = s == null ? null : entry (s);
+        stackPhase[depth] = phase;
+        stackChild[depth] = 0;
+        stackStart[depth] = System.nanoTime ();
+        depth++;
+    }
+
+    public void stop ()
+    {
+        long elapsed = System.nanoTime () - stackStart[--depth];
+        Entry e = stackEntry[depth];
+        if (e != null)
+        {
+            int phase = stackPhase[depth];
+            e.time [phase] += (elapsed - stackChild[depth]) * weight;
+            e.calls[phase] += weight;
+        }
+        if (depth > 0) stackChild[depth-1] += elapsed;
+    }
+
+    /**
+        Counts spikes delivered to instances of the given part. All instances receiving the same
+        spike event belong to the same part, so a single example suffices.
+    **/
+    public void spikes (Instance target, int count)
+    {
+        entry (target.equations).spikes += count;
+    }
+
+    // Wrappers for timing calls into the simulation.
+
+    public void integrate (Instance i, Simulator simulator)
+    {
+        start (i.equations, INTEGRATE);
+        i.integrate (simulator);
+        stop ();
+    }
+
+    public void integrate (Population p, Simulator simulator, double dt)
+    {
+        start (p.equations, INTEGRATE);
+        p.integrate (simulator, dt);
+        stop ();
+    }
+
+    public void update (Instance i, Simulator simulator)
+    {
+        start (i.equations, UPDATE);
+        i.update (simulator);
+        stop ();
+    }
+
+    public boolean finish (Instance i, Simulator simulator)
+    {
+        start (i.equations, FINALIZE);
+        boolean result = i.finish (simulator);
+        stop ();
+        return result;
+    }
+
+    public void connect (Population p, Simulator simulator)
+    {
+        start (p.equations, CONNECT);
+        p.connect (simulator);
+        stop ();
+    }
+
+    /**
+        Stores results in the given node. When sampling, timings and call counts are estimates of the full run.
+    **/
+    public void save (MNode report)
+    {
+        report.set (System.nanoTime () - started, "wall");
+        if (sample > 1) report.set (sample, "sample");
+        report.set (queueMax, "queue", "max");
+        report.set (events > 0 ? queueSum / events : 0, "queue", "mean");
+        report.set (events, "queue", "events");
+
+        int index = 0;
+        for (Entry e : entries.values ())
+        {
+            MNode p = report.childOrCreate ("populations", index++);
+            p.set (e.equations.container == null ? e.equations.name : e.equations.prefix (), "name");
+            for (int i = 0; i < phases.length; i++)
+            {
+                if (e.calls[i] == 0) continue;
+                p.set (e.time [i], phases[i], "time");
+                p.set (e.calls[i], phases[i], "calls");
+            }
+            if (e.births > 0) p.set (e.births, "births");
+            if (e.deaths > 0) p.set (e.deaths, "deaths");
+            if (e.spikes > 0) p.set (e.spikes, "spikes");
+
+            int v = 0;
+            for (Map.Entry<Variable,long[]> r : e.variables.entrySet ())
+            {
+                MNode n = p.childOrCreate ("variables", v++);
+                n.set (r.getKey ().nameString (), "name");
+                n.set (r.getValue ()[0], "time");
+                n.set (r.getValue ()[1], "calls");
+            }
+        }
+    }
+
+    public void write (Path file)
+    {
+        MNode report = new MVolatile ();
+        save (report);
+        try (BufferedWriter writer = Files.newBufferedWriter (file))
+        {
+            Schema.latest ().writeAll (report, writer);
+        }
+        catch (IOException e) {}
+    }
+}
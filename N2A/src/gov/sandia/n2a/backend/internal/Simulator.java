@@ -25,6 +25,8 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import gov.sandia.n2a.host.Heartbeat;
+
 /**
     The integrator for the Internal simulator.
     Internal is never meant to become a high-performance simulator, so Euler is all we ever expect to support.
@@ -51,11 +53,15 @@ public class Simulator implements Iterable<Part>
     public Path               jobDir;
     public Map<String,Object> holders = new HashMap<String,Object> ();
     public PrintStream        out;
+    public Heartbeat.Writer   heartbeat;  // If non-null, run() periodically records progress here.
+    public Profiler           profiler;   // If non-null, simulation costs are recorded here, and run() writes a report when done.
     // Note: System.in will get bound into an Input.Holder if used at all.
 
     public boolean during    = true; // Indicates that events should set a flag that gets processed during the regular update cycle. If false, then events are processed in their own mini-update.
     public int     sortEvent = -1;   // -1 means other events sort before EventStep when they have the same timestamp. 1 means they sort after.
 
+    public InstanceSink sink;  // If non-null, then init() hands off each instance it constructs, and leaf instances are not retained.
+
     public Event currentEvent;
     public boolean stop;     // Flag to terminate event loop as soon as possible
     public boolean fastExit; // Indicates that stop flag was set by fastExit, so doesn't represent a failure.
@@ -71,6 +77,19 @@ public class Simulator implements Iterable<Part>
         }
     }
 
+    /**
+        Receives the network as it is constructed by init(), for export to some other format.
+        Parts that nothing else can reach (typically the synapses in a large network) are passed
+        to emit() as soon as their own init() completes, and are then dropped rather than being
+        added to the simulation. See Population.canStream() for the exact conditions.
+        All remaining parts are passed to emit() once init() is complete, since other parts may
+        still modify them before then.
+    **/
+    public interface InstanceSink
+    {
+        public void emit (Part p);
+    }
+
     /**
         Special constructor for use only by the Study mechanism.
         This creates unusable object which references the given RNG.
@@ -126,6 +145,11 @@ public class Simulator implements Iterable<Part>
             e.t = e.dt;
             queueEvent.add (e);
         }
+
+        if (sink != null)
+        {
+            for (Part p : this) if (p != wrapper) sink.emit (p);
+        }
     }
 
     public void run ()
@@ -133,15 +157,38 @@ public class Simulator implements Iterable<Part>
         // This is the core simulation loop.
         while (! queueEvent.isEmpty ()  &&  ! stop)
         {
+            if (profiler != null) profiler.beginEvent (queueEvent.size ());
             currentEvent = queueEvent.remove ();
             currentEvent.run (this);
+            if (heartbeat != null  &&  heartbeat.due ()) writeHeartbeat (0);
         }
         // Simulation is done.
+        if (heartbeat != null) writeHeartbeat (1);
+        if (profiler  != null) profiler.write (jobDir.resolve ("counters"));
         closeStreams ();
     }
 
+    /**
+        @return The profiler, if it should record the current event. Otherwise null.
+    **/
+    public Profiler profiling ()
+    {
+        if (profiler != null  &&  profiler.active) return profiler;
+        return null;
+    }
+
+    public void writeHeartbeat (int state)
+    {
+        long instances = 0;
+        for (Event e : queueEvent) if (e instanceof EventStep) instances += ((EventStep) e).count;
+        if (wrapper.previous != null  &&  wrapper.previous.next == wrapper) instances--;  // Don't count the wrapper, if it is still queued.
+        heartbeat.write (state, currentEvent.t, instances, queueEvent.size ());
+    }
+
     public void closeStreams ()
     {
+        if (heartbeat != null) heartbeat.close ();
+
         for (Object h : holders.values ())
         {
             if (h instanceof AutoCloseable)
@@ -161,9 +208,12 @@ public class Simulator implements Iterable<Part>
         // Evaluate connection populations that have requested it
         // To support nested connections, this is structured as an actual queue.
         // Note: The creation of nested connections, or even populations within a connection instance, should not touch the resize queue.
+        Profiler profiler = profiling ();
         while (! queueConnect.isEmpty ())
         {
-            queueConnect.remove ().connect (this);
+            Population p = queueConnect.remove ();
+            if (profiler == null) p.connect (this);
+            else                  profiler.connect (p, this);
         }
 
         // Clear new flag from populations that have requested it
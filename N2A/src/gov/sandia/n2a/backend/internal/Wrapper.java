@@ -30,13 +30,18 @@ public class Wrapper extends Part
 
     public void update (Simulator simulator)
     {
-        ((Population) valuesObject[0]).update (simulator);
+        Population p = (Population) valuesObject[0];
+        Profiler profiler = simulator.profiling ();
+        if (profiler == null) p.update (simulator);
+        else                  profiler.update (p, simulator);
     }
 
     public boolean finish (Simulator simulator)
     {
         Population p = (Population) valuesObject[0];
-        p.finish (simulator);
+        Profiler profiler = simulator.profiling ();
+        if (profiler == null) p.finish (simulator);
+        else                  profiler.finish (p, simulator);
         return p.n > 0;
     }
 }
@@ -11,6 +11,7 @@ import gov.sandia.n2a.db.AppData;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MPart;
 import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.eqset.DigestProfile;
 import gov.sandia.n2a.eqset.Equality;
 import gov.sandia.n2a.eqset.EquationEntry;
 import gov.sandia.n2a.eqset.EquationSet;
@@ -92,9 +93,14 @@ public class JobSTACS extends Thread
             jobDir           = Host.getJobDir (resourceDir, job);  // Unlike localJobDir (which is created by MDir), this may not exist until we explicitly create it.
 
             Files.createDirectories (jobDir);  // digestModel() might write to a remote file (params), so we need to ensure the dir exists first.
+            DigestProfile profile = DigestProfile.create (model, "stacs");
             digestedModel = new EquationSet (model);
+            profile.setRoot (digestedModel);
+            profile.lap ("parse");
             ensureProperties (digestedModel);
-            InternalBackend.digestModel (digestedModel);
+            profile.restart ();
+            InternalBackend.digestModel (digestedModel, profile);
+            profile.save (job);
             if (digestedModel.metadata == null) digestedModel.metadata = new MVolatile ();
 
             String duration = digestedModel.metadata.getOrDefault ("1s", "duration");
@@ -10,6 +10,7 @@ import gov.sandia.n2a.backend.internal.Simulator;
 import gov.sandia.n2a.backend.internal.InstanceTemporaries;
 import gov.sandia.n2a.backend.internal.InternalBackendData;
 import gov.sandia.n2a.backend.internal.InternalBackend;
+import gov.sandia.n2a.backend.internal.Part;
 import gov.sandia.n2a.backend.internal.Population;
 import gov.sandia.n2a.backend.xyce.netlist.Symbol;
 import gov.sandia.n2a.backend.xyce.netlist.XyceRenderer;
@@ -29,11 +30,15 @@ import gov.sandia.n2a.ui.jobs.NodeJob;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 class XyceBackend extends Backend
 {
@@ -70,8 +75,9 @@ class XyceBackend extends Backend
                     Path prnFile = jobDir.resolve ("out");  // "prn" doesn't work, at least on Windows
 
                     EquationSet digestedModel = new EquationSet (model);
-                    Simulator simulator = InternalBackend.constructStaticNetwork (digestedModel, null);
-                    analyze (digestedModel);
+                    Simulator simulator = InternalBackend.prepareStaticNetwork (digestedModel, null);
+                    Map<EquationSet,XyceBackendData> data = new HashMap<EquationSet,XyceBackendData> ();
+                    analyze (digestedModel, data);
 
                     String duration = digestedModel.metadata.getOrDefault ("1.0", "duration");
                     job.set (duration, "duration");
@@ -84,7 +90,7 @@ class XyceBackend extends Backend
 
                     try (BufferedWriter writer = Files.newBufferedWriter (cirFile))
                     {
-                        generateNetlist (job, simulator, writer);
+                        generateNetlist (job, simulator, data, writer);
                     }
 
                     PrintStream ps = Backend.err.get ();
@@ -133,19 +139,24 @@ class XyceBackend extends Backend
         return getSimTimeFromOutput (job, out, 1);
     }
 
-    public void analyze (EquationSet s)
+    public void analyze (EquationSet s, Map<EquationSet,XyceBackendData> data)
     {
-        for (EquationSet p : s.parts) analyze (p);
+        for (EquationSet p : s.parts) analyze (p, data);
         XyceBackendData bed = new XyceBackendData ();
         bed.internal = (InternalBackendData) s.backendData;
-        s.backendData = bed;
+        data.put (s, bed);
         bed.analyze (s);
     }
 
-    public void generateNetlist (MNode job, Simulator simulator, BufferedWriter writer) throws Exception
+    /**
+        Writes the netlist while Internal constructs the network, so that instances which nothing
+        else refers to (typically synapses) are written out and discarded one at a time.
+        @param simulator Must not be initialized yet. This function calls init().
+    **/
+    public void generateNetlist (MNode job, Simulator simulator, Map<EquationSet,XyceBackendData> data, BufferedWriter writer) throws Exception
     {
         Population toplevel = (Population) simulator.wrapper.valuesObject[0];
-        XyceRenderer renderer = new XyceRenderer (simulator);
+        XyceRenderer renderer = new XyceRenderer (simulator, data);
 
         // Header
         writer.append (toplevel.equations.name + "\n");
@@ -165,79 +176,94 @@ class XyceBackend extends Backend
         }
 
         // Equations
-        for (Instance i : simulator)
+        simulator.sink = new Simulator.InstanceSink ()
         {
-            if (i == simulator.wrapper) continue;
+            public void emit (Part i)
+            {
+                try {generateInstance (i, simulator, renderer, writer);}
+                catch (IOException e) {throw new UncheckedIOException (e);}
+            }
+        };
+        try
+        {
+            simulator.init ();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause ();
+        }
 
-            writer.append ("\n");
-            writer.append ("* " + i + "\n");
+        // Trailer
+        writer.append (".end\n");
+    }
 
-            renderer.pi         = i;
-            renderer.exceptions = null;
-            XyceBackendData bed = (XyceBackendData) i.equations.backendData;
+    public void generateInstance (Instance i, Simulator simulator, XyceRenderer renderer, BufferedWriter writer) throws IOException
+    {
+        writer.append ("\n");
+        writer.append ("* " + i + "\n");
 
-            if (bed.deviceSymbol != null)
-            {
-                writer.append (bed.deviceSymbol.getDefinition (renderer));
-            }
+        renderer.pi         = i;
+        renderer.exceptions = null;
+        XyceBackendData bed = renderer.data.get (i.equations);
 
-            InstanceTemporaries temp = new InstanceTemporaries (i, simulator, bed.internal);
-            for (final Variable v : i.equations.variables)
+        if (bed.deviceSymbol != null)
+        {
+            writer.append (bed.deviceSymbol.getDefinition (renderer));
+        }
+
+        InstanceTemporaries temp = new InstanceTemporaries (i, simulator, bed.internal);
+        for (final Variable v : i.equations.variables)
+        {
+            // Compute variable v
+            // TODO: how to switch between multiple conditions that can be true during normal operation? IE: how to make Xyce code conditional?
+            // Perhaps gate each condition (through a transistor?) and sum them at a single node.
+            EquationEntry e = v.select (temp);  // e can be null
+            Symbol def = bed.equationSymbols.get (e);
+            if (def == null) continue;
+            writer.append (def.getDefinition (renderer));
+
+            // Initial condition
+            // TODO: output an ".ic" line for any var with nonzero value (since they all just came from the init cycle)
+
+            // Trace
+            class TraceFinder implements Visitor
             {
-                // Compute variable v
-                // TODO: how to switch between multiple conditions that can be true during normal operation? IE: how to make Xyce code conditional?
-                // Perhaps gate each condition (through a transistor?) and sum them at a single node.
-                EquationEntry e = v.select (temp);  // e can be null
-                Symbol def = bed.equationSymbols.get (e);
-                if (def == null) continue;
-                writer.append (def.getDefinition (renderer));
-
-                // Initial condition
-                // TODO: output an ".ic" line for any var with nonzero value (since they all just came from the init cycle)
-
-                // Trace
-                class TraceFinder implements Visitor
+                List<Operator> traces = new ArrayList<Operator> ();
+                public boolean visit (Operator op)
                 {
-                    List<Operator> traces = new ArrayList<Operator> ();
-                    public boolean visit (Operator op)
+                    if (op instanceof Output)
                     {
-                        if (op instanceof Output)
-                        {
-                            traces.add (((Output) op).operands[1]);
-                            return false;
-                        }
-                        return true;
+                        traces.add (((Output) op).operands[1]);
+                        return false;
                     }
+                    return true;
                 }
-                TraceFinder traceFinder = new TraceFinder ();
-                e.expression.visit (traceFinder);
-                for (Operator trace : traceFinder.traces)
+            }
+            TraceFinder traceFinder = new TraceFinder ();
+            e.expression.visit (traceFinder);
+            for (Operator trace : traceFinder.traces)
+            {
+                writer.append (".print tran {");  // We don't know if contents is .func, expression or a node, so always wrap in braces.
+                if (trace instanceof AccessVariable)
+                {
+                    AccessVariable av = (AccessVariable) trace;
+                    writer.append (renderer.change (av.reference));
+                }
+                else  // trace is an expression
                 {
-                    writer.append (".print tran {");  // We don't know if contents is .func, expression or a node, so always wrap in braces.
-                    if (trace instanceof AccessVariable)
+                    if (e.expression instanceof Output  &&  ((Output) e.expression).operands[1] == trace)  // this trace wraps the entire equation
                     {
-                        AccessVariable av = (AccessVariable) trace;
-                        writer.append (renderer.change (av.reference));
+                        // simply print the LHS variable, similar to the AccessVariable case above
+                        writer.append (renderer.change (v.reference));
                     }
-                    else  // trace is an expression
+                    else
                     {
-                        if (e.expression instanceof Output  &&  ((Output) e.expression).operands[1] == trace)  // this trace wraps the entire equation
-                        {
-                            // simply print the LHS variable, similar to the AccessVariable case above
-                            writer.append (renderer.change (v.reference));
-                        }
-                        else
-                        {
-                            // arbitrary expression
-                            writer.append (renderer.change (trace));
-                        }
+                        // arbitrary expression
+                        writer.append (renderer.change (trace));
                     }
-                    writer.append ("}\n");  // one .print line per variable
                 }
+                writer.append ("}\n");  // one .print line per variable
             }
         }
-
-        // Trailer
-        writer.append (".end\n");
     }
-}
\ No newline at end of file
+}
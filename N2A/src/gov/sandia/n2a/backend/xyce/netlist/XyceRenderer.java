@@ -8,6 +8,7 @@ package gov.sandia.n2a.backend.xyce.netlist;
 
 import gov.sandia.n2a.backend.internal.Simulator;
 import gov.sandia.n2a.backend.xyce.XyceBackendData;
+import gov.sandia.n2a.eqset.EquationSet;
 import gov.sandia.n2a.eqset.VariableReference;
 import gov.sandia.n2a.language.AccessVariable;
 import gov.sandia.n2a.language.Operator;
@@ -19,16 +20,19 @@ import gov.sandia.n2a.language.type.Instance;
 import gov.sandia.n2a.language.type.Scalar;
 
 import java.util.Collection;
+import java.util.Map;
 
 public class XyceRenderer extends Renderer
 {
-    public Simulator                     simulator;
-    public Instance                      pi;
-    public Collection<VariableReference> exceptions;
+    public Simulator                        simulator;
+    public Map<EquationSet,XyceBackendData> data;  // Kept separate from EquationSet.backendData, which Internal needs while the network is being constructed.
+    public Instance                         pi;
+    public Collection<VariableReference>    exceptions;
 
-    public XyceRenderer (Simulator simulator)
+    public XyceRenderer (Simulator simulator, Map<EquationSet,XyceBackendData> data)
     {
         this.simulator = simulator;
+        this.data      = data;
     }
 
     public boolean render (Operator op)
@@ -90,7 +94,7 @@ public class XyceRenderer extends Renderer
         if (r.index >= 0)
         {
             // Evaluate in referenced equation set's context
-            XyceRenderer context = new XyceRenderer (simulator);
+            XyceRenderer context = new XyceRenderer (simulator, data);
             context.pi = (Instance) pi.valuesObject[r.index];
             return context.change (r.variable.reference);   // this should be a self-reference within r.variable
         }
@@ -106,7 +110,7 @@ public class XyceRenderer extends Renderer
         if (r.variable.hasAttribute ("constant")) return r.variable.equations.first ().expression.toString ();
 
         // finally, actual translation of some user-defined symbol!
-        XyceBackendData bed = (XyceBackendData) pi.equations.backendData;
+        XyceBackendData bed = data.get (pi.equations);
         if (bed.deviceSymbol != null)  // A device may have some variable that require special handling
         {
             if (bed.deviceSymbol.ivars.containsKey (r.variable))
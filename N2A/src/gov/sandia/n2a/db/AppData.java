@@ -54,7 +54,7 @@ public class AppData
 
         state   = new MDoc (root.resolve ("state"));
         runs    = new MDir (root.resolve ("jobs"), "job");  // "job" is our internal housekeeping data, in MNode serialization form. "model" is a fully-collated archival copy of the model being simulated. Backend output generally goes into files named "model" with specific suffixes.
-        studies = new MDir (root.resolve ("studies"), "study");  // "study" contains general metadata. A separate MDoc called "model" holds a snapshot of the model being studied.
+        studies = new MDir (root.resolve ("studies"), "study");  // "study" contains general metadata. A separate file called "snapshot" holds the base model shared by all samples.
         Path reposDir = root.resolve ("repos");
         repos   = new MDir (reposDir, "state");
 
@@ -1,5 +1,5 @@
 /*
-Copyright 2016-2024 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Copyright 2016-2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
 Under the terms of Contract DE-NA0003525 with NTESS,
 the U.S. Government retains certain rights in this software.
 */
@@ -33,6 +33,8 @@ import gov.sandia.n2a.ui.settings.SettingsLookAndFeel;
 **/
 public class MDoc extends MPersistent
 {
+    protected MFrozen frozen;  // Compact read-only form of the contents. When non-null, children is null. See freeze().
+
     /**
         Constructs a stand-alone document with blank key.
         In this case, the value contains the full path to the file on disk.
@@ -76,6 +78,7 @@ public class MDoc extends MPersistent
 
         // If this is a new document, then treat it as if it were already loaded.
         // If there is content on disk, it will be blown away.
+        if (frozen != null) thaw ();  // Could happen if a node from before freeze() is modified. That node is no longer part of the document, but at least the rest of the document survives.
         if (children == null) children = new TreeMap<String,MNode> (comparator);
         needsWrite = true;
         if (parent instanceof MDocGroup)
@@ -106,20 +109,60 @@ public class MDoc extends MPersistent
         else parent.clear (name);
     }
 
+    /**
+        Replaces the contents in memory with a compact read-only copy (MFrozen). Suitable for
+        a document that is unlikely to change again, such as the record of a finished job.
+        Reads work as usual. The first write turns the contents back into regular nodes.
+        Any pending changes are saved first. Callers should hold onto the document itself
+        rather than its children, because nodes fetched before freeze() are no longer part of it.
+    **/
+    public synchronized void freeze ()
+    {
+        if (children == null) return;  // Not loaded, or already frozen.
+        if (needsWrite) save ();
+        if (needsWrite) return;  // save failed
+        frozen = new MFrozen (this, key (), null);
+        for (MFrozen c : frozen.children) c.parent = this;  // Skip the root of the frozen tree, so that keyPath() and root() are the same as before.
+        children = null;
+    }
+
+    /**
+        Undoes freeze(). Does nothing if the document is not frozen.
+    **/
+    public synchronized void thaw ()
+    {
+        if (frozen == null) return;
+        MFrozen f = frozen;
+        frozen = null;
+        children = new TreeMap<String,MNode> (comparator);
+        needsWrite = true;  // lie to ourselves, to prevent being put onto the MDir write queue
+        for (MNode c : f) set (null, c.key ()).merge (c);
+        clearChanged ();
+    }
+
     protected synchronized MNode getChild (String key)
     {
+        if (frozen != null) return frozen.getChild (key);
         if (children == null) load ();  // redundant with the guard in load(), but should save time in the common case that file is already loaded
         return children.get (key);
     }
 
+    public synchronized void clear ()
+    {
+        thaw ();
+        super.clear ();
+    }
+
     protected synchronized void clearChild (String key)
     {
+        thaw ();
         if (children == null) load ();
         super.clearChild (key);
     }
 
     public synchronized int size ()
     {
+        if (frozen != null) return frozen.size ();
         if (children == null) load ();
         return children.size ();
     }
@@ -146,6 +189,7 @@ public class MDoc extends MPersistent
 
     public synchronized MNode set (String value, String key)
     {
+        thaw ();
         if (children == null) load ();
         return super.set (value, key);
     }
@@ -153,12 +197,14 @@ public class MDoc extends MPersistent
     public synchronized void move (String fromKey, String toKey)
     {
         if (toKey.equals (fromKey)) return;
+        thaw ();
         if (children == null) load ();
         super.move (fromKey, toKey);
     }
 
     public synchronized Iterator<MNode> iterator ()
     {
+        if (frozen != null) return frozen.iterator ();
         if (children == null) load ();
         return super.iterator ();
     }
@@ -174,7 +220,7 @@ public class MDoc extends MPersistent
 	**/
 	public synchronized void load ()
 	{
-	    if (children != null) return;  // already loaded
+	    if (children != null  ||  frozen != null) return;  // already loaded
 	    children = new TreeMap<String,MNode> (comparator);
         Path file = path ();
         needsWrite = true;  // lie to ourselves, to prevent being put onto the MDir write queue
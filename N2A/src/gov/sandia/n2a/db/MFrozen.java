@@ -0,0 +1,244 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+    A read-only copy of an MNode tree, optimized for memory footprint rather than editing.
+    Children are held in a pair of parallel arrays sorted in M order, rather than a TreeMap.
+    Keys are interned, so the many repeated keys across job records and model snapshots
+    ("$inherit", "$meta", common variable names) share a single String instance.
+
+    Since the tree never changes after construction, no method needs to synchronize.
+    In a stand-alone tree, mutating functions quietly do nothing. This allows an MFrozen tree
+    to serve as the source for an MPart collation, since MPart may attempt some housekeeping
+    writes (such as relinking $inherit by ID) that have no meaning for an archival copy.
+    Use toVolatile() to get a modifiable copy.
+
+    A tree that holds the contents of an MDoc (see MDoc.freeze()) is different. The first write
+    to any of its nodes thaws the document back into regular MPersistent nodes, then repeats
+    the write there, so nothing is lost.
+**/
+public class MFrozen extends MNode
+{
+    protected String    name;
+    protected String    value;     // null if this node is undefined
+    protected MNode     parent;
+    protected String[]  keys;      // Sorted in M order. Always non-null.
+    protected MFrozen[] children;  // Parallel to keys.
+
+    protected static final String[]  noKeys     = new String[0];
+    protected static final MFrozen[] noChildren = new MFrozen[0];
+
+    /**
+        Makes a deep copy of the given node, retaining its key.
+    **/
+    public MFrozen (MNode source)
+    {
+        this (source, source.key (), null);
+    }
+
+    /**
+        Makes a deep copy of the given node, but with a different key.
+    **/
+    public MFrozen (MNode source, String name)
+    {
+        this (source, name, null);
+    }
+
+    protected MFrozen (MNode source, String name, MNode parent)
+    {
+        this.name   = name.intern ();
+        this.parent = parent;
+        if (source.data ()) value = source.get ();
+
+        int count = source.size ();
+        if (count == 0)
+        {
+            keys     = noKeys;
+            children = noChildren;
+            return;
+        }
+
+        // Most MNode classes iterate in M order, but that is not guaranteed (for example, MCombo),
+        // so sort the result before building the key array.
+        List<MFrozen> list = new ArrayList<MFrozen> (count);
+        for (MNode c : source)
+        {
+            if (c != null) list.add (new MFrozen (c, c.key (), this));  // c could be null if source is modified while we iterate.
+        }
+        children = list.toArray (noChildren);
+        Arrays.sort (children);  // MNode.compareTo() applies M collation to keys.
+        keys = new String[children.length];
+        for (int i = 0; i < children.length; i++) keys[i] = children[i].name;
+    }
+
+    /**
+        Convenience method to load a file in N2A schema directly into frozen form.
+        This is similar to a stand-alone MDoc, except that there is no association with the file
+        after loading. If the file does not exist or can't be read, the result is an empty node.
+    **/
+    public static MFrozen read (Path path, String key)
+    {
+        MVolatile temp = new MVolatile (key);
+        try (BufferedReader reader = Files.newBufferedReader (path))
+        {
+            Schema.readAll (temp, reader);
+        }
+        catch (IOException e) {}
+        return new MFrozen (temp);
+    }
+
+    public static MFrozen read (Path path)
+    {
+        return read (path, "");
+    }
+
+    /**
+        @return A deep copy of this tree that can be modified.
+    **/
+    public MVolatile toVolatile ()
+    {
+        MVolatile result = new MVolatile (value, name);
+        result.merge (this);
+        return result;
+    }
+
+    /**
+        If this node belongs to a frozen MDoc, thaws the document and returns the live node
+        at the same position. Otherwise returns null.
+    **/
+    protected MNode thaw ()
+    {
+        List<String> path = new ArrayList<String> ();
+        MNode n = this;
+        while (n instanceof MFrozen)
+        {
+            MFrozen f = (MFrozen) n;
+            path.add (f.name);
+            n = f.parent;
+        }
+        if (! (n instanceof MDoc)) return null;
+        MDoc doc = (MDoc) n;
+        doc.thaw ();
+        Collections.reverse (path);
+        return doc.childOrCreate (path.toArray (new String[path.size ()]));
+    }
+
+    public String key ()
+    {
+        return name;
+    }
+
+    public MNode parent ()
+    {
+        return parent;
+    }
+
+    protected MNode getChild (String key)
+    {
+        // Always use M collation, same as the TreeMap in MVolatile, so that keys such as "1" and "1.0"
+        // find the same child regardless of node size. compare() tests equals() first, so exact hits are cheap.
+        int lo = 0;
+        int hi = keys.length - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            int c = compare (keys[mid], key);
+            if      (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else            return children[mid];
+        }
+        return null;
+    }
+
+    public MNode child (String... keys)
+    {
+        MNode result = this;
+        for (String key : keys)
+        {
+            result = result.getChild (key);
+            if (result == null) return null;
+        }
+        return result;
+    }
+
+    public void set (String value)
+    {
+        MNode live = thaw ();
+        if (live != null) live.set (value);
+    }
+
+    public MNode set (String value, String key)
+    {
+        MNode live = thaw ();
+        if (live == null) return super.set (value, key);
+        return live.set (value, key);
+    }
+
+    protected void clearChild (String key)
+    {
+        MNode live = thaw ();
+        if (live != null) live.clear (key);
+    }
+
+    public List<String> childKeys ()
+    {
+        return new ArrayList<String> (Arrays.asList (keys));
+    }
+
+    public int size ()
+    {
+        return keys.length;
+    }
+
+    public boolean data ()
+    {
+        return value != null;
+    }
+
+    public String getOrDefault (String defaultValue)
+    {
+        if (value == null  ||  value.isEmpty ()) return defaultValue;
+        return value;
+    }
+
+    public void visit (Visitor v)
+    {
+        if (! v.visit (this)) return;
+        for (MFrozen c : children) c.visit (v);
+    }
+
+    public Iterator<MNode> iterator ()
+    {
+        return new Iterator<MNode> ()
+        {
+            int index;
+
+            public boolean hasNext ()
+            {
+                return index < children.length;
+            }
+
+            public MNode next ()
+            {
+                if (index >= children.length) throw new NoSuchElementException ();
+                return children[index++];
+            }
+        };
+    }
+}
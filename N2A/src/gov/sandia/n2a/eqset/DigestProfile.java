@@ -0,0 +1,236 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.eqset;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.language.Operator;
+import gov.sandia.n2a.language.Visitor;
+
+/**
+    Records the cost of each pass that a backend makes over an EquationSet while digesting it.
+    The backend calls lap() right after each pass, giving its name. The interval since the
+    previous lap (or construction) is charged to that pass.
+
+    For each pass we record:
+    <ul>
+    <li>time -- wall-clock nanoseconds
+    <li>alloc -- bytes allocated by the current thread, if the JVM can report it, otherwise -1
+    <li>variables -- number of variables in the whole tree after the pass
+    <li>operators -- number of operator nodes in all equations (expressions and conditions) after the pass
+    </ul>
+    The last two are a measure of how much work the next pass has ahead of it, and also show
+    which passes grow or shrink the model.
+
+    Results are stored in the job record under "digest", one child per pass, keyed by sequence
+    number so that the same pass can appear more than once.
+
+    Profiling costs something (a count of the whole model after every pass, plus per-thread
+    allocation tracking in the JVM), so it is off unless the model sets $meta.digestTime or
+    $meta.backend.(name).digestTime. See create().
+**/
+public class DigestProfile
+{
+    protected EquationSet  root;
+    protected boolean      active;
+    protected List<Phase>  phases = new ArrayList<Phase> ();
+    protected long         lastTime;
+    protected long         lastAlloc;
+    protected long         totalTime;
+
+    protected static com.sun.management.ThreadMXBean threads;
+    protected static boolean                         threadsChecked;
+
+    public static class Phase
+    {
+        public String name;
+        public long   time;
+        public long   alloc;
+        public int    variables;
+        public int    operators;
+    }
+
+    /**
+        @param root The model being digested. If null, then this profile is inactive and lap() does nothing.
+        That lets a backend instrument its passes unconditionally.
+    **/
+    public DigestProfile (EquationSet root)
+    {
+        this (root, root != null);
+    }
+
+    protected DigestProfile (EquationSet root, boolean active)
+    {
+        this.root   = root;
+        this.active = active;
+        if (active) enableAllocationTracking ();
+        restart ();
+    }
+
+    /**
+        Starts a profile for the given model, before its EquationSet exists. This allows the
+        caller to charge construction of the EquationSet (which parses every expression) as the
+        first pass. Call setRoot() once the EquationSet is built.
+        @param model The collated model. Its metadata decides whether the profile is active.
+        @param backend Name of the backend doing the digestion, as it appears under $meta.backend.
+    **/
+    public static DigestProfile create (MNode model, String backend)
+    {
+        boolean active =  model.getFlag ("$meta", "digestTime")  ||  model.getFlag ("$meta", "backend", backend, "digestTime");
+        return new DigestProfile (null, active);
+    }
+
+    public void setRoot (EquationSet root)
+    {
+        this.root = root;
+    }
+
+    public boolean isActive ()
+    {
+        return active;
+    }
+
+    /**
+        Turns on per-thread allocation counting in the JVM, the first time an active profile needs it.
+        Once on, it stays on for the life of the VM.
+    **/
+    protected static synchronized void enableAllocationTracking ()
+    {
+        if (threadsChecked) return;
+        threadsChecked = true;
+        try
+        {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean ();
+            if (! threads.isThreadAllocatedMemorySupported ()) threads = null;
+            else if (! threads.isThreadAllocatedMemoryEnabled ()) threads.setThreadAllocatedMemoryEnabled (true);
+        }
+        catch (Exception e)  // Includes ClassCastException on JVMs without the com.sun extension.
+        {
+            threads = null;
+        }
+    }
+
+    /**
+        Sets the starting point for the next pass, without charging the elapsed interval to anything.
+    **/
+    public void restart ()
+    {
+        if (! active) return;
+        lastAlloc = allocated ();
+        lastTime  = System.nanoTime ();
+    }
+
+    /**
+        Charges all time and allocation since the previous call to the named pass.
+        The cost of counting the model is excluded.
+    **/
+    public void lap (String name)
+    {
+        if (! active) return;
+        long time  = System.nanoTime ();
+        long alloc = allocated ();
+
+        Phase p = new Phase ();
+        p.name  = name;
+        p.time  = time - lastTime;
+        p.alloc = alloc < 0 ? -1 : alloc - lastAlloc;
+        if (root != null) count (root, p);
+        phases.add (p);
+        totalTime += p.time;
+
+        restart ();
+    }
+
+    protected static long allocated ()
+    {
+        if (threads == null) return -1;
+        return threads.getThreadAllocatedBytes (Thread.currentThread ().getId ());
+    }
+
+    protected static void count (EquationSet s, Phase p)
+    {
+        Visitor visitor = new Visitor ()
+        {
+            public boolean visit (Operator op)
+            {
+                p.operators++;
+                return true;
+            }
+        };
+        p.variables += s.variables.size ();
+        for (Variable v : s.variables)
+        {
+            if (v.equations == null) continue;
+            for (EquationEntry e : v.equations)
+            {
+                if (e.expression != null) e.expression.visit (visitor);
+                if (e.condition  != null) e.condition .visit (visitor);
+            }
+        }
+        for (EquationSet c : s.parts) count (c, p);
+    }
+
+    public List<Phase> getPhases ()
+    {
+        return phases;
+    }
+
+    /**
+        Stores results under the "digest" child of the given job record.
+        Any previous contents are replaced. Does nothing if this profile is inactive.
+    **/
+    public void save (MNode job)
+    {
+        if (! active) return;
+        MNode digest = job.childOrCreate ("digest");
+        digest.clear ();
+        digest.set (totalTime, "time");
+        int i = 0;
+        for (Phase p : phases)
+        {
+            MNode n = digest.childOrCreate (i++);
+            n.set (p.name,      "name");
+            n.set (p.time,      "time");
+            n.set (p.alloc,     "alloc");
+            n.set (p.variables, "variables");
+            n.set (p.operators, "operators");
+        }
+    }
+
+    /**
+        Produces a plain-text table from the "digest" node of a job record.
+        Passes are listed in the order they ran. Useful for both the run panel and the command line.
+    **/
+    public static String format (MNode digest)
+    {
+        long cached = digest.getOrDefault (-1l, "cache");  // Set by a backend that loaded a previously digested model rather than doing the work.
+        if (cached >= 0) return String.format ("loaded from cache in %.3f ms%n", cached / 1e6);
+
+        long total = digest.getOrDefault (0l, "time");
+        StringBuilder result = new StringBuilder ();
+        result.append (String.format ("%-32s %10s %6s %10s %10s %10s%n", "pass", "ms", "%", "alloc MB", "variables", "operators"));
+        for (MNode n : digest)
+        {
+            if (n.key ().equals ("time")) continue;
+            long   time  = n.getOrDefault (0l,  "time");
+            long   alloc = n.getOrDefault (-1l, "alloc");
+            double share = total > 0 ? 100.0 * time / total : 0;
+            result.append (String.format ("%-32s %10.3f %6.1f %10s %10d %10d%n",
+                n.get ("name"),
+                time / 1e6,
+                share,
+                alloc < 0 ? "?" : String.format ("%.3f", alloc / 1048576.0),
+                n.getOrDefault (0, "variables"),
+                n.getOrDefault (0, "operators")));
+        }
+        result.append (String.format ("%-32s %10.3f%n", "total", total / 1e6));
+        return result.toString ();
+    }
+}
@@ -20,7 +20,9 @@ import gov.sandia.n2a.language.operator.Subtract;
 import gov.sandia.n2a.language.type.Instance;
 import gov.sandia.n2a.language.type.Scalar;
 
-public class Equality
+import java.io.Serializable;
+
+public class Equality implements Serializable
 {
     public AccessVariable target; // Variable we want to isolate on the lhs
     public Constant       rc;     // Row or column value which we control on the rhs
@@ -12,7 +12,9 @@ import gov.sandia.n2a.language.ParseException;
 import gov.sandia.n2a.language.Renderer;
 import gov.sandia.n2a.language.Visitor;
 
-public class EquationEntry implements Comparable<EquationEntry>
+import java.io.Serializable;
+
+public class EquationEntry implements Comparable<EquationEntry>, Serializable
 {
     public Variable variable;    // Our container
     public String   ifString;    // only for sorting. TODO: get rid of ifString. Instead, convert conditional to a canonical form with well-defined sort order. This will enable us to combine logically equivalent conditions, as well prioritize more restrictive conditions.
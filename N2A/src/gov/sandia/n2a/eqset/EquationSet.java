@@ -11,6 +11,7 @@ import gov.sandia.n2a.db.MDir;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MPart;
 import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.db.Schema;
 import gov.sandia.n2a.language.AccessVariable;
 import gov.sandia.n2a.language.Constant;
 import gov.sandia.n2a.language.EvaluationException;
@@ -46,7 +47,13 @@ import gov.sandia.n2a.plugins.extpoints.Backend;
 import gov.sandia.n2a.plugins.extpoints.Backend.AbortRun;
 import tech.units.indriya.AbstractUnit;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -62,15 +69,15 @@ import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 
-public class EquationSet implements Comparable<EquationSet>
+public class EquationSet implements Comparable<EquationSet>, Serializable
 {
     public String                              name;
-    public MNode                               source;                 // Node from collated model that this equation set is based on. Could be null if this eqset is constructed by the middle-end as part of analysis or optimization.
+    public transient MNode                     source;                 // Node from collated model that this equation set is based on. Could be null if this eqset is constructed by the middle-end as part of analysis or optimization. Not needed after digestion, so not serialized.
     public EquationSet                         container;
     public NavigableSet<Variable>              variables;
     public List<EquationSet>                   parts;
-    public MNode                               pinIn;                  // partial collection of input pins (does not include inner input pins which are exported)
-    public MNode                               pinOut;                 // collection of output pins
+    public transient MNode                     pinIn;                  // partial collection of input pins (does not include inner input pins which are exported)
+    public transient MNode                     pinOut;                 // collection of output pins
     public List<ConnectionBinding>             connectionBindings;     // non-null iff this is a connection
     public int                                 connected;              // Count of the number of connections for which this is an endpoint. If zero, we are not "connected" by anything.
     public NavigableSet<AccountableConnection> accountableConnections; // Connections which declare a $min or $max w.r.t. this part. Note: connected can be true even if accountableConnections is null.
@@ -79,7 +86,7 @@ public class EquationSet implements Comparable<EquationSet>
     public EquationSet                         visited;                // Keeps track of path when visiting parts
     public int                                 priority;               // Used for sorting parts according to connection dependency.
     public List<EquationSet>                   orderedParts;           // According to connection dependency
-    public MNode                               metadata;
+    public transient MNode                     metadata;               // MNode is not serializable, so writeObject() stores this and the pins as text.
     public List<Variable>                      ordered;
     public List<ArrayList<EquationSet>>        splits;                 // Enumeration of the $type splits this part can go through
     public Set<EquationSet>                    splitSources;           // Equation sets that might create an instance of this equation set via a $type split. Can include ourself.
@@ -107,7 +114,7 @@ public class EquationSet implements Comparable<EquationSet>
         bound -- when an instance variable is assigned a path to an actual equation set
         unbound -- when an instance variable is tagged as such via the "connect()" notation
     **/
-    public static class ConnectionBinding
+    public static class ConnectionBinding implements Serializable
     {
         public EquationSet connection;  // The connection part that contains this binding.
         public int         index;       // position in connectionBindings array
@@ -149,7 +156,7 @@ public class EquationSet implements Comparable<EquationSet>
         }
     }
 
-    public static class AccountableConnection implements Comparable<AccountableConnection>
+    public static class AccountableConnection implements Comparable<AccountableConnection>, Serializable
     {
         public EquationSet connection; // the connection, that is, the thing being accounted (the endpoint is the thing doing the accounting)
         public String      alias;      // name within the connection that refers to the endpoint
@@ -188,7 +195,7 @@ public class EquationSet implements Comparable<EquationSet>
         IteratorNonzero getIteratorNonzero (Instance context);
     }
 
-    public class ConnectionMatrix
+    public class ConnectionMatrix implements Serializable
     {
         public NonzeroIterable A;
 
@@ -2984,7 +2991,7 @@ public class EquationSet implements Comparable<EquationSet>
         }
     }
 
-    public class Conversion implements Comparable<Conversion>
+    public class Conversion implements Comparable<Conversion>, Serializable
     {
         public EquationSet from;
         public EquationSet to;
@@ -5302,6 +5309,48 @@ public class EquationSet implements Comparable<EquationSet>
         });
     }
 
+    private void writeObject (ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject ();
+        writeNode (out, pinIn);
+        writeNode (out, pinOut);
+        writeNode (out, metadata);
+    }
+
+    private void readObject (ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject ();
+        pinIn    = readNode (in);
+        pinOut   = readNode (in);
+        metadata = readNode (in);
+    }
+
+    /**
+        Serializes a metadata tree in its document form, for DigestCache.
+        The node's own key is not kept.
+    **/
+    public static void writeNode (ObjectOutputStream out, MNode node) throws IOException
+    {
+        if (node == null)
+        {
+            out.writeObject (null);
+            return;
+        }
+        StringWriter writer = new StringWriter ();
+        Schema.latest ().writeAll (node, writer);
+        out.writeObject (writer.toString ());
+        out.writeObject (node.data () ? node.get () : null);
+    }
+
+    public static MNode readNode (ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        String text = (String) in.readObject ();
+        if (text == null) return null;
+        MNode result = new MVolatile ((String) in.readObject (), null);
+        Schema.readAll (result, new StringReader (text));
+        return result;
+    }
+
     public int compareTo (EquationSet that)
     {
         return name.compareTo (that.name);
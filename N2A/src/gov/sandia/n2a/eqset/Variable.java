@@ -33,6 +33,10 @@ import gov.sandia.n2a.language.type.Scalar;
 import gov.sandia.n2a.plugins.extpoints.Backend;
 import tech.units.indriya.AbstractUnit;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -47,7 +51,7 @@ import java.util.TreeSet;
 import javax.measure.Dimension;
 import javax.measure.Unit;
 
-public class Variable implements Comparable<Variable>, Cloneable
+public class Variable implements Comparable<Variable>, Cloneable, Serializable
 {
     public String                       name;
     public int                          order;      // of differential
@@ -56,7 +60,7 @@ public class Variable implements Comparable<Variable>, Cloneable
     public Set<String>                  attributes;
     public NavigableSet<EquationEntry>  equations;
     public int                          assignment;
-    public MNode                        metadata;
+    public transient MNode              metadata;   // Serialized as text. See writeObject().
 
     // resolution
     public EquationSet                  container;  // non-null iff this variable is contained in an EquationSet.variables collection
@@ -1207,11 +1211,11 @@ public class Variable implements Comparable<Variable>, Cloneable
                 e.expression.determineUnit (fatal);
                 if (e.expression.unit != null)
                 {
-                    if (nextUnit == null  ||  nextUnit.isCompatible (AbstractUnit.ONE))
+                    if (nextUnit == null  ||  UnitValue.isCompatible (nextUnit, AbstractUnit.ONE))
                     {
                         nextUnit = e.expression.unit;
                     }
-                    else if (fatal  &&  ! e.expression.unit.isCompatible (AbstractUnit.ONE)  &&  ! e.expression.unit.isCompatible (nextUnit))
+                    else if (fatal  &&  ! UnitValue.isCompatible (e.expression.unit, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (e.expression.unit, nextUnit))
                     {
                         throw new Exception (nextUnit + " versus " + e.expression.unit);
                     }
@@ -1222,14 +1226,14 @@ public class Variable implements Comparable<Variable>, Cloneable
         // If we have a derivative, then use it as a clue, or offer a clue to it.
         if (derivative != null)
         {
-            boolean haveNext       =  nextUnit        != null  &&  ! nextUnit       .isCompatible (AbstractUnit.ONE);
-            boolean haveDerivative =  derivative.unit != null  &&  ! derivative.unit.isCompatible (AbstractUnit.ONE);
+            boolean haveNext       =  nextUnit        != null  &&  ! UnitValue.isCompatible (nextUnit, AbstractUnit.ONE);
+            boolean haveDerivative =  derivative.unit != null  &&  ! UnitValue.isCompatible (derivative.unit, AbstractUnit.ONE);
             if (haveDerivative)
             {
                 Unit<?> integrated = UnitValue.simplify (derivative.unit.multiply (UnitValue.seconds));
                 if (haveNext)  // Have both, so ensure units are compatible
                 {
-                    if (fatal  &&  ! integrated.isCompatible (AbstractUnit.ONE)  &&  ! integrated.isCompatible (nextUnit))
+                    if (fatal  &&  ! UnitValue.isCompatible (integrated, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (integrated, nextUnit))
                     {
                         throw new Exception (nextUnit + " versus integrated " + integrated);
                     }
@@ -1251,13 +1255,13 @@ public class Variable implements Comparable<Variable>, Cloneable
         // Generally, this is any combiner that is not multiplicative in nature.
         if (reference != null  &&  reference.variable != this  &&  assignment != MULTIPLY  &&  assignment != DIVIDE)
         {
-            boolean haveNext      =  nextUnit                != null  &&  ! nextUnit               .isCompatible (AbstractUnit.ONE);
-            boolean haveReference =  reference.variable.unit != null  &&  ! reference.variable.unit.isCompatible (AbstractUnit.ONE);
+            boolean haveNext      =  nextUnit                != null  &&  ! UnitValue.isCompatible (nextUnit, AbstractUnit.ONE);
+            boolean haveReference =  reference.variable.unit != null  &&  ! UnitValue.isCompatible (reference.variable.unit, AbstractUnit.ONE);
             if (haveReference)
             {
                 if (haveNext)
                 {
-                    if (fatal  &&  ! reference.variable.unit.isCompatible (nextUnit))
+                    if (fatal  &&  ! UnitValue.isCompatible (reference.variable.unit, nextUnit))
                     {
                         throw new Exception (nextUnit + " versus reference " + reference.variable.unit);
                     }
@@ -1274,14 +1278,14 @@ public class Variable implements Comparable<Variable>, Cloneable
             }
         }
 
-        if (nextUnit != null  &&  (unit == null  ||  ! nextUnit.isCompatible (unit)))  // nextUnit is better defined than current unit
+        if (nextUnit != null  &&  (unit == null  ||  ! UnitValue.isCompatible (nextUnit, unit)))  // nextUnit is better defined than current unit
         {
             // Sanity check. Because dimensional analysis can form a feedback loop through the system of equations,
             // it is possible for a bizarre unit to grow without bound. This would be fine, except that the Units of Measurement
             // library uses a recursive function call to evaluate dimension powers, and this can result in a stack overflow for
             // excessively large numbers.
             final int maxPower = 10;  // The limit here is arbitrary, but should be enough for any sane unit (except maybe volume of 11-dimensional space). If not, maybe make this user-configurable on the same tab as dimension checking mode.
-            Map<? extends Dimension, Integer> d = nextUnit.getDimension ().getBaseDimensions ();
+            Map<? extends Dimension, Integer> d = UnitValue.info (nextUnit).dimension.getBaseDimensions ();
             if (d != null)
             {
                 for (Entry<? extends Dimension, Integer> e : d.entrySet ())
@@ -1807,6 +1811,18 @@ public class Variable implements Comparable<Variable>, Cloneable
         return true;
     }
 
+    private void writeObject (ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject ();
+        EquationSet.writeNode (out, metadata);
+    }
+
+    private void readObject (ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject ();
+        metadata = EquationSet.readNode (in);
+    }
+
     /**
         Warning: This function is does not distinguish between equation sets. It merely matches name and order.
         This function is not consistent with equals, so use containers with caution.
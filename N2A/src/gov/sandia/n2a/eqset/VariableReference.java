@@ -6,12 +6,13 @@ the U.S. Government retains certain rights in this software.
 
 package gov.sandia.n2a.eqset;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 import gov.sandia.n2a.eqset.EquationSet.ConnectionBinding;
 
-public class VariableReference implements Comparable<VariableReference>
+public class VariableReference implements Comparable<VariableReference>, Serializable
 {
     public Variable          variable;
     public ArrayList<Object> resolution = new ArrayList<Object> ();  // Trail of objects followed to resolve the variable. The first one is always variable.container, so it is not included in the list.
@@ -70,11 +70,7 @@ public class Connection implements Closeable, UserInteraction
     protected boolean       failedAuth;    // Last authentication attempt failed. Indicates that user password is necessary, so don't keep trying when not interactive.
     protected Set<String>   messages = new HashSet<String> ();  // Remember messages, so we only display them once per session.
 
-    public static SshClient client = SshClient.setUpDefaultClient ();  // shared between remote execution system and git wrapper
-    static
-    {
-        client.start ();
-    }
+    protected static SshClient client;  // shared between remote execution system and git wrapper. Created on first use, so that a purely local session never starts the SSH stack.
 
     public interface MessageListener
     {
@@ -93,6 +89,21 @@ public class Connection implements Closeable, UserInteraction
         home = host.config.getOrDefault ("/home/" + username, "home");
     }
 
+    public static synchronized SshClient getClient ()
+    {
+        if (client == null)
+        {
+            client = SshClient.setUpDefaultClient ();
+            client.start ();
+        }
+        return client;
+    }
+
+    public static synchronized void stopClient ()
+    {
+        if (client != null) client.stop ();
+    }
+
     /**
         Returns the username from ssh config, or if not in config, from system property.
         The return value is never blank.
@@ -102,7 +113,7 @@ public class Connection implements Closeable, UserInteraction
         String result = null;
         try
         {
-            HostConfigEntry entry = client.getHostConfigEntryResolver ().resolveEffectiveHost (hostname, 0, null, null, null, null);  // hostname is the only important value for this query
+            HostConfigEntry entry = getClient ().getHostConfigEntryResolver ().resolveEffectiveHost (hostname, 0, null, null, null, null);  // hostname is the only important value for this query
             if (entry != null) result = entry.getUsername ();
         }
         catch (IOException e) {}
@@ -121,13 +132,13 @@ public class Connection implements Closeable, UserInteraction
         close ();
         try
         {
-            HostConfigEntry entry = client.getHostConfigEntryResolver ().resolveEffectiveHost (hostname, 0, null, null, null, null);
+            HostConfigEntry entry = getClient ().getHostConfigEntryResolver ().resolveEffectiveHost (hostname, 0, null, null, null, null);
             entry.setUsername (username);  // We fully determined username above, so just use it, regardless of whether there is a value in entry.
             int port = entry.getPort ();
             if (port <= 0) port = SshConstants.DEFAULT_PORT;
             entry.setPort (host.config.getOrDefault (port, "port"));
 
-            session = client.connect (entry).verify (timeout).getSession ();
+            session = getClient ().connect (entry).verify (timeout).getSession ();
             session.setUserInteraction (this);
             if (session.getSessionHeartbeatType () == HeartbeatType.NONE)  // Does client get keepalive information from config file?
             {
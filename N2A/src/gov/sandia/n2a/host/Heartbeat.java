@@ -0,0 +1,192 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.host;
+
+import gov.sandia.n2a.db.MNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+    A small fixed-size status record that a running simulation rewrites about once per second,
+    in the file "heartbeat" in its job directory. This lets the monitor learn sim time without
+    scanning the tail of an output file, and works even for models that produce no regular output.
+
+    Layout (48 bytes, written in the native byte order of the simulator):
+    <pre>
+    offset  type     field
+    0       int32    version, currently 1. Also lets the reader detect byte order.
+    4       int32    state: 0 = running, 1 = done
+    8       float64  t -- current sim time
+    16      int64    wall -- Unix time in milliseconds when this record was written
+    24      int64    started -- Unix time in milliseconds of the first record
+    32      int64    instances -- number of part instances currently scheduled
+    40      int64    events -- number of entries in the event queue
+    </pre>
+    The C runtime writes the same layout. See Simulator::writeHeartbeat() in runtime.tcc.
+
+    A backend that writes this file should set the "heartbeat" flag in the job record,
+    so the monitor knows to look for it.
+**/
+public class Heartbeat
+{
+    public static final int size    = 48;
+    public static final int version = 1;
+
+    public int    state;
+    public double t;
+    public long   wall;
+    public long   started;
+    public long   instances;
+    public long   events;
+    public long   received;  // Local time when this record was read. Not part of the file.
+
+    /**
+        @return Sim-seconds per wall-second, averaged over the whole run so far.
+    **/
+    public double rate ()
+    {
+        if (wall <= started) return 0;
+        return t / ((wall - started) / 1000.0);
+    }
+
+    /**
+        @return Sim-seconds per wall-second since the given earlier record, or the whole-run
+        average if the earlier record is null or not actually earlier.
+    **/
+    public double rate (Heartbeat previous)
+    {
+        if (previous == null  ||  previous.wall >= wall) return rate ();
+        return (t - previous.t) / ((wall - previous.wall) / 1000.0);
+    }
+
+    /**
+        Decodes a record. Returns null if the bytes don't form a valid record,
+        for example because the file was caught in the middle of being written.
+    **/
+    public static Heartbeat parse (byte[] data)
+    {
+        if (data == null  ||  data.length < size) return null;
+        ByteBuffer buffer = ByteBuffer.wrap (data);
+        buffer.order (ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt (0) != version)
+        {
+            buffer.order (ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt (0) != version) return null;
+        }
+
+        Heartbeat result = new Heartbeat ();
+        result.state     = buffer.getInt    (4);
+        result.t         = buffer.getDouble (8);
+        result.wall      = buffer.getLong   (16);
+        result.started   = buffer.getLong   (24);
+        result.instances = buffer.getLong   (32);
+        result.events    = buffer.getLong   (40);
+        result.received  = System.currentTimeMillis ();
+        return result;
+    }
+
+    /**
+        Parses the hex dump produced by "od -An -v -tx1", with whitespace removed.
+    **/
+    public static Heartbeat parseHex (String hex)
+    {
+        int count = hex.length () / 2;
+        byte[] data = new byte[count];
+        try
+        {
+            for (int i = 0; i < count; i++) data[i] = (byte) Integer.parseInt (hex.substring (2 * i, 2 * i + 2), 16);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        return parse (data);
+    }
+
+    /**
+        Fetches the most recent record for the given job. If the job's host delivers records in bulk
+        (see RemoteUnix.WatchThread), then a recently delivered record is used. Otherwise, reads
+        the file directly.
+        @return null if the job has no heartbeat file, or it could not be read.
+    **/
+    public static Heartbeat read (MNode job)
+    {
+        if (! job.getFlag ("heartbeat")) return null;
+        try
+        {
+            Host env = Host.get (job);
+            Heartbeat cached = env.heartbeats.get (job.key ());
+            if (cached != null  &&  System.currentTimeMillis () - cached.received < 5000) return cached;
+
+            Path file = Host.getJobDir (env.getResourceDir (), job).resolve ("heartbeat");
+            try (InputStream stream = Files.newInputStream (file))
+            {
+                return parse (stream.readNBytes (size));
+            }
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+        Writes records for a simulator running in this JVM.
+        Keeps the file open and overwrites it in place, so each update is a single small write.
+    **/
+    public static class Writer implements AutoCloseable
+    {
+        protected FileChannel channel;
+        protected ByteBuffer  buffer  = ByteBuffer.allocate (size).order (ByteOrder.nativeOrder ());
+        protected long        started = System.currentTimeMillis ();
+        protected long        next;  // Wall time when the next record is due.
+
+        public Writer (Path jobDir) throws IOException
+        {
+            channel = FileChannel.open (jobDir.resolve ("heartbeat"), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+            @return true if at least a second has passed since the last record was written.
+            Cheap enough to call on every simulation cycle.
+        **/
+        public boolean due ()
+        {
+            return System.currentTimeMillis () >= next;
+        }
+
+        public void write (int state, double t, long instances, long events)
+        {
+            long now = System.currentTimeMillis ();
+            next = now + 1000;
+            buffer.clear ();
+            buffer.putInt    (version);
+            buffer.putInt    (state);
+            buffer.putDouble (t);
+            buffer.putLong   (now);
+            buffer.putLong   (started);
+            buffer.putLong   (instances);
+            buffer.putLong   (events);
+            buffer.flip ();
+            try {channel.write (buffer, 0);}
+            catch (IOException e) {}  // Progress reporting is not worth failing the simulation over.
+        }
+
+        public void close ()
+        {
+            try {channel.close ();}
+            catch (IOException e) {}
+        }
+    }
+}
@@ -9,10 +9,12 @@ package gov.sandia.n2a.host;
 import gov.sandia.n2a.backend.internal.InternalBackend;
 import gov.sandia.n2a.db.AppData;
 import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.host.SshFileSystemProvider.SshOpenOption;
 import gov.sandia.n2a.plugins.ExtensionPoint;
 import gov.sandia.n2a.plugins.PluginManager;
 import gov.sandia.n2a.plugins.extpoints.Backend;
 import gov.sandia.n2a.ui.jobs.NodeJob;
+import gov.sandia.n2a.ui.jobs.PanelRun;
 
 import java.awt.EventQueue;
 import java.io.BufferedReader;
@@ -28,12 +30,21 @@ import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributeView;
 import java.nio.file.attribute.PosixFileAttributeView;
@@ -41,11 +52,13 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -69,11 +82,13 @@ import javax.swing.event.ChangeListener;
 **/
 public abstract class Host
 {
-    public    String             name;                                    // Identifies host internally. Also acts as the default value of network address, but this can be overridden by the address key. This allows the use of a friendly name for display combined with, say, a raw IP for address.
-    public    MNode              config;                                  // Collection of attributes that describe the target, including login information, directory structure and command forms. This should be a direct reference to node in app state, so any changes are recorded.
-    protected ArrayList<NodeJob> running = new ArrayList<NodeJob> ();     // Jobs that we are actively monitoring because they may still be running.
-    protected MonitorThread      monitorThread;
-    public    Map<String,Object> objects = new HashMap<String,Object> (); // For other code to attach resources to a given host. Host itself does not use this collection.
+    public    String                name;                                                     // Identifies host internally. Also acts as the default value of network address, but this can be overridden by the address key. This allows the use of a friendly name for display combined with, say, a raw IP for address.
+    public    MNode                 config;                                                   // Collection of attributes that describe the target, including login information, directory structure and command forms. This should be a direct reference to node in app state, so any changes are recorded.
+    protected ArrayList<NodeJob>    running = new ArrayList<NodeJob> ();                      // Jobs that we are actively monitoring because they may still be running.
+    protected MonitorThread         monitorThread;
+    protected Semaphore             monitorWake = new Semaphore (0);                          // Signals that some job on this host should be checked right away, rather than on the next periodic pass.
+    public    Map<String,Object>    objects = new HashMap<String,Object> ();                  // For other code to attach resources to a given host. Host itself does not use this collection.
+    public    Map<String,Heartbeat> heartbeats = new ConcurrentHashMap<String,Heartbeat> ();  // Records delivered in bulk by watchJobs(), keyed by job. See Heartbeat.read().
 
     protected static Map<String,Host>     hosts     = new HashMap<String,Host> ();
     protected static List<ChangeListener> listeners = new ArrayList<ChangeListener> ();
@@ -81,6 +96,7 @@ public abstract class Host
     protected static ArrayList<NodeJob> waitingForHost = new ArrayList<NodeJob> ();
     protected static Semaphore          waitingAdded   = new Semaphore (0);  // Signals that something has been added to waitingForHost.
     protected static AssignmentThread   assignmentThread;
+    protected static LocalWatchThread   watchThread;
 
     protected static Set<PosixFilePermission> fullPermissions = new HashSet<PosixFilePermission> ();
     static
@@ -259,7 +275,7 @@ public abstract class Host
                         catch (IOException e) {}
                     }
                 }
-                Connection.client.stop ();
+                Connection.stopClient ();
             }
         };
         shutdownThread.setDaemon (true);
@@ -295,6 +311,7 @@ public abstract class Host
     public static class AssignmentThread extends Thread
     {
         public boolean        stop;
+        public boolean        started  = true;  // Indicates that the most recent pass through waitingForHost started some job.
         public Map<Host,Long> hostTime = new HashMap<Host,Long> ();
 
         public AssignmentThread ()
@@ -309,17 +326,21 @@ public abstract class Host
             while (! stop)
             {
                 // Sleep until we have something to work on.
+                // If the previous pass couldn't start anything, then wait for a change (a new job,
+                // or a finished one freeing resources), but no more than a second before trying again.
                 boolean empty;
                 synchronized (waitingForHost)
                 {
                     empty = waitingForHost.isEmpty ();
                     waitingAdded.drainPermits ();
                 }
-                if (empty)
+                try
                 {
-                    try {waitingAdded.acquire ();}
-                    catch (InterruptedException e) {}
+                    if      (empty)     waitingAdded.acquire ();
+                    else if (! started) waitingAdded.tryAcquire (1000, TimeUnit.MILLISECONDS);
                 }
+                catch (InterruptedException e) {}
+                started = false;
 
                 // Work on it.
                 int i = 0;
@@ -389,6 +410,7 @@ public abstract class Host
                                 job.complete = 2;
                                 Files.copy (new ByteArrayInputStream ("failure".getBytes ("UTF-8")), localJobDir.resolve ("finished"));
                             }
+                            job.fireJobChanged ();
                             // Reopen the err stream and append an explanation.
                             try (PrintStream err = new PrintStream (new FileOutputStream (localJobDir.resolve ("err").toFile (), true), false, "UTF-8"))
                             {
@@ -399,6 +421,12 @@ public abstract class Host
                         continue;
                     }
 
+                    // Offer the job to the least-recently polled host first. When a batch of jobs arrives
+                    // together (such as the columns of a Jacobian), this spreads them across all eligible
+                    // hosts rather than waiting out the throttle on each host in turn.
+                    // The sort is stable, so hosts that have never been polled keep the user's order.
+                    if (candidates.size () > 1) candidates.sort (Comparator.comparingLong (h -> hostTime.getOrDefault (h, 0L)));
+
                     Host chosenHost = null;
                     for (Host h : candidates)
                     {
@@ -418,13 +446,13 @@ public abstract class Host
                         if (previous != null)
                         {
                             long elapsed = System.currentTimeMillis () - previous;
-                            long wait = 1000 - elapsed;
+                            long wait = backend.startInterval (h, source) - elapsed;
                             try {if (wait > 0) sleep (wait);}
                             catch (InterruptedException e) {}
                         }
 
                         if (stop) return;
-                        hostTime.put (h, System.currentTimeMillis ());  // Don't poll a host more than one per second, regardless of whether or not a job is started.
+                        hostTime.put (h, System.currentTimeMillis ());  // Don't poll a host more often than the backend allows, regardless of whether or not a job is started.
                         if (backend.canRunNow (h, source))
                         {
                             chosenHost = h;
@@ -443,7 +471,8 @@ public abstract class Host
                     backend.start (source);
                     hostTime.put (chosenHost, System.currentTimeMillis ());  // Remember when the most recent job was started on the chosen host.
                     synchronized (waitingForHost) {waitingForHost.remove (i);}
-                    synchronized (chosenHost.running) {chosenHost.running.add (job);}
+                    chosenHost.monitor (job);
+                    started = true;
                 }
             }
         }
@@ -497,11 +526,50 @@ public abstract class Host
     public void monitor (NodeJob job)
     {
         synchronized (running) {running.add (job);}
+        if (! (this instanceof Remote)) LocalWatchThread.watch (job);
     }
 
     public void unmonitor (NodeJob job)
     {
         synchronized (running) {running.remove (job);}
+        LocalWatchThread.unwatch (job);
+    }
+
+    /**
+        Asks the monitor thread to check the given job immediately, rather than waiting for its
+        next periodic poll. Backends and watchers call this when they learn about a change in job
+        state by some direct means, such as the simulation thread finishing or a file watch event.
+        Does nothing if the job is not currently known to the app.
+    **/
+    public static void notifyJob (String jobKey)
+    {
+        NodeJob node;
+        synchronized (PanelRun.jobNodes) {node = PanelRun.jobNodes.get (jobKey);}
+        if (node == null  ||  node.deleted) return;
+        MNode source = node.getSource ();
+        if (source == null) return;  // Job record was removed while the notice was in flight.
+        node.expedite ();
+        get (source).monitorWake.release ();
+        waitingAdded.release ();  // The job may have freed resources, so let the assignment thread try again.
+    }
+
+    /**
+        Hook for a subclass to maintain some direct means of learning about job changes.
+        Called by the monitor thread on each pass while this host has running jobs.
+        The subclass should pass events along via notifyJob(). Default is to do nothing,
+        in which case progress is found only by polling.
+    **/
+    public void watchJobs ()
+    {
+    }
+
+    /**
+        @return true if watchJobs() currently has a live means of reporting job changes,
+        so that NodeJob can skip fetching state files on every poll.
+    **/
+    public boolean isWatching ()
+    {
+        return false;
     }
 
     /**
@@ -529,12 +597,9 @@ public abstract class Host
             // Periodic refresh to show status of running jobs
             while (! stop)
             {
-                if (running.isEmpty ())
-                {
-                    try {sleep (1000);}
-                    catch (InterruptedException e) {}
-                }
+                if (! running.isEmpty ()) watchJobs ();
 
+                long wait = 1000;  // Time until the next job is due for a check.
                 int i = 0;
                 while (! stop)
                 {
@@ -544,18 +609,109 @@ public abstract class Host
                         if (i >= running.size ()) break;
                         job = running.get (i);
                     }
-                    job.monitorProgress ();  // Contains built-in throttling, so only one check per second.
+                    long delay = job.monitorDelay ();
+                    if (delay > 0)  // Not due yet, so skip rather than letting monitorProgress() sleep, which would hold up every other job on this host.
+                    {
+                        wait = Math.min (wait, delay);
+                        i++;
+                        continue;
+                    }
+                    job.monitorProgress ();
                     if (job.complete >= 1  &&  job.complete != 3  ||  job.deleted)
                     {
                         // If necessary, we can use a more efficient method to remove
                         // the element (namely, overwrite the ith element with the back element).
                         synchronized (running) {running.remove (i);}
+                        LocalWatchThread.unwatch (job);
                     }
                     else
                     {
                         i++;
                     }
                 }
+
+                // Sleep until the next job is due, or until someone reports a change.
+                try {monitorWake.tryAcquire (wait, TimeUnit.MILLISECONDS);}
+                catch (InterruptedException e) {}
+                monitorWake.drainPermits ();  // The next pass examines every job, so one wake-up covers all pending notices.
+            }
+        }
+    }
+
+    /**
+        Watches the directories of jobs running on the local machine, so that the appearance of
+        the "finished" file is noticed immediately rather than on the next poll.
+        A single thread and WatchService serve all local hosts. If the platform does not provide
+        a WatchService, then this quietly does nothing and monitoring falls back to polling.
+    **/
+    public static class LocalWatchThread extends Thread
+    {
+        protected WatchService         service;
+        protected Map<WatchKey,String> jobKeys = new HashMap<WatchKey,String> ();
+        protected Map<String,WatchKey> keys    = new HashMap<String,WatchKey> ();
+
+        public LocalWatchThread (WatchService service)
+        {
+            super ("Watch local jobs");
+            this.service = service;
+            setDaemon (true);
+        }
+
+        public static synchronized void watch (NodeJob job)
+        {
+            if (watchThread == null)
+            {
+                try {watchThread = new LocalWatchThread (FileSystems.getDefault ().newWatchService ());}
+                catch (Exception e) {return;}
+                watchThread.start ();
+            }
+
+            Path localJobDir = getJobDir (getLocalResourceDir (), job.getSource ());
+            synchronized (watchThread)
+            {
+                if (watchThread.keys.containsKey (job.key)) return;
+                try
+                {
+                    WatchKey key = localJobDir.register (watchThread.service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchThread.jobKeys.put (key, job.key);
+                    watchThread.keys.put (job.key, key);
+                }
+                catch (IOException e) {}  // Job dir doesn't exist (yet), or too many watches. Either way, polling will still catch the change.
+            }
+        }
+
+        public static synchronized void unwatch (NodeJob job)
+        {
+            if (watchThread == null) return;
+            synchronized (watchThread)
+            {
+                WatchKey key = watchThread.keys.remove (job.key);
+                if (key == null) return;
+                watchThread.jobKeys.remove (key);
+                key.cancel ();
+            }
+        }
+
+        public void run ()
+        {
+            while (true)
+            {
+                WatchKey key;
+                try {key = service.take ();}
+                catch (Exception e) {break;}  // Includes ClosedWatchServiceException
+
+                boolean finished = false;
+                for (WatchEvent<?> event : key.pollEvents ())
+                {
+                    Object context = event.context ();
+                    if (context instanceof Path  &&  ((Path) context).toString ().equals ("finished")) finished = true;
+                }
+                key.reset ();
+
+                if (! finished) continue;
+                String jobKey;
+                synchronized (this) {jobKey = jobKeys.get (key);}
+                if (jobKey != null) notifyJob (jobKey);
             }
         }
     }
@@ -1000,6 +1156,62 @@ public abstract class Host
         return copy (in, out, maximum, null);
     }
 
+    public static int resumeOverlap = 4096;  // Bytes re-read when resuming a download, to confirm that the local copy still matches the source.
+
+    /**
+        Appends the next part of a file to a local copy, as for incremental download of job output.
+        The transfer starts a little before the given position, and those bytes are compared with the tail
+        of the local copy. If they differ, for example because an earlier transfer was cut off mid-write or
+        the source was rewritten, then the copied part is discarded and the whole file is transferred again.
+        @param source Typically on a remote host.
+        @param destination Local copy. Must exist. Any bytes ahead of the copied part (destination size - position) are preserved.
+        @param position Number of bytes from source that destination already holds, at its end.
+        @param count Number of bytes to transfer, starting at position.
+        @param compress Request compression on the wire, if source supports it. Worthwhile for text, but not for images.
+        @return Number of bytes appended to destination.
+    **/
+    public static long download (Path source, Path destination, long position, long count, boolean compress, CopyProgress progress) throws IOException
+    {
+        int overlap = (int) Math.min (resumeOverlap, position);
+        if (overlap > 0)
+        {
+            long size = Files.size (destination);
+            byte[] expected = new byte[overlap];
+            try (SeekableByteChannel channel = Files.newByteChannel (destination))
+            {
+                channel.position (size - overlap);
+                ByteBuffer buffer = ByteBuffer.wrap (expected);
+                while (buffer.hasRemaining ()  &&  channel.read (buffer) > 0) {}
+            }
+            try (InputStream in = open (source, compress);
+                 OutputStream out = Files.newOutputStream (destination, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+            {
+                in.skipNBytes (position - overlap);
+                if (Arrays.equals (expected, in.readNBytes (overlap))) return copy (in, out, count, progress);
+            }
+
+            // Mismatch, so start over.
+            try (FileChannel channel = FileChannel.open (destination, StandardOpenOption.WRITE))
+            {
+                channel.truncate (size - position);
+            }
+            count += position;
+            position = 0;
+        }
+        try (InputStream in = open (source, compress);
+             OutputStream out = Files.newOutputStream (destination, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+        {
+            in.skipNBytes (position);
+            return copy (in, out, count, progress);
+        }
+    }
+
+    protected static InputStream open (Path source, boolean compress) throws IOException
+    {
+        if (compress  &&  source instanceof SshPath) return Files.newInputStream (source, SshOpenOption.COMPRESS);
+        return Files.newInputStream (source);
+    }
+
     public interface CopyProgress
     {
         /**
@@ -10,6 +10,9 @@ import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -39,6 +42,7 @@ import gov.sandia.n2a.ui.settings.SettingsHost.NameChangeListener;
 public class RemoteUnix extends Unix implements Remote
 {
     protected Connection  connection;
+    protected WatchThread watchThread;
     protected EditorPanel panel;
 
     public static Factory factory ()
@@ -248,10 +252,107 @@ public class RemoteUnix extends Unix implements Remote
 
     public synchronized void close ()
     {
+        if (watchThread != null) watchThread.stop = true;
+        watchThread = null;
         if (connection != null) connection.close ();
         connection = null;
     }
 
+    @Override
+    public synchronized void watchJobs ()
+    {
+        if (watchThread != null  &&  watchThread.isAlive ()) return;
+        if (! isConnected ()) return;  // Don't trigger a login from the background. Polling will still work once the user connects.
+        watchThread = new WatchThread ();
+        watchThread.start ();
+    }
+
+    @Override
+    public synchronized boolean isWatching ()
+    {
+        return watchThread != null  &&  watchThread.isAlive ();
+    }
+
+    /**
+        Runs a single long-lived script on the remote system that reports each "finished" file
+        as it appears in the jobs directory. This replaces a file fetch per job per second with
+        one stream per connection. The script prints a blank line on each pass, which lets us
+        notice when to stop. It exits on its own when we close the channel, since its next write fails.
+        The same pass also sends the contents of every heartbeat file that changed, as a hex dump,
+        so progress of all jobs arrives together rather than through a separate fetch for each.
+    **/
+    public class WatchThread extends Thread
+    {
+        public boolean stop;
+
+        public WatchThread ()
+        {
+            super ("Watch " + name);
+            setDaemon (true);
+        }
+
+        public void run ()
+        {
+            // The script is fed through stdin, so it needs no quoting. $1 is the jobs directory.
+            // The marker file records the time of the previous scan. Touching the new marker before
+            // the scan means a file created during the scan is reported twice rather than missed.
+            String script = "cd \"$1\" || exit 1\n"
+                          + "m=$(mktemp) || exit 1\n"
+                          + "trap 'rm -f \"$m\" \"$m.new\"' EXIT\n"
+                          + "while sleep 1; do\n"
+                          + "  touch \"$m.new\"\n"
+                          + "  find . -mindepth 2 -maxdepth 2 -name finished -newer \"$m\"\n"
+                          + "  find . -mindepth 2 -maxdepth 2 -name heartbeat -newer \"$m\" | while read f; do\n"
+                          + "    printf 'H %s ' \"$f\"; od -An -v -tx1 \"$f\" | tr -d ' \\n'; echo\n"
+                          + "  done\n"
+                          + "  mv \"$m.new\" \"$m\"\n"
+                          + "  echo\n"
+                          + "done\n";
+            try
+            {
+                Path jobsDir = getResourceDir ().resolve ("jobs");
+                try (AnyProcess proc = build ("sh", "-s", quote (jobsDir)).start ();
+                     BufferedReader reader = new BufferedReader (new InputStreamReader (proc.getInputStream ())))
+                {
+                    try (OutputStream stdin = proc.getOutputStream ())
+                    {
+                        stdin.write (script.getBytes ("UTF-8"));
+                    }
+
+                    String line;
+                    while (! stop  &&  (line = reader.readLine ()) != null)
+                    {
+                        if (line.isEmpty ())  // End of pass
+                        {
+                            synchronized (running) {if (running.isEmpty ()) break;}
+                            continue;
+                        }
+                        if (line.startsWith ("H "))  // Line has form "H ./jobKey/heartbeat hex"
+                        {
+                            String[] pieces = line.split (" ");
+                            if (pieces.length < 3) continue;
+                            String[] path = pieces[1].split ("/");
+                            if (path.length < 3) continue;
+                            Heartbeat beat = Heartbeat.parseHex (pieces[2]);
+                            if (beat != null) heartbeats.put (path[path.length - 2], beat);
+                            continue;
+                        }
+                        // Line has form "./jobKey/finished"
+                        String[] pieces = line.split ("/");
+                        if (pieces.length >= 3)
+                        {
+                            String key = pieces[pieces.length - 2];
+                            heartbeats.remove (key);
+                            notifyJob (key);
+                        }
+                    }
+                }
+            }
+            catch (Exception e) {}
+            // The monitor thread will start a new watcher on its next pass, if there are still running jobs.
+        }
+    }
+
     @Override
     public synchronized void enable ()
     {
@@ -64,6 +64,7 @@ public class BuildMatrix extends Operator
             int columns = operands.length;
             if (columns == 0) return result;
             int rows = operands[0].length;
+            result.operands = new Operator[columns][rows];  // clone() only copied the reference, so without this we would overwrite our own operands.
             for (int c = 0; c < columns; c++)
             {
                 for (int r = 0; r < rows; r++)
@@ -288,11 +289,11 @@ public class BuildMatrix extends Operator
                 e.determineUnit (fatal);
                 if (e.unit != null)
                 {
-                    if (unit == null  ||  unit.isCompatible (AbstractUnit.ONE))
+                    if (unit == null  ||  UnitValue.isCompatible (unit, AbstractUnit.ONE))
                     {
                         unit = e.unit;
                     }
-                    else if (fatal  &&  ! e.unit.isCompatible (AbstractUnit.ONE)  &&  ! e.unit.isCompatible (unit))
+                    else if (fatal  &&  ! UnitValue.isCompatible (e.unit, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (e.unit, unit))
                     {
                         throw new Exception ("matrix elements: " + unit + " versus " + e.unit);
                     }
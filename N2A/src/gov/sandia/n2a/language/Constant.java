@@ -6,13 +6,15 @@ the U.S. Government retains certain rights in this software.
 
 package gov.sandia.n2a.language;
 
-import javax.measure.Unit;
-
 import gov.sandia.n2a.eqset.EquationSet.ExponentContext;
 import gov.sandia.n2a.language.parse.SimpleNode;
 import gov.sandia.n2a.language.type.Instance;
+import gov.sandia.n2a.language.type.Matrix;
 import gov.sandia.n2a.language.type.Scalar;
 import gov.sandia.n2a.language.type.Text;
+import gov.sandia.n2a.linear.MatrixBoolean;
+import gov.sandia.n2a.linear.MatrixDense;
+import gov.sandia.n2a.linear.MatrixSparse;
 import tech.units.indriya.AbstractUnit;
 
 public class Constant extends Operator
@@ -40,7 +42,6 @@ public class Constant extends Operator
         this.value = new Scalar (value);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public void getOperandsFrom (SimpleNode node)
     {
         Object o = node.jjtGetValue ();
@@ -55,7 +56,7 @@ public class Constant extends Operator
             else  // there was a unit given, so convert
             {
                 unit = unitValue.unit.getSystemUnit ();
-                value = new Scalar (unitValue.unit.getConverterTo ((Unit) unit).convert (unitValue.value));
+                value = new Scalar (UnitValue.toSystem (unitValue.unit).convert (unitValue.value));
             }
         }
         else
@@ -160,6 +161,22 @@ public class Constant extends Operator
         if (unit == null) unit = AbstractUnit.ONE;  // Just in case getOperandsFrom() was not called.
     }
 
+    /**
+        Copies value as well, since some callers (such as EquationSet.setInit()) modify it in place,
+        and the parse cache hands out copies of a single stored tree. A memory-mapped matrix is
+        read-only, so it is shared rather than copied.
+    **/
+    public Operator deepCopy ()
+    {
+        Constant result = (Constant) super.deepCopy ();
+        if      (value instanceof Scalar       ) result.value = new Scalar        (((Scalar) value).value);
+        else if (value instanceof Text         ) result.value = new Text          (((Text)   value).value);
+        else if (value instanceof MatrixDense  ) result.value = new MatrixDense   ((Matrix)        value);
+        else if (value instanceof MatrixSparse ) result.value = new MatrixSparse  ((Matrix)        value);
+        else if (value instanceof MatrixBoolean) result.value = new MatrixBoolean ((MatrixBoolean) value);
+        return result;
+    }
+
     public void render (Renderer renderer)
     {
         if (renderer.render (this)) return;
@@ -419,11 +419,11 @@ public class Function extends Operator
             op.determineUnit (fatal);
             if (op.unit != null)
             {
-                if (unit == null  ||  unit.isCompatible (AbstractUnit.ONE))
+                if (unit == null  ||  UnitValue.isCompatible (unit, AbstractUnit.ONE))
                 {
                     unit = op.unit;
                 }
-                else if (fatal  &&  ! op.unit.isCompatible (AbstractUnit.ONE)  &&  ! op.unit.isCompatible (unit))
+                else if (fatal  &&  ! UnitValue.isCompatible (op.unit, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (op.unit, unit))
                 {
                     throw new Exception (toString () + "(" + unit + " versus " + op.unit + ")");
                 }
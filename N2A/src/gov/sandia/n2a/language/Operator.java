@@ -9,78 +9,6 @@ package gov.sandia.n2a.language;
 import gov.sandia.n2a.eqset.Equality;
 import gov.sandia.n2a.eqset.EquationSet.ExponentContext;
 import gov.sandia.n2a.eqset.Variable;
-import gov.sandia.n2a.language.function.AbsoluteValue;
-import gov.sandia.n2a.language.function.Atan;
-import gov.sandia.n2a.language.function.Ceil;
-import gov.sandia.n2a.language.function.Columns;
-import gov.sandia.n2a.language.function.Cosine;
-import gov.sandia.n2a.language.function.Delay;
-import gov.sandia.n2a.language.function.Draw;
-import gov.sandia.n2a.language.function.DrawCube;
-import gov.sandia.n2a.language.function.DrawSquare;
-import gov.sandia.n2a.language.function.Equal;
-import gov.sandia.n2a.language.function.DrawCylinder;
-import gov.sandia.n2a.language.function.DrawDisc;
-import gov.sandia.n2a.language.function.DrawLight;
-import gov.sandia.n2a.language.function.DrawPlane;
-import gov.sandia.n2a.language.function.DrawSegment;
-import gov.sandia.n2a.language.function.DrawSphere;
-import gov.sandia.n2a.language.function.Event;
-import gov.sandia.n2a.language.function.Exp;
-import gov.sandia.n2a.language.function.Floor;
-import gov.sandia.n2a.language.function.Gaussian;
-import gov.sandia.n2a.language.function.Grid;
-import gov.sandia.n2a.language.function.HyperbolicTangent;
-import gov.sandia.n2a.language.function.Input;
-import gov.sandia.n2a.language.function.Log;
-import gov.sandia.n2a.language.function.Max;
-import gov.sandia.n2a.language.function.Mcount;
-import gov.sandia.n2a.language.function.Min;
-import gov.sandia.n2a.language.function.Mkey;
-import gov.sandia.n2a.language.function.Mmatrix;
-import gov.sandia.n2a.language.function.Mnumber;
-import gov.sandia.n2a.language.function.Mstring;
-import gov.sandia.n2a.language.function.Norm;
-import gov.sandia.n2a.language.function.ReadMatrix;
-import gov.sandia.n2a.language.function.Round;
-import gov.sandia.n2a.language.function.Rows;
-import gov.sandia.n2a.language.function.Sat;
-import gov.sandia.n2a.language.function.Signum;
-import gov.sandia.n2a.language.function.Sine;
-import gov.sandia.n2a.language.function.Sphere;
-import gov.sandia.n2a.language.function.SquareRoot;
-import gov.sandia.n2a.language.function.SumSquares;
-import gov.sandia.n2a.language.function.Tangent;
-import gov.sandia.n2a.language.function.Output;
-import gov.sandia.n2a.language.function.Pulse;
-import gov.sandia.n2a.language.function.ReadImage;
-import gov.sandia.n2a.language.function.Uniform;
-import gov.sandia.n2a.language.function.UnitMap;
-import gov.sandia.n2a.language.function.glFrustum;
-import gov.sandia.n2a.language.function.glLookAt;
-import gov.sandia.n2a.language.function.glOrtho;
-import gov.sandia.n2a.language.function.glPerspective;
-import gov.sandia.n2a.language.function.glRotate;
-import gov.sandia.n2a.language.function.glScale;
-import gov.sandia.n2a.language.function.glTranslate;
-import gov.sandia.n2a.language.operator.AND;
-import gov.sandia.n2a.language.operator.Add;
-import gov.sandia.n2a.language.operator.Divide;
-import gov.sandia.n2a.language.operator.EQ;
-import gov.sandia.n2a.language.operator.GE;
-import gov.sandia.n2a.language.operator.GT;
-import gov.sandia.n2a.language.operator.LE;
-import gov.sandia.n2a.language.operator.LT;
-import gov.sandia.n2a.language.operator.Modulo;
-import gov.sandia.n2a.language.operator.Multiply;
-import gov.sandia.n2a.language.operator.MultiplyElementwise;
-import gov.sandia.n2a.language.operator.NE;
-import gov.sandia.n2a.language.operator.NOT;
-import gov.sandia.n2a.language.operator.Negate;
-import gov.sandia.n2a.language.operator.OR;
-import gov.sandia.n2a.language.operator.Power;
-import gov.sandia.n2a.language.operator.Subtract;
-import gov.sandia.n2a.language.operator.Transpose;
 import gov.sandia.n2a.language.parse.ASTConstant;
 import gov.sandia.n2a.language.parse.ASTIdentifier;
 import gov.sandia.n2a.language.parse.ASTKeyword;
@@ -93,8 +21,12 @@ import gov.sandia.n2a.language.type.Instance;
 import gov.sandia.n2a.language.type.Scalar;
 import gov.sandia.n2a.plugins.ExtensionPoint;
 import gov.sandia.n2a.plugins.PluginManager;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.measure.Unit;
 
@@ -103,7 +35,7 @@ import javax.measure.Unit;
     To simplify the automatic generation of a parser, this AST is kept separate from the
     node classes created by JavaCC.
 **/
-public class Operator implements Cloneable
+public class Operator implements Cloneable, Serializable
 {
     public Object  parent; // The AST node that contains this one. If null, this is the root node of a condition. If a Variable, then this is the root node of an expression to be assigned.
     public Unit<?> unit;   // Stands in for the physical dimensions associated with the output of this operator.
@@ -438,92 +370,161 @@ public class Operator implements Cloneable
 
     public static TreeMap<String,Factory> operators = new TreeMap<String,Factory> ();
 
+    /**
+        Parsed trees for recently seen expression strings. The same text occurs many times over,
+        for example in every part that inherits a given equation, in every sample of a study, and
+        each time the editor re-checks an expression. A stored tree is never handed out directly.
+        Rather, each caller gets a deepCopy(), which is much cheaper than running the grammar.
+        Only successful parses are stored, since callers annotate the exception with context.
+    **/
+    @SuppressWarnings("serial")
+    protected static Map<String,Operator> parseCache = new LinkedHashMap<String,Operator> (1024, 0.75f, true)
+    {
+        protected boolean removeEldestEntry (Map.Entry<String,Operator> eldest)
+        {
+            return size () > parseCacheLimit;
+        }
+    };
+    public    static int        parseCacheLimit  = 4096;
+    protected static AtomicLong parseCacheHits   = new AtomicLong ();
+    protected static AtomicLong parseCacheMisses = new AtomicLong ();
+
     public static void register (Factory f)
     {
         operators.put (f.name (), f);
+        clearParseCache ();  // A new factory could change how existing text parses.
+    }
+
+    /**
+        Registers a built-in operator by name, without loading its class.
+        @param className Relative to the language package.
+    **/
+    public static void register (String name, String className)
+    {
+        operators.put (name, new Deferred (name, "gov.sandia.n2a.language." + className));
+    }
+
+    /**
+        Stands in for the factory of a built-in operator, so that its class does not get loaded until a model
+        actually uses it. A headless run typically needs only a small fraction of the built-in functions.
+    **/
+    public static class Deferred implements Factory
+    {
+        protected String           name;
+        protected String           className;
+        protected volatile Factory factory;
+
+        public Deferred (String name, String className)
+        {
+            this.name      = name;
+            this.className = className;
+        }
+
+        public String name ()
+        {
+            return name;
+        }
+
+        public Operator createInstance ()
+        {
+            Factory f = factory;
+            if (f == null)
+            {
+                try
+                {
+                    f = (Factory) Class.forName (className).getMethod ("factory").invoke (null);
+                }
+                catch (Exception e)
+                {
+                    throw new RuntimeException ("Failed to load operator class " + className, e);
+                }
+                factory = f;
+            }
+            return f.createInstance ();
+        }
     }
 
     static
     {
         // Functions
-        register (AbsoluteValue    .factory ());
-        register (Atan             .factory ());
-        register (Ceil             .factory ());
-        register (Columns          .factory ());
-        register (Cosine           .factory ());
-        register (Delay            .factory ());
-        register (Draw             .factory ());
-        register (DrawCube         .factory ());
-        register (DrawCylinder     .factory ());
-        register (DrawDisc         .factory ());
-        register (DrawLight        .factory ());
-        register (DrawPlane        .factory ());
-        register (DrawSegment      .factory ());
-        register (DrawSphere       .factory ());
-        register (DrawSquare       .factory ());
-        register (Equal            .factory ());
-        register (Event            .factory ());
-        register (Exp              .factory ());
-        register (Floor            .factory ());
-        register (Gaussian         .factory ());
-        register (glFrustum        .factory ());
-        register (glLookAt         .factory ());
-        register (glOrtho          .factory ());
-        register (glPerspective    .factory ());
-        register (glRotate         .factory ());
-        register (glScale          .factory ());
-        register (glTranslate      .factory ());
-        register (Grid             .factory ());
-        register (HyperbolicTangent.factory ());
-        register (Input            .factory ());
-        register (Log              .factory ());
-        register (Max              .factory ());
-        register (Min              .factory ());
-        register (Mcount           .factory ());
-        register (Mkey             .factory ());
-        register (Mmatrix          .factory ());
-        register (Mnumber          .factory ());
-        register (Mstring          .factory ());
-        register (Norm             .factory ());
-        register (Pulse            .factory ());
-        register (ReadImage        .factory ());
-        register (ReadMatrix       .factory ());
-        register (Round            .factory ());
-        register (Rows             .factory ());
-        register (Signum           .factory ());
-        register (Sat              .factory ());
-        register (Sine             .factory ());
-        register (Sphere           .factory ());
-        register (SquareRoot       .factory ());
-        register (SumSquares       .factory ());
-        register (Tangent          .factory ());
-        register (Output           .factory ());
-        register (Uniform          .factory ());
-        register (UnitMap          .factory ());
+        register ("abs",           "function.AbsoluteValue");
+        register ("atan",          "function.Atan");
+        register ("ceil",          "function.Ceil");
+        register ("columns",       "function.Columns");
+        register ("cos",           "function.Cosine");
+        register ("delay",         "function.Delay");
+        register ("draw",          "function.Draw");
+        register ("drawCube",      "function.DrawCube");
+        register ("drawCylinder",  "function.DrawCylinder");
+        register ("drawDisc",      "function.DrawDisc");
+        register ("drawLight",     "function.DrawLight");
+        register ("drawPlane",     "function.DrawPlane");
+        register ("drawSegment",   "function.DrawSegment");
+        register ("drawSphere",    "function.DrawSphere");
+        register ("drawSquare",    "function.DrawSquare");
+        register ("equal",         "function.Equal");
+        register ("event",         "function.Event");
+        register ("exp",           "function.Exp");
+        register ("floor",         "function.Floor");
+        register ("gaussian",      "function.Gaussian");
+        register ("glFrustum",     "function.glFrustum");
+        register ("glLookAt",      "function.glLookAt");
+        register ("glOrtho",       "function.glOrtho");
+        register ("glPerspective", "function.glPerspective");
+        register ("glRotate",      "function.glRotate");
+        register ("glScale",       "function.glScale");
+        register ("glTranslate",   "function.glTranslate");
+        register ("grid",          "function.Grid");
+        register ("tanh",          "function.HyperbolicTangent");
+        register ("input",         "function.Input");
+        register ("log",           "function.Log");
+        register ("max",           "function.Max");
+        register ("min",           "function.Min");
+        register ("Mcount",        "function.Mcount");
+        register ("Mkey",          "function.Mkey");
+        register ("Mmatrix",       "function.Mmatrix");
+        register ("Mnumber",       "function.Mnumber");
+        register ("Mstring",       "function.Mstring");
+        register ("norm",          "function.Norm");
+        register ("pulse",         "function.Pulse");
+        register ("image",         "function.ReadImage");
+        register ("matrix",        "function.ReadMatrix");
+        register ("round",         "function.Round");
+        register ("rows",          "function.Rows");
+        register ("sgn",           "function.Signum");
+        register ("sat",           "function.Sat");
+        register ("sin",           "function.Sine");
+        register ("sphere",        "function.Sphere");
+        register ("sqrt",          "function.SquareRoot");
+        register ("sumSquares",    "function.SumSquares");
+        register ("tan",           "function.Tangent");
+        register ("output",        "function.Output");
+        register ("uniform",       "function.Uniform");
+        register ("unitmap",       "function.UnitMap");
 
         // Map both pow() and operator^ to the Power class.
-        Factory pow = Power.factory ();
+        Factory pow = new Deferred ("^", "gov.sandia.n2a.language.operator.Power");
         operators.put ("^",   pow);
         operators.put ("pow", pow);
 
         // Operators
-        register (Add                .factory ());
-        register (AND                .factory ());
-        register (Divide             .factory ());
-        register (EQ                 .factory ());
-        register (GE                 .factory ());
-        register (GT                 .factory ());
-        register (LE                 .factory ());
-        register (LT                 .factory ());
-        register (Modulo             .factory ());
-        register (Multiply           .factory ());
-        register (MultiplyElementwise.factory ());
-        register (NE                 .factory ());
-        register (Negate             .factory ());
-        register (NOT                .factory ());
-        register (OR                 .factory ());
-        register (Subtract           .factory ());
-        register (Transpose          .factory ());
+        register ("+",  "operator.Add");
+        register ("&&", "operator.AND");
+        register ("/",  "operator.Divide");
+        register ("==", "operator.EQ");
+        register (">=", "operator.GE");
+        register (">",  "operator.GT");
+        register ("<=", "operator.LE");
+        register ("<",  "operator.LT");
+        register ("%",  "operator.Modulo");
+        register ("*",  "operator.Multiply");
+        register ("&",  "operator.MultiplyElementwise");
+        register ("!=", "operator.NE");
+        register ("UM", "operator.Negate");
+        register ("!",  "operator.NOT");
+        register ("||", "operator.OR");
+        register ("-",  "operator.Subtract");
+        register ("~",  "operator.Transpose");
     }
 
     public static void initFromPlugins ()
@@ -532,11 +533,41 @@ public class Operator implements Cloneable
         for (ExtensionPoint e : extensions) register ((Factory) e);
     }
 
+    public static long getParseCacheHits ()
+    {
+        return parseCacheHits.get ();
+    }
+
+    public static long getParseCacheMisses ()
+    {
+        return parseCacheMisses.get ();
+    }
+
+    public static void clearParseCache ()
+    {
+        synchronized (parseCache)
+        {
+            parseCache.clear ();
+        }
+    }
+
     public static Operator parse (String line) throws Exception
     {
+        Operator result;
+        synchronized (parseCache)
+        {
+            result = parseCache.get (line);
+        }
+        if (result != null)
+        {
+            parseCacheHits.incrementAndGet ();
+            return result.deepCopy ();
+        }
+        parseCacheMisses.incrementAndGet ();
+
         try
         {
-            return getFrom (ExpressionParser.parse (line));
+            result = getFrom (ExpressionParser.parse (line));
         }
         catch (Exception e)
         {
@@ -549,6 +580,12 @@ public class Operator implements Cloneable
             if (containsConnect (line)) return null;
             throw e;
         }
+
+        synchronized (parseCache)
+        {
+            parseCache.put (line, result);
+        }
+        return result.deepCopy ();
     }
 
     public static Operator getFrom (SimpleNode node) throws Exception
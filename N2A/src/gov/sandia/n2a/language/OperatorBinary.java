@@ -111,11 +111,11 @@ public class OperatorBinary extends Operator implements OperatorArithmetic
         unit = operand0.unit;
         if (operand1.unit != null)
         {
-            if (unit == null  ||  unit.isCompatible (AbstractUnit.ONE))
+            if (unit == null  ||  UnitValue.isCompatible (unit, AbstractUnit.ONE))
             {
                 unit = operand1.unit;
             }
-            else if (fatal  &&  ! operand1.unit.isCompatible (AbstractUnit.ONE)  &&  ! operand1.unit.isCompatible (unit))
+            else if (fatal  &&  ! UnitValue.isCompatible (operand1.unit, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (operand1.unit, unit))
             {
                 throw new Exception (unit + " " + toString () + " " + operand1.unit);
             }
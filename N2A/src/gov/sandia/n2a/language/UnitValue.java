@@ -1,16 +1,21 @@
 /*
-Copyright 2017-2020 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Copyright 2017-2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
 Under the terms of Contract DE-NA0003525 with NTESS,
 the U.S. Government retains certain rights in this software.
 */
 
 package gov.sandia.n2a.language;
 
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.measure.Dimension;
 import javax.measure.Unit;
+import javax.measure.UnitConverter;
 import javax.measure.format.UnitFormat;
 import javax.measure.spi.ServiceProvider;
 import javax.measure.spi.SystemOfUnits;
@@ -21,7 +26,7 @@ import tech.units.indriya.AbstractUnit;
 /**
     Utility class for capturing units of numeric constants during parsing.
 **/
-public class UnitValue
+public class UnitValue implements Serializable
 {
     public double  value;
     public Unit<?> unit;
@@ -33,6 +38,49 @@ public class UnitValue
     public static UnitFormat    UCUM          = ServiceProvider.current ().getFormatService ().getUnitFormat ("UCUM");
     public static Unit<?>       seconds       = UCUM.parse ("s");
 
+    /**
+        Results of unit analysis, shared by all threads. A model uses a handful of units over and over,
+        both in its text (every "ms" in every equation) and in the products formed while checking
+        dimensions. Parsing with UCUM, searching the system of units in simplify(), and computing the
+        dimension of a product are each expensive, so every result is kept.
+
+        Units that are equal may still format differently. For example, a product unit compares equal
+        regardless of the order of its factors. So the caches only hold information that is the same for
+        all equal units (dimension, conversion factor), and never substitute one unit object for another.
+        Anything that could be displayed is computed from the caller's own instance.
+    **/
+    public static class UnitInfo
+    {
+        public Dimension     dimension;
+        public UnitConverter toSystem;  // Created on first use by get(), since some units have no converter to their system unit. Usually just a scale factor, but some units (such as Celsius) also have an offset.
+    }
+
+    @SuppressWarnings("serial")
+    protected static Map<String,Unit<?>> parseCache = new LinkedHashMap<String,Unit<?>> (256, 0.75f, true)
+    {
+        protected boolean removeEldestEntry (Map.Entry<String,Unit<?>> eldest)
+        {
+            return size () > cacheLimit;
+        }
+    };
+    @SuppressWarnings("serial")
+    protected static Map<Unit<?>,UnitInfo> infoCache = new LinkedHashMap<Unit<?>,UnitInfo> (256, 0.75f, true)
+    {
+        protected boolean removeEldestEntry (Map.Entry<Unit<?>,UnitInfo> eldest)
+        {
+            return size () > cacheLimit;
+        }
+    };
+    @SuppressWarnings("serial")
+    protected static Map<Dimension,Unit<?>> builtinCache = new LinkedHashMap<Dimension,Unit<?>> (256, 0.75f, true)  // Maps dimension to the system unit of the first built-in unit with that dimension, or null if there is none.
+    {
+        protected boolean removeEldestEntry (Map.Entry<Dimension,Unit<?>> eldest)
+        {
+            return size () > cacheLimit;
+        }
+    };
+    public static int cacheLimit = 4096;  // Applies to each map separately.
+
     // Allow empty constructor
     public UnitValue ()
     {
@@ -57,7 +105,7 @@ public class UnitValue
         }
         if (! unitString.isEmpty ())
         {
-            try {unit = UCUM.parse (unitString);}
+            try {unit = parse (unitString);}
             catch (Exception e) {}
         }
     }
@@ -67,7 +115,7 @@ public class UnitValue
         this.value = value;
         if (! unitString.isEmpty ())
         {
-            try {unit = UCUM.parse (unitString);}
+            try {unit = parse (unitString);}
             catch (Exception e) {}
         }
     }
@@ -76,19 +124,130 @@ public class UnitValue
         Returns the value scaled according to the unit.
         For example, if the input was "1ms", then value=1, unit=milliseconds, and this function returns 0.001
     **/
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public double get ()
     {
         if (unit == null) return value;  // naked number, so assume already in SI
-        Unit<?> systemUnit = unit.getSystemUnit ();
-        return unit.getConverterTo ((Unit) systemUnit).convert (value);
+        return toSystem (unit).convert (value);
+    }
+
+    /**
+        Same as UCUM.parse(), but remembers the result. Errors are not remembered, and are thrown the same as UCUM.parse().
+        The same string always produces the same unit, so sharing the result does not change how it formats.
+    **/
+    public static Unit<?> parse (String unitString)
+    {
+        Unit<?> result;
+        synchronized (parseCache)
+        {
+            result = parseCache.get (unitString);
+        }
+        if (result != null) return result;
+
+        result = UCUM.parse (unitString);
+        synchronized (parseCache)
+        {
+            parseCache.put (unitString, result);
+        }
+        return result;
     }
 
+    /**
+        Returns the cached analysis of the given unit, creating it if needed.
+    **/
+    public static UnitInfo info (Unit<?> unit)
+    {
+        UnitInfo result;
+        synchronized (infoCache)
+        {
+            result = infoCache.get (unit);
+        }
+        if (result != null) return result;
+
+        // Do the expensive work outside the lock.
+        result = new UnitInfo ();
+        result.dimension = unit.getDimension ();
+
+        synchronized (infoCache)
+        {
+            UnitInfo existing = infoCache.get (unit);  // Another thread may have gotten here first. Keep a single entry, so a converter is only built once.
+            if (existing != null) return existing;
+            infoCache.put (unit, result);
+        }
+        return result;
+    }
+
+    /**
+        Same as unit.getConverterTo(unit.getSystemUnit()), but cached.
+        Throws the same exceptions, and they are not remembered.
+    **/
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static UnitConverter toSystem (Unit<?> unit)
+    {
+        UnitInfo i = info (unit);
+        UnitConverter result = i.toSystem;
+        if (result == null)
+        {
+            result = unit.getConverterTo ((Unit) unit.getSystemUnit ());
+            i.toSystem = result;  // Benign race. Every thread computes an equivalent converter.
+        }
+        return result;
+    }
+
+    /**
+        Same as a.isCompatible(b). Fast when both are the same object, which is the common case
+        during unit analysis. Otherwise compares cached dimensions, and only falls back on the full
+        test when those differ.
+    **/
+    public static boolean isCompatible (Unit<?> a, Unit<?> b)
+    {
+        if (a == b) return true;
+        if (info (a).dimension.equals (info (b).dimension)) return true;
+        return a.isCompatible (b);  // Handles dimensions that are equivalent under the dimensional model, and the incompatible case.
+    }
+
+    public static void clearCache ()
+    {
+        synchronized (parseCache)
+        {
+            parseCache.clear ();
+        }
+        synchronized (infoCache)
+        {
+            infoCache.clear ();
+        }
+        synchronized (builtinCache)
+        {
+            builtinCache.clear ();
+        }
+    }
+
+    /**
+        Replaces the given unit with the system unit of a built-in unit of the same dimension, if one exists.
+        Otherwise returns the system unit of the given unit itself.
+    **/
     public static Unit<?> simplify (Unit<?> unit)
     {
-        Set<? extends Unit<?>> set = systemOfUnits.getUnits (unit.getDimension ());
-        if (! set.isEmpty ()) unit = set.iterator ().next ();  // Get first (arbitrary) built-in unit with matching dimensions.
-        return unit.getSystemUnit ();
+        // The search of the system of units depends only on dimension, so it is cached.
+        // The fallback depends on the instance (its formatting), so it is not.
+        Dimension dimension = info (unit).dimension;
+        Unit<?>   builtin;
+        boolean   found;
+        synchronized (builtinCache)
+        {
+            found   = builtinCache.containsKey (dimension);
+            builtin = builtinCache.get (dimension);
+        }
+        if (! found)
+        {
+            Set<? extends Unit<?>> set = systemOfUnits.getUnits (dimension);
+            if (! set.isEmpty ()) builtin = set.iterator ().next ().getSystemUnit ();  // Get first (arbitrary) built-in unit with matching dimensions.
+            synchronized (builtinCache)
+            {
+                builtinCache.put (dimension, builtin);
+            }
+        }
+        if (builtin == null) return unit.getSystemUnit ();
+        return builtin;
     }
 
     public static int findUnits (String value)
@@ -25,6 +25,7 @@ import gov.sandia.n2a.language.Type;
 import gov.sandia.n2a.language.type.Instance;
 import gov.sandia.n2a.language.type.Matrix;
 import gov.sandia.n2a.language.type.Text;
+import gov.sandia.n2a.linear.MatrixCSC;
 import gov.sandia.n2a.linear.MatrixSparse;
 import gov.sandia.n2a.plugins.extpoints.Backend;
 import tech.units.indriya.AbstractUnit;
@@ -140,8 +141,10 @@ public class Mfile extends Function
                     S.set (r, c, col.getDouble ());
                 }
             }
-            matrices.put (key, S);
-            return S;
+            // Hold the compact form, since the matrix is only read from here on.
+            A = new MatrixCSC (S);
+            matrices.put (key, A);
+            return A;
         }
 
         public List<String> getChildKeys (Instance context, Mfile mf)
@@ -123,6 +123,7 @@ public class Output extends Function
         public double              t;
         public PrintStream         out;
         public boolean             raw;                                            // Indicates that column is an exact index.
+        public boolean             events;                                         // Write one line per nonzero value, giving time and column position, rather than a dense row per cycle.
 
         public Holder (Simulator simulator, String path)
         {
@@ -159,13 +160,19 @@ public class Output extends Function
         }
 
         public static Holder get (Simulator simulator, String path, boolean raw)
+        {
+            return get (simulator, path, raw, false);
+        }
+
+        public static Holder get (Simulator simulator, String path, boolean raw, boolean events)
         {
             Holder result;
             Object o = simulator.holders.get (path);
             if (o == null)
             {
                 result = new Holder (simulator, path);
-                result.raw = raw;
+                result.raw    = raw;
+                result.events = events;
                 simulator.holders.put (path, result);
             }
             else if (! (o instanceof Holder))
@@ -206,6 +213,11 @@ public class Output extends Function
                     columnMap.put ("$t", 0);
                     columnValues.add ((float) t);
                     columnMode.set ("$t", 0);
+                    if (events)
+                    {
+                        columnMode.set (1, 0, "events");  // Tells the reader to use OutputParser.parseEvents().
+                        columnMode.save ();  // Reader must know the format before it sees the first line.
+                    }
                 }
                 else
                 {
@@ -251,6 +263,7 @@ public class Output extends Function
                         switch (key)
                         {
                             case "raw":
+                            case "events":
                             case "x":
                                 break;
                             case "timeScale":
@@ -274,6 +287,9 @@ public class Output extends Function
             {
                 columnValues.set (index, value);
             }
+
+            // In event mode, a zero value means nothing happened. Any other value marks an event.
+            if (events  &&  value != 0  &&  ! Float.isNaN (value)) out.println ((float) t + "\t" + index);
         }
 
         public void writeTrace ()
@@ -286,7 +302,7 @@ public class Output extends Function
             // Write headers if new columns have been added.
             if (count > columnsPrevious)
             {
-                if (! raw)
+                if (! raw  &&  ! events)  // Event mode gets column names only from the columns file.
                 {
                     String headers[] = new String[count];
                     for (Entry<String,Integer> i : columnMap.entrySet ())
@@ -319,6 +335,12 @@ public class Output extends Function
                 columnMode.save ();
             }
 
+            if (events)  // Lines were already written by trace().
+            {
+                traceReceived = false;
+                return;
+            }
+
             // Write values
             for (int i = 0; i <= last; i++)
             {
@@ -345,8 +367,9 @@ public class Output extends Function
         if (simulator == null) return result;
 
         String  path = ((Text) operands[0].eval (context)).value;
-        boolean raw  = getKeywordFlag ("raw");
-        Holder  H    = Holder.get (simulator, path, raw);
+        boolean raw    = getKeywordFlag ("raw");
+        boolean events = getKeywordFlag ("events");
+        Holder  H      = Holder.get (simulator, path, raw, events);
 
         String column = getColumnName (context);
 
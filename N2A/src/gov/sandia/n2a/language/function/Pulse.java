@@ -12,6 +12,7 @@ import gov.sandia.n2a.eqset.EquationSet.ExponentContext;
 import gov.sandia.n2a.language.Function;
 import gov.sandia.n2a.language.Operator;
 import gov.sandia.n2a.language.Type;
+import gov.sandia.n2a.language.UnitValue;
 import gov.sandia.n2a.language.type.Instance;
 import gov.sandia.n2a.language.type.Scalar;
 import tech.units.indriya.AbstractUnit;
@@ -70,11 +71,11 @@ public class Pulse extends Function
             op.determineUnit (fatal);
             if (op.unit != null)
             {
-                if (temp == null  ||  temp.isCompatible (AbstractUnit.ONE))
+                if (temp == null  ||  UnitValue.isCompatible (temp, AbstractUnit.ONE))
                 {
                     temp = op.unit;
                 }
-                else if (fatal  &&  ! op.unit.isCompatible (AbstractUnit.ONE)  &&  ! op.unit.isCompatible (temp))
+                else if (fatal  &&  ! UnitValue.isCompatible (op.unit, AbstractUnit.ONE)  &&  ! UnitValue.isCompatible (op.unit, temp))
                 {
                     throw new Exception (toString () + "(" + temp + " versus " + op.unit + ")");
                 }
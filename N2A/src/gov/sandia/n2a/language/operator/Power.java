@@ -65,6 +65,17 @@ public class Power extends OperatorBinary
         }
     }
 
+    public Operator deepCopy ()
+    {
+        Power result = (Power) super.deepCopy ();
+        if (median != null)
+        {
+            result.median = median.deepCopy ();
+            result.median.parent = result;
+        }
+        return result;
+    }
+
     public Associativity associativity ()
     {
         if (isFunction) return Associativity.LEFT_TO_RIGHT;  // for pow()
@@ -169,7 +180,7 @@ public class Power extends OperatorBinary
         operand0.determineUnit (fatal);
         operand1.determineUnit (fatal);
         unit = operand0.unit;
-        if (unit != null  &&  ! unit.isCompatible (AbstractUnit.ONE)  &&  operand1.isScalar ())
+        if (unit != null  &&  ! UnitValue.isCompatible (unit, AbstractUnit.ONE)  &&  operand1.isScalar ())
         {
             double value = operand1.getDouble ();
             int b = (int) value;
@@ -8,6 +8,7 @@ package gov.sandia.n2a.language.type;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -15,10 +16,10 @@ import java.util.Iterator;
 
 import gov.sandia.n2a.language.EvaluationException;
 import gov.sandia.n2a.language.Type;
+import gov.sandia.n2a.linear.MatrixCSC;
 import gov.sandia.n2a.linear.MatrixDense;
-import gov.sandia.n2a.linear.MatrixSparse;
 
-public abstract class Matrix extends Type
+public abstract class Matrix extends Type implements Serializable
 {
     public interface Visitor
     {
@@ -27,6 +28,11 @@ public abstract class Matrix extends Type
 
     public static Matrix factory (Path path) throws EvaluationException
     {
+        if (MatrixCSC.isBinary (path))
+        {
+            try {return MatrixCSC.map (path);}
+            catch (IOException exception) {throw new EvaluationException (exception.getMessage ());}
+        }
         try (BufferedReader reader = Files.newBufferedReader (path))
         {
             char buffer[] = new char[10];
@@ -35,7 +41,13 @@ public abstract class Matrix extends Type
             String line = new String (buffer);
             reader.reset ();
 
-            if (line.toLowerCase ().startsWith ("sparse")) return new MatrixSparse (reader);
+            if (line.toLowerCase ().startsWith ("sparse"))
+            {
+                // Convert to compressed form, which is cached on disk and memory-mapped.
+                // This keeps the cost of very large connection matrices close to 12 bytes per nonzero.
+                try {return MatrixCSC.open (path);}
+                catch (IOException exception) {throw new EvaluationException (exception.getMessage ());}
+            }
             // Could do further triage on file format, and call various appropriate versions of MatrixDense.load directly.
             // TODO: import Matlab format.
             return new MatrixDense (reader);
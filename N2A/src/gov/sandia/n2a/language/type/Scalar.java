@@ -6,6 +6,8 @@ the U.S. Government retains certain rights in this software.
 
 package gov.sandia.n2a.language.type;
 
+import java.io.Serializable;
+
 import gov.sandia.n2a.language.Constant;
 import gov.sandia.n2a.language.EvaluationException;
 import gov.sandia.n2a.language.Operator;
@@ -16,7 +18,7 @@ import gov.sandia.n2a.linear.MatrixDense;
 /**
     Floating-point type.
 **/
-public class Scalar extends Type
+public class Scalar extends Type implements Serializable
 {
     public double value;
 
@@ -6,6 +6,8 @@ the U.S. Government retains certain rights in this software.
 
 package gov.sandia.n2a.language.type;
 
+import java.io.Serializable;
+
 import gov.sandia.n2a.language.EvaluationException;
 import gov.sandia.n2a.language.Type;
 import gov.sandia.n2a.linear.MatrixDense;
@@ -13,7 +15,7 @@ import gov.sandia.n2a.linear.MatrixDense;
 /**
     String type.
 **/
-public class Text extends Type
+public class Text extends Type implements Serializable
 {
     public String value;
 
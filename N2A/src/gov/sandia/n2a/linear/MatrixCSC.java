@@ -0,0 +1,491 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.linear;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import gov.sandia.n2a.host.Host;
+import gov.sandia.n2a.language.EvaluationException;
+import gov.sandia.n2a.language.type.Matrix;
+
+/**
+    Read-only sparse matrix in compressed sparse column form. Costs 12 bytes per nonzero,
+    compared with several times that for the hash maps in MatrixSparse. Intended for large
+    connection matrices, which are loaded once and then only read.
+
+    <p>The arrays may live on the heap or be memory-mapped from a file in the binary format below.
+    All numbers are little-endian.
+    <pre>
+    header        8 bytes  "N2ACSC1\n"
+                  4        rows
+                  4        columns
+                  8        nonzeros
+                  8        offset of values array from start of file
+                  8        size of source file (text form), if this is a cache
+                  8        modification time of source file, in milliseconds
+    columnStart   4 * (columns + 1)  Index of first nonzero in each column. The last entry is the total count.
+    rowIndex      4 * nonzeros       Row of each nonzero, ascending within a column.
+    values        8 * nonzeros       Starts at the given offset, which is aligned to 8 bytes.
+    </pre>
+**/
+public class MatrixCSC extends Matrix
+{
+    protected int          rowCount;
+    protected int          columnCount;
+    protected IntBuffer    columnStart;
+    protected IntBuffer    rowIndex;
+    protected DoubleBuffer values;
+    protected long         sourceSize;     // Stamp of the text file this was converted from, if any. Used to validate a cached conversion.
+    protected long         sourceModified;
+
+    public static final byte[] magic      = "N2ACSC1\n".getBytes (StandardCharsets.US_ASCII);
+    public static final int    headerSize = 48;
+
+    protected MatrixCSC ()
+    {
+    }
+
+    /**
+        Builds a compact copy of the given matrix in memory.
+    **/
+    public MatrixCSC (Matrix A)
+    {
+        rowCount    = A.rows ();
+        columnCount = A.columns ();
+        int[] counts = new int[columnCount];
+        int nonzeros = 0;
+        IteratorNonzero it = A.getIteratorNonzero ();
+        while (it.next () != null)
+        {
+            counts[it.getColumn ()]++;
+            nonzeros++;
+        }
+
+        columnStart = IntBuffer   .wrap (new int   [columnCount + 1]);
+        rowIndex    = IntBuffer   .wrap (new int   [nonzeros]);
+        values      = DoubleBuffer.wrap (new double[nonzeros]);
+        int[] next = start (counts);
+        it = A.getIteratorNonzero ();
+        Double v;
+        while ((v = it.next ()) != null)
+        {
+            int p = next[it.getColumn ()]++;
+            rowIndex.put (p, it.getRow ());
+            values  .put (p, v);
+        }
+        sortColumns ();
+    }
+
+    /**
+        Opens a matrix file as a memory-mapped compressed sparse column matrix.
+        A file in the text "Sparse" format is converted once, and the binary form is cached under the local
+        resource dir (see cachePath()), so the model repository is not touched. The cache is rebuilt whenever
+        the text file changes. If the cache dir is not writable, the conversion goes to a temporary file instead.
+    **/
+    public static MatrixCSC open (Path path) throws IOException
+    {
+        if (isBinary (path)) return map (path);
+
+        long size     = Files.size (path);
+        long modified = Files.getLastModifiedTime (path).toMillis ();
+        Path cache    = cachePath (path);
+        if (Files.exists (cache))
+        {
+            try
+            {
+                MatrixCSC A = map (cache);
+                if (A.sourceSize == size  &&  A.sourceModified == modified) return A;
+            }
+            catch (IOException e) {}  // Probably a partial or damaged cache, so rebuild it.
+        }
+
+        try
+        {
+            Files.createDirectories (cache.getParent ());
+            convert (path, cache, size, modified);
+        }
+        catch (IOException e)
+        {
+            cache = Files.createTempFile ("matrix", ".csc");
+            cache.toFile ().deleteOnExit ();
+            convert (path, cache, size, modified);
+        }
+        return map (cache);
+    }
+
+    /**
+        Location of the cached binary form of the given text file. Named by a hash of the absolute path,
+        so that different files with the same name don't share an entry.
+    **/
+    public static Path cachePath (Path path)
+    {
+        Path dir = Host.getLocalResourceDir ().resolve ("cache").resolve ("matrix");
+        String name = path.getFileName ().toString ();
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance ("SHA-256");
+            md.update (path.toAbsolutePath ().normalize ().toString ().getBytes (StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder ();
+            byte[] digest = md.digest ();
+            for (int i = 0; i < 8; i++) hex.append (String.format ("%02x", digest[i]));
+            name += "-" + hex;
+        }
+        catch (NoSuchAlgorithmException e) {}  // Every Java platform is required to have SHA-256, so this won't happen.
+        return dir.resolve (name + ".csc");
+    }
+
+    public static boolean isBinary (Path path)
+    {
+        try (FileChannel channel = FileChannel.open (path))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate (magic.length);
+            while (buffer.hasRemaining ()  &&  channel.read (buffer) > 0) {}
+            return Arrays.equals (buffer.array (), magic);
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    public static MatrixCSC map (Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open (path))
+        {
+            ByteBuffer header = channel.map (MapMode.READ_ONLY, 0, headerSize).order (ByteOrder.LITTLE_ENDIAN);
+            byte[] m = new byte[magic.length];
+            header.get (m);
+            if (! Arrays.equals (m, magic)) throw new IOException ("Not a compressed sparse matrix: " + path);
+
+            MatrixCSC result = new MatrixCSC ();
+            result.rowCount       = header.getInt ();
+            result.columnCount    = header.getInt ();
+            long nonzeros         = header.getLong ();
+            long valuesOffset     = header.getLong ();
+            result.sourceSize     = header.getLong ();
+            result.sourceModified = header.getLong ();
+
+            long rowOffset = headerSize + 4l * (result.columnCount + 1);
+            if (valuesOffset < rowOffset + 4 * nonzeros  ||  valuesOffset + 8 * nonzeros > channel.size ()) throw new IOException ("Compressed sparse matrix is truncated: " + path);
+            result.columnStart = map (channel, MapMode.READ_ONLY, headerSize,   4l * (result.columnCount + 1)).asIntBuffer ();
+            result.rowIndex    = map (channel, MapMode.READ_ONLY, rowOffset,    4 * nonzeros).asIntBuffer ();
+            result.values      = map (channel, MapMode.READ_ONLY, valuesOffset, 8 * nonzeros).asDoubleBuffer ();
+            return result;  // Mappings remain valid after the channel is closed.
+        }
+    }
+
+    protected static ByteBuffer map (FileChannel channel, MapMode mode, long position, long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE) throw new IOException ("Matrix is too large to map. Limit is " + (Integer.MAX_VALUE / 8) + " nonzeros.");
+        MappedByteBuffer result = channel.map (mode, position, size);
+        result.order (ByteOrder.LITTLE_ENDIAN);
+        return result;
+    }
+
+    /**
+        Converts a text file in the "Sparse" format (as read by MatrixSparse) into the binary format.
+        Makes two passes over the text, first to count the nonzeros in each column, then to fill them in,
+        so the only memory used beyond the mapped output is a few integers per column.
+        The output is built in a uniquely-named temporary file in the same directory, then moved into place
+        atomically, so concurrent conversions of the same source never see or damage each other's work.
+        @param size Size of source, recorded in the header to validate the cache later.
+        @param modified Modification time of source, likewise.
+    **/
+    public static void convert (Path source, Path destination, long size, long modified) throws IOException
+    {
+        // Pass 1 -- count
+        int[] counts   = new int[1024];
+        int   rows     = 0;
+        int   columns  = 0;
+        long  nonzeros = 0;
+        try (BufferedReader reader = Files.newBufferedReader (source))
+        {
+            reader.readLine ();  // Throw away "Sparse" line
+            String line;
+            while ((line = reader.readLine ()) != null)
+            {
+                String[] pieces = line.trim ().split (",");
+                if (pieces.length < 3) continue;
+                int r = Integer.valueOf (pieces[0].trim ());
+                int c = Integer.valueOf (pieces[1].trim ());
+                if (c >= counts.length) counts = Arrays.copyOf (counts, Math.max (c + 1, counts.length * 2));
+                counts[c]++;
+                rows    = Math.max (rows,    r + 1);
+                columns = Math.max (columns, c + 1);
+                nonzeros++;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException ("Failed to convert input to matrix");
+        }
+        if (nonzeros > Integer.MAX_VALUE / 8) throw new IOException ("Matrix is too large to map. Limit is " + (Integer.MAX_VALUE / 8) + " nonzeros.");
+        counts = Arrays.copyOf (counts, columns);
+
+        long rowOffset    = headerSize + 4l * (columns + 1);
+        long valuesOffset = (rowOffset + 4 * nonzeros + 7) / 8 * 8;
+        Path temp = Files.createTempFile (destination.toAbsolutePath ().getParent (), destination.getFileName ().toString (), ".tmp");
+        try (FileChannel channel = FileChannel.open (temp, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MatrixCSC A = new MatrixCSC ();
+            A.rowCount    = rows;
+            A.columnCount = columns;
+            A.columnStart = map (channel, MapMode.READ_WRITE, headerSize,   4l * (columns + 1)).asIntBuffer ();
+            A.rowIndex    = map (channel, MapMode.READ_WRITE, rowOffset,    4 * nonzeros).asIntBuffer ();
+            A.values      = map (channel, MapMode.READ_WRITE, valuesOffset, 8 * nonzeros).asDoubleBuffer ();
+            int[] next = A.start (counts);
+
+            // Pass 2 -- fill
+            try (BufferedReader reader = Files.newBufferedReader (source))
+            {
+                reader.readLine ();
+                String line;
+                while ((line = reader.readLine ()) != null)
+                {
+                    String[] pieces = line.trim ().split (",");
+                    if (pieces.length < 3) continue;
+                    int    r = Integer.valueOf (pieces[0].trim ());
+                    int    c = Integer.valueOf (pieces[1].trim ());
+                    double v = Double .valueOf (pieces[2].trim ());
+                    int    p = next[c]++;
+                    A.rowIndex.put (p, r);
+                    A.values  .put (p, v);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException ("Failed to convert input to matrix");
+            }
+            A.sortColumns ();
+
+            // Header goes last, so an interrupted conversion is never mistaken for a valid cache.
+            ByteBuffer header = map (channel, MapMode.READ_WRITE, 0, headerSize);
+            header.put (magic);
+            header.putInt  (rows);
+            header.putInt  (columns);
+            header.putLong (A.columnStart.get (columns));
+            header.putLong (valuesOffset);
+            header.putLong (size);
+            header.putLong (modified);
+            ((MappedByteBuffer) header).force ();
+            channel.close ();  // Release the file before moving it. Closing twice is harmless.
+            Files.move (temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            // Clean up after any failure, including runtime exceptions such as a source file that changed between passes.
+            // After a successful move, temp no longer exists, so this does nothing.
+            try {Files.deleteIfExists (temp);}
+            catch (IOException e) {}
+        }
+    }
+
+    /**
+        Writes this matrix in the binary format, for example to save a matrix that was built in memory.
+    **/
+    public void write (Path destination) throws IOException
+    {
+        int  nonzeros     = columnStart.get (columnCount);
+        long rowOffset    = headerSize + 4l * (columnCount + 1);
+        long valuesOffset = (rowOffset + 4l * nonzeros + 7) / 8 * 8;
+        ByteBuffer buffer = ByteBuffer.allocate ((int) Math.min (valuesOffset + 8l * nonzeros, 1 << 20)).order (ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open (destination, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            buffer.put (magic);
+            buffer.putInt  (rowCount);
+            buffer.putInt  (columnCount);
+            buffer.putLong (nonzeros);
+            buffer.putLong (valuesOffset);
+            buffer.putLong (0);
+            buffer.putLong (0);
+            for (int c = 0; c <= columnCount; c++) buffer = put (channel, buffer, 4).putInt (columnStart.get (c));
+            for (int i = 0; i <  nonzeros;    i++) buffer = put (channel, buffer, 4).putInt (rowIndex.get (i));
+            for (long i = rowOffset + 4l * nonzeros; i < valuesOffset; i++) buffer = put (channel, buffer, 1).put ((byte) 0);
+            for (int i = 0; i <  nonzeros;    i++) buffer = put (channel, buffer, 8).putDouble (values.get (i));
+            buffer.flip ();
+            while (buffer.hasRemaining ()) channel.write (buffer);
+        }
+    }
+
+    /**
+        Ensures there is room for the given number of bytes, flushing the buffer to the channel if needed.
+    **/
+    protected static ByteBuffer put (FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if (buffer.remaining () >= bytes) return buffer;
+        buffer.flip ();
+        while (buffer.hasRemaining ()) channel.write (buffer);
+        buffer.clear ();
+        return buffer;
+    }
+
+    /**
+        Fills columnStart from the count of nonzeros in each column.
+        @return The insertion point for each column, initially the same as columnStart.
+    **/
+    protected int[] start (int[] counts)
+    {
+        int[] result = new int[columnCount];
+        int p = 0;
+        for (int c = 0; c < columnCount; c++)
+        {
+            columnStart.put (c, p);
+            result[c] = p;
+            p += counts[c];
+        }
+        columnStart.put (columnCount, p);
+        return result;
+    }
+
+    /**
+        Puts each column in ascending row order, as required for binary search in get().
+        Where the same element was given more than once, the last one wins, as with MatrixSparse.set().
+        Zeros are dropped. Entries only move toward the front, so this works in place.
+    **/
+    protected void sortColumns ()
+    {
+        int w = 0;  // write position
+        int s = columnStart.get (0);
+        for (int c = 0; c < columnCount; c++)
+        {
+            int e = columnStart.get (c + 1);
+            int n = e - s;
+            columnStart.put (c, w);
+
+            long[]   order = new long  [n];  // row in high bits, original position in low bits, so sorting keeps duplicates in their given order
+            double[] v     = new double[n];
+            for (int i = 0; i < n; i++)
+            {
+                order[i] = (long) rowIndex.get (s + i) << 32 | i;
+                v[i]     = values.get (s + i);
+            }
+            Arrays.sort (order);
+            for (int i = 0; i < n; i++)
+            {
+                int r = (int) (order[i] >>> 32);
+                if (i + 1 < n  &&  (int) (order[i+1] >>> 32) == r) continue;  // A later entry overrides this one.
+                double value = v[(int) order[i]];
+                if (value == 0) continue;
+                rowIndex.put (w, r);
+                values  .put (w, value);
+                w++;
+            }
+            s = e;
+        }
+        columnStart.put (columnCount, w);
+    }
+
+    public int rows ()
+    {
+        return rowCount;
+    }
+
+    public int columns ()
+    {
+        return columnCount;
+    }
+
+    public int nonzeros ()
+    {
+        return columnStart.get (columnCount);
+    }
+
+    public double get (int row, int column)
+    {
+        if (row < 0  ||  row >= rowCount  ||  column < 0  ||  column >= columnCount) return 0;
+        int lo = columnStart.get (column);
+        int hi = columnStart.get (column + 1) - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            int r   = rowIndex.get (mid);
+            if      (r < row) lo = mid + 1;
+            else if (r > row) hi = mid - 1;
+            else              return values.get (mid);
+        }
+        return 0;
+    }
+
+    public void set (int row, int column, double a)
+    {
+        throw new EvaluationException ("Compressed sparse matrix is read-only");
+    }
+
+    public MatrixSparse clear (double initialValue)
+    {
+        return new MatrixSparse (rowCount, columnCount, initialValue);
+    }
+
+    public MatrixSparse identity ()
+    {
+        return new MatrixSparse (rowCount, columnCount).identity ();
+    }
+
+    /**
+        Reads directly from the arrays, in column-major order.
+    **/
+    public static class IteratorCSC implements IteratorNonzero
+    {
+        protected MatrixCSC A;
+        protected int       count;       // total nonzeros
+        protected int       next;        // position of next nonzero
+        protected int       nextColumn;  // column that contains next
+        protected int       row;
+        protected int       column;
+
+        public IteratorCSC (MatrixCSC A)
+        {
+            this.A = A;
+            count  = A.nonzeros ();
+        }
+
+        public boolean hasNext ()
+        {
+            return next < count;
+        }
+
+        public Double next ()
+        {
+            if (next >= count) return null;
+            while (A.columnStart.get (nextColumn + 1) <= next) nextColumn++;
+            column = nextColumn;
+            row    = A.rowIndex.get (next);
+            return A.values.get (next++);
+        }
+
+        public int getRow ()
+        {
+            return row;
+        }
+
+        public int getColumn ()
+        {
+            return column;
+        }
+    }
+
+    public IteratorNonzero getIteratorNonzero ()
+    {
+        return new IteratorCSC (this);
+    }
+}
@@ -11,6 +11,13 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import gov.sandia.n2a.language.EvaluationException;
 import gov.sandia.n2a.language.Type;
@@ -33,10 +40,38 @@ public class MatrixDense extends Matrix
     protected int      strideR;  // elements to skip to reach next row at current column
     protected int      strideC;  // elements to skip to reach next column at current row
 
+    public static int blockRows    = 128;      // Tile size for multiply(). A tile of blockRows*blockInner doubles should fit comfortably in L2 cache.
+    public static int blockInner   = 128;
+    public static int parallelWork = 1 << 22;  // Number of multiply-adds in a product before it is split across threads.
+
+    protected static ThreadPoolExecutor pool;  // Shared by all parallel products. Created on first use.
+
     public MatrixDense ()
     {
     }
 
+    /**
+        Worker threads for multiply(). Sized to leave one processor for the calling thread,
+        which always computes its own share. Idle threads time out, so the pool costs nothing
+        when no large products are running.
+    **/
+    public static synchronized ThreadPoolExecutor getPool ()
+    {
+        if (pool != null) return pool;
+        int threads = Math.max (1, Runtime.getRuntime ().availableProcessors () - 1);
+        pool = new ThreadPoolExecutor (threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable> (), new ThreadFactory ()
+        {
+            public Thread newThread (Runnable r)
+            {
+                Thread result = new Thread (r, "Matrix Multiply");
+                result.setDaemon (true);
+                return result;
+            }
+        });
+        pool.allowCoreThreadTimeOut (true);
+        return pool;
+    }
+
     public MatrixDense (int rows, int columns)
     {
         this (rows, columns, 0);
@@ -68,7 +103,7 @@ public class MatrixDense extends Matrix
             MatrixDense D = (MatrixDense) A;
             for (int c = 0; c < columns; c++)
             {
-                int d   = c * D.strideC;
+                int d   = D.offset + c * D.strideC;
                 int end = d + rows * D.strideR;
                 while (d != end)
                 {
@@ -293,6 +328,15 @@ public class MatrixDense extends Matrix
         return data;
     }
 
+    /**
+        Indicates that the elements occupy a single unbroken run of the data array, in column-major order.
+        Such a matrix can be processed with one flat loop, which the JIT compiler is able to vectorize.
+    **/
+    public boolean isContiguous ()
+    {
+        return strideR == 1  &&  (strideC == rows  ||  columns <= 1);
+    }
+
     public void set (int row, int column, double a)
     {
         data[offset + row * strideR + column * strideC] = a;
@@ -394,6 +438,18 @@ public class MatrixDense extends Matrix
         if (that instanceof MatrixDense)
         {
             MatrixDense B = (MatrixDense) that;
+            if (isContiguous ()  &&  B.isContiguous ()  &&  rows == B.rows  &&  columns == B.columns)
+            {
+                MatrixDense result = new MatrixDense (rows, columns);
+                double[] r  = result.data;
+                double[] a  = data;
+                double[] b  = B.data;
+                int      ao = offset;
+                int      bo = B.offset;
+                int      n  = r.length;
+                for (int i = 0; i < n; i++) r[i] = a[ao + i] + b[bo + i];
+                return result;
+            }
             int oh = Math.min (rows,    B.rows);
             int ow = Math.min (columns, B.columns);
             MatrixDense result = new MatrixDense (rows, columns);
@@ -478,6 +534,15 @@ public class MatrixDense extends Matrix
     public MatrixDense add (double that)
     {
         MatrixDense result = new MatrixDense (rows, columns);
+        if (isContiguous ())
+        {
+            double[] r  = result.data;
+            double[] a  = data;
+            int      ao = offset;
+            int      n  = r.length;
+            for (int i = 0; i < n; i++) r[i] = a[ao + i] + that;
+            return result;
+        }
         int step = strideC - rows * strideR;
         int i = offset;
         int r = 0;
@@ -500,6 +565,18 @@ public class MatrixDense extends Matrix
         if (that instanceof MatrixDense)
         {
             MatrixDense B = (MatrixDense) that;
+            if (isContiguous ()  &&  B.isContiguous ()  &&  rows == B.rows  &&  columns == B.columns)
+            {
+                MatrixDense result = new MatrixDense (rows, columns);
+                double[] r  = result.data;
+                double[] a  = data;
+                double[] b  = B.data;
+                int      ao = offset;
+                int      bo = B.offset;
+                int      n  = r.length;
+                for (int i = 0; i < n; i++) r[i] = a[ao + i] - b[bo + i];
+                return result;
+            }
             int oh = Math.min (rows,    B.rows);
             int ow = Math.min (columns, B.columns);
             MatrixDense result = new MatrixDense (rows, columns);
@@ -586,6 +663,15 @@ public class MatrixDense extends Matrix
     public MatrixDense subtract (double that)
     {
         MatrixDense result = new MatrixDense (rows, columns);
+        if (isContiguous ())
+        {
+            double[] r  = result.data;
+            double[] a  = data;
+            int      ao = offset;
+            int      n  = r.length;
+            for (int i = 0; i < n; i++) r[i] = a[ao + i] - that;
+            return result;
+        }
         int step = strideC - rows * strideR;
         int i   = offset;
         int r   = 0;
@@ -612,30 +698,59 @@ public class MatrixDense extends Matrix
             int w = B.columns;
             int m = Math.min (columns, B.rows);
             MatrixDense result = new MatrixDense (h, w);
-            int b = B.offset;
-            int r = 0;
-            int end = rows * B.columns;
-            while (r < end)
+            if ((long) h * w * m < parallelWork  ||  w < 2)
             {
-                int a = offset;
-                int columnEnd = r + rows;
-                while (r < columnEnd)
+                multiply (B, result, 0, w);
+                return result;
+            }
+
+            // Split the columns of the result across threads. Each thread writes a disjoint set of columns, so no locking is needed.
+            ThreadPoolExecutor pool = getPool ();
+            int threads = Math.min (pool.getMaximumPoolSize () + 1, w);  // The calling thread does one share.
+            int chunk   = (w + threads - 1) / threads;
+            List<Future<?>> workers = new ArrayList<Future<?>> (threads - 1);
+            for (int t = 1; t < threads; t++)
+            {
+                int from = t * chunk;
+                int to   = Math.min (w, from + chunk);
+                if (from >= to) break;
+                workers.add (pool.submit (new Runnable ()
                 {
-                    double sum = 0;
-                    int i = a;
-                    int j = b;
-                    int rowEnd = j + m * B.strideR;
-                    while (j != rowEnd)
+                    public void run ()
                     {
-                        sum += data[i] * B.data[j];
-                        i +=   strideC;
-                        j += B.strideR;
+                        multiply (B, result, from, to);
+                    }
+                }));
+            }
+            multiply (B, result, 0, Math.min (w, chunk));
+
+            // Every share must finish before the result is complete. An interrupt doesn't stop the wait,
+            // since returning early would hand back a partial product. Instead, pass the interrupt on afterward.
+            boolean interrupted = false;
+            Throwable failure = null;
+            for (Future<?> f : workers)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        f.get ();
+                        break;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                    catch (ExecutionException e)
+                    {
+                        if (failure == null) failure = e.getCause ();
+                        break;
                     }
-                    result.data[r++] = sum;
-                    a += strideR;
                 }
-                b += B.strideC;
             }
+            if (interrupted) Thread.currentThread ().interrupt ();
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error)            throw (Error)            failure;
             return result;
         }
         if (that instanceof Matrix)
@@ -671,9 +786,121 @@ public class MatrixDense extends Matrix
         throw new EvaluationException ("type mismatch");
     }
 
+    /**
+        Computes columns [from,to) of this*B into C, which must be freshly created, so that it is zero and contiguous.
+        All three kernels add the products for each element in the same order, so they give identical results.
+    **/
+    public void multiply (MatrixDense B, MatrixDense C, int from, int to)
+    {
+        int      h  = rows;
+        int      m  = Math.min (columns, B.rows);
+        double[] a  = data;
+        double[] b  = B.data;
+        double[] c  = C.data;
+        int      bR = B.strideR;
+        int      bC = B.strideC;
+
+        if (strideR == 1)
+        {
+            // Columns of A are contiguous, so accumulate scaled columns of A into each column of C.
+            // The inner loop is a simple axpy, which the JIT vectorizes. Tiles of A are sized to stay in cache while they are applied to every column of C.
+            for (int i0 = 0; i0 < h; i0 += blockRows)
+            {
+                int i1 = Math.min (h, i0 + blockRows);
+                for (int k0 = 0; k0 < m; k0 += blockInner)
+                {
+                    int k1 = Math.min (m, k0 + blockInner);
+                    for (int j = from; j < to; j++)
+                    {
+                        int cj = j * h;
+                        int bj = B.offset + j * bC;
+                        for (int k = k0; k < k1; k++)
+                        {
+                            double s  = b[bj + k * bR];
+                            int    ak = offset + k * strideC;
+                            for (int i = i0; i < i1; i++) c[cj + i] += s * a[ak + i];
+                        }
+                    }
+                }
+            }
+            return;
+        }
+
+        if (strideC == 1  &&  bR == 1)
+        {
+            // Rows of A and columns of B are contiguous, as when A is a transposed view.
+            // Each element of C is a dot product. Work on four columns of B at once, so each element of A is loaded once per four products.
+            int j = from;
+            for (; j + 3 < to; j += 4)
+            {
+                int b0 = B.offset + j * bC;
+                int b1 = b0 + bC;
+                int b2 = b1 + bC;
+                int b3 = b2 + bC;
+                int cj = j * h;
+                for (int i = 0; i < h; i++)
+                {
+                    int ai = offset + i * strideR;
+                    double s0 = 0;
+                    double s1 = 0;
+                    double s2 = 0;
+                    double s3 = 0;
+                    for (int k = 0; k < m; k++)
+                    {
+                        double ak = a[ai + k];
+                        s0 += ak * b[b0 + k];
+                        s1 += ak * b[b1 + k];
+                        s2 += ak * b[b2 + k];
+                        s3 += ak * b[b3 + k];
+                    }
+                    c[cj         + i] = s0;
+                    c[cj +     h + i] = s1;
+                    c[cj + 2 * h + i] = s2;
+                    c[cj + 3 * h + i] = s3;
+                }
+            }
+            for (; j < to; j++)
+            {
+                int bj = B.offset + j * bC;
+                int cj = j * h;
+                for (int i = 0; i < h; i++)
+                {
+                    int ai = offset + i * strideR;
+                    double sum = 0;
+                    for (int k = 0; k < m; k++) sum += a[ai + k] * b[bj + k];
+                    c[cj + i] = sum;
+                }
+            }
+            return;
+        }
+
+        // General strides
+        for (int j = from; j < to; j++)
+        {
+            int bj = B.offset + j * bC;
+            int cj = j * h;
+            for (int i = 0; i < h; i++)
+            {
+                double sum = 0;
+                int ai = offset + i * strideR;
+                for (int k = 0; k < m; k++) sum += a[ai + k * strideC] * b[bj + k * bR];
+                c[cj + i] = sum;
+            }
+        }
+    }
+
     public MatrixDense multiply (double scalar)
     {
         MatrixDense result = new MatrixDense (rows, columns);
+        if (isContiguous ())
+        {
+            double[] r  = result.data;
+            double[] a  = data;
+            int      ao = offset;
+            int      n  = r.length;
+            for (int i = 0; i < n; i++) r[i] = a[ao + i] * scalar;
+            return result;
+        }
         int step = strideC - rows * strideR;
         int i   = offset;
         int r   = 0;
@@ -696,6 +923,18 @@ public class MatrixDense extends Matrix
         if (that instanceof MatrixDense)
         {
             MatrixDense B = (MatrixDense) that;
+            if (isContiguous ()  &&  B.isContiguous ()  &&  rows == B.rows  &&  columns == B.columns)
+            {
+                MatrixDense result = new MatrixDense (rows, columns);
+                double[] r  = result.data;
+                double[] a  = data;
+                double[] b  = B.data;
+                int      ao = offset;
+                int      bo = B.offset;
+                int      n  = r.length;
+                for (int i = 0; i < n; i++) r[i] = a[ao + i] * b[bo + i];
+                return result;
+            }
             int oh = Math.min (rows,    B.rows);
             int ow = Math.min (columns, B.columns);
             MatrixDense result = new MatrixDense (rows, columns);
@@ -800,6 +1039,18 @@ public class MatrixDense extends Matrix
         if (that instanceof MatrixDense)
         {
             MatrixDense B = (MatrixDense) that;
+            if (isContiguous ()  &&  B.isContiguous ()  &&  rows == B.rows  &&  columns == B.columns)
+            {
+                MatrixDense result = new MatrixDense (rows, columns);
+                double[] r  = result.data;
+                double[] a  = data;
+                double[] b  = B.data;
+                int      ao = offset;
+                int      bo = B.offset;
+                int      n  = r.length;
+                for (int i = 0; i < n; i++) r[i] = a[ao + i] / b[bo + i];
+                return result;
+            }
             int oh = Math.min (rows,    B.rows);
             int ow = Math.min (columns, B.columns);
             MatrixDense result = new MatrixDense (rows, columns);
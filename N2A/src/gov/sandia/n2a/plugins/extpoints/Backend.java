@@ -19,6 +19,7 @@ import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
 import java.util.List;
 import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.host.Heartbeat;
 import gov.sandia.n2a.host.Host;
 import gov.sandia.n2a.host.Host.ProcessInfo;
 import gov.sandia.n2a.host.Remote;
@@ -157,6 +158,18 @@ public abstract class Backend implements ExtensionPoint
         return true;
     }
 
+    /**
+        @return Minimum milliseconds between successive job starts (or canRunNow() polls) on the given host.
+        The pause gives each new process time to show up in the resource accounting done by canRunNow(),
+        so a burst of jobs doesn't overcommit the host. A remote host is slow to query, so it gets a full second.
+        A local host can be queried cheaply, and the pause is scaled down by its processor count.
+    **/
+    public long startInterval (Host host, MNode job)
+    {
+        if (host instanceof Remote) return 1000;
+        return 1000 / Math.max (1, host.getProcessorTotal ());
+    }
+
     /**
         Copies files specified in $meta.host.file to remote system.
         @param model The model to be executed. Must be collated far enough that $meta.host.file is fully defined.
@@ -225,9 +238,13 @@ public abstract class Backend implements ExtensionPoint
 
     /**
         Return an estimate of the current $t in the active simulation.
+        The default implementation uses the heartbeat file if the job writes one,
+        and otherwise scans the tail of an output file.
     **/
     public double currentSimTime (MNode job)
     {
+        Heartbeat beat = Heartbeat.read (job);
+        if (beat != null) return beat.t;
         String out = getOutFileName (job);
         return getSimTimeFromOutput (job, out, 0);
     }
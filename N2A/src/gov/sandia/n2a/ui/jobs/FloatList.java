@@ -0,0 +1,99 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.ui.jobs;
+
+import java.util.Arrays;
+
+/**
+    Growable list of primitive floats. Replaces List&lt;Float&gt; for column data, where
+    a long trace would otherwise hold millions of boxed values.
+    Only provides the handful of List-like operations that output parsing and plotting need.
+**/
+public class FloatList
+{
+    protected float[] data;
+    protected int     size;
+
+    public FloatList ()
+    {
+        data = new float[16];
+    }
+
+    public int size ()
+    {
+        return size;
+    }
+
+    public boolean isEmpty ()
+    {
+        return size == 0;
+    }
+
+    public float get (int index)
+    {
+        if (index < 0  ||  index >= size) throw new IndexOutOfBoundsException (index);
+        return data[index];
+    }
+
+    public void set (int index, float value)
+    {
+        if (index < 0  ||  index >= size) throw new IndexOutOfBoundsException (index);
+        data[index] = value;
+    }
+
+    public void add (float value)
+    {
+        if (size == data.length) data = Arrays.copyOf (data, data.length * 2);
+        data[size++] = value;
+    }
+
+    /**
+        Discards all elements at or beyond the given index.
+    **/
+    public void truncate (int newSize)
+    {
+        if (newSize < size) size = Math.max (0, newSize);
+    }
+
+    /**
+        Puts elements into ascending order.
+    **/
+    public void sort ()
+    {
+        Arrays.sort (data, 0, size);
+    }
+
+    /**
+        Assuming the elements in [from,to) are in ascending order, finds the first index
+        in that range whose value is not less than the given value. Returns "to" if every
+        value is less.
+    **/
+    public int lowerBound (double value, int from, int to)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (data[mid] < value) from = mid + 1;
+            else                   to   = mid;
+        }
+        return from;
+    }
+
+    /**
+        Same as lowerBound(), except finds the first index whose value is strictly greater.
+    **/
+    public int upperBound (double value, int from, int to)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (data[mid] <= value) from = mid + 1;
+            else                    to   = mid;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.ui.jobs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+    Multi-resolution summary of a column, used to draw long traces with only as many points
+    as there are pixels. Each level divides the column into buckets of equal width and records
+    the position of the smallest and largest value in each bucket. Level 0 has buckets of
+    "base" rows, and each higher level doubles the bucket width.
+
+    Drawing the min and max of each bucket (in row order) preserves the visual envelope of
+    the trace, including isolated spikes, which plain subsampling would miss. NaN values are
+    passed over when choosing the extremes.
+
+    The pyramid can be extended as rows are appended to the column, such as while a job is
+    still running. Only the last (partial) bucket of each level gets recomputed.
+**/
+public class MinMaxPyramid
+{
+    public static final int base = 8;  // Rows per bucket at level 0. Keeps the pyramid much smaller than the data itself.
+
+    protected List<Level> levels = new ArrayList<Level> ();
+    protected int         size;  // Number of rows currently summarized.
+
+    protected static class Level
+    {
+        int[] min = new int[16];  // Row index of smallest value in each bucket.
+        int[] max = new int[16];  // Row index of largest value in each bucket.
+        int   count;
+
+        void ensure (int capacity)
+        {
+            if (capacity <= min.length) return;
+            int newLength = Math.max (capacity, min.length * 2);
+            min = Arrays.copyOf (min, newLength);
+            max = Arrays.copyOf (max, newLength);
+        }
+    }
+
+    /**
+        Brings the pyramid up to date with the given column data.
+        Assumes that rows summarized earlier have not changed, only that new rows were appended.
+        If the column got shorter, then the pyramid is rebuilt from scratch.
+    **/
+    public void update (FloatList values)
+    {
+        int n = values.size ();
+        if (n == size) return;
+        if (n < size)
+        {
+            levels.clear ();
+            size = 0;
+        }
+        int from = size;
+        size = n;
+        if (n == 0) return;
+
+        int   bucketSize = base;
+        Level lower      = null;
+        for (int l = 0; ; l++)
+        {
+            if (l == levels.size ()) levels.add (new Level ());
+            Level level = levels.get (l);
+            int count = (n + bucketSize - 1) / bucketSize;
+            level.ensure (count);
+            for (int b = from / bucketSize; b < count; b++)
+            {
+                int lo;
+                int hi;
+                if (lower == null)  // Scan raw data.
+                {
+                    int start = b * bucketSize;
+                    int end   = Math.min (start + bucketSize, n);
+                    int[] extremes = scan (values.data, start, end);
+                    lo = extremes[0];
+                    hi = extremes[1];
+                }
+                else  // Combine a pair of buckets from the level below.
+                {
+                    int a = 2 * b;
+                    lo = lower.min[a];
+                    hi = lower.max[a];
+                    if (++a < lower.count)
+                    {
+                        if (less (values.data, lower.min[a], lo)) lo = lower.min[a];
+                        if (less (values.data, hi, lower.max[a])) hi = lower.max[a];
+                    }
+                }
+                level.min[b] = lo;
+                level.max[b] = hi;
+            }
+            level.count = count;
+            if (count <= 1) break;
+            lower = level;
+            bucketSize *= 2;
+        }
+    }
+
+    /**
+        Determines whether row a holds a smaller value than row b. NaN counts as neither smaller
+        nor larger than anything, so a NaN row is replaced by the first real value that comes along.
+    **/
+    protected static boolean less (float[] data, int a, int b)
+    {
+        float va = data[a];
+        float vb = data[b];
+        if (Float.isNaN (va)) return false;
+        if (Float.isNaN (vb)) return true;
+        return va < vb;
+    }
+
+    protected static boolean greater (float[] data, int a, int b)
+    {
+        float va = data[a];
+        float vb = data[b];
+        if (Float.isNaN (va)) return false;
+        if (Float.isNaN (vb)) return true;
+        return va > vb;
+    }
+
+    /**
+        @return Positions of the smallest and largest value in rows [start,end), skipping NaN.
+        If every row is NaN, both positions are start.
+    **/
+    protected static int[] scan (float[] data, int start, int end)
+    {
+        int lo = start;
+        int hi = start;
+        for (int i = start + 1; i < end; i++)
+        {
+            if (less    (data, i, lo)) lo = i;
+            if (greater (data, i, hi)) hi = i;
+        }
+        return new int[] {lo, hi};
+    }
+
+    /**
+        Selects a subset of rows in [from,to) that draws essentially the same picture as the full
+        range when displayed at the given horizontal resolution. Always includes the first row of
+        the range, so the trace connects properly to whatever lies beyond the edge.
+        Buckets that straddle either end of the range are scanned directly, so the result never
+        includes rows outside [from,to) and never misses the extremes of a partial bucket.
+        @param values The same column given to update().
+        @param buckets Number of horizontal divisions on screen, typically the width in pixels.
+        @return Row indices in ascending order. If the range is already small enough, returns null,
+        indicating that the caller should use the raw data.
+    **/
+    public int[] select (FloatList values, int from, int to, int buckets)
+    {
+        int count = to - from;
+        if (count <= 2 * buckets  ||  levels.isEmpty ()) return null;
+
+        // Find the finest level whose buckets are at least as wide as one screen division.
+        int l          = 0;
+        int bucketSize = base;
+        while (l < levels.size () - 1  &&  bucketSize * buckets < count)
+        {
+            l++;
+            bucketSize *= 2;
+        }
+        Level level = levels.get (l);
+
+        int b0 = from / bucketSize;
+        int b1 = Math.min ((to - 1) / bucketSize, level.count - 1);
+        int[] result = new int[2 * (b1 - b0 + 1) + 2];
+        int n = 0;
+        result[n++] = from;
+        for (int b = b0; b <= b1; b++)
+        {
+            int lo = level.min[b];
+            int hi = level.max[b];
+            int start = b * bucketSize;
+            int end   = start + bucketSize;
+            if (start < from  ||  end > to)  // Partial bucket, so its stored extremes may lie outside the range.
+            {
+                int[] extremes = scan (values.data, Math.max (start, from), Math.min (end, to));
+                lo = extremes[0];
+                hi = extremes[1];
+            }
+            if (lo > hi)
+            {
+                int temp = lo;
+                lo = hi;
+                hi = temp;
+            }
+            if (lo > result[n-1]) result[n++] = lo;
+            if (hi > result[n-1]) result[n++] = hi;
+        }
+        if (to - 1 > result[n-1]) result[n++] = to - 1;
+        return Arrays.copyOf (result, n);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.ui.jobs;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.sandia.n2a.db.MNode;
+import gov.sandia.n2a.db.MVolatile;
+import gov.sandia.n2a.db.Schema;
+import gov.sandia.n2a.ui.jobs.PanelRun.DisplayThread;
+
+/**
+    Shows the performance counters that a simulation writes when $meta.backend.c.counters
+    or $meta.backend.internal.profile is set. See runtime/counters.h in the C backend for the
+    file format. The Internal backend adds an optional "variables" breakdown under each population,
+    and "sample" when the numbers are estimated from a subset of events.
+**/
+@SuppressWarnings("serial")
+public class NodeCounters extends NodeFile
+{
+    public static final String[] phases = {"integrate", "update", "finalize", "connect"};
+
+    public NodeCounters (Path path)
+    {
+        super (path);
+        setUserObject ("Counters");
+    }
+
+    @Override
+    public boolean couldHaveColumns ()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isGraphable ()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean render (DisplayThread dt)
+    {
+        MNode counters = new MVolatile ();
+        String text;
+        try (BufferedReader reader = Files.newBufferedReader (path))
+        {
+            Schema.readAll (counters, reader);
+            text = format (counters);
+        }
+        catch (Exception e)
+        {
+            text = "Unable to read counters file: " + e.getMessage ();
+        }
+
+        PanelRun pr = PanelRun.instance;
+        synchronized (pr.displayPane)
+        {
+            if (dt == pr.displayThread) pr.showStatus (text);
+        }
+        return true;
+    }
+
+    /**
+        Produces a plain-text table with one row per population, sorted by total time.
+        Times are exclusive. That is, a container's time does not include the populations it holds.
+    **/
+    public static String format (MNode counters)
+    {
+        long wall = counters.getOrDefault (0l, "wall");
+        long total = 0;
+        MNode populations = counters.childOrEmpty ("populations");
+        for (MNode p : populations) total += time (p);
+
+        StringBuilder result = new StringBuilder ();
+        result.append (String.format ("%-32s %10s %6s", "population", "ms", "%"));
+        for (String phase : phases) result.append (String.format (" %10s", phase));
+        result.append (String.format (" %10s %10s %10s%n", "births", "deaths", "spikes"));
+
+        List<MNode> sorted = new ArrayList<MNode> ();
+        for (MNode p : populations) sorted.add (p);
+        sorted.sort ((a, b) -> Long.compare (time (b), time (a)));
+        for (MNode p : sorted)
+        {
+            long time = time (p);
+            result.append (String.format ("%-32s %10.3f %6.1f", p.get ("name"), time / 1e6, total > 0 ? 100.0 * time / total : 0));
+            for (String phase : phases) result.append (String.format (" %10.3f", p.getOrDefault (0l, phase, "time") / 1e6));
+            result.append (String.format (" %10d %10d %10d%n",
+                p.getOrDefault (0l, "births"),
+                p.getOrDefault (0l, "deaths"),
+                p.getOrDefault (0l, "spikes")));
+
+            MNode variables = p.child ("variables");
+            if (variables == null) continue;
+            List<MNode> sortedVariables = new ArrayList<MNode> ();
+            for (MNode v : variables) sortedVariables.add (v);
+            sortedVariables.sort ((a, b) -> Long.compare (b.getOrDefault (0l, "time"), a.getOrDefault (0l, "time")));
+            for (MNode v : sortedVariables)
+            {
+                long vtime = v.getOrDefault (0l, "time");
+                result.append (String.format ("  %-30s %10.3f %6.1f %10d calls%n", v.get ("name"), vtime / 1e6, time > 0 ? 100.0 * vtime / time : 0, v.getOrDefault (0l, "calls")));
+            }
+        }
+
+        result.append (String.format ("%-32s %10.3f%n", "total", total / 1e6));
+        int sample = counters.getOrDefault (1, "sample");
+        if (wall > 0)
+        {
+            // When sampling, total is only an estimate, so the difference from wall is not meaningful.
+            if (sample <= 1) result.append (String.format ("%-32s %10.3f %6.1f%n", "other (queue, output, ...)", (wall - total) / 1e6, 100.0 * (wall - total) / wall));
+            result.append (String.format ("%-32s %10.3f%n", "wall", wall / 1e6));
+        }
+        if (sample > 1) result.append (String.format ("%ntimes estimated from 1 in %d events%n", sample));
+        result.append (String.format ("%nevent queue: %d events, mean depth %.1f, max depth %d%n",
+            counters.getOrDefault (0l, "queue", "events"),
+            counters.getOrDefault (0.0, "queue", "mean"),
+            counters.getOrDefault (0l, "queue", "max")));
+        return result.toString ();
+    }
+
+    protected static long time (MNode population)
+    {
+        long result = 0;
+        for (String phase : phases) result += population.getOrDefault (0l, phase, "time");
+        return result;
+    }
+}
@@ -25,6 +25,7 @@ public class NodeFile extends NodeBase
     protected ImageIcon icon;
     protected boolean   found;  // Flag to indicate if associated file was found during last scan.
     protected Thread    thread; // For remote hosts, the thread that is currently retrieving this file.
+    protected Thread    reducer; // For remote hosts, the thread that is currently computing the envelope of this file. See PanelRun.reduce().
 
     public static final ImageIcon iconIn  = ImageUtil.getImage ("file_in.gif");
     public static final ImageIcon iconOut = ImageUtil.getImage ("file_out.gif");
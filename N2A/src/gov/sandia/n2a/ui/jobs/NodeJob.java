@@ -11,6 +11,7 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -21,18 +22,22 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import gov.sandia.n2a.db.AppData;
 import gov.sandia.n2a.db.MCombo;
 import gov.sandia.n2a.db.MDoc;
+import gov.sandia.n2a.db.MFrozen;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MPart;
 import gov.sandia.n2a.db.MPartRepo;
 import gov.sandia.n2a.db.MVolatile;
 import gov.sandia.n2a.db.Schema;
+import gov.sandia.n2a.host.Heartbeat;
 import gov.sandia.n2a.host.Host;
 import gov.sandia.n2a.host.Remote;
 import gov.sandia.n2a.language.UnitValue;
@@ -41,6 +46,7 @@ import gov.sandia.n2a.ui.MainFrame;
 import gov.sandia.n2a.ui.Utility;
 import gov.sandia.n2a.ui.images.ImageUtil;
 import gov.sandia.n2a.ui.studies.PanelStudy;
+import gov.sandia.n2a.ui.studies.Study;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
@@ -58,13 +64,20 @@ import javax.swing.tree.TreePath;
     Keys defined for "job" MDoc that resides in each job directory:
     $inherit -- key of model in database
     backend -- ID designating the backend
+    batch -- Set when the model requests Internal batch mode. Simulations share digested models and
+             are limited by thread count rather than process accounting. See InternalBackend.canRunNow().
     duration -- Expected amount of sim time for model.
     errSize -- Number of bytes in err file after backend preparations were completed.
                Any error output by the simulation itself should append to this.
+    heartbeat -- Set when the simulator writes a "heartbeat" file in the job directory. See Heartbeat.
     host -- Name of system that will run the simulation. May contain a hierarchy of additional keys.
     lineLength -- How many bytes back from current end of output file to start scanning for timestamp.
     pid -- OS identifier for the simulation process. Used to monitor or kill the job.
     progress -- Name of output file used to monitor for current sim time.
+    reduced -- Each child is the name of a remote output file, and its value is the size of that file
+               when its envelope was last computed. See OutputReduction.
+    snapshotBase -- Key of the study whose snapshot holds the bulk of the model. When present,
+                    the job's own snapshot contains only the values that differ from the base.
     started -- Unix time when backend started working on the job.
     status -- Human-readable description of preparation work the backend is doing now.
               If missing or blank, then the job is actually executing.
@@ -85,27 +98,42 @@ public class NodeJob extends NodeBase
     public static final ImageIcon iconLingering = ImageUtil.getImage ("lingering.png");
     public static final ImageIcon iconStopped   = ImageUtil.getImage ("stop.gif");
 
-    protected static HashSet<String> forbiddenSuffixes = new HashSet<String> (Arrays.asList ("err", "out", "columns"));
+    protected static HashSet<String> forbiddenSuffixes = new HashSet<String> (Arrays.asList ("err", "out", "columns", "envelope"));
     protected static HashSet<String> imageSuffixes     = new HashSet<String> (Arrays.asList (ImageIO.getReaderFileSuffixes ()));  // We don't expect to load image handling plugins after startup, so one-time initialization is fine.
     public    static HashSet<String> videoSuffixes     = new HashSet<String> (Arrays.asList ("mp4", "m4v", "mov", "qt", "avi", "flv", "mkv", "wmv", "asf", "webm", "h264", "mpeg", "mpg", "vob", "3gp"));  // Some typical video file suffixes. Others will be added from FFmpeg, if available.
 
-    public    String  key;
-    protected String  inherit         = "";
-    public    double  complete        = -1; // A number between 0 and 1, where 0 means just started (including preparation and waiting in HPC queue) and 1 means done. -1 means unknown or waiting for host. 2 means failed. 3 means killed-lingering. 4 means killed-dead.
-    public    Date    dateStarted     = null;
-    public    Date    dateFinished    = null;
-    protected double  expectedSimTime = 0;  // If greater than 0, then we can use this to estimate percent complete.
-    protected double  lastSimTime     = 0;  // Even if expectedSimTime is unknown, we can still compare this to check for progress.
-    protected String  lastStatus      = "";
-    protected long    lastMonitored   = 0;
-    protected long    lastActive      = 0;
-    protected long    died            = 0;  // Marks time when process died. Enables us to wait a little bit for "finished" to be written.
-    public    boolean deleted;
-    public    boolean old;                  // Indicates that the associated job existed before the current invocation of this app started. Used to limit which hosts are automatically enabled.
-    protected boolean tryToSelectOutput;
+    public    String    key;
+    protected String    inherit         = "";
+    public    double    complete        = -1; // A number between 0 and 1, where 0 means just started (including preparation and waiting in HPC queue) and 1 means done. -1 means unknown or waiting for host. 2 means failed. 3 means killed-lingering. 4 means killed-dead.
+    public    Date      dateStarted     = null;
+    public    Date      dateFinished    = null;
+    protected double    expectedSimTime = 0;  // If greater than 0, then we can use this to estimate percent complete.
+    protected double    lastSimTime     = 0;  // Even if expectedSimTime is unknown, we can still compare this to check for progress.
+    public    Heartbeat heartbeat;            // Most recent status record, if the job writes them.
+    public    double    simRate;              // Sim-seconds per wall-second, measured between the two most recent heartbeats.
+    protected String    lastStatus      = "";
+    protected volatile long    lastMonitored = 0;  // Written by expedite() from other threads.
+    protected volatile boolean notified;           // Set by expedite(), so monitorProgress() knows the host reported some change directly.
+    protected long      lastFetched     = 0;  // When monitorProgress() last tried to copy the "finished" file from a remote host.
+    protected long      lastActive      = 0;
+    protected long      died            = 0;  // Marks time when process died. Enables us to wait a little bit for "finished" to be written.
+    public    boolean   deleted;
+    public    boolean   old;                  // Indicates that the associated job existed before the current invocation of this app started. Used to limit which hosts are automatically enabled.
+    protected boolean   tryToSelectOutput;
 
     public static final long activeTimeout = 1000 * 1000;  // 1000 seconds, or about 20 minutes
 
+    protected static List<JobListener> listeners = new CopyOnWriteArrayList<JobListener> ();
+
+    /**
+        Receives notice when any job reaches a terminal state (complete >= 1) or leaves one, such as on reset.
+        Notification comes on whatever thread detected the change, so the listener should do minimal work.
+    **/
+    public interface JobListener
+    {
+        public void jobChanged (NodeJob job);
+    }
+
     public NodeJob (MNode source, boolean newlyStarted)
     {
         key = source.key ();
@@ -138,6 +166,21 @@ public class NodeJob extends NodeBase
         return iconUnknown;
     }
 
+    public static void addJobListener (JobListener l)
+    {
+        listeners.add (l);
+    }
+
+    public static void removeJobListener (JobListener l)
+    {
+        listeners.remove (l);
+    }
+
+    public void fireJobChanged ()
+    {
+        for (JobListener l : listeners) l.jobChanged (this);
+    }
+
     public MNode getSource ()
     {
         return AppData.runs.child (key);
@@ -171,14 +214,19 @@ public class NodeJob extends NodeBase
         Host h = Host.get (source);
         h.unmonitor (this);
 
+        boolean wasTerminal;
         synchronized (this)
         {
             // Reset variables to initial state.
+            wasTerminal     = complete >= 1;
             complete        = -1;
             dateStarted     = null;
             dateFinished    = null;
             expectedSimTime = 0;
+            heartbeat       = null;
+            simRate         = 0;
             lastMonitored   = 0;
+            lastFetched     = 0;
             lastActive      = 0;
 
             // Purge files
@@ -211,11 +259,22 @@ public class NodeJob extends NodeBase
             }
             catch (IOException e) {}
         }
+        if (wasTerminal) fireJobChanged ();
 
         PanelRun panelRun = PanelRun.instance;
         if (! panelRun.tree.isCollapsed (new TreePath (getPath ()))) build (panelRun.tree);
     }
 
+    /**
+        Switch the record of a finished job to compact read-only form, since it is rarely
+        modified after this point. A later write (such as the user renaming the job) simply
+        turns it back into a regular document.
+    **/
+    public static void freeze (MNode source)
+    {
+        if (source instanceof MDoc) ((MDoc) source).freeze ();
+    }
+
     /**
         Load job data in and decide which host thread should monitor it.
     **/
@@ -237,7 +296,11 @@ public class NodeJob extends NodeBase
         {
             dateStarted = new Date (started);
             if (deleted) return;
-            if (complete >= 1  &&  complete != 3) return;
+            if (complete >= 1  &&  complete != 3)
+            {
+                freeze (source);
+                return;
+            }
             Host.get (source).monitor (this);
         }
         else if (! source.isEmpty ())  // Not started yet, so send to wait-for-host queue. The guard on source.isEmpty() prevents a partially-deleted job from being mistaken for a new job.
@@ -291,6 +354,9 @@ public class NodeJob extends NodeBase
         temp = model.get ("$meta", "duration");
         if (! temp.isEmpty ()) job.set (temp, "duration");
 
+        // Batch mode changes how the Internal backend counts resources, so job assignment needs to see it.
+        if (model.getFlag ("$meta", "backend", "internal", "batch")) job.set ("1", "batch");
+
         // "seed" is merely trivia. However, it is useful for reproducing a run,
         // so is frequently displayed to user. To avoid constantly opening the
         // model, we copy it over to the job record.
@@ -318,6 +384,48 @@ public class NodeJob extends NodeBase
         }
     }
 
+    /**
+        @return Milliseconds until monitorProgress() is due to check this job again.
+        Zero or negative means the check can happen immediately, without sleeping.
+    **/
+    public long monitorDelay ()
+    {
+        return 1000 - (System.currentTimeMillis () - lastMonitored);
+    }
+
+    /**
+        Clears the throttle on monitorProgress(), so the next call checks immediately.
+        Used when some direct notice (rather than polling) indicates the job has changed.
+    **/
+    public void expedite ()
+    {
+        notified      = true;
+        lastMonitored = 0;
+    }
+
+    /**
+        If the job is on a remote host, copies its "finished" file here, if it exists there yet.
+        @return true if the local "finished" file exists.
+    **/
+    protected boolean fetchFinished (MNode source, Host env, Path finished)
+    {
+        if (Files.exists (finished)) return true;
+        if (! (env instanceof Remote)) return false;
+        @SuppressWarnings("resource")
+        Remote remote = (Remote) env;
+        if (! remote.isConnected ()  &&  ! remote.isEnabled ()) return false;
+        lastFetched = System.currentTimeMillis ();
+        try
+        {
+            Path remoteJobDir = Host.getJobDir (env.getResourceDir (), source);
+            Path remoteFinished = remoteJobDir.resolve ("finished");
+            Files.copy (remoteFinished, finished);  // throws an exception if the remote file does not exist
+            return true;
+        }
+        catch (Exception e) {}
+        return false;
+    }
+
     public synchronized void monitorProgress ()
     {
         if (deleted) return;
@@ -331,29 +439,21 @@ public class NodeJob extends NodeBase
             try {Thread.sleep (wait);}
             catch (InterruptedException e) {}
         }
-        lastMonitored = System.currentTimeMillis ();
+        long now = System.currentTimeMillis ();
+        lastMonitored = now;
+        boolean expedited = notified;
+        notified = false;
 
         double oldComplete = complete;
         MNode source = getSource ();
         Host env = Host.get (source);
         Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), source);
         // If job is remote, attempt to grab its state files.
+        // When the host has a live watcher, it tells us when "finished" appears, so only fetch on that notice.
+        // A slow periodic fetch remains as a fallback, in case the job finished before the watcher started.
+        // Once the process is gone, the dead-job check below fetches on every pass regardless.
         Path finished = localJobDir.resolve ("finished");
-        if (! Files.exists (finished)  &&  env instanceof Remote)
-        {
-            @SuppressWarnings("resource")
-            Remote remote = (Remote) env;
-            if (remote.isConnected ()  ||  remote.isEnabled ())
-            {
-                try
-                {
-                    Path remoteJobDir = Host.getJobDir (env.getResourceDir (), source);
-                    Path remoteFinished = remoteJobDir.resolve ("finished");
-                    Files.copy (remoteFinished, finished);  // throws an exception if the remote file does not exist
-                }
-                catch (Exception e) {}
-            }
-        }
+        if (expedited  ||  ! env.isWatching ()  ||  now - lastFetched > 60000) fetchFinished (source, env, finished);
 
         if (complete == -1)
         {
@@ -368,7 +468,21 @@ public class NodeJob extends NodeBase
         Backend simulator = Backend.getBackend (source.get ("backend"));
         if (complete >= 0  &&  complete < 1)
         {
-            double currentSimTime = simulator.currentSimTime (source);
+            double currentSimTime;
+            Heartbeat beat = Heartbeat.read (source);
+            if (beat == null)
+            {
+                currentSimTime = simulator.currentSimTime (source);
+            }
+            else
+            {
+                currentSimTime = beat.t;
+                if (heartbeat == null  ||  beat.wall != heartbeat.wall)
+                {
+                    simRate   = beat.rate (heartbeat);
+                    heartbeat = beat;
+                }
+            }
             if (expectedSimTime == 0) expectedSimTime = new UnitValue (source.get ("duration")).get ();
             double percentDone = 0;
             if (expectedSimTime > 0)  percentDone = currentSimTime / expectedSimTime;
@@ -379,7 +493,7 @@ public class NodeJob extends NodeBase
             }
             else
             {
-                long now = System.currentTimeMillis ();
+                now = System.currentTimeMillis ();
                 String status = source.get ("status");
                 boolean waiting =  complete == 0  &&  (source.get ("queue").startsWith ("PEND")  ||  ! status.isBlank ());
                 if (waiting  ||  simulator.isAlive (source))
@@ -397,6 +511,10 @@ public class NodeJob extends NodeBase
                     {
                         died = now;
                     }
+                    else if (fetchFinished (source, env, finished))  // The watcher may not have noticed "finished" yet, so check directly rather than guess.
+                    {
+                        checkFinished (finished);
+                    }
                     else if (now - died > 10000)  // Wait 10 seconds for "finished" file to be written. Otherwise, we assume the job crashed.
                     {
                         try
@@ -437,6 +555,9 @@ public class NodeJob extends NodeBase
             }
         }
 
+        if (complete != oldComplete  &&  complete >= 1  &&  complete != 3) freeze (source);
+        if ((complete >= 1) != (oldComplete >= 1)) fireJobChanged ();  // Only notify on entering or leaving a terminal state, not on every progress update.
+
         PanelRun   panelRun   = PanelRun.instance;
         PanelStudy panelStudy = PanelStudy.instance;
         if (panelRun == null) return;  // Probably running headless, so skip all UI updates.
@@ -665,6 +786,7 @@ public class NodeJob extends NodeBase
             if (fileName.equals     ("model"   )) return false;  // ditto (old style)
             if (fileName.equals     ("started" )) return false;
             if (fileName.equals     ("finished")) return false;
+            if (fileName.equals     ("heartbeat")) return false;  // binary progress record, shown in the job summary instead
 
             String suffix = "";
             String[] pieces = fileName.split ("\\.");
@@ -672,12 +794,13 @@ public class NodeJob extends NodeBase
 
             if (forbiddenSuffixes.contains (suffix)) return false;
             if (otherForbiddenSuffixes != null  &&  otherForbiddenSuffixes.contains (suffix)) return false;
-            if      (fileName.equals ("out"))         newNode = new NodeOutput (path);
-            else if (fileName.equals ("err"))         newNode = new NodeError  (path);
-            else if (fileName.equals ("err1"))        newNode = new NodeError  (path);
-            else if (imageSuffixes.contains (suffix)) newNode = new NodeImage  (path);
-            else if (videoSuffixes.contains (suffix)) newNode = new NodeVideo  (path);
-            else                                      newNode = new NodeFile   (path);
+            if      (fileName.equals ("out"))         newNode = new NodeOutput   (path);
+            else if (fileName.equals ("err"))         newNode = new NodeError    (path);
+            else if (fileName.equals ("err1"))        newNode = new NodeError    (path);
+            else if (fileName.equals ("counters"))    newNode = new NodeCounters (path);
+            else if (imageSuffixes.contains (suffix)) newNode = new NodeImage    (path);
+            else if (videoSuffixes.contains (suffix)) newNode = new NodeVideo    (path);
+            else                                      newNode = new NodeFile     (path);
         }
 
         existing.put (fileName, newNode);
@@ -702,16 +825,13 @@ public class NodeJob extends NodeBase
     public static MNode getModel (MNode job)
     {
         if (job == null) return null;
-        Path localJobDir  = Host.getJobDir (Host.getLocalResourceDir (), job);
-        Path snapshotPath = localJobDir.resolve ("snapshot");
-        Path modelPath    = localJobDir.resolve ("model");
-        String key        = job.get ("$inherit");
+        String key = job.get ("$inherit");
 
-        if (Files.exists (snapshotPath))  // mini-repo snapshot
-        {
-            MNode snapshot = new MDoc (snapshotPath);  // Load the mini-repo
-            return getMPartSnapshot (key, snapshot);
-        }
+        MNode snapshot = getSnapshot (job);
+        if (snapshot != null) return getMPartSnapshot (key, snapshot);  // mini-repo snapshot
+
+        Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);
+        Path modelPath   = localJobDir.resolve ("model");
         if (Files.exists (modelPath))  // collated snapshot
         {
             return new MDoc (modelPath, key);
@@ -720,6 +840,71 @@ public class NodeJob extends NodeBase
         return new MPartRepo (AppData.docs.childOrEmpty ("models", key));
     }
 
+    /**
+        Loads the mini-repo saved in the job dir. If the job belongs to a study that keeps a base snapshot,
+        then the job's snapshot only contains differences, and this function overlays them on the base.
+        Only documents that actually differ are copied. All others are shared with the cached base.
+        @return The mini-repo, or null if the job has no snapshot.
+    **/
+    public static MNode getSnapshot (MNode job)
+    {
+        Path localJobDir  = Host.getJobDir (Host.getLocalResourceDir (), job);
+        Path snapshotPath = localJobDir.resolve ("snapshot");
+        if (! Files.exists (snapshotPath)) return null;
+        MNode snapshot = MFrozen.read (snapshotPath);  // The snapshot is never modified, so use the compact read-only form.
+
+        String baseKey = job.get ("snapshotBase");
+        if (baseKey.isEmpty ()) return snapshot;
+        MNode base   = getSnapshotBase (baseKey);
+        MNode models = base;
+        if (models == null) models = AppData.docs.childOrEmpty ("models");  // Study was deleted without its jobs. Best we can do is overlay on current models.
+
+        MVolatile result = new MVolatile ();
+        for (MNode d : snapshot)
+        {
+            MNode b = models.child (d.key ());
+            if (b == null)
+            {
+                result.link (d);
+                continue;
+            }
+            MVolatile merged = new MVolatile (null, d.key ());
+            merged.merge (b);
+            merged.merge (d);
+            result.link (merged);
+        }
+        if (base != null)
+        {
+            for (MNode b : base) if (result.child (b.key ()) == null) result.link (b);
+        }
+        return result;
+    }
+
+    protected static Map<String,SoftReference<MFrozen>> snapshotBases = new HashMap<String,SoftReference<MFrozen>> ();
+
+    /**
+        Retrieves the base snapshot for the given study, using a cache so that all samples share one copy in memory.
+        @return The mini-repo, or null if the study has no base snapshot.
+    **/
+    public static MFrozen getSnapshotBase (String studyKey)
+    {
+        synchronized (snapshotBases)
+        {
+            SoftReference<MFrozen> reference = snapshotBases.get (studyKey);
+            if (reference != null)
+            {
+                MFrozen result = reference.get ();
+                if (result != null) return result;
+            }
+
+            Path basePath = Study.getDir (studyKey).resolve ("snapshot");
+            if (! Files.exists (basePath)) return null;
+            MFrozen result = MFrozen.read (basePath);
+            snapshotBases.put (studyKey, new SoftReference<MFrozen> (result));
+            return result;
+        }
+    }
+
     /**
         Constructs an MPart tree for the model with the given key,
         using the given snapshot to override the main "models" database.
@@ -743,9 +928,19 @@ public class NodeJob extends NodeBase
         @param job The job record, used only to determine name of job directory.
     **/
     public static void saveSnapshot (MNode doc, MNode job)
+    {
+        Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);  // The path is also contained in the job MDoc node.
+        saveSnapshot (doc, localJobDir.resolve ("snapshot"));
+    }
+
+    /**
+        Writes the model and its associated base models to the given file.
+        @return true if a snapshot was written. false if snapshots are disabled or the write failed.
+    **/
+    public static boolean saveSnapshot (MNode doc, Path path)
     {
         String snapshotMode = AppData.state.get ("General", "snapshot");
-        if (snapshotMode.startsWith ("No")) return;  // Save nothing
+        if (snapshotMode.startsWith ("No")) return false;  // Save nothing
 
         // Save main model (all other snapshot modes)
         MVolatile snapshot = new MVolatile ();
@@ -754,19 +949,53 @@ public class NodeJob extends NodeBase
         // Save referenced models
         if (snapshotMode.startsWith ("All")) addInherits (doc, snapshot);
 
-        // Write snapshot to disk
+        return writeSnapshot (snapshot, path);
+    }
+
+    /**
+        Writes only the parts of the model which differ from the given base snapshot.
+        The caller is responsible to set "snapshotBase" in the job record, so that getSnapshot()
+        knows to reconstruct the full model.
+        @param doc The main model, as in saveSnapshot(MNode,MNode).
+        @param base The mini-repo shared by all jobs of a study.
+    **/
+    public static void saveSnapshot (MNode doc, MNode job, MNode base)
+    {
+        String key = doc.key ();
+        MVolatile delta = new MVolatile (null, key);
+        delta.merge (doc);
+        MNode baseDoc = base.child (key);
+        if (baseDoc != null) delta.uniqueValues (baseDoc);
+
+        MVolatile snapshot = new MVolatile ();
+        snapshot.link (delta);
+
+        // Iteration over model structure could pull in models that the base does not have.
+        if (AppData.state.get ("General", "snapshot").startsWith ("All"))
+        {
+            MVolatile inherits = new MVolatile ();
+            addInherits (doc, inherits);
+            for (MNode p : inherits) if (base.child (p.key ()) == null) snapshot.link (p);
+        }
+
+        Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);
+        writeSnapshot (snapshot, localJobDir.resolve ("snapshot"));
+    }
+
+    public static boolean writeSnapshot (MNode snapshot, Path path)
+    {
         // See MDoc.save () for similar code.
         // We don't create an MDoc here because it would require duplicating the snapshot in memory.
-        Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);  // The path is also contained in the job MDoc node.
-        Path modelPath   = localJobDir.resolve ("snapshot");
-        try (BufferedWriter writer = Files.newBufferedWriter (modelPath))
+        try (BufferedWriter writer = Files.newBufferedWriter (path))
         {
             Schema.latest ().writeAll (snapshot, writer);
+            return true;
         }
         catch (IOException e)
         {
             System.err.println ("Failed to write snapshot file.");
             e.printStackTrace ();
+            return false;
         }
     }
 
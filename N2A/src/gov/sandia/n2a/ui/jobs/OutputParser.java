@@ -18,6 +18,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import gov.sandia.n2a.db.MDoc;
 import gov.sandia.n2a.db.MNode;
@@ -26,22 +27,25 @@ import tech.units.indriya.AbstractUnit;
 
 public class OutputParser
 {
-    public List<Column> columns = new ArrayList<Column> ();
-    public boolean      raw = true;  // Indicates that all column names are empty, likely the result of output() in raw mode. Will be changed to false if any non-empty column name is found.
-    public char         delimiter = ' ';
-    public boolean      delimiterSet;
-    public boolean      isXycePRN;
-    public Column       time;
-    public boolean      timeFound;  // Indicates that time is a properly-labeled column, rather than a fallback.
-    public int          rows;
-    public SafeReader   reader;
-    public float        defaultValue;
-    public double       xmin = Double.NaN; // Bounds for chart. If not specified, then simply fit to data.
-    public double       xmax = Double.NaN; // Note that "x" is always time.
-    public double       ymin = Double.NaN;
-    public double       ymax = Double.NaN;
-    public boolean      scatter;   // If true, don't connect dots. Also make no assumption about progress along X axis.
-    public double       duration;  // Expected time when job is finished. If nonzero and xmax not specified, then set bounds of graph to [0,duration].
+    public List<Column>   columns = new ArrayList<Column> ();
+    public boolean        raw = true;  // Indicates that all column names are empty, likely the result of output() in raw mode. Will be changed to false if any non-empty column name is found.
+    public char           delimiter = ' ';
+    public boolean        delimiterSet;
+    public boolean        isXycePRN;
+    public Column         time;
+    public boolean        timeFound;  // Indicates that time is a properly-labeled column, rather than a fallback.
+    public int            rows;
+    public SafeReader     reader;
+    public float          defaultValue;
+    public double         xmin = Double.NaN; // Bounds for chart. If not specified, then simply fit to data.
+    public double         xmax = Double.NaN; // Note that "x" is always time.
+    public double         ymin = Double.NaN;
+    public double         ymax = Double.NaN;
+    public boolean        scatter;   // If true, don't connect dots. Also make no assumption about progress along X axis.
+    public double         duration;  // Expected time when job is finished. If nonzero and xmax not specified, then set bounds of graph to [0,duration].
+    public OutputSegments segments;  // If non-null, then data is loaded a window at a time by parseWindow(), rather than all at once by parse().
+    public int[]          selection; // Positions in the file of the columns that parseWindow() should load. Null means all columns.
+    protected int[]       positions; // Position in the file of each entry in columns. Null means they are the same.
 
     public static Map<String,Color> HTMLcolors = new HashMap<String,Color> ();
     static
@@ -81,54 +85,12 @@ public class OutputParser
                 char chars[] = line.toCharArray ();
                 if (! delimiterSet)
                 {
-                    // Scan for first delimiter character that is not inside a quote.
-                    boolean inQuote = false;
-                    for (char c : chars)
-                    {
-                        if (c == '\"')
-                        {
-                            inQuote = ! inQuote;
-                            continue;
-                        }
-                        if (inQuote) continue;
-                        if (c == '\t')
-                        {
-                            delimiter = c;
-                            break;
-                        }
-                        if (c == ',') delimiter = c;
-                        // space character is lowest precedence
-                    }
+                    delimiter    = detectDelimiter (chars);
                     delimiterSet =  delimiter != ' '  ||  ! line.isBlank ();
                 }
 
-                // Break line into delimited strings, possibly quoted.
                 List<String> parts = new ArrayList<String> (columns.size ());
-                boolean inQuote = false;
-                StringBuilder token = new StringBuilder ();
-                for (int i = 0; i < chars.length; i++)
-                {
-                    char c = chars[i];
-                    if (c == '\"')
-                    {
-                        if (inQuote  &&  i < chars.length - 1  &&  chars[i+1] == '\"')
-                        {
-                            token.append (c);
-                            i++;
-                            continue;
-                        }
-                        inQuote = ! inQuote;
-                        continue;
-                    }
-                    if (c == delimiter  &&  ! inQuote)
-                    {
-                        parts.add (token.toString ());
-                        token.setLength (0);
-                        continue;
-                    }
-                    token.append (c);
-                }
-                if (! token.isEmpty ()) parts.add (token.toString ());
+                split (chars, delimiter, parts);
 
                 int partsSize = parts.size ();
                 int lastSize = columns.size ();
@@ -147,26 +109,8 @@ public class OutputParser
                     {
                         Column c = columns.get (p);
                         String part = parts.get (p);
-                        float value = defaultValue;
-                        if (! part.isEmpty ())
-                        {
-                            try
-                            {
-                                value = Float.parseFloat (part);
-                            }
-                            catch (NumberFormatException e)
-                            {
-                                // parseFloat() does not detect "inf" correctly
-                                part = part.toLowerCase ();
-                                if (part.endsWith ("inf"))
-                                {
-                                    if (part.startsWith ("-")) value = Float.NEGATIVE_INFINITY;
-                                    else                       value = Float.POSITIVE_INFINITY;
-                                }
-                            }
-                            c.textWidth = Math.max (c.textWidth, part.length ());
-                        }
-                        c.values.add (value);
+                        c.values.add (parseValue (part, defaultValue));
+                        c.textWidth = Math.max (c.textWidth, part.length ());
                     }
                     for (; p < columns.size (); p++) columns.get (p).values.add (defaultValue);  // Because the structure is not sparse, we must fill out every row.
                     rows++;
@@ -192,17 +136,229 @@ public class OutputParser
         // If this is a Xyce PRN file, then there won't also be a columns file, so no need to worry about column numbering.
         if (isXycePRN) columns.remove (0);
 
-        // If there is a separate columns file, open and parse it.
+        parseColumns (path);
+    }
+
+    /**
+        Loads the rows around the given time window through segments, replacing any data already loaded.
+        Unlike parse(), this is not incremental. Each call builds a fresh set of columns, so that
+        a display holding the previous set is not disturbed while the new one is assembled.
+        @param path The local copy of the file, if any. Only used to find the columns file.
+        @return The window that was actually loaded. If its stride is greater than 1, the rows
+        are only a sample of the window.
+    **/
+    public OutputSegments.Window parseWindow (Path path, double start, double end) throws IOException
+    {
+        int[] wanted;
+        OutputSegments.Window window;
+        while (true)
+        {
+            wanted = selection;
+            int headerCount = segments.headers.size ();
+            if (wanted == null)
+            {
+                int first = segments.isXycePRN ? 1 : 0;  // Skip Index column, as parse() does.
+                int count = Math.max (headerCount - first, 0);
+                wanted = new int[count];
+                for (int i = 0; i < count; i++) wanted[i] = first + i;
+            }
+            window = segments.window (start, end, wanted);
+            // A header line partway through the file can add columns. If we want all columns, go around again to pick them up.
+            if (selection != null  ||  segments.headers.size () == headerCount) break;
+        }
+
+        // Assemble columns in file order, always including time.
+        TreeSet<Integer> sorted = new TreeSet<Integer> ();
+        for (int w : wanted) sorted.add (w);
+        sorted.add (segments.timeColumn);
+        List<Column> newColumns = new ArrayList<Column> (sorted.size ());
+        int[] newPositions = new int[sorted.size ()];
+        int newRows = 0;
+        for (OutputSegments.Segment s : window.segments) newRows += s.rows;
+        boolean newRaw = true;
+        int i = 0;
+        for (int position : sorted)
+        {
+            Column c = new Column ();
+            if (position < segments.headers.size ()) c.header = segments.headers.get (position);
+            if (! c.header.isEmpty ()) newRaw = false;
+            for (OutputSegments.Segment s : window.segments)
+            {
+                FloatList values = position == segments.timeColumn ? s.time : s.values.get (position);
+                for (int r = 0; r < s.rows; r++) c.values.add (values == null ? defaultValue : values.get (r));
+            }
+            newColumns.add (c);
+            newPositions[i++] = position;
+        }
+
+        columns   = newColumns;
+        positions = newPositions;
+        rows      = newRows;
+        raw       = newRaw;
+        isXycePRN = segments.isXycePRN;
+        timeFound = false;
+        if (! columns.isEmpty ()) parseColumns (path);
+        return window;
+    }
+
+    /**
+        Maps a position in the file to an index in columns.
+        @return -1 if the column at that position is not loaded.
+    **/
+    public int columnAt (int position)
+    {
+        if (positions == null) return position < columns.size () ? position : -1;
+        for (int i = 0; i < positions.length; i++) if (positions[i] == position) return i;
+        return -1;
+    }
+
+    /**
+        Scans for the first delimiter character that is not inside a quote.
+        Tab takes precedence over comma, and space is the fallback.
+    **/
+    public static char detectDelimiter (char[] chars)
+    {
+        char result = ' ';
+        boolean inQuote = false;
+        for (char c : chars)
+        {
+            if (c == '\"')
+            {
+                inQuote = ! inQuote;
+                continue;
+            }
+            if (inQuote) continue;
+            if (c == '\t') return c;
+            if (c == ',') result = c;
+            // space character is lowest precedence
+        }
+        return result;
+    }
+
+    /**
+        Breaks line into delimited strings, possibly quoted.
+    **/
+    public static void split (char[] chars, char delimiter, List<String> parts)
+    {
+        boolean inQuote = false;
+        StringBuilder token = new StringBuilder ();
+        for (int i = 0; i < chars.length; i++)
+        {
+            char c = chars[i];
+            if (c == '\"')
+            {
+                if (inQuote  &&  i < chars.length - 1  &&  chars[i+1] == '\"')
+                {
+                    token.append (c);
+                    i++;
+                    continue;
+                }
+                inQuote = ! inQuote;
+                continue;
+            }
+            if (c == delimiter  &&  ! inQuote)
+            {
+                parts.add (token.toString ());
+                token.setLength (0);
+                continue;
+            }
+            token.append (c);
+        }
+        if (! token.isEmpty ()) parts.add (token.toString ());
+    }
+
+    /**
+        Converts one field of a numeric row. Empty fields get defaultValue.
+    **/
+    public static float parseValue (String part, float defaultValue)
+    {
+        if (part.isEmpty ()) return defaultValue;
+        try
+        {
+            return Float.parseFloat (part);
+        }
+        catch (NumberFormatException e)
+        {
+            // parseFloat() does not detect "inf" correctly
+            part = part.toLowerCase ();
+            if (part.endsWith ("inf"))
+            {
+                if (part.startsWith ("-")) return Float.NEGATIVE_INFINITY;
+                else                       return Float.POSITIVE_INFINITY;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+        Determines if the given output file was written in event mode. See parseEvents().
+    **/
+    public static boolean isEventFile (Path path)
+    {
+        Path columnPath = path.getParent ().resolve (path.getFileName ().toString () + ".columns");
+        if (! Files.isReadable (columnPath)) return false;
+        return new MDoc (columnPath).getFlag ("0", "events");
+    }
+
+    /**
+        Reads a file written in event mode. Rather than a dense row for each time step,
+        each line gives the time of one event and the position of the column it belongs to,
+        the same position the column would have in a regular output file.
+        The values of each column are then simply its event times, in the order written.
+        This keeps size and parse time proportional to the number of events, which matters
+        for something like a spike raster with many neurons that rarely fire.
+        Like parse(), this can be called repeatedly to pick up newly-added lines.
+    **/
+    public void parseEvents (Path path)
+    {
+        try
+        {
+            if (reader == null) reader = new SafeReader (path);
+            else                reader.open (path);
+            while (true)
+            {
+                String line = reader.readLine ();
+                if (line == null) break;
+                String[] parts = line.split ("\t");
+                if (parts.length < 2) continue;
+                try
+                {
+                    float t     = Float.parseFloat  (parts[0]);
+                    int   index = Integer.parseInt (parts[1].trim ());
+                    if (index < 0) continue;
+                    while (columns.size () <= index)
+                    {
+                        Column c = new Column ();
+                        columns.add (c);
+                    }
+                    columns.get (index).values.add (t);
+                }
+                catch (NumberFormatException e) {}
+            }
+        }
+        catch (IOException e) {}
+        if (reader != null) reader.close ();
+        if (columns.size () == 0) return;
+
+        parseColumns (path);
+        // Column names only come from the columns file, so their presence takes the place of a header line.
+        for (Column c : columns) if (c != time  &&  ! c.header.isEmpty ()) raw = false;
+    }
+
+    /**
+        Applies the separate columns file, if it exists, then determines which column is time.
+    **/
+    public void parseColumns (Path path)
+    {
         MDoc columnFile = null;
-        Path jobDir = path.getParent ();
-        Path columnPath = jobDir.resolve (path.getFileName ().toString () + ".columns");
-        if (Files.isReadable (columnPath))
+        Path columnPath = path == null ? null : path.getParent ().resolve (path.getFileName ().toString () + ".columns");
+        if (columnPath != null  &&  Files.isReadable (columnPath))
         {
             columnFile = new MDoc (columnPath);
             for (MNode n : columnFile)
             {
-                int columnIndex = Integer.valueOf (n.key ());
-                if (columnIndex >= columns.size ()) break;
+                int columnIndex = columnAt (Integer.valueOf (n.key ()));
+                if (columnIndex < 0) continue;
                 Column c = columns.get (columnIndex);
                 c.header = n.getOrDefault (c.header);
 
@@ -272,7 +428,7 @@ public class OutputParser
                 timeFound = true;
                 if (columnFile != null)
                 {
-                    MNode n = columnFile.child (i);
+                    MNode n = columnFile.childOrEmpty (positions == null ? i : positions[i]);
                     scatter = n.getFlag ("scatter");
                     xmin = (float) n.getOrDefault (xmin, "xmin");
                     xmax = (float) n.getOrDefault (xmax, "xmax");
@@ -356,25 +512,28 @@ public class OutputParser
 
     public static class Column
     {
-        public String      header = "";
-        public int         index;  // If this is a spike raster, then header should convert to an integer.
-        public List<Float> values = new ArrayList<Float> ();
-        public int         startRow;
-        public int         textWidth;
-        public double      min    = Double.POSITIVE_INFINITY;
-        public double      max    = Double.NEGATIVE_INFINITY;
-        public double      range;
-        public UnitValue   scale;
-        public Color       color;
-        public float       width  = 1;
-        public float[]     dash;
-        public Object      data;  // optional data that client code associates with this column
+        public String        header = "";
+        public int           index;  // If this is a spike raster, then header should convert to an integer.
+        public FloatList     values = new FloatList ();
+        public int           startRow;
+        public int           textWidth;
+        public double        min    = Double.POSITIVE_INFINITY;
+        public double        max    = Double.NEGATIVE_INFINITY;
+        public double        range;
+        public UnitValue     scale;
+        public Color         color;
+        public float         width  = 1;
+        public float[]       dash;
+        public Object        data;  // optional data that client code associates with this column
+        public MinMaxPyramid pyramid;  // optional summary for drawing at reduced resolution. Built on demand by client code.
 
         public void computeStats ()
         {
-            for (Float f : values)
+            int count = values.size ();
+            for (int i = 0; i < count; i++)
             {
-                if (f.isInfinite ()  ||  f.isNaN ()) continue;
+                float f = values.get (i);
+                if (Float.isInfinite (f)  ||  Float.isNaN (f)) continue;
                 min = Math.min (min, f);
                 max = Math.max (max, f);
             }
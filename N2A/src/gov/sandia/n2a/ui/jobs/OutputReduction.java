@@ -0,0 +1,133 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.ui.jobs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import gov.sandia.n2a.host.Host;
+import gov.sandia.n2a.host.Host.AnyProcess;
+
+/**
+    Reduces an output file on the host where it lives, so that only a compact summary crosses the network.
+    The work is done by a short awk program fed to the remote shell, since awk is present on any
+    Unix-like host and needs no build step. The result is an ordinary output file, which any
+    OutputParser can read.
+**/
+public class OutputReduction
+{
+    public static int buckets = 2048;  // Number of slices in an envelope. Like Plot.resolution, roughly the widest chart in pixels.
+
+    /**
+        The script is fed through stdin, so it needs no quoting. Positional parameters:
+        $1 file, $2 bytes to read, $3 buckets, $4 time column, $5 columns to skip at start (Xyce Index),
+        $6 delimiter code (t, c or s), $7 comma-separated list of columns to keep (empty means all).
+        All column numbers are 1-based, as awk counts them.
+        Each bucket covers an equal share of the file by bytes, which is close to an equal share of rows.
+        It produces two rows: the minimum of each column at the time of the first row in the bucket,
+        and the maximum at the time of the last row. Header lines are passed through, so columns added
+        partway through the file are picked up the same way OutputParser does it.
+    **/
+    public static final String envelopeScript =
+          "LC_ALL=C\n"
+        + "export LC_ALL\n"
+        + "head -c \"$2\" \"$1\" | awk -v S=\"$2\" -v B=\"$3\" -v T=\"$4\" -v X=\"$5\" -v D=\"$6\" -v K=\"$7\" '\n"
+        + "function want (c) {return c == T  ||  (n ? (c in keep) : c > X)}\n"
+        + "function flush (  c, lo, hi, sep) {\n"
+        + "  if (! rows) return\n"
+        + "  for (c = 1; c <= W; c++) {\n"
+        + "    if (! want(c)) continue\n"
+        + "    if      (c == T)   {lo = lo sep t0;     hi = hi sep t1}\n"
+        + "    else if (c in mn)  {lo = lo sep mn[c];  hi = hi sep mx[c]}\n"
+        + "    else               {lo = lo sep;        hi = hi sep}\n"
+        + "    sep = \"\\t\"\n"
+        + "  }\n"
+        + "  print lo\n"
+        + "  if (rows > 1) print hi\n"
+        + "  split (\"\", mn); split (\"\", mx); rows = 0\n"
+        + "}\n"
+        + "BEGIN {\n"
+        + "  if (D == \"t\") FS = \"\\t\"; else if (D == \"c\") FS = \",\"; else FS = \"[ ]\"\n"
+        + "  CONVFMT = \"%.7g\"; OFMT = CONVFMT\n"
+        + "  n = split (K, k, \",\"); for (i = 1; i <= n; i++) keep[k[i]] = 1\n"
+        + "  b = -1\n"
+        + "}\n"
+        + "{bytes += length ($0) + 1}\n"
+        + "$0 == \"\"  ||  /^End of/ {next}\n"
+        + "!/^[-+.0-9]/ {\n"
+        + "  flush (); b = -1\n"
+        + "  line = \"\"; sep = \"\"\n"
+        + "  for (c = 1; c <= NF; c++) if (want(c)) {line = line sep $c; sep = \"\\t\"}\n"
+        + "  print line\n"
+        + "  if (NF > W) W = NF\n"
+        + "  next\n"
+        + "}\n"
+        + "{\n"
+        + "  nb = int (bytes * B / S); if (nb >= B) nb = B - 1\n"
+        + "  if (nb != b) {flush (); b = nb; t0 = $T}\n"
+        + "  t1 = $T\n"
+        + "  if (NF > W) W = NF\n"
+        + "  for (c = 1; c <= NF; c++) {\n"
+        + "    if (c == T  ||  $c == \"\"  ||  ! want(c)) continue\n"
+        + "    v = $c + 0\n"
+        + "    if (! (c in mn)) {mn[c] = v; mx[c] = v}\n"
+        + "    else {if (v < mn[c]) mn[c] = v; if (v > mx[c]) mx[c] = v}\n"
+        + "  }\n"
+        + "  rows++\n"
+        + "}\n"
+        + "END {flush ()}\n"
+        + "'\n";
+
+    /**
+        Computes a min/max envelope of the given file on its own host, and writes it to a local file.
+        The envelope holds at most 2*buckets rows, regardless of the size of the original.
+        @param env The host where the file lives.
+        @param segments Describes the remote file. Its size determines how much of the file is read,
+        so a file that is still growing gives a consistent snapshot.
+        @param columns Positions in the file of the columns to keep, as in OutputParser.selection.
+        Time is always kept. Null means all columns.
+        @param destination Local file to receive the result. Any previous content is replaced.
+    **/
+    public static void envelope (Host env, OutputSegments segments, int[] columns, Path destination) throws Exception
+    {
+        String keep = "";
+        if (columns != null)
+        {
+            for (int c : columns) keep += "," + (c + 1);
+            if (! keep.isEmpty ()) keep = keep.substring (1);
+        }
+        String delimiter = "s";
+        if      (segments.delimiter == '\t') delimiter = "t";
+        else if (segments.delimiter == ',')  delimiter = "c";
+
+        try (AnyProcess proc = env.build ("sh", "-s", env.quote (segments.path), String.valueOf (segments.size), String.valueOf (buckets),
+                                          String.valueOf (segments.timeColumn + 1), segments.isXycePRN ? "1" : "0", delimiter, keep).start ())
+        {
+            try (OutputStream stdin = proc.getOutputStream ())
+            {
+                stdin.write (envelopeScript.getBytes ("UTF-8"));
+            }
+
+            Path temp = destination.resolveSibling ("new." + destination.getFileName ());  // Don't disturb an existing envelope until the new one is complete. Keeps the same suffix, so the file stays hidden from the job's file list.
+            try (InputStream stdout = proc.getInputStream ())
+            {
+                Files.copy (stdout, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            proc.waitFor ();
+            if (proc.exitValue () != 0)
+            {
+                Files.deleteIfExists (temp);
+                throw new IOException ("Failed to reduce " + segments.path + ":\n" + Host.streamToString (proc.getErrorStream ()));
+            }
+            Files.move (temp, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
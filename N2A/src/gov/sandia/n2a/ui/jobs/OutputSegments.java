@@ -0,0 +1,453 @@
+/*
+Copyright 2026 National Technology & Engineering Solutions of Sandia, LLC (NTESS).
+Under the terms of Contract DE-NA0003525 with NTESS,
+the U.S. Government retains certain rights in this software.
+*/
+
+package gov.sandia.n2a.ui.jobs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+    Windowed access to an output file that is too large to load whole, or that lives on a remote
+    host and is too large to copy. The file is divided into fixed-size byte ranges ("segments").
+    Each segment holds the rows that start within its range. Only the segments that overlap a
+    requested time window are fetched and decoded, and only for the requested columns.
+    Decoded segments are kept in an LRU cache.
+
+    The path may be on any file system that supports positioned reads through Files.newByteChannel(),
+    including the remote file systems provided by Host. One channel serves all the reads of a single
+    window load. Each fetch is still a separate request, so segments are large enough to amortize the round trip.
+
+    Rows are located by time, using a binary search over the first row of each segment.
+    This assumes the time column is ascending, which is true of any output file written by a backend.
+**/
+public class OutputSegments
+{
+    public static int  segmentSize     = 1 << 20;    // bytes
+    public static int  budget          = 32;         // Maximum number of segments decoded for a single window. Wider windows are sampled at a stride.
+    public static int  cacheSize       = 64;         // Maximum number of decoded segments to hold. Should be at least budget.
+    public static long remoteThreshold = 64l << 20;  // Remote files larger than this are viewed through segments rather than copied.
+    public static long localThreshold  = 1l  << 30;  // Local files larger than this are viewed through segments rather than loaded whole.
+
+    public Path         path;
+    public long         size;       // As of the most recent call to window().
+    public char         delimiter = ' ';
+    public boolean      isXycePRN;
+    public List<String> headers   = new ArrayList<String> ();  // Column names, by position in the file.
+    public int          timeColumn;
+    public float        defaultValue;
+
+    protected SeekableByteChannel  channel;  // Held open for the duration of one public call, so a window load costs one connection rather than one per read.
+    protected Map<Integer,Double>  starts = new HashMap<Integer,Double> ();  // Time of first row in each segment, for binary search. Only holds segments that will not change.
+    protected Map<Integer,Segment> cache  = new LinkedHashMap<Integer,Segment> (16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry (Map.Entry<Integer,Segment> eldest)
+        {
+            return size () > cacheSize;
+        }
+    };
+
+    public static class Segment
+    {
+        public int                    index;
+        public int                    rows;
+        public long                   fileSize;  // Size of file when this segment was fetched.
+        public boolean                complete;  // Segment lies entirely within the file, including the end of its last row. Otherwise, the file was still being written, and this segment must be fetched again.
+        public FloatList              time;
+        public Map<Integer,FloatList> values = new HashMap<Integer,FloatList> ();  // Keyed by column position in the file.
+    }
+
+    /**
+        The segments covering a time window, along with how they were selected.
+    **/
+    public static class Window
+    {
+        public double        start;
+        public double        end;
+        public int           stride;  // 1 means every segment in the window is present. Larger values mean the data is a sample.
+        public List<Segment> segments = new ArrayList<Segment> ();
+    }
+
+    /**
+        Reads the header from the start of the file. Does not fetch any data segments.
+    **/
+    public OutputSegments (Path path) throws IOException
+    {
+        this.path = path;
+        size = Files.size (path);
+
+        byte[] bytes;
+        open ();
+        try
+        {
+            bytes = read (0, (int) Math.min (size, 65536));
+        }
+        finally
+        {
+            close ();
+        }
+        int p = 0;
+        while (p < bytes.length)
+        {
+            int e = endOfLine (bytes, p, bytes.length);
+            String line = new String (bytes, p, e - p, StandardCharsets.UTF_8);
+            p = startOfLine (bytes, e, bytes.length);
+            if (line.isEmpty ()  ||  line.startsWith ("End of")) continue;
+            char[] chars = line.toCharArray ();
+            if (headers.isEmpty ()) delimiter = OutputParser.detectDelimiter (chars);
+            if (isNumeric (chars[0])) break;
+            List<String> parts = new ArrayList<String> ();
+            OutputParser.split (chars, delimiter, parts);
+            isXycePRN = parts.get (0).equals ("Index");
+            for (int i = headers.size (); i < parts.size (); i++) headers.add (parts.get (i));
+        }
+
+        // Determine time column, with the same preference as OutputParser.parseColumns()
+        int timeMatch = 0;
+        for (int i = 0; i < headers.size (); i++)
+        {
+            String h = headers.get (i);
+            int potentialMatch = 0;
+            if      (h.equals ("t"   )) potentialMatch = 1;
+            else if (h.equals ("TIME")) potentialMatch = 2;
+            else if (h.equals ("$t"  )) potentialMatch = 3;
+            if (potentialMatch > timeMatch)
+            {
+                timeMatch  = potentialMatch;
+                timeColumn = i;
+            }
+        }
+    }
+
+    public static boolean isNumeric (char fc)
+    {
+        return  fc == '-'  ||  fc == '+'  ||  fc == '.'  ||  fc >= '0'  &&  fc <= '9';
+    }
+
+    public int segmentCount ()
+    {
+        return (int) ((size + segmentSize - 1) / segmentSize);
+    }
+
+    /**
+        Time of the first row in the file, or NaN if there are no rows.
+    **/
+    public synchronized double firstTime () throws IOException
+    {
+        size = Files.size (path);
+        boolean opened = open ();
+        try
+        {
+            for (int i = 0; i < segmentCount (); i++)
+            {
+                double t = startTime (i);
+                if (! Double.isNaN (t)) return t;
+            }
+            return Double.NaN;
+        }
+        finally
+        {
+            if (opened) close ();
+        }
+    }
+
+    /**
+        Time of the last row in the file, or NaN if there are no rows.
+    **/
+    public synchronized double lastTime () throws IOException
+    {
+        size = Files.size (path);
+        boolean opened = open ();
+        try
+        {
+            for (int i = segmentCount () - 1; i >= 0; i--)
+            {
+                Segment s = get (i, new int[0]);
+                if (s.rows > 0) return s.time.get (s.rows - 1);
+            }
+            return Double.NaN;
+        }
+        finally
+        {
+            if (opened) close ();
+        }
+    }
+
+    /**
+        Collects the segments needed to cover the given time window, in order.
+        If more than budget segments are needed, they are sampled at a uniform stride,
+        always including the first and last. This gives a coarse overview of a long run
+        at bounded cost. Segments with no rows are omitted.
+        @param columns Positions in the file of the columns to decode. The time column is always included.
+    **/
+    public synchronized Window window (double start, double end, int[] columns) throws IOException
+    {
+        Window result = new Window ();
+        result.start = start;
+        result.end   = end;
+        size = Files.size (path);
+        int count = segmentCount ();
+        if (count == 0) return result;
+
+        boolean opened = open ();
+        try
+        {
+            int first = find (start, count);
+            int last  = find (end,   count);
+            result.stride = Math.max (1, (last - first + budget) / budget);
+            for (int i = first; i <= last; i += result.stride)
+            {
+                if (i + result.stride > last) i = last;  // Always end with the last segment, even if it breaks the stride.
+                Segment s = get (i, columns);
+                if (s.rows > 0) result.segments.add (s);
+            }
+        }
+        finally
+        {
+            if (opened) close ();
+        }
+        return result;
+    }
+
+    /**
+        @return Index of the last segment whose first row is at or before t. If t is before
+        the start of the file, returns 0.
+    **/
+    protected int find (double t, int count) throws IOException
+    {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            double s = startTime (mid);
+            if (Double.isNaN (s)  ||  s <= t) lo = mid;  // A segment with no row start (one extremely long line) is treated as part of the run before it.
+            else                              hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+        Finds the time of the first row in the given segment. Reads only as much of the segment as needed.
+        @return NaN if no row starts in this segment.
+    **/
+    protected double startTime (int index) throws IOException
+    {
+        Double cached = starts.get (index);
+        if (cached != null) return cached;
+        Segment s = cache.get (index);
+        if (s != null  &&  s.rows > 0) return s.time.get (0);
+
+        long start = (long) index * segmentSize;
+        long end   = Math.min (start + segmentSize, size);
+        long from  = Math.max (0, start - 1);
+        int  limit = (int) (end - from);  // Rows that start at or beyond this point belong to the next segment.
+        double result = Double.NaN;
+        for (int length = 4096; ; length *= 4)
+        {
+            length = (int) Math.min (length, size - from);
+            byte[] bytes = read (from, length);
+            int p = index == 0 ? 0 : startOfLine (bytes, endOfLine (bytes, 0, bytes.length), bytes.length);
+            boolean found = false;
+            while (p < limit  &&  p < bytes.length)
+            {
+                int e = endOfLine (bytes, p, bytes.length);
+                if (e == bytes.length  &&  from + e < size) break;  // Row continues past what we read.
+                String line = new String (bytes, p, e - p, StandardCharsets.UTF_8);
+                p = startOfLine (bytes, e, bytes.length);
+                if (line.isEmpty ()  ||  ! isNumeric (line.charAt (0))) continue;
+                List<String> parts = new ArrayList<String> ();
+                OutputParser.split (line.toCharArray (), delimiter, parts);
+                if (timeColumn < parts.size ()) result = OutputParser.parseValue (parts.get (timeColumn), Float.NaN);
+                found = true;
+                break;
+            }
+            if (found  ||  p >= limit  ||  from + bytes.length >= size) break;
+        }
+        if (start + segmentSize <= size) starts.put (index, result);  // Only record segments that can't change.
+        return result;
+    }
+
+    /**
+        Retrieves one segment, either from cache or by fetching and decoding it.
+    **/
+    public synchronized Segment get (int index, int[] columns) throws IOException
+    {
+        Segment s = cache.get (index);
+        if (s != null  &&  (s.complete  ||  s.fileSize == size))
+        {
+            boolean hasAll = true;
+            for (int c : columns)
+            {
+                if (c != timeColumn  &&  ! s.values.containsKey (c))
+                {
+                    hasAll = false;
+                    break;
+                }
+            }
+            if (hasAll) return s;
+        }
+
+        // Decode the union of the columns already cached and the ones requested, so switching between column sets doesn't thrash.
+        TreeSet<Integer> wanted = new TreeSet<Integer> ();
+        for (int c : columns) wanted.add (c);
+        if (s != null) wanted.addAll (s.values.keySet ());
+        wanted.remove (timeColumn);
+
+        boolean opened = open ();
+        try
+        {
+            s = fetch (index, wanted);
+        }
+        finally
+        {
+            if (opened) close ();
+        }
+        cache.put (index, s);
+        return s;
+    }
+
+    protected Segment fetch (int index, TreeSet<Integer> columns) throws IOException
+    {
+        Segment result = new Segment ();
+        result.index    = index;
+        result.fileSize = size;
+        result.time     = new FloatList ();
+        for (int c : columns) result.values.put (c, new FloatList ());
+
+        long start = (long) index * segmentSize;
+        long end   = Math.min (start + segmentSize, size);
+        long from  = Math.max (0, start - 1);  // Include the last byte of the previous segment, to tell if a row starts exactly on the boundary.
+
+        // Extend the range to finish the last row.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream ();
+        buffer.write (read (from, (int) (end - from)));
+        long position = end;
+        boolean finished = false;
+        while (position < size)
+        {
+            byte[] more = read (position, (int) Math.min (65536, size - position));
+            if (more.length == 0) break;
+            int e = endOfLine (more, 0, more.length);
+            if (e < more.length)
+            {
+                buffer.write (more, 0, e + 1);
+                finished = true;
+                break;
+            }
+            buffer.write (more);
+            position += more.length;
+        }
+        result.complete = finished;  // If we reached the end of the file, the last row may still be growing.
+        byte[] bytes = buffer.toByteArray ();
+
+        int p = index == 0 ? 0 : startOfLine (bytes, endOfLine (bytes, 0, bytes.length), bytes.length);
+        int limit = (int) (end - from);  // Rows that start at or beyond this point belong to the next segment.
+        List<String> parts = new ArrayList<String> ();
+        while (p < limit  &&  p < bytes.length)
+        {
+            int e = endOfLine (bytes, p, bytes.length);
+            if (e == bytes.length  &&  ! finished) break;  // Unterminated row at end of a file that may still be growing. It will be picked up when this segment is fetched again.
+            String line = new String (bytes, p, e - p, StandardCharsets.UTF_8);
+            p = startOfLine (bytes, e, bytes.length);
+            if (line.isEmpty ()  ||  line.startsWith ("End of")) continue;
+
+            parts.clear ();
+            OutputParser.split (line.toCharArray (), delimiter, parts);
+            if (! isNumeric (line.charAt (0)))  // Header line. Later header lines may add columns.
+            {
+                for (int i = headers.size (); i < parts.size (); i++) headers.add (parts.get (i));
+                continue;
+            }
+
+            int count = parts.size ();
+            result.time.add (timeColumn < count ? OutputParser.parseValue (parts.get (timeColumn), defaultValue) : defaultValue);
+            for (Map.Entry<Integer,FloatList> v : result.values.entrySet ())
+            {
+                int c = v.getKey ();
+                v.getValue ().add (c < count ? OutputParser.parseValue (parts.get (c), defaultValue) : defaultValue);
+            }
+            result.rows++;
+        }
+        return result;
+    }
+
+    /**
+        Reads a range of bytes from the file. Returns fewer bytes than requested only at end of file.
+    **/
+    protected byte[] read (long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate (length);
+        boolean opened = open ();
+        try
+        {
+            channel.position (position);
+            while (buffer.hasRemaining ())
+            {
+                if (channel.read (buffer) <= 0) break;
+            }
+        }
+        finally
+        {
+            if (opened) close ();
+        }
+        byte[] result = buffer.array ();
+        if (buffer.position () < length)
+        {
+            byte[] shorter = new byte[buffer.position ()];
+            System.arraycopy (result, 0, shorter, 0, shorter.length);
+            result = shorter;
+        }
+        return result;
+    }
+
+    /**
+        Opens the channel if it is not already open.
+        @return true if this call opened it, in which case the caller must close() it when done.
+    **/
+    protected boolean open () throws IOException
+    {
+        if (channel != null) return false;
+        channel = Files.newByteChannel (path);
+        return true;
+    }
+
+    protected void close ()
+    {
+        if (channel == null) return;
+        try {channel.close ();}
+        catch (IOException e) {}
+        channel = null;
+    }
+
+    /**
+        @return Position of the first CR or LF at or after p, or "to" if there is none.
+    **/
+    protected static int endOfLine (byte[] bytes, int p, int to)
+    {
+        while (p < to  &&  bytes[p] != 10  &&  bytes[p] != 13) p++;
+        return p;
+    }
+
+    /**
+        @return Position of the first character after the line ending that begins at p.
+    **/
+    protected static int startOfLine (byte[] bytes, int p, int to)
+    {
+        while (p < to  &&  (bytes[p] == 10  ||  bytes[p] == 13)) p++;
+        return p;
+    }
+}
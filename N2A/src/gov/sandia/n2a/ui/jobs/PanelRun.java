@@ -12,11 +12,12 @@ import gov.sandia.n2a.db.MDir;
 import gov.sandia.n2a.db.MDoc;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MNode.Visitor;
+import gov.sandia.n2a.eqset.DigestProfile;
 import gov.sandia.n2a.eqset.Variable.ParsedValue;
+import gov.sandia.n2a.host.Heartbeat;
 import gov.sandia.n2a.host.Host;
 import gov.sandia.n2a.host.Remote;
 import gov.sandia.n2a.host.Host.CopyProgress;
-import gov.sandia.n2a.host.SshFileSystemProvider.SshDirectoryStream;
 import gov.sandia.n2a.ui.Lay;
 import gov.sandia.n2a.ui.MainFrame;
 import gov.sandia.n2a.ui.eq.PanelModel;
@@ -49,7 +50,6 @@ import java.io.PrintStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -115,6 +115,8 @@ public class PanelRun extends JPanel
     protected MDir                runs;  // Copied from AppData for convenience
 
     public static Map<String,NodeJob> jobNodes = new HashMap<String,NodeJob> ();  // for quick lookup of job node based on job key.
+    public static int                 parallelStreams   = 4;         // Number of files in an image sequence to download at the same time.
+    public static long                compressThreshold = 64 << 10;  // Downloads of text larger than this are compressed on the wire.
 
     public static ImageIcon iconConnect      = ImageUtil.getImage ("connect.gif");
     public static ImageIcon iconPause        = ImageUtil.getImage ("pause-16.png");
@@ -682,6 +684,13 @@ public class PanelRun extends JPanel
                     contents.append (" " + status + "\n");
                     if (jobNode.dateStarted  != null) contents.append ("  started:  " + jobNode.dateStarted  + "\n");
                     if (jobNode.dateFinished != null) contents.append ("  finished: " + jobNode.dateFinished + "\n");
+                    Heartbeat beat = jobNode.heartbeat;
+                    if (beat != null  &&  jobNode.complete < 1)
+                    {
+                        contents.append ("  sim time:  " + beat.t + " (" + String.format ("%.3g", jobNode.simRate) + " sim-s per s)\n");
+                        contents.append ("  instances: " + beat.instances + "\n");
+                        contents.append ("  events:    " + beat.events + "\n");
+                    }
                     contents.append ("\n");
 
                     if (job != null) 
@@ -701,16 +710,15 @@ public class PanelRun extends JPanel
                         MNode doc;
                         MNode model;
                         String key = job.get ("$inherit");
-                        Path localJobDir  = Host.getJobDir (Host.getLocalResourceDir (), job);
-                        Path snapshotPath = localJobDir.resolve ("snapshot");
-                        if (Files.exists (snapshotPath))
+                        MNode snapshot = NodeJob.getSnapshot (job);
+                        if (snapshot != null)
                         {
-                            MNode snapshot = new MDoc (snapshotPath);
                             doc   = snapshot.child (key);  // Could be null if snapshot is deleted before we have a chance to load it.
                             model = NodeJob.getMPartSnapshot (key, snapshot);
                         }
                         else
                         {
+                            Path localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);
                             doc   = AppData.docs.childOrEmpty ("models", key);
                             model = new MDoc (localJobDir.resolve ("model"), key);
                         }
@@ -746,6 +754,14 @@ public class PanelRun extends JPanel
                         });
                     }
 
+                    // Cost of each pass during model digestion, if the backend recorded it.
+                    MNode digest = job == null ? null : job.child ("digest");
+                    if (digest != null)
+                    {
+                        contents.append ("\nDigestion:\n");
+                        contents.append (DigestProfile.format (digest));
+                    }
+
                     // Update UI
                     EventQueue.invokeLater (new Runnable ()
                     {
@@ -802,12 +818,15 @@ public class PanelRun extends JPanel
                     //   small -- can load entirely into memory
                     //   big   -- too big for memory; must load/display in segments
                     //   huge  -- too big to store on local filesystem, for example a supercomputer job; must be downloaded/displayed in segments
-                    // The current code only handles small files.
-                    // TODO: manage and display files that are too big for memory, or even too big to store on local system.
+                    // Small files are copied and loaded whole. Big and huge files are graphed through OutputSegments,
+                    // which fetches only the parts needed for the current view. For huge files, the initial view is
+                    // an envelope computed on the remote host by OutputReduction. Other displays still load the whole file.
                     NodeJob nodeJob = (NodeJob) node.getParent ();
                     NodeFile nodeFile = (NodeFile) node;
                     MNode job = nodeJob.getSource ();
                     Host env = Host.get (job);
+                    OutputSegments segments = null;
+                    Path           overview = null;  // Envelope of a remote file, computed on the remote host.
                     if (env instanceof Remote)
                     {
                         Path   localJobDir = Host.getJobDir (Host.getLocalResourceDir (), job);
@@ -847,53 +866,74 @@ public class PanelRun extends JPanel
                                 // Copy any remote files that are not present in local directory.
                                 if (localAttributes == null) Files.createDirectories (localPath);
                                 // else local should be a directory. Otherwise, this will fail silently.
+                                List<Path> remoteFiles = new ArrayList<Path> ();
                                 try (DirectoryStream<Path> stream = Files.newDirectoryStream (remotePath))
                                 {
-                                    int last = ((SshDirectoryStream) stream).count () - 1;
-                                    for (Path rp : stream)
+                                    for (Path rp : stream) remoteFiles.add (rp);
+                                }
+
+                                // An image sequence is many small files, so a single stream spends most of its time
+                                // on per-file round trips. Run several at once, within the channel limit of the connection.
+                                final Path finalPath = localPath;
+                                boolean[] anyNew  = new boolean[1];
+                                int[]     next    = new int[1];
+                                Thread[]  workers = new Thread[Math.min (parallelStreams, remoteFiles.size ())];
+                                for (int w = 0; w < workers.length; w++)
+                                {
+                                    workers[w] = new Thread ("Copy Sequence")
                                     {
-                                        Path lp = localPath.resolve (rp.getFileName ().toString ());
-                                        if (Files.exists (lp))
+                                        public void run ()
                                         {
-                                            // Handle files that were only partially written when we last tried to copy them
-                                            try
+                                            while (true)
                                             {
-                                                BasicFileAttributes ra = Files.readAttributes (rp, BasicFileAttributes.class);
-                                                BasicFileAttributes la = Files.readAttributes (lp, BasicFileAttributes.class);
-                                                long position = la.size ();
-                                                long count    = ra.size () - position;
-                                                if (count > 0)
+                                                Path rp;
+                                                synchronized (next)
                                                 {
-                                                    newData = true;
-                                                    try (InputStream remoteStream = Files.newInputStream (rp);
-                                                         OutputStream localStream = Files.newOutputStream (lp, StandardOpenOption.WRITE, StandardOpenOption.APPEND);)
+                                                    if (next[0] >= remoteFiles.size ()) return;
+                                                    rp = remoteFiles.get (next[0]++);
+                                                }
+                                                Path lp = finalPath.resolve (rp.getFileName ().toString ());
+                                                boolean copied = false;
+                                                try
+                                                {
+                                                    if (Files.exists (lp))
+                                                    {
+                                                        // Handle files that were only partially written when we last tried to copy them
+                                                        long position = Files.size (lp);
+                                                        long count    = Files.size (rp) - position;
+                                                        if (count > 0) copied = Host.download (rp, lp, position, count, false, null) > 0;
+                                                    }
+                                                    else
                                                     {
-                                                        remoteStream.skipNBytes (position);
-                                                        Host.copy (remoteStream, localStream, count, null);
+                                                        Files.copy (rp, lp);
+                                                        copied = true;
                                                     }
                                                 }
-                                            }
-                                            catch (IOException e) {}
-                                        }
-                                        else
-                                        {
-                                            newData = true;
-                                            try {Files.copy (rp, lp);}
-                                            catch (IOException e) {}
-                                        }
+                                                catch (IOException e) {}
+                                                if (! copied) continue;
 
-                                        if (last >= 0)  // Only prod video player once.
-                                        {
-                                            last = -1;
-                                            Component p = vp.getView ();
-                                            if (p instanceof Video)
-                                            {
-                                                Video v = (Video) p;
-                                                if (v.path.equals (localPath)) v.refresh (last);
+                                                boolean first;
+                                                synchronized (anyNew)
+                                                {
+                                                    first = ! anyNew[0];
+                                                    anyNew[0] = true;
+                                                }
+                                                if (first)  // Only prod video player once.
+                                                {
+                                                    Component p = vp.getView ();
+                                                    if (p instanceof Video)
+                                                    {
+                                                        Video v = (Video) p;
+                                                        if (v.path.equals (finalPath)) v.refresh (-1);
+                                                    }
+                                                }
                                             }
                                         }
-                                    }
+                                    };
+                                    workers[w].start ();
                                 }
+                                for (Thread w : workers) w.join ();
+                                newData = anyNew[0];
                                 Component p = vp.getView ();
                                 if (p instanceof Video) return;  // The video player will be installed by fastThread, so we shouldn't try to install another.
                             }
@@ -912,10 +952,25 @@ public class PanelRun extends JPanel
                                 long count = remoteAttributes.size () - position;
                                 newData = count > 0;
 
+                                if (viz.equals ("Graph")  &&  remoteAttributes.size () > OutputSegments.remoteThreshold  &&  nodeFile.couldHaveColumns ())
+                                {
+                                    // Leave the data on the remote host. Only copy a prefix, enough to identify the file and to show something quickly next time.
+                                    segments = new OutputSegments (remotePath);
+                                    count = Math.max (0, OutputSegments.segmentSize - position);
+                                    newData = true;
+
+                                    // Summarize the whole file where it lives, for the initial view.
+                                    // Each pass reads the entire remote file, so only repeat it after substantial growth.
+                                    // Until an envelope exists, Plot falls back on a sampled overview.
+                                    overview = localJobDir.resolve (fileName + ".envelope");
+                                    long reduced = Files.exists (overview) ? job.getLong ("reduced", fileName) : 0;
+                                    if (segments.size > reduced * 5 / 4) reduce (nodeFile, env, job, segments, overview);
+                                }
+
                                 CopyProgress progress = null;
                                 if (position == 0)
                                 {
-                                    new CopyProgress ()
+                                    progress = new CopyProgress ()
                                     {
                                         public void update (float percent)
                                         {
@@ -924,15 +979,7 @@ public class PanelRun extends JPanel
                                     };
                                 }
 
-                                if (newData)
-                                {
-                                    try (InputStream remoteStream = Files.newInputStream (remotePath);
-                                         OutputStream localStream = Files.newOutputStream (localPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);)
-                                    {
-                                        remoteStream.skipNBytes (position);
-                                        Host.copy (remoteStream, localStream, count, progress);
-                                    }
-                                }
+                                if (newData) Host.download (remotePath, localPath, position, count, count > compressThreshold, progress);
 
                                 // Also download columns file, if it exists.
                                 if (nodeFile.couldHaveColumns ())
@@ -1019,19 +1066,29 @@ public class PanelRun extends JPanel
                         }
                         else  // "Graph"
                         {
+                            if (segments == null  &&  ! (env instanceof Remote))
+                            {
+                                try
+                                {
+                                    if (Files.size (nodeFile.path) > OutputSegments.localThreshold) segments = new OutputSegments (nodeFile.path);
+                                }
+                                catch (IOException e) {}
+                            }
                             if (refresh)
                             {
-                                if (current == displayChart  &&  displayChart.source instanceof Plot)
+                                if (current == displayChart  &&  displayChart.source instanceof Plot  &&  (((Plot) displayChart.source).segments == null) == (segments == null))
                                 {
                                     Plot plot = (Plot) displayChart.source;
                                     plot.duration = duration;
+                                    plot.overview = overview;
                                     plot.updateChart (displayChart.chart);
                                     displayChart.offscreen = true;
                                     return;
                                 }
                             }
-                            Plot plot = new Plot (nodeFile.path);
+                            Plot plot = segments == null ? new Plot (nodeFile.path) : new Plot (nodeFile.path, segments);
                             plot.duration = duration;
+                            plot.overview = overview;
                             displayChart.setChart (plot.createChart (), plot);
                             displayChart.offscreen = false;
                             panel = displayChart;
@@ -1201,6 +1258,48 @@ public class PanelRun extends JPanel
         }
     }
 
+    /**
+        Computes the envelope of a remote output file in a separate thread, since a pass over the whole file
+        can take a long time. When done, records the size of the file in the job, so the envelope survives a
+        restart, and refreshes the display if the file is still selected.
+    **/
+    public void reduce (NodeFile nodeFile, Host env, MNode job, OutputSegments segments, Path overview)
+    {
+        synchronized (nodeFile)
+        {
+            if (nodeFile.reducer != null  &&  nodeFile.reducer.isAlive ()) return;  // Already working on it.
+            nodeFile.reducer = new Thread ("Reduce " + overview.getFileName ())
+            {
+                public void run ()
+                {
+                    try
+                    {
+                        OutputReduction.envelope (env, segments, null, overview);
+                        job.set (segments.size, "reduced", nodeFile.path.getFileName ().toString ());
+                    }
+                    catch (Exception e)
+                    {
+                        return;  // Leave the display on the sampled overview.
+                    }
+                    finally
+                    {
+                        synchronized (nodeFile) {nodeFile.reducer = null;}
+                    }
+
+                    EventQueue.invokeLater (new Runnable ()
+                    {
+                        public void run ()
+                        {
+                            if (displayNode == nodeFile) viewNode (true);
+                        }
+                    });
+                }
+            };
+            nodeFile.reducer.setDaemon (true);
+            nodeFile.reducer.start ();
+        }
+    }
+
     public void viewNode (boolean refresh)
     {
         synchronized (displayPane)
@@ -8,16 +8,20 @@ package gov.sandia.n2a.ui.jobs;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
 import org.jfree.chart.plot.DatasetRenderingOrder;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
@@ -25,10 +29,13 @@ import org.jfree.chart.renderer.xy.XYItemRenderer;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.chart.title.LegendTitle;
 import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
 import org.jfree.data.general.DatasetChangeEvent;
 import org.jfree.data.general.DatasetChangeListener;
 import org.jfree.data.general.DatasetGroup;
 import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYDomainInfo;
+import org.jfree.data.xy.XYRangeInfo;
 
 import gov.sandia.n2a.db.MDoc;
 import gov.sandia.n2a.ui.Utility;
@@ -43,15 +50,62 @@ public class Plot extends OutputParser
     protected double       range1;
     protected List<Column> left;  // dataset0
     protected List<Column> right; // dataset1
+    protected int          resolution = 2048;  // Horizontal divisions when drawing a reduced view of a long trace. Roughly the widest chart in pixels.
+
+    // Window of time to load when reading through segments. Units are the same as the time column in the file.
+    protected double                windowStart = Double.NEGATIVE_INFINITY;
+    protected double                windowEnd   = Double.POSITIVE_INFINITY;
+    protected OutputSegments.Window loaded;
+    protected Thread                loader;
+    protected Object                updateLock = new Object ();  // Held for the whole of updateChart(). Separate from the Plot monitor, so requestWindow() on the EDT never waits for a load.
+    public    Path                  overview;  // Local file holding an envelope of the whole trace, computed where the data lives. See OutputReduction. Shown until the user zooms in.
 
     public Plot (Path path)
     {
         this.path = path;
     }
 
+    /**
+        Views a file through segments rather than loading it whole.
+        @param path Local copy of the file, if any. Used to find the columns file.
+    **/
+    public Plot (Path path, OutputSegments segments)
+    {
+        this.path     = path;
+        this.segments = segments;
+    }
+
     public void updateDatasets ()
     {
-        parse (path);
+        if (segments == null)
+        {
+            parse (path);
+        }
+        else
+        {
+            try
+            {
+                double start, end;
+                synchronized (this)
+                {
+                    start = windowStart;
+                    end   = windowEnd;
+                }
+                if (overview != null  &&  Double.isInfinite (start)  &&  Double.isInfinite (end)  &&  Files.isReadable (overview))
+                {
+                    parseOverview ();
+                }
+                else
+                {
+                    loaded = parseWindow (path, start, end);
+                }
+            }
+            catch (IOException e) {}
+            // Unlike a growing file, a new window can have fewer rows than the old one.
+            // Detach the right-hand dataset until it is rebuilt below, so the chart does not scan stale views when dataset0 announces its change.
+            if (dataset1 != null) dataset1.columns = null;
+            if (columns.isEmpty ()) return;
+        }
 
         // Convert units
         for (Column c : columns)  // Includes time column, which can also be scaled.
@@ -66,19 +120,27 @@ public class Plot extends OutputParser
                 {
                     for (int i = (Integer) c.data; i < count; i++)
                     {
-                        Float value = c.values.get (i);
-                        if (value.isInfinite ()  ||  value.isNaN ()) c.values.set (i, 0.0f);  // JFreeChart chokes on infinity (how to determine a vertical scale for that?)
-                        else                                         c.values.set (i, (float) (value / scale));
+                        float value = c.values.get (i);
+                        if (Float.isInfinite (value)  ||  Float.isNaN (value)) c.values.set (i, 0.0f);  // JFreeChart chokes on infinity (how to determine a vertical scale for that?)
+                        else                                                 c.values.set (i, (float) (value / scale));
                     }
                     c.data = count;  // Prevents the loop below from running.
                 }
             }
             for (int i = (Integer) c.data; i < count; i++)
             {
-                Float value = c.values.get (i);
-                if (value.isInfinite ()  ||  value.isNaN ()) c.values.set (i, 0.0f);
+                float value = c.values.get (i);
+                if (Float.isInfinite (value)  ||  Float.isNaN (value)) c.values.set (i, 0.0f);
             }
             c.data = count;
+
+            // A line plot assumes time is ascending, so we can summarize each column for drawing at reduced resolution.
+            // A scatter plot makes no such assumption, so it always gets every point.
+            if (! scatter  &&  c != time)
+            {
+                if (c.pyramid == null) c.pyramid = new MinMaxPyramid ();
+                c.pyramid.update (c.values);  // Only processes the newly-added rows.
+            }
         }
 
         // Determine range of x axis
@@ -193,6 +255,7 @@ public class Plot extends OutputParser
         // Generate data series
 
         dataset0.columns = left;
+        dataset0.updateViews ();
         dataset0.listener.datasetChanged (new DatasetChangeEvent (dataset0, dataset0));
         double min = Double.POSITIVE_INFINITY;
         double max = Double.NEGATIVE_INFINITY;
@@ -218,6 +281,7 @@ public class Plot extends OutputParser
     	{
     	    if (dataset1 == null) dataset1 = new JFDataset ();
     	    dataset1.columns = right;
+    	    dataset1.updateViews ();
             min = Double.POSITIVE_INFINITY;
             max = Double.NEGATIVE_INFINITY;
             for (Column c : right)
@@ -243,6 +307,7 @@ public class Plot extends OutputParser
             // This true for Internal, C, and any other backend that follows their example.
             scatter = columnFile.getFlag ("0", "scatter");
         }
+        if (scatter) segments = null;  // Segments need ascending time. Fall back to whatever has been copied locally.
 
         JFreeChart chart;
         if (scatter)
@@ -281,104 +346,66 @@ public class Plot extends OutputParser
         plot.setDomainPannable (true);
         plot.setRangePannable  (true);
 
+        // When the user zooms or pans, serve a version of the data suited to the new view.
+        plot.getDomainAxis ().addChangeListener (new AxisChangeListener ()
+        {
+            public void axisChanged (AxisChangeEvent event)
+            {
+                Range range = ((ValueAxis) event.getAxis ()).getRange ();
+                dataset0.setWindow (range);
+                if (dataset1 != null) dataset1.setWindow (range);
+                if (segments != null) requestWindow (range, chart);
+            }
+        });
+
         updateChart (chart);
         return chart;
     }
 
+    /**
+        Rebuilds the chart from the current contents of the file. Serialized on updateLock, because both
+        the display refresh thread and the window loader call this, and each replaces the datasets.
+    **/
     public void updateChart (JFreeChart chart)
     {
-        XYPlot plot = chart.getXYPlot ();
-        plot.setNotify (false);
-
-        updateDatasets ();
-
-        LegendTitle legend = chart.getLegend ();
-        legend.setVisible (columnCount <= 10);
-
-        NumberAxis axis0 = (NumberAxis) plot.getRangeAxis ();
-        axis0.setAutoRangeIncludesZero (false);
-        if (range0 > 0) axis0.setAutoRangeMinimumSize (range0 / 2);
-        else            axis0.setAutoRangeMinimumSize (1);
-        if (! Double.isNaN (ymin)) axis0.setRange (ymin, ymax);  // range locked
-
-        ValueAxis x = plot.getDomainAxis ();
-        if (! Double.isNaN (xmin))
+        synchronized (updateLock)
         {
-            x.setRange (xmin, xmax);
-        }
-        else if (duration > 0)
-        {
-            double max = duration;
-            if (time.scale != null) max /= time.scale.get ();
-            x.setRange (0, max);
-        }
+            XYPlot plot = chart.getXYPlot ();
+            plot.setNotify (false);
 
-        int count = dataset0.getSeriesCount ();
-        float shift = 0;
-        if (dataset1 != null)
-        {
-            count *= 2;  // So we use only half of the color range
-            shift = 0.75f + 0.5f / count;
-        }
+            updateDatasets ();
 
-        XYLineAndShapeRenderer renderer;
-        XYItemRenderer ir = plot.getRenderer ();
-        if (ir instanceof XYLineAndShapeRenderer)
-        {
-            renderer = (XYLineAndShapeRenderer) ir;
-        }
-        else
-        {
-            renderer = new XYLineAndShapeRenderer ();
-            plot.setRenderer (renderer);
-        }
-        for (int i = 0; i < dataset0.getSeriesCount (); i++)
-        {
-            Column column = left.get (i);
-            styleSeries (renderer, i, column, count, shift);  // does not fire renderer change event
-        }
-        renderer.setDrawSeriesLineAsPath (true);  // fires renderer change event
-
-        if (dataset1 == null)
-        {
-            axis0.setTickMarkPaint  (Color.black);
-            axis0.setTickLabelPaint (Color.black);
-            axis0.setAxisLinePaint  (Color.black);
-
-            plot.setDataset   (1, null);
-            plot.setRangeAxis (1, null);
-            plot.setRenderer  (1, null);
-        }
-        else
-        {
-            Color color0 = Color.getHSBColor (0.0f, 1.0f, 0.8f);
-            axis0.setTickMarkPaint  (color0);
-            axis0.setTickLabelPaint (color0);
-            axis0.setAxisLinePaint  (color0);
+            LegendTitle legend = chart.getLegend ();
+            legend.setVisible (columnCount <= 10);
 
-            plot.setDataset (1, dataset1);
-            plot.mapDatasetToRangeAxis (1, 1);
+            NumberAxis axis0 = (NumberAxis) plot.getRangeAxis ();
+            axis0.setAutoRangeIncludesZero (false);
+            if (range0 > 0) axis0.setAutoRangeMinimumSize (range0 / 2);
+            else            axis0.setAutoRangeMinimumSize (1);
+            if (! Double.isNaN (ymin)) axis0.setRange (ymin, ymax);  // range locked
 
-            NumberAxis axis1 = (NumberAxis) plot.getRangeAxis (1);
-            if (axis1 == null)
+            ValueAxis x = plot.getDomainAxis ();
+            if (! Double.isNaN (xmin))
+            {
+                x.setRange (xmin, xmax);
+            }
+            else if (duration > 0)
             {
-                axis1 = new NumberAxis ();
-                axis1.setAutoRangeIncludesZero (false);
-                axis1.setTickLabelFont (axis0.getTickLabelFont ());
-                Color color1 = Color.getHSBColor (0.5f, 1.0f, 0.7f);
-                axis1.setTickMarkPaint  (color1);
-                axis1.setTickLabelPaint (color1);
-                axis1.setAxisLinePaint  (color1);
-                plot.setRangeAxis (1, axis1);
+                double max = duration;
+                if (time.scale != null) max /= time.scale.get ();
+                x.setRange (0, max);
             }
-            // else we created axis1, so all the initial settings are correct
-            if (range1 > 0) axis1.setAutoRangeMinimumSize (range1 / 2);
-            else            axis1.setAutoRangeMinimumSize (1);
 
-            count = dataset1.getSeriesCount () * 2;
-            shift = 0.25f + 0.5f / count;
+            int count = dataset0.getSeriesCount ();
+            float shift = 0;
+            if (dataset1 != null)
+            {
+                count *= 2;  // So we use only half of the color range
+                shift = 0.75f + 0.5f / count;
+            }
 
-            ir = plot.getRenderer (1);
+            XYLineAndShapeRenderer renderer;
+            XYItemRenderer ir = plot.getRenderer ();
             if (ir instanceof XYLineAndShapeRenderer)
             {
                 renderer = (XYLineAndShapeRenderer) ir;
@@ -386,19 +413,161 @@ public class Plot extends OutputParser
             else
             {
                 renderer = new XYLineAndShapeRenderer ();
-                plot.setRenderer (1, renderer);
+                plot.setRenderer (renderer);
             }
-            for (int i = 0; i < dataset1.getSeriesCount (); i++)
+            for (int i = 0; i < dataset0.getSeriesCount (); i++)
             {
-                Column column = right.get (i);
-                styleSeries (renderer, i, column, count, shift);
+                Column column = left.get (i);
+                styleSeries (renderer, i, column, count, shift);  // does not fire renderer change event
+            }
+            renderer.setDrawSeriesLineAsPath (true);  // fires renderer change event
+
+            if (dataset1 == null)
+            {
+                axis0.setTickMarkPaint  (Color.black);
+                axis0.setTickLabelPaint (Color.black);
+                axis0.setAxisLinePaint  (Color.black);
+
+                plot.setDataset   (1, null);
+                plot.setRangeAxis (1, null);
+                plot.setRenderer  (1, null);
+            }
+            else
+            {
+                Color color0 = Color.getHSBColor (0.0f, 1.0f, 0.8f);
+                axis0.setTickMarkPaint  (color0);
+                axis0.setTickLabelPaint (color0);
+                axis0.setAxisLinePaint  (color0);
+
+                plot.setDataset (1, dataset1);
+                plot.mapDatasetToRangeAxis (1, 1);
+
+                NumberAxis axis1 = (NumberAxis) plot.getRangeAxis (1);
+                if (axis1 == null)
+                {
+                    axis1 = new NumberAxis ();
+                    axis1.setAutoRangeIncludesZero (false);
+                    axis1.setTickLabelFont (axis0.getTickLabelFont ());
+                    Color color1 = Color.getHSBColor (0.5f, 1.0f, 0.7f);
+                    axis1.setTickMarkPaint  (color1);
+                    axis1.setTickLabelPaint (color1);
+                    axis1.setAxisLinePaint  (color1);
+                    plot.setRangeAxis (1, axis1);
+                }
+                // else we created axis1, so all the initial settings are correct
+                if (range1 > 0) axis1.setAutoRangeMinimumSize (range1 / 2);
+                else            axis1.setAutoRangeMinimumSize (1);
+
+                count = dataset1.getSeriesCount () * 2;
+                shift = 0.25f + 0.5f / count;
+
+                ir = plot.getRenderer (1);
+                if (ir instanceof XYLineAndShapeRenderer)
+                {
+                    renderer = (XYLineAndShapeRenderer) ir;
+                }
+                else
+                {
+                    renderer = new XYLineAndShapeRenderer ();
+                    plot.setRenderer (1, renderer);
+                }
+                for (int i = 0; i < dataset1.getSeriesCount (); i++)
+                {
+                    Column column = right.get (i);
+                    styleSeries (renderer, i, column, count, shift);
+                }
+                renderer.setDrawSeriesLineAsPath (true);
+
+                plot.setDatasetRenderingOrder (DatasetRenderingOrder.REVERSE);
             }
-            renderer.setDrawSeriesLineAsPath (true);
 
-            plot.setDatasetRenderingOrder (DatasetRenderingOrder.REVERSE);
+            plot.setNotify (true);
         }
+    }
 
-        plot.setNotify (true);
+    /**
+        Loads the envelope file in place of a sampled overview.
+        Each load is complete rather than incremental, since the envelope is rewritten as a whole when the job makes progress.
+    **/
+    public void parseOverview ()
+    {
+        columns   = new ArrayList<Column> ();
+        rows      = 0;
+        raw       = true;
+        isXycePRN = false;
+        reader    = null;  // Start from the beginning of the file.
+        positions = null;
+        if (selection != null)
+        {
+            TreeSet<Integer> sorted = new TreeSet<Integer> ();
+            for (int s : selection) sorted.add (s);
+            sorted.add (segments.timeColumn);
+            positions = new int[sorted.size ()];
+            int i = 0;
+            for (int s : sorted) positions[i++] = s;
+        }
+        parse (overview);
+        parseColumns (path);  // parse() found no columns file next to the envelope, so apply the one for the original.
+
+        loaded = new OutputSegments.Window ();
+        loaded.start  = Double.NEGATIVE_INFINITY;
+        loaded.end    = Double.POSITIVE_INFINITY;
+        loaded.stride = Integer.MAX_VALUE;  // The envelope stands in for every segment, but holds only a summary of each.
+    }
+
+    /**
+        When viewing through segments, loads a new window if the visible range has moved
+        beyond the loaded rows, or if the user has zoomed in on rows that were only sampled.
+        Loading happens on a separate thread, since it may involve a remote host.
+    **/
+    protected synchronized void requestWindow (Range range, JFreeChart chart)
+    {
+        if (loaded == null  ||  time == null  ||  time.values.isEmpty ()) return;
+
+        double lower = range.getLowerBound ();
+        double upper = range.getUpperBound ();
+        double first = time.values.get (0);
+        double last  = time.values.get (time.values.size () - 1);
+        int    end   = loaded.segments.size () - 1;
+        boolean before  = end >= 0  &&  lower < first  &&  loaded.segments.get (0  ).index > 0;
+        boolean after   = end >= 0  &&  upper > last   &&  loaded.segments.get (end).index < segments.segmentCount () - 1;
+        boolean sampled = loaded.stride > 1  &&  upper - lower < (last - first) / 2;
+        if (! before  &&  ! after  &&  ! sampled) return;
+
+        // Convert from display units back to the units in the file.
+        double scale = time.scale == null ? 1 : time.scale.get ();
+        windowStart = lower * scale;
+        windowEnd   = upper * scale;
+        if (loader != null  &&  loader.isAlive ()) return;  // The running loader will pick up the new window when it finishes its current one.
+
+        loader = new Thread ("Plot Window")
+        {
+            public void run ()
+            {
+                ValueAxis x = chart.getXYPlot ().getDomainAxis ();
+                while (true)
+                {
+                    double start, end;
+                    synchronized (Plot.this)
+                    {
+                        start = windowStart;
+                        end   = windowEnd;
+                    }
+                    synchronized (updateLock)  // So a display refresh can't land between the update and restoring the range.
+                    {
+                        Range visible = x.getRange ();
+                        updateChart (chart);
+                        x.setRange (visible);  // updateChart() may reset the domain, but the user is in control now.
+                    }
+                    synchronized (Plot.this)
+                    {
+                        if (start == windowStart  &&  end == windowEnd) break;
+                    }
+                }
+            }
+        };
+        loader.setDaemon (true);
+        loader.start ();
     }
 
     public void styleSeries (XYLineAndShapeRenderer renderer, int i, Column column, int count, float shift)
@@ -441,12 +610,123 @@ public class Plot extends OutputParser
         }
     }
 
-    public class JFDataset implements XYDataset
+    /**
+        Presents the columns to JFreeChart. For a line plot, a series with more points than the screen
+        can show is replaced by a reduced view, chosen from the column's MinMaxPyramid to cover the
+        currently visible range of time. The view is refreshed whenever the domain axis changes,
+        so zooming in reveals full detail.
+    **/
+    public class JFDataset implements XYDataset, XYDomainInfo, XYRangeInfo
     {
         protected List<Column>          columns;
+        protected int[][]               views;  // For each series, the rows to present. A null entry means present all rows.
+        protected double                lower = Double.NEGATIVE_INFINITY;  // Visible range of time
+        protected double                upper = Double.POSITIVE_INFINITY;
         protected DatasetChangeListener listener;
         protected DatasetGroup          group;
 
+        public void setWindow (Range range)
+        {
+            if (range.getLowerBound () == lower  &&  range.getUpperBound () == upper) return;
+            lower = range.getLowerBound ();
+            upper = range.getUpperBound ();
+            if (updateViews ()  &&  listener != null) listener.datasetChanged (new DatasetChangeEvent (this, this));
+        }
+
+        /**
+            Recomputes the reduced view of each series for the current window.
+            @return true if any view changed. When nothing changes, there is no need to notify the chart.
+            This is important because the notice leads back to the axis, which would call us again.
+        **/
+        public boolean updateViews ()
+        {
+            if (columns == null) return false;
+            int count = columns.size ();
+            if (views == null  ||  views.length != count) views = new int[count][];
+
+            boolean changed = false;
+            for (int s = 0; s < count; s++)
+            {
+                Column c = columns.get (s);
+                int[] view = null;
+                if (c.pyramid != null)
+                {
+                    int rows = c.values.size ();
+                    int end  = Math.min (c.startRow + rows, time.values.size ());
+                    // Extend one row beyond each edge of the window, so lines run all the way to the border.
+                    int from = time.values.lowerBound (lower, c.startRow, end) - 1;
+                    int to   = time.values.upperBound (upper, c.startRow, end) + 1;
+                    from = Math.max (from - c.startRow, 0);
+                    to   = Math.min (to   - c.startRow, rows);
+                    if (from < to) view = c.pyramid.select (c.values, from, to, resolution);
+                }
+                if (! Arrays.equals (view, views[s]))
+                {
+                    views[s] = view;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        public Range getDomainBounds (@SuppressWarnings("rawtypes") List visibleSeriesKeys, boolean includeInterval)
+        {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int count = getSeriesCount ();
+            for (int s = 0; s < count; s++)
+            {
+                int items = getItemCount (s);
+                if (items == 0) continue;
+                if (scatter)  // No assumption about order, so check every row.
+                {
+                    for (int i = 0; i < items; i++)
+                    {
+                        double x = getXValue (s, i);
+                        if (Double.isNaN (x)) continue;
+                        min = Math.min (min, x);
+                        max = Math.max (max, x);
+                    }
+                    continue;
+                }
+                // Time is ascending, so only the first and last rows matter.
+                min = Math.min (min, getXValue (s, 0));
+                max = Math.max (max, getXValue (s, items - 1));
+            }
+            if (min > max) return null;
+            return new Range (min, max);
+        }
+
+        public Range getRangeBounds (@SuppressWarnings("rawtypes") List visibleSeriesKeys, Range xRange, boolean includeInterval)
+        {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int count = getSeriesCount ();
+            for (int s = 0; s < count; s++)
+            {
+                if (visibleSeriesKeys != null  &&  ! visibleSeriesKeys.contains (getSeriesKey (s))) continue;
+                if (xRange == null)
+                {
+                    Column c = columns.get (s);
+                    min = Math.min (min, c.min);
+                    max = Math.max (max, c.max);
+                    continue;
+                }
+                // The extremes of each bucket are retained in the view, so scanning it gives the same bounds as scanning the raw data.
+                int items = getItemCount (s);
+                for (int i = 0; i < items; i++)
+                {
+                    double x = getXValue (s, i);
+                    if (x < xRange.getLowerBound ()  ||  x > xRange.getUpperBound ()) continue;
+                    double y = getYValue (s, i);
+                    min = Math.min (min, y);
+                    max = Math.max (max, y);
+                }
+            }
+            if (min > max) return null;
+            return new Range (min, max);
+        }
+
         public int getSeriesCount ()
         {
             if (columns == null) return 0;
@@ -488,11 +768,14 @@ public class Plot extends OutputParser
 
         public DomainOrder getDomainOrder ()
         {
+            if (scatter) return DomainOrder.NONE;
             return DomainOrder.ASCENDING;
         }
 
         public int getItemCount (int series)
         {
+            int[] view = views[series];
+            if (view != null) return view.length;
             Column c = columns.get (series);
             return c.values.size ();
         }
@@ -504,6 +787,8 @@ public class Plot extends OutputParser
 
         public double getXValue (int series, int item)
         {
+            int[] view = views[series];
+            if (view != null) item = view[item];
             Column c = columns.get (series);
             return time.values.get (item + c.startRow);  // assumes time.startRow == 0
         }
@@ -515,6 +800,8 @@ public class Plot extends OutputParser
 
         public double getYValue (int series, int item)
         {
+            int[] view = views[series];
+            if (view != null) item = view[item];
             Column c = columns.get (series);
             return c.values.get (item);
         }
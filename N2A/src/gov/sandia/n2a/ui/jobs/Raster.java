@@ -12,12 +12,15 @@ import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
 import org.jfree.chart.event.RendererChangeEvent;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.PlotRenderingInfo;
@@ -25,15 +28,18 @@ import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYDotRenderer;
 import org.jfree.chart.renderer.xy.XYItemRendererState;
 import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
 import org.jfree.data.general.DatasetChangeEvent;
 import org.jfree.data.general.DatasetChangeListener;
 import org.jfree.data.general.DatasetGroup;
 import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYDomainInfo;
+import org.jfree.data.xy.XYRangeInfo;
 
 /**
     Create a spike-raster plot.
 **/
-public class Raster extends OutputParser implements XYDataset
+public class Raster extends OutputParser implements XYDataset, XYDomainInfo, XYRangeInfo
 {
     protected Path                  path;
     protected List<Color>           colors      = new ArrayList<Color> ();  // correspond 1-to-1 with series added to dataset
@@ -43,6 +49,11 @@ public class Raster extends OutputParser implements XYDataset
     protected DatasetGroup          group;
     protected DatasetChangeListener listener;  // no need to keep a list, because it is always only our own chart
     protected int                   startRow;  // row index of first newly-added value during a refresh cycle
+    protected boolean               events;    // File was written in event mode, so each column directly lists its spike times. See OutputParser.parseEvents().
+    protected int[][]               views;     // For each series, the spikes to present. A null entry means present all of them.
+    protected double                lower = Double.NEGATIVE_INFINITY;  // Visible range of time
+    protected double                upper = Double.POSITIVE_INFINITY;
+    protected int                   resolution = 2048;  // Horizontal divisions when thinning a dense row of spikes. Roughly the widest chart in pixels.
 
     public static final Color red = Color.getHSBColor (0.0f, 1.0f, 0.8f);
 
@@ -53,6 +64,13 @@ public class Raster extends OutputParser implements XYDataset
 
     public void updateDataset ()
     {
+        if (! events) events = isEventFile (path);
+        if (events)
+        {
+            updateEvents ();
+            return;
+        }
+
         parse (path);
         assignSpikeIndices ();  // This won't change spike indices that have already been assigned, because column order remains constant.
 
@@ -88,13 +106,7 @@ public class Raster extends OutputParser implements XYDataset
             time.data = count;
         }
 
-        int columnCount = columns.size ();
-        for (int i = colors.size (); i < columnCount; i++)
-        {
-            Column c = columns.get (i);
-            if (c.color == null) colors.add (red);
-            else                 colors.add (c.color);
-        }
+        addColors ();
 
         // Convert data to event times
         for (Column c : columns)
@@ -110,10 +122,70 @@ public class Raster extends OutputParser implements XYDataset
                 float t = timeFound ? time.values.get (step) : step;
                 c.values.set (i++, t);
             }
-            c.values.subList (i, count).clear ();  // "i" is effectively the new count
+            c.values.truncate (i);  // "i" is effectively the new count
             c.startRow = rows - i;
         }
         startRow = rows;
+        finishUpdate ();
+    }
+
+    /**
+        Handles a file written in event mode. No conversion is needed, other than time scaling,
+        since each column already holds its spike times.
+    **/
+    public void updateEvents ()
+    {
+        parseEvents (path);
+        if (time == null) return;  // No events yet.
+        assignSpikeIndices ();
+
+        if (time.data == null)
+        {
+            time.data = 0;
+            needXmin = Double.isNaN (xmin);
+            needXmax = Double.isNaN (xmax);
+        }
+        double scale = 1;
+        if (time.scale != null) scale = time.scale.get ();
+
+        for (Column c : columns)
+        {
+            if (c == time) continue;
+            int count = c.values.size ();
+            int i = c.data == null ? 0 : (Integer) c.data;
+            for (; i < count; i++)
+            {
+                float t = c.values.get (i);
+                if (scale != 1)
+                {
+                    t = (float) (t / scale);
+                    c.values.set (i, t);
+                }
+                if (i > 0) timeQuantum = Math.min (timeQuantum, t - c.values.get (i - 1));
+                if (needXmin  &&  (Double.isNaN (xmin)  ||  t < xmin)) xmin = t;
+                if (needXmax  &&  (Double.isNaN (xmax)  ||  t > xmax)) xmax = t;
+            }
+            c.data = count;
+        }
+
+        addColors ();
+        finishUpdate ();
+    }
+
+    public void addColors ()
+    {
+        int columnCount = columns.size ();
+        for (int i = colors.size (); i < columnCount; i++)
+        {
+            Column c = columns.get (i);
+            if (c.color == null) colors.add (red);
+            else                 colors.add (c.color);
+        }
+    }
+
+    public void finishUpdate ()
+    {
+        updateViews ();
         listener.datasetChanged (new DatasetChangeEvent (this, this));
 
         // Lower limit on size of timeQuantum
@@ -148,6 +220,19 @@ public class Raster extends OutputParser implements XYDataset
         TickRenderer renderer = new TickRenderer ();
         plot.setRenderer (renderer);
 
+        // When the user zooms or pans, serve a version of the data suited to the new view.
+        plot.getDomainAxis ().addChangeListener (new AxisChangeListener ()
+        {
+            public void axisChanged (AxisChangeEvent event)
+            {
+                Range range = ((ValueAxis) event.getAxis ()).getRange ();
+                if (range.getLowerBound () == lower  &&  range.getUpperBound () == upper) return;
+                lower = range.getLowerBound ();
+                upper = range.getUpperBound ();
+                if (updateViews ()  &&  listener != null) listener.datasetChanged (new DatasetChangeEvent (Raster.this, Raster.this));
+            }
+        });
+
         updateChart (chart);
         return chart;
     }
@@ -182,6 +267,82 @@ public class Raster extends OutputParser implements XYDataset
         plot.setNotify (true);
     }
 
+    /**
+        Thins each row of spikes so no more than one falls in each horizontal division of the visible
+        range. At full zoom-out, a dense row would otherwise draw millions of overlapping ticks.
+        Spike times are ascending within each column, so each selection is a binary search.
+        @return true if any view changed.
+    **/
+    public boolean updateViews ()
+    {
+        int count = columns.size ();
+        if (views == null  ||  views.length != count) views = new int[count][];
+
+        double spacing = (upper - lower) / resolution;
+        boolean changed = false;
+        for (int s = 0; s < count; s++)
+        {
+            Column c = columns.get (s);
+            int[] view = null;
+            if (c != null  &&  (! timeFound  ||  c != time)  &&  ! Double.isInfinite (spacing))
+            {
+                FloatList t = c.values;
+                int end  = t.size ();
+                int from = Math.max (t.lowerBound (lower, 0, end) - 1, 0);
+                int to   = Math.min (t.upperBound (upper, 0, end) + 1, end);
+                if (to - from > resolution)
+                {
+                    view = new int[resolution + 4];  // The window holds at most resolution+1 divisions, plus one spike beyond each edge.
+                    int n = 0;
+                    for (int i = from; i < to; i = t.lowerBound (t.get (i) + spacing, i + 1, to))
+                    {
+                        if (n == view.length) view = Arrays.copyOf (view, n * 2);
+                        view[n++] = i;
+                    }
+                    view = Arrays.copyOf (view, n);
+                }
+            }
+            if (! Arrays.equals (view, views[s]))
+            {
+                views[s] = view;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public Range getDomainBounds (@SuppressWarnings("rawtypes") List visibleSeriesKeys, boolean includeInterval)
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int count = getSeriesCount ();
+        for (int s = 0; s < count; s++)
+        {
+            int items = getItemCount (s);
+            if (items == 0) continue;
+            min = Math.min (min, getXValue (s, 0));
+            max = Math.max (max, getXValue (s, items - 1));
+        }
+        if (min > max) return null;
+        return new Range (min, max);
+    }
+
+    public Range getRangeBounds (@SuppressWarnings("rawtypes") List visibleSeriesKeys, Range xRange, boolean includeInterval)
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int count = getSeriesCount ();
+        for (int s = 0; s < count; s++)
+        {
+            if (getItemCount (s) == 0) continue;
+            double y = getYValue (s, 0);
+            min = Math.min (min, y);
+            max = Math.max (max, y);
+        }
+        if (min > max) return null;
+        return new Range (min, max);
+    }
+
     @SuppressWarnings("serial")
     public class TickRenderer extends XYDotRenderer
     {
@@ -252,6 +413,7 @@ public class Raster extends OutputParser implements XYDataset
         Column c = columns.get (series);
         if (c == null) return 0;
         if (timeFound  &&  c == time) return 0;
+        if (views != null  &&  series < views.length  &&  views[series] != null) return views[series].length;
         return c.values.size ();
     }
 
@@ -264,6 +426,7 @@ public class Raster extends OutputParser implements XYDataset
     {
         Column c = columns.get (series);
         if (c == null) return 0;
+        if (views != null  &&  series < views.length  &&  views[series] != null) item = views[series][item];
         return c.values.get (item);
     }
 
@@ -11,7 +11,6 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.jfree.data.general.DatasetChangeEvent;
@@ -121,9 +120,10 @@ public class RasterSTACS extends Raster
         for (Column c : columns)
         {
             if (c == null) continue;
-            Collections.sort (c.values);
+            c.values.sort ();
         }
 
+        updateViews ();
         listener.datasetChanged (new DatasetChangeEvent (this, this));
     }
 }
@@ -15,6 +15,8 @@ import gov.sandia.n2a.db.MNode;
 
 public class ExportBibTeX extends ExportBibliography
 {
+    public static ExportBibTeX instance = new ExportBibTeX ();  // Shared by the plugin system and the search panel. Held here rather than in PanelSearch so that registering it does not load the UI.
+
     @Override
     public String getName ()
     {
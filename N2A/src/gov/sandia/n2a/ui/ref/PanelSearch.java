@@ -78,7 +78,7 @@ public class PanelSearch extends JPanel
     public MNodeRenderer            renderer = new MNodeRenderer ();
     public TransferHandler          transferHandler;
 
-    public static ExportBibTeX exportBibTeX = new ExportBibTeX ();
+    public static ExportBibTeX exportBibTeX = ExportBibTeX.instance;
 
     public PanelSearch ()
     {
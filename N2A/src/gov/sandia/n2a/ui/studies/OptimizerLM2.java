@@ -496,6 +496,12 @@ public class OptimizerLM2 extends StudyIterator
         return sample < 0  ||  sample >= variables.size () - 1;  // At this point, "sample" refers the one most recently started. We want to start blocking right after the last column of the Jacobian is issued.
     }
 
+    public int batch ()
+    {
+        // Issue every column of the Jacobian without waiting, so they can run concurrently on all eligible hosts.
+        return Math.max (super.batch (), variables.size ());
+    }
+
     public void save (MNode study)
     {
         if (inner != null) inner.save (study);
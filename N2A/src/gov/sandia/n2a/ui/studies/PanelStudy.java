@@ -604,6 +604,19 @@ public class PanelStudy extends JPanel
             }
         }
 
+        /**
+            Blocks until the thread started by update() has filled in every row it can.
+            For headless use, where nothing else will prompt a reload.
+        **/
+        public void waitForLoad ()
+        {
+            Thread t;
+            synchronized (this) {t = thread;}
+            if (t == null) return;
+            try {t.join ();}
+            catch (InterruptedException e) {}
+        }
+
         protected synchronized void restartThread ()
         {
             if (thread != null  &&  thread.study == currentStudy  &&  thread.isAlive ())
@@ -743,7 +756,12 @@ public class PanelStudy extends JPanel
                 {
                     if (c == parser.time) continue;
                     // TODO: handle different methods for expressing loss. This version only handles squared error over time series.
-                    for (float e : c.values) error += e * e;
+                    int count = c.values.size ();
+                    for (int i = 0; i < count; i++)
+                    {
+                        float e = c.values.get (i);
+                        error += e * e;
+                    }
                 }
             }
             if (error > 0) values[0] = Scalar.print (Math.sqrt (error));
@@ -9,6 +9,7 @@ package gov.sandia.n2a.ui.studies;
 import gov.sandia.n2a.backend.internal.Simulator;
 import gov.sandia.n2a.db.AppData;
 import gov.sandia.n2a.db.MDoc;
+import gov.sandia.n2a.db.MFrozen;
 import gov.sandia.n2a.db.MNode;
 import gov.sandia.n2a.db.MPart;
 import gov.sandia.n2a.db.MPartRepo;
@@ -30,6 +31,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Base64;
@@ -39,6 +41,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -206,6 +210,19 @@ public class Study
         }
     }
 
+    /**
+        Waits at most the given time for the study to finish.
+        @return true if the study is no longer running.
+    **/
+    public boolean waitForCompletion (long millis)
+    {
+        Thread t = thread;
+        if (t == null) return true;
+        try {t.join (millis);}
+        catch (InterruptedException e) {}
+        return thread == null;
+    }
+
     public float complete ()
     {
         if (! source.get ("finished").isEmpty ()) return 1;
@@ -287,21 +304,45 @@ public class Study
         MNode job = AppData.runs.child (jobKey);
         if (job == null) return null;
 
-        String key          = job.get ("$inherit");
-        Path   localJobDir  = Host.getJobDir (Host.getLocalResourceDir (), job);
-        Path   snapshotPath = localJobDir.resolve ("snapshot");
-        MNode  snapshot     = new MDoc (snapshotPath);  // Load the mini-repo
-        return snapshot.child (key);
+        MNode snapshot = NodeJob.getSnapshot (job);  // Load the mini-repo
+        if (snapshot == null) return null;
+        return snapshot.child (job.get ("$inherit"));
     }
 
     public Path getDir ()
     {
-        return Host.getLocalResourceDir ().resolve ("studies").resolve (source.key ());
+        return getDir (source.key ());
+    }
+
+    public static Path getDir (String studyKey)
+    {
+        return Host.getLocalResourceDir ().resolve ("studies").resolve (studyKey);
     }
 
-    public class StudyThread extends Thread
+    /**
+        Retrieves the snapshot shared by all samples, creating it if necessary.
+        The base is written once, when the study first starts. Each sample then stores only the
+        parameters that differ from it. Because the base captures the model as it was at the start,
+        samples generated after the study is resumed remain consistent with earlier ones, even if
+        the model has been edited in the meantime.
+        @return The mini-repo, or null if snapshots are disabled.
+    **/
+    public MNode getBaseSnapshot (MNode model)
+    {
+        MFrozen result = NodeJob.getSnapshotBase (source.key ());
+        if (result != null) return result;
+
+        Path basePath = getDir ().resolve ("snapshot");
+        try {Files.createDirectories (basePath.getParent ());}
+        catch (IOException e) {}
+        if (! NodeJob.saveSnapshot (model, basePath)) return null;
+        return NodeJob.getSnapshotBase (source.key ());
+    }
+
+    public class StudyThread extends Thread implements NodeJob.JobListener
     {
         public boolean stop;
+        protected Semaphore jobsChanged = new Semaphore (0);  // Released whenever some job finishes, so we can respond immediately rather than polling.
 
         public StudyThread ()
         {
@@ -348,9 +389,12 @@ public class Study
                 if (iterator.usesRandom ()) initRandom ();
             }
             count = iterator.count ();
+            NodeJob.addJobListener (this);
 
             String inherit = source.get ("$inherit");
             MNode model = AppData.docs.childOrEmpty ("models", inherit);
+            MNode base = getBaseSnapshot (model);
+            if (base != null  &&  base.child (inherit) != null) model = base.child (inherit);
             MNode modelCopy = new MVolatile ("", inherit);
             modelCopy.merge (model);  // "model" is never touched. We only use "modelCopy".
 
@@ -381,10 +425,9 @@ public class Study
                     if (iterator instanceof OptimizerLM) count = iterator.count ();  // Allow count to change. Need better filter for which classes to do this.
                     showProgress ();
 
-                    if (notStarted > 10)  // Throttle generation of new samples.
+                    if (notStarted > iterator.batch ())  // Throttle generation of new samples.
                     {
-                        try {sleep (1000);}
-                        catch (InterruptedException e) {}
+                        waitForJobs ();
                         continue;
                     }
                     else if (iterator.barrier ()  &&  index > lastBarrier  ||  done)
@@ -401,9 +444,11 @@ public class Study
                         }
                         else  // Wait at barrier
                         {
-                            try {sleep (1000);}
-                            catch (InterruptedException e) {}
-                            if (failed == 0) continue;
+                            if (failed == 0)
+                            {
+                                waitForJobs ();
+                                continue;
+                            }
 
                             // Some jobs failed, so recapitulate from last barrier.
                             restoreIterators ();  // Restores index as well.
@@ -441,8 +486,10 @@ public class Study
                         StudyHook h = (StudyHook) exp;
                         if (source.child ("config", "plugin", h.name ()) != null) h.modifySample (collated, job);
                     }
+                    if (base != null) job.set (source.key (), "snapshotBase");
                     job.save ();
-                    NodeJob.saveSnapshot (modelCopy, job);  // TODO: keep most of snapshot with study record. Only save modified parameters in each job snapshot.
+                    if (base == null) NodeJob.saveSnapshot (modelCopy, job);
+                    else              NodeJob.saveSnapshot (modelCopy, job, base);  // Only save modified parameters in each job snapshot.
 
                     // Update job count.
                     // It is important to do this after the collated model is saved, so that the UI thread will see complete information.
@@ -483,8 +530,27 @@ public class Study
             if (done) source.set (now, "finished");
             showProgress ();
 
+            NodeJob.removeJobListener (this);
             thread = null;
         }
+
+        public void jobChanged (NodeJob job)
+        {
+            // The job may belong to some other study or be a regular run. Waking up is cheap,
+            // so there is no need to filter here, where we would race with the study thread over "incomplete".
+            jobsChanged.release ();
+        }
+
+        /**
+            Blocks until some job changes state. The timeout is a fallback in case a change goes unreported,
+            for example a job that was assigned to a host by some other route.
+        **/
+        public void waitForJobs ()
+        {
+            try {jobsChanged.tryAcquire (1, TimeUnit.SECONDS);}
+            catch (InterruptedException e) {}
+            jobsChanged.drainPermits ();  // Every pass through the study loop examines all incomplete jobs, so one wake-up covers all accumulated changes.
+        }
     }
 
     public void saveIterators ()
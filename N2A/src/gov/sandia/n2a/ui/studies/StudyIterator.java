@@ -59,6 +59,17 @@ public abstract class StudyIterator
         return false;
     }
 
+    /**
+        Limits how many generated samples may be waiting for a host before the study pauses generation.
+        The default keeps the backlog of job records small. An iterator that needs a group of samples
+        all at once (such as the columns of a Jacobian) can raise this, so the whole group is handed to
+        the hosts together and runs in parallel.
+    **/
+    public int batch ()
+    {
+        return 10;
+    }
+
     public boolean usesRandom ()
     {
         if (inner != null) return inner.usesRandom ();